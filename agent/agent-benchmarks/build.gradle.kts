@@ -0,0 +1,26 @@
+plugins {
+  id("ai.java-conventions")
+  id("me.champeau.jmh")
+}
+
+// JMH suites for the agent's telemetry hot paths, run with "./gradlew :agent:agent-benchmarks:jmh"
+// (the benchmarks live in the same packages as the code under test so that they can reach
+// package-private entry points, e.g. TelemetryChannel.encode() and SamplingOverrides)
+
+dependencies {
+  jmhImplementation(project(":agent:agent-tooling"))
+  jmhImplementation(project(":agent:agent-bootstrap"))
+
+  jmhImplementation("io.opentelemetry:opentelemetry-api")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk")
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api")
+  // also brings in jackson, which the encoding benchmarks compare against
+  jmhImplementation("com.azure:azure-core")
+}
+
+jmh {
+  // allocation rates (gc.alloc.rate.norm) are reported next to throughput for every benchmark,
+  // so that allocation regressions show up before they reach production
+  profilers.add("gc")
+  resultFormat.set("JSON")
+}
@@ -0,0 +1,161 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.exporter;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.instrumentation.api.cache.Cache;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// measures the SpanData -> TelemetryItem mapping (the telemetry items are dropped instead of being
+// queued for sending)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExporterBenchmark {
+
+  @Param({"request", "httpClient", "database", "inProc"})
+  public String spanType;
+
+  private Exporter exporter;
+  private List<SpanData> spans;
+
+  @Setup
+  public void setup() {
+    NoopTelemetryClient telemetryClient =
+        new NoopTelemetryClient(
+            TelemetryClient.builder()
+                .setCustomDimensions(new HashMap<>())
+                .setMetricFilters(new ArrayList<>())
+                .setIkeyEndpointMap(Cache.bounded(100))
+                .setStatsbeatModule(new StatsbeatModule(null)));
+    telemetryClient.setInstrumentationKey("00000000-0000-0000-0000-0FEEDDADBEEF");
+    TelemetryClient.setActive(telemetryClient);
+    exporter = new Exporter(telemetryClient);
+
+    Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("io.opentelemetry.benchmark");
+    spans = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      spans.add(createSpan(tracer, i));
+    }
+  }
+
+  @Benchmark
+  public boolean export() {
+    return exporter.export(spans).isSuccess();
+  }
+
+  private SpanData createSpan(Tracer tracer, int i) {
+    Span span;
+    switch (spanType) {
+      case "request":
+        span =
+            tracer
+                .spanBuilder("GET /api/orders/{id}")
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.method", "GET")
+                .setAttribute("http.scheme", "https")
+                .setAttribute("http.host", "example.com")
+                .setAttribute("http.target", "/api/orders/" + i + "?expand=items")
+                .setAttribute(AttributeKey.longKey("http.status_code"), 200L)
+                .setAttribute("http.user_agent", "Mozilla/5.0")
+                .setAttribute("http.client_ip", "10.0.0.1")
+                .setAttribute("enduser.id", "user" + i)
+                .startSpan();
+        break;
+      case "httpClient":
+        span =
+            tracer
+                .spanBuilder("HTTP GET")
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("http.method", "GET")
+                .setAttribute("http.url", "https://inventory.example.com/api/items/" + i)
+                .setAttribute(AttributeKey.longKey("http.status_code"), 200L)
+                .setAttribute("net.peer.name", "inventory.example.com")
+                .setAttribute(AttributeKey.longKey("net.peer.port"), 443L)
+                .startSpan();
+        break;
+      case "database":
+        span =
+            tracer
+                .spanBuilder("SELECT orders")
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("db.system", "postgresql")
+                .setAttribute("db.name", "orders")
+                .setAttribute("db.statement", "select id, status, total from orders where id = ?")
+                .setAttribute("db.operation", "SELECT")
+                .setAttribute("net.peer.name", "orders-db")
+                .setAttribute(AttributeKey.longKey("net.peer.port"), 5432L)
+                .startSpan();
+        break;
+      case "inProc":
+        span =
+            tracer
+                .spanBuilder("OrderService.getOrder")
+                .setSpanKind(SpanKind.INTERNAL)
+                .setAttribute("code.namespace", "com.example.OrderService")
+                .setAttribute("code.function", "getOrder")
+                .startSpan();
+        break;
+      default:
+        throw new IllegalStateException("Unexpected span type: " + spanType);
+    }
+    span.end();
+    return ((ReadableSpan) span).toSpanData();
+  }
+
+  // drops the telemetry, so that only the mapping is measured
+  private static class NoopTelemetryClient extends TelemetryClient {
+
+    private NoopTelemetryClient(Builder builder) {
+      super(builder);
+    }
+
+    @Override
+    public void trackAsync(TelemetryItem telemetry) {}
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.NameConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ToAttributeConfig;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// measures the span and attribute processors in front of the exporter (the processed spans are
+// dropped by the delegate exporter)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+
+  @Param({"spanFromAttributes", "spanToAttributes", "attribute"})
+  public String processor;
+
+  private SpanExporter exporter;
+  private List<SpanData> spans;
+
+  @Setup
+  public void setup() {
+    SpanExporter delegate = new NoopExporter();
+    ProcessorConfig config = new ProcessorConfig();
+    config.id = processor;
+    switch (processor) {
+      case "spanFromAttributes":
+        config.type = ProcessorType.SPAN;
+        config.name = new NameConfig();
+        config.name.fromAttributes = asList("db.svc", "operation", "id");
+        config.name.separator = "::";
+        break;
+      case "spanToAttributes":
+        config.type = ProcessorType.SPAN;
+        config.name = new NameConfig();
+        config.name.toAttributes = new ToAttributeConfig();
+        config.name.toAttributes.rules = asList("^/api/v1/orders/(?<orderId>.*)/items$");
+        break;
+      case "attribute":
+        config.type = ProcessorType.ATTRIBUTE;
+        config.include = new ProcessorIncludeExclude();
+        config.include.matchType = MatchType.STRICT;
+        config.include.spanNames = asList("svcA", "/api/v1/orders/123/items");
+        config.actions =
+            asList(
+                new ProcessorAction("tenant", ProcessorActionType.INSERT, "contoso", null, null),
+                new ProcessorAction("db.svc", ProcessorActionType.UPDATE, "redacted", null, null),
+                new ProcessorAction("password", ProcessorActionType.DELETE, null, null, null));
+        break;
+      default:
+        throw new IllegalStateException("Unexpected processor: " + processor);
+    }
+    exporter = new ExporterWithProcessors(singletonList(config), delegate);
+
+    Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("benchmark");
+    spans = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      Span span =
+          tracer
+              .spanBuilder(i % 2 == 0 ? "svcA" : "/api/v1/orders/123/items")
+              .setAttribute("one", "1")
+              .setAttribute("two", 2L)
+              .setAttribute("db.svc", "location")
+              .setAttribute("operation", "get")
+              .setAttribute("id", "1234")
+              .setAttribute("password", "secret")
+              .startSpan();
+      span.end();
+      spans.add(((ReadableSpan) span).toSpanData());
+    }
+  }
+
+  @Benchmark
+  public CompletableResultCode export() {
+    return exporter.export(spans);
+  }
+
+  private static class NoopExporter implements SpanExporter {
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.quickpulse;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RemoteDependencyData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RequestData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.telemetry.FormattedDuration;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// measures recording telemetry for Live Metrics while a Live Metrics session is active, from
+// several application threads (every 16th item is a failure, so that documents are recorded too)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class QuickPulseDataCollectorBenchmark {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  private TelemetryItem[] telemetryItems;
+
+  @Setup
+  public void setup() {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    telemetryItems = new TelemetryItem[64];
+    for (int i = 0; i < telemetryItems.length; i++) {
+      boolean success = i % 16 != 0;
+      telemetryItems[i] =
+          i % 2 == 0
+              ? createRequest(telemetryClient, i, success)
+              : createDependency(telemetryClient, i, success);
+    }
+  }
+
+  // same as the QuickPulseDataFetcher, which collects the counters once per second
+  @Setup(Level.Iteration)
+  public void getAndRestart() {
+    QuickPulseDataCollector.INSTANCE.getAndRestart();
+  }
+
+  @TearDown
+  public void tearDown() {
+    QuickPulseDataCollector.INSTANCE.disable();
+  }
+
+  @Benchmark
+  public void add(ThreadState state) {
+    QuickPulseDataCollector.INSTANCE.add(telemetryItems[state.next()]);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private int index;
+
+    int next() {
+      index = (index + 1) & 63;
+      return index;
+    }
+  }
+
+  private static TelemetryItem createRequest(
+      TelemetryClient telemetryClient, int i, boolean success) {
+    TelemetryItem telemetry = new TelemetryItem();
+    RequestData data = new RequestData();
+    telemetryClient.initRequestTelemetry(telemetry, data);
+    data.setId(Integer.toHexString(i) + "0123456789abcdef");
+    data.setName("GET /api/orders/{id}");
+    data.setDuration(FormattedDuration.fromMillis(12 + i));
+    data.setResponseCode(success ? "200" : "500");
+    data.setSuccess(success);
+    data.setUrl("https://example.com/api/orders/" + i);
+    return telemetry;
+  }
+
+  private static TelemetryItem createDependency(
+      TelemetryClient telemetryClient, int i, boolean success) {
+    TelemetryItem telemetry = new TelemetryItem();
+    RemoteDependencyData data = new RemoteDependencyData();
+    telemetryClient.initRemoteDependencyTelemetry(telemetry, data);
+    data.setId(Integer.toHexString(i) + "fedcba9876543210");
+    data.setName("SELECT orders");
+    data.setData("select id, status, total from orders where id = ?");
+    data.setType("SQL");
+    data.setTarget("orders-db | orders");
+    data.setDuration(FormattedDuration.fromMillis(1 + i));
+    data.setSuccess(success);
+    return telemetry;
+  }
+}
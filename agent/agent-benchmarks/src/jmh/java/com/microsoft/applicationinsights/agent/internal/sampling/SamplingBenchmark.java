@@ -0,0 +1,151 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverride;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverrideAttribute;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// measures matching a span against the configured sampling overrides, with an override that is
+// matched by the last rule ("match") and with none of the rules matching ("noMatch"), and with
+// the same url on every span or with urls that are (mostly) unique, which defeats the decision
+// cache in SamplingOverrides
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamplingBenchmark {
+
+  private static final String TRACE_ID = "0123456789abcdef0123456789abcdef";
+
+  @Param({"1", "10", "100"})
+  public int numOverrides;
+
+  @Param({"match", "noMatch"})
+  public String scenario;
+
+  @Param({"1", "10000"})
+  public int distinctUrls;
+
+  private SamplingOverrides samplingOverrides;
+  private AiSampler sampler;
+  private Attributes[] attributes;
+  private int next;
+
+  @Setup
+  public void setup() {
+    List<SamplingOverride> overrides = new ArrayList<>();
+    for (int i = 0; i < numOverrides - 1; i++) {
+      overrides.add(
+          newOverride(
+              newAttribute("http.url", "https?://[^/]+/ignored" + i + "/.*", MatchType.REGEXP)));
+    }
+    overrides.add(
+        newOverride(
+            newAttribute("http.method", "GET", MatchType.STRICT),
+            newAttribute("http.url", "https?://[^/]+/health.*", MatchType.REGEXP)));
+    samplingOverrides = new SamplingOverrides(overrides);
+    sampler =
+        new AiSampler(
+            50,
+            samplingOverrides,
+            AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE);
+
+    String path = scenario.equals("match") ? "/health/live/" : "/api/orders/";
+    attributes = new Attributes[distinctUrls];
+    for (int i = 0; i < distinctUrls; i++) {
+      attributes[i] =
+          Attributes.builder()
+              .put("http.method", "GET")
+              .put("http.url", "https://example.com" + path + i)
+              .put("http.scheme", "https")
+              .put("http.host", "example.com")
+              .put("http.user_agent", "Mozilla/5.0")
+              .put("net.peer.ip", "10.0.0.1")
+              .build();
+    }
+  }
+
+  @Benchmark
+  @Nullable
+  public Object getOverride() {
+    return samplingOverrides.getOverride(SpanKind.SERVER, nextAttributes());
+  }
+
+  @Benchmark
+  public SamplingResult shouldSample() {
+    return sampler.shouldSample(
+        Context.root(),
+        TRACE_ID,
+        "GET /api/orders/{id}",
+        SpanKind.SERVER,
+        nextAttributes(),
+        Collections.emptyList());
+  }
+
+  private Attributes nextAttributes() {
+    Attributes result = attributes[next];
+    next = (next + 1) % attributes.length;
+    return result;
+  }
+
+  private static SamplingOverride newOverride(SamplingOverrideAttribute... attributes) {
+    SamplingOverride override = new SamplingOverride();
+    override.spanKind = Configuration.SpanKind.SERVER;
+    override.attributes = Arrays.asList(attributes);
+    override.percentage = 0;
+    return override;
+  }
+
+  private static SamplingOverrideAttribute newAttribute(
+      String key, String value, MatchType matchType) {
+    SamplingOverrideAttribute attribute = new SamplingOverrideAttribute();
+    attribute.key = key;
+    attribute.value = value;
+    attribute.matchType = matchType;
+    return attribute;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// trackAsync() measures enqueueing from several application threads (the workers drain and encode
+// in the background), trackAndFlush() measures the whole enqueue -> drain -> encode path of a batch
+// (the encoded batches are released instead of being sent)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSpanProcessorBenchmark {
+
+  @Param({"1", "4"})
+  public int numWorkers;
+
+  private BatchSpanProcessor processor;
+  private TelemetryItem[] telemetryItems;
+
+  @Setup
+  public void setup() throws IOException {
+    processor =
+        BatchSpanProcessor.builder(new NoopTelemetryChannel()).setNumWorkers(numWorkers).build();
+    telemetryItems = new TelemetryItem[512];
+    for (int i = 0; i < telemetryItems.length; i++) {
+      telemetryItems[i] =
+          i % 2 == 0
+              ? TelemetryChannelEncodeBenchmark.createRequest(i)
+              : TelemetryChannelEncodeBenchmark.createDependency(i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void trackAsync(ThreadState state) {
+    processor.trackAsync(telemetryItems[state.next()]);
+  }
+
+  @Benchmark
+  public boolean trackAndFlush() {
+    for (TelemetryItem telemetryItem : telemetryItems) {
+      processor.trackAsync(telemetryItem);
+    }
+    return processor.forceFlush().join(10, TimeUnit.SECONDS).isSuccess();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private int index;
+
+    int next() {
+      index = (index + 1) & 511;
+      return index;
+    }
+  }
+
+  private static class NoopTelemetryChannel extends TelemetryChannel {
+
+    private NoopTelemetryChannel() throws IOException {
+      super(null, new URL("http://localhost"), null, null);
+    }
+
+    @Override
+    CompletableResultCode sendEncoded(List<ByteBuffer> jsonByteBuffers, String instrumentationKey) {
+      getByteBufferPool().offer(jsonByteBuffers);
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// compares GzipCompressor against the GZIPOutputStream based compression it replaced
+// (the "bytes" counter reports uncompressed bytes per second)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GzipCompressorBenchmark {
+
+  @Param({"1", "64", "512"})
+  public int batchSize;
+
+  @Param({"1", "6"})
+  public int level;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  private AppInsightsByteBufferPool pool;
+  private GzipCompressorPool compressorPool;
+  private List<ByteBuffer> jsonByteBuffers;
+  private int jsonLength;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    pool =
+        new AppInsightsByteBufferPool(AppInsightsByteBufferPool.DEFAULT_MAX_RETAINED_BYTES, direct);
+    compressorPool = new GzipCompressorPool(1);
+
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    for (int i = 0; i < batchSize; i++) {
+      telemetryItems.add(
+          i % 2 == 0
+              ? TelemetryChannelEncodeBenchmark.createRequest(i)
+              : TelemetryChannelEncodeBenchmark.createDependency(i));
+    }
+    Utf8JsonWriter writer = new Utf8JsonWriter(pool);
+    TelemetryItemSerializer.writeTelemetryItems(writer, telemetryItems);
+    jsonByteBuffers = writer.getByteBuffers();
+    for (ByteBuffer jsonByteBuffer : jsonByteBuffers) {
+      jsonLength += jsonByteBuffer.position();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.offer(jsonByteBuffers);
+  }
+
+  @Benchmark
+  public int gzipOutputStream(Counters counters) throws IOException {
+    ByteBufferOutputStream out = new ByteBufferOutputStream(pool);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+          {
+            def.setLevel(level);
+          }
+        }) {
+      for (ByteBuffer jsonByteBuffer : jsonByteBuffers) {
+        gzip.write(
+            jsonByteBuffer.array(), jsonByteBuffer.arrayOffset(), jsonByteBuffer.position());
+      }
+    }
+    counters.bytes += jsonLength;
+    return release(out.getByteBuffers());
+  }
+
+  @Benchmark
+  public int gzipCompressor(Counters counters) {
+    counters.bytes += jsonLength;
+    return release(compressorPool.compress(jsonByteBuffers, pool, level));
+  }
+
+  private int release(List<ByteBuffer> byteBuffers) {
+    int size = byteBuffers.size();
+    pool.offer(byteBuffers);
+    return size;
+  }
+}
@@ -144,6 +144,76 @@ public class Configuration {
   public static class SamplingPreview {
 
     public List<SamplingOverride> overrides = new ArrayList<>();
+    // when set, the sampling percentage is adapted (every few seconds) to the rate of new traces,
+    // so that roughly this many traces per second are captured, and "percentage" is ignored
+    // (sampling overrides still take precedence)
+    @Nullable public Double requestsPerSecond;
+  }
+
+  public static class TailSampling {
+    public boolean enabled;
+    // traces that are not kept by one of the rules below are kept at this percentage (based on the
+    // trace id, same as regular sampling), errors are always kept
+    public float percentage = 10;
+    // traces whose local root span takes at least this long are always kept
+    @Nullable public Long durationThresholdMillis;
+    // traces with a span that matches all of these attributes are always kept
+    public List<SamplingOverrideAttribute> attributes = new ArrayList<>();
+    // how long spans are held waiting for the local root span to end, before the trace is decided
+    // without it
+    public long decisionWaitMillis = 30000;
+    // once the buffered spans reach this (estimated) size, new traces are no longer buffered, and
+    // instead are decided on arrival based on "percentage" (and errors)
+    public int maxBufferSizeMb = 32;
+
+    public void validate() {
+      if (percentage < 0 || percentage > 100) {
+        throw new FriendlyException(
+            "\"percentage\" must be between 0 and 100, but was: " + percentage,
+            "Please update \"preview\": { \"tailSampling\": { \"percentage\" } } to a number"
+                + " between 0 and 100.");
+      }
+      if (durationThresholdMillis != null && durationThresholdMillis < 0) {
+        throw new FriendlyException(
+            "\"durationThresholdMillis\" must not be negative, but was: "
+                + durationThresholdMillis,
+            "Please update \"preview\": { \"tailSampling\": { \"durationThresholdMillis\" } }"
+                + " to a non-negative number.");
+      }
+      if (decisionWaitMillis < 1) {
+        throw new FriendlyException(
+            "\"decisionWaitMillis\" must be at least 1, but was: " + decisionWaitMillis,
+            "Please update \"preview\": { \"tailSampling\": { \"decisionWaitMillis\" } } to a"
+                + " positive number.");
+      }
+      if (maxBufferSizeMb < 1) {
+        throw new FriendlyException(
+            "\"maxBufferSizeMb\" must be at least 1, but was: " + maxBufferSizeMb,
+            "Please update \"preview\": { \"tailSampling\": { \"maxBufferSizeMb\" } } to a"
+                + " positive number.");
+      }
+      for (SamplingOverrideAttribute attribute : attributes) {
+        attribute.validate();
+      }
+    }
+  }
+
+  public static class MetricAggregation {
+    // when enabled, custom metric measurements from the 2.x SDK are aggregated in the agent and
+    // sent once per metric interval, instead of as one telemetry item per measurement
+    public boolean enabled;
+    // measurements of series (metric name plus properties) beyond this number are aggregated into
+    // an overflow series per metric name
+    public int maxSeries = 1000;
+
+    public void validate() {
+      if (maxSeries < 1) {
+        throw new FriendlyException(
+            "\"maxSeries\" must be at least 1, but was: " + maxSeries,
+            "Please update \"preview\": { \"metricAggregation\": { \"maxSeries\" } } to a"
+                + " positive number.");
+      }
+    }
   }
 
   public static class JmxMetric {
@@ -205,6 +275,8 @@ public class Configuration {
   public static class PreviewConfiguration {
 
     public SamplingPreview sampling = new SamplingPreview();
+    public TailSampling tailSampling = new TailSampling();
+    public MetricAggregation metricAggregation = new MetricAggregation();
     public List<ProcessorConfig> processors = new ArrayList<>();
     // this is just here to detect if using this old setting in order to give a helpful message
     @Deprecated public boolean openTelemetryApiSupport;
@@ -225,6 +297,17 @@ public class Configuration {
     // this is needed to unblock customer, but is not the ideal long-term solution
     // https://portal.microsofticm.com/imp/v3/incidents/details/266992200/home
     public boolean disablePropagation;
+    // number of threads that batch, encode and compress telemetry before it is sent,
+    // useful on hosts with many cores where a single export thread becomes the bottleneck
+    public int exporterThreads = 1;
+    // maximum number of concurrent requests to the ingestion endpoint, once reached the exporter
+    // threads wait for a request to complete before sending the next batch
+    public int maxInFlightRequests = 8;
+    public BufferPool bufferPool = new BufferPool();
+    // gzip compression level (1-9) for requests to the ingestion endpoint, lower levels use less
+    // cpu at the cost of larger requests
+    public int compressionLevel = 6;
+    public LocalStorage localStorage = new LocalStorage();
 
     public List<InheritedAttribute> inheritedAttributes = new ArrayList<>();
 
@@ -234,6 +317,37 @@ public class Configuration {
     public PreviewStatsbeat statsbeat = new PreviewStatsbeat();
 
     public List<InstrumentationKeyOverride> instrumentationKeyOverrides = new ArrayList<>();
+
+    public void validate() {
+      if (exporterThreads < 1) {
+        throw new FriendlyException(
+            "\"exporterThreads\" must be at least 1, but was: " + exporterThreads,
+            "Please update \"preview\": { \"exporterThreads\" } to a positive number.");
+      }
+      if (maxInFlightRequests < 1) {
+        throw new FriendlyException(
+            "\"maxInFlightRequests\" must be at least 1, but was: " + maxInFlightRequests,
+            "Please update \"preview\": { \"maxInFlightRequests\" } to a positive number.");
+      }
+      if (compressionLevel < 1 || compressionLevel > 9) {
+        throw new FriendlyException(
+            "\"compressionLevel\" must be between 1 and 9, but was: " + compressionLevel,
+            "Please update \"preview\": { \"compressionLevel\" } to a number between 1 and 9.");
+      }
+      if (bufferPool.maxRetainedMb < 0) {
+        throw new FriendlyException(
+            "\"maxRetainedMb\" must not be negative, but was: " + bufferPool.maxRetainedMb,
+            "Please update \"preview\": { \"bufferPool\": { \"maxRetainedMb\" } } to a"
+                + " non-negative number.");
+      }
+      Double requestsPerSecond = sampling.requestsPerSecond;
+      if (requestsPerSecond != null && !(requestsPerSecond > 0)) {
+        throw new FriendlyException(
+            "\"requestsPerSecond\" must be greater than 0, but was: " + requestsPerSecond,
+            "Please update \"preview\": { \"sampling\": { \"requestsPerSecond\" } } to a"
+                + " positive number, or remove it to use the fixed sampling percentage.");
+      }
+    }
   }
 
   public static class InheritedAttribute {
@@ -323,6 +437,49 @@ public class Configuration {
         new DisabledByDefaultInstrumentation();
   }
 
+  public static class BufferPool {
+    // upper bound on the memory retained by the pool of buffers used for encoding and compressing
+    // telemetry (buffers beyond this are simply garbage collected after use)
+    public int maxRetainedMb = 4;
+    // use direct (off-heap) buffers for the compressed request bodies, which saves a copy when
+    // writing them to the socket
+    public boolean direct;
+  }
+
+  public static class LocalStorage {
+    // telemetry that fails to send is appended to segment files of this size, which are
+    // pre-allocated when they are created
+    public int segmentSizeMb = 4;
+    // "never" leaves it to the operating system to write the segments to disk, "interval" forces
+    // them to disk at most once per fsyncIntervalMillis, and "always" after every batch
+    public FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+    public long fsyncIntervalMillis = 1000;
+
+    public void validate() {
+      if (segmentSizeMb < 1) {
+        throw new FriendlyException(
+            "\"segmentSizeMb\" must be at least 1, but was: " + segmentSizeMb,
+            "Please update \"preview\": { \"localStorage\": { \"segmentSizeMb\" } } to a"
+                + " positive number.");
+      }
+      if (fsyncIntervalMillis < 1) {
+        throw new FriendlyException(
+            "\"fsyncIntervalMillis\" must be at least 1, but was: " + fsyncIntervalMillis,
+            "Please update \"preview\": { \"localStorage\": { \"fsyncIntervalMillis\" } } to a"
+                + " positive number.");
+      }
+    }
+  }
+
+  public enum FsyncPolicy {
+    @JsonProperty("never")
+    NEVER,
+    @JsonProperty("interval")
+    INTERVAL,
+    @JsonProperty("always")
+    ALWAYS
+  }
+
   public static class PreviewStatsbeat {
     // disabled is used by customer to turn off non-essential Statsbeat, e.g. disk persistence
     // operation status, optional network statsbeat, other endpoints except Breeze, etc.
@@ -359,6 +516,9 @@ public class Configuration {
 
   public static class LiveMetrics {
     public boolean enabled = true;
+    // sends request and dependency duration percentiles as additional live metrics, these are
+    // not known to the live metrics service yet, so they are off by default
+    public boolean durationPercentiles;
   }
 
   public static class SelfDiagnostics {
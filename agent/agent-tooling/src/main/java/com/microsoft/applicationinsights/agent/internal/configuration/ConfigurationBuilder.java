@@ -97,6 +97,9 @@ public class ConfigurationBuilder {
   private static final String APPLICATIONINSIGHTS_PREVIEW_METRIC_INTERVAL_SECONDS =
       "APPLICATIONINSIGHTS_PREVIEW_METRIC_INTERVAL_SECONDS";
 
+  private static final String APPLICATIONINSIGHTS_PREVIEW_EXPORTER_THREADS =
+      "APPLICATIONINSIGHTS_PREVIEW_EXPORTER_THREADS";
+
   private static final String APPLICATIONINSIGHTS_AUTHENTICATION_STRING =
       "APPLICATIONINSIGHTS_AUTHENTICATION_STRING";
 
@@ -156,6 +159,8 @@ public class ConfigurationBuilder {
     }
 
     overlayFromEnv(config);
+    config.preview.tailSampling.percentage =
+        roundToNearest(config.preview.tailSampling.percentage, true);
     config.sampling.percentage = roundToNearest(config.sampling.percentage, true);
     for (SamplingOverride override : config.preview.sampling.overrides) {
       override.percentage = roundToNearest(override.percentage, true);
@@ -387,6 +392,11 @@ public class ConfigurationBuilder {
                 APPLICATIONINSIGHTS_PREVIEW_METRIC_INTERVAL_SECONDS,
                 config.preview.metricIntervalSeconds);
 
+    config.preview.exporterThreads =
+        (int)
+            overlayWithEnvVar(
+                APPLICATIONINSIGHTS_PREVIEW_EXPORTER_THREADS, config.preview.exporterThreads);
+
     config.preview.instrumentation.springIntegration.enabled =
         overlayWithEnvVar(
             APPLICATIONINSIGHTS_PREVIEW_INSTRUMENTATION_SPRING_INTEGRATION_ENABLED,
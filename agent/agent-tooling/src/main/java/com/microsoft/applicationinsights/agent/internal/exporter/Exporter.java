@@ -37,7 +37,6 @@ import com.microsoft.applicationinsights.agent.internal.exporter.models.Telemetr
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionDetails;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
 import com.microsoft.applicationinsights.agent.internal.telemetry.FormattedDuration;
-import com.microsoft.applicationinsights.agent.internal.telemetry.FormattedTime;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryUtil;
 import io.opentelemetry.api.common.AttributeKey;
@@ -65,6 +64,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -119,6 +119,11 @@ public class Exporter implements SpanExporter {
       longKey("kafka.record.queue_time_ms");
   private static final AttributeKey<Long> KAFKA_OFFSET = longKey("kafka.offset");
 
+  private static final int MAX_EXTRA_ATTRIBUTE_MAPPINGS = 1000;
+
+  private static final Map<AttributeKey<?>, ExtraAttributeMapping> EXTRA_ATTRIBUTE_MAPPINGS =
+      new ConcurrentHashMap<>();
+
   private static final OperationLogger exportingSpanLogger =
       new OperationLogger(Exporter.class, "Exporting span");
 
@@ -996,7 +1001,7 @@ public class Exporter implements SpanExporter {
   }
 
   private static void setTime(TelemetryItem telemetry, long epochNanos) {
-    telemetry.setTime(FormattedTime.offSetDateTimeFromEpochNanos(epochNanos));
+    telemetry.setTimeEpochNanos(epochNanos);
   }
 
   private static void setSampleRate(TelemetryItem telemetry, SpanData span) {
@@ -1039,59 +1044,110 @@ public class Exporter implements SpanExporter {
       TelemetryItem telemetry, MonitorDomain data, Attributes attributes) {
     attributes.forEach(
         (key, value) -> {
-          String stringKey = key.getKey();
-          if (stringKey.startsWith("applicationinsights.internal.")) {
+          ExtraAttributeMapping mapping = getExtraAttributeMapping(key);
+          if (mapping == ExtraAttributeMapping.DROP) {
             return;
           }
-          if (stringKey.equals(AZURE_NAMESPACE.getKey())
-              || stringKey.equals(AZURE_SDK_MESSAGE_BUS_DESTINATION.getKey())
-              || stringKey.equals(AZURE_SDK_ENQUEUED_TIME.getKey())) {
-            // these are from azure SDK (AZURE_SDK_PEER_ADDRESS gets filtered out automatically
-            // since it uses the otel "peer." prefix)
-            return;
-          }
-          if (stringKey.equals(KAFKA_RECORD_QUEUE_TIME_MS.getKey())
-              || stringKey.equals(KAFKA_OFFSET.getKey())) {
-            return;
-          }
-          // special case mappings
-          if (stringKey.equals(SemanticAttributes.ENDUSER_ID.getKey()) && value instanceof String) {
-            telemetry.getTags().put(ContextTagKeys.AI_USER_ID.toString(), (String) value);
-            return;
-          }
-          if (stringKey.equals(SemanticAttributes.HTTP_USER_AGENT.getKey())
-              && value instanceof String) {
-            telemetry.getTags().put("ai.user.userAgent", (String) value);
-            return;
-          }
-          if (stringKey.equals("ai.preview.instrumentation_key") && value instanceof String) {
-            telemetry.setInstrumentationKey((String) value);
-            return;
-          }
-          if (stringKey.equals("ai.preview.service_name") && value instanceof String) {
-            telemetry.getTags().put(ContextTagKeys.AI_CLOUD_ROLE.toString(), (String) value);
-            return;
-          }
-          if (stringKey.equals("ai.preview.service_instance_id") && value instanceof String) {
-            telemetry
-                .getTags()
-                .put(ContextTagKeys.AI_CLOUD_ROLE_INSTANCE.toString(), (String) value);
-            return;
-          }
-          if (stringKey.equals("ai.preview.service_version") && value instanceof String) {
-            telemetry.getTags().put(ContextTagKeys.AI_APPLICATION_VER.toString(), (String) value);
-            return;
+          if (value instanceof String) {
+            String tagKey = mapping.tagKey;
+            if (tagKey != null) {
+              telemetry.getTags().put(tagKey, (String) value);
+              return;
+            }
+            if (mapping == ExtraAttributeMapping.INSTRUMENTATION_KEY) {
+              telemetry.setInstrumentationKey((String) value);
+              return;
+            }
           }
-          if (STANDARD_ATTRIBUTE_PREFIXES.getOrDefault(stringKey, false)) {
+          if (mapping.dropIfNotString) {
             return;
           }
-          String val = convertToString(value, key.getType());
+          String val =
+              key.getType() == AttributeType.STRING
+                  ? (String) value
+                  : convertToString(value, key.getType());
           if (value != null) {
-            TelemetryUtil.getProperties(data).put(key.getKey(), val);
+            TelemetryUtil.getProperties(data, attributes.size()).put(key.getKey(), val);
           }
         });
   }
 
+  private static ExtraAttributeMapping getExtraAttributeMapping(AttributeKey<?> key) {
+    ExtraAttributeMapping mapping = EXTRA_ATTRIBUTE_MAPPINGS.get(key);
+    if (mapping == null) {
+      mapping = ExtraAttributeMapping.classify(key.getKey());
+      // attribute keys are almost always constants, the limit only protects against
+      // instrumentation that builds attribute names dynamically
+      if (EXTRA_ATTRIBUTE_MAPPINGS.size() < MAX_EXTRA_ATTRIBUTE_MAPPINGS) {
+        EXTRA_ATTRIBUTE_MAPPINGS.putIfAbsent(key, mapping);
+      }
+    }
+    return mapping;
+  }
+
+  // how setExtraAttributes() maps an attribute, which only depends on the attribute name (and is
+  // cached per attribute key), except that the tag mappings only apply to string values
+  private enum ExtraAttributeMapping {
+    DROP(null, true),
+    PROPERTY(null, false),
+    INSTRUMENTATION_KEY(null, false),
+    USER_ID(ContextTagKeys.AI_USER_ID.toString(), true),
+    USER_AGENT("ai.user.userAgent", true),
+    CLOUD_ROLE(ContextTagKeys.AI_CLOUD_ROLE.toString(), false),
+    CLOUD_ROLE_INSTANCE(ContextTagKeys.AI_CLOUD_ROLE_INSTANCE.toString(), false),
+    APPLICATION_VER(ContextTagKeys.AI_APPLICATION_VER.toString(), false);
+
+    // the tag that string values are mapped to
+    @Nullable private final String tagKey;
+    // whether values that are not strings are dropped instead of being added as a property
+    private final boolean dropIfNotString;
+
+    ExtraAttributeMapping(@Nullable String tagKey, boolean dropIfNotString) {
+      this.tagKey = tagKey;
+      this.dropIfNotString = dropIfNotString;
+    }
+
+    private static ExtraAttributeMapping classify(String key) {
+      if (key.startsWith("applicationinsights.internal.")) {
+        return DROP;
+      }
+      if (key.equals(AZURE_NAMESPACE.getKey())
+          || key.equals(AZURE_SDK_MESSAGE_BUS_DESTINATION.getKey())
+          || key.equals(AZURE_SDK_ENQUEUED_TIME.getKey())) {
+        // these are from azure SDK (AZURE_SDK_PEER_ADDRESS gets filtered out automatically
+        // since it uses the otel "peer." prefix)
+        return DROP;
+      }
+      if (key.equals(KAFKA_RECORD_QUEUE_TIME_MS.getKey()) || key.equals(KAFKA_OFFSET.getKey())) {
+        return DROP;
+      }
+      // special case mappings (non-string values of these fall through to the standard attribute
+      // prefixes below, e.g. "enduser." and "http.")
+      if (key.equals(SemanticAttributes.ENDUSER_ID.getKey())) {
+        return USER_ID;
+      }
+      if (key.equals(SemanticAttributes.HTTP_USER_AGENT.getKey())) {
+        return USER_AGENT;
+      }
+      if (key.equals("ai.preview.instrumentation_key")) {
+        return INSTRUMENTATION_KEY;
+      }
+      if (key.equals("ai.preview.service_name")) {
+        return CLOUD_ROLE;
+      }
+      if (key.equals("ai.preview.service_instance_id")) {
+        return CLOUD_ROLE_INSTANCE;
+      }
+      if (key.equals("ai.preview.service_version")) {
+        return APPLICATION_VER;
+      }
+      if (STANDARD_ATTRIBUTE_PREFIXES.getOrDefault(key, false)) {
+        return DROP;
+      }
+      return PROPERTY;
+    }
+  }
+
   @Nullable
   private static String convertToString(Object value, AttributeType type) {
     switch (type) {
@@ -22,10 +22,14 @@
 package com.microsoft.applicationinsights.agent.internal.exporter.models;
 
 import static com.microsoft.applicationinsights.agent.internal.common.TelemetryTruncation.truncateTelemetry;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.azure.core.annotation.Fluent;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Map;
 
 /** System variables for a telemetry item. */
@@ -60,6 +64,14 @@ public final class TelemetryItem {
   @JsonProperty(value = "time", required = true)
   private OffsetDateTime time;
 
+  /*
+   * Alternative to time, which is formatted directly by the serializer (without creating an
+   * OffsetDateTime). Only valid when timeEpochNanosSet is true.
+   */
+  @JsonIgnore private long timeEpochNanos;
+
+  @JsonIgnore private boolean timeEpochNanosSet;
+
   /*
    * Sampling rate used in application. This telemetry item represents 100 /
    * sampleRate actual telemetry items.
@@ -146,6 +158,10 @@ public final class TelemetryItem {
    * @return the time value.
    */
   public OffsetDateTime getTime() {
+    if (this.time == null && this.timeEpochNanosSet) {
+      this.time =
+          Instant.ofEpochMilli(NANOSECONDS.toMillis(this.timeEpochNanos)).atOffset(ZoneOffset.UTC);
+    }
     return this.time;
   }
 
@@ -163,9 +179,44 @@ public final class TelemetryItem {
    */
   public TelemetryItem setTime(OffsetDateTime time) {
     this.time = time;
+    this.timeEpochNanosSet = false;
     return this;
   }
 
+  /**
+   * Set the time property from epoch nanoseconds (truncated to milliseconds), without creating an
+   * {@link OffsetDateTime} up front.
+   *
+   * @param epochNanos the time value to set.
+   * @return the TelemetryItem object itself.
+   */
+  public TelemetryItem setTimeEpochNanos(long epochNanos) {
+    this.time = null;
+    this.timeEpochNanos = epochNanos;
+    this.timeEpochNanosSet = true;
+    return this;
+  }
+
+  /**
+   * Returns whether the time was set with {@link #setTimeEpochNanos(long)} (and not replaced
+   * since).
+   */
+  @JsonIgnore
+  public boolean isTimeEpochNanosSet() {
+    return this.timeEpochNanosSet;
+  }
+
+  /** Only valid when {@link #isTimeEpochNanosSet()}. */
+  @JsonIgnore
+  public long getTimeEpochNanos() {
+    return this.timeEpochNanos;
+  }
+
+  /** Returns whether the time property has been set (in either form). */
+  public boolean hasTime() {
+    return this.time != null || this.timeEpochNanosSet;
+  }
+
   /**
    * Get the sampleRate property: Sampling rate used in application. This telemetry item represents
    * 100 / sampleRate actual telemetry items.
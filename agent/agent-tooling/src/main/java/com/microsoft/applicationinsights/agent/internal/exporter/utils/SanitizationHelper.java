@@ -43,11 +43,23 @@ public class SanitizationHelper {
     if (properties == null) {
       return;
     }
+    if (properties instanceof SanitizableMap) {
+      ((SanitizableMap) properties).sanitize();
+      return;
+    }
+    sanitizeAllProperties(properties);
+  }
+
+  /**
+   * Same as {@link #sanitizeProperties(Map)}, but always walks all the entries, so that it can be
+   * used by a {@link SanitizableMap} itself.
+   */
+  public static void sanitizeAllProperties(Map<String, String> properties) {
     for (Iterator<Map.Entry<String, String>> i = properties.entrySet().iterator(); i.hasNext(); ) {
       Map.Entry<String, String> entry = i.next();
       String key = entry.getKey();
       String value = entry.getValue();
-      if (Strings.isNullOrEmpty(key) || key.length() > MAX_KEY_LENGTH || value == null) {
+      if (!isValidProperty(key, value)) {
         i.remove();
         continue;
       }
@@ -57,6 +69,19 @@ public class SanitizationHelper {
     }
   }
 
+  /** Returns whether the property is kept when sanitizing (its value may still be truncated). */
+  public static boolean isValidProperty(String key, String value) {
+    return !Strings.isNullOrEmpty(key) && key.length() <= MAX_KEY_LENGTH && value != null;
+  }
+
+  /** Returns the value of a valid property, truncated if needed. */
+  public static String sanitizePropertyValue(String key, String value) {
+    if (value.length() > MAX_VALUE_LENGTH) {
+      return truncatePropertyValue(value, MAX_VALUE_LENGTH, key);
+    }
+    return value;
+  }
+
   /**
    * Function to sanitize both key and value in measurements, see rules at
    * https://github.com/microsoft/common-schema/blob/main/Mappings/AzureMonitor-AI.md#mapping-rule
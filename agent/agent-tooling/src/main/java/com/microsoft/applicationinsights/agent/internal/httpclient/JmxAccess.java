@@ -0,0 +1,102 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.httpclient;
+
+import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to the platform MBean server that respects {@link LazyHttpClient#safeToInitLatch}.
+ *
+ * <p>The platform MBean server initializes java.util.logging, and JBoss/Wildfly need to install
+ * their own JUL manager before JUL is initialized, so (same as the http client) the agent doesn't
+ * touch JMX until that latch has been released.
+ */
+public final class JmxAccess {
+
+  private static final Logger logger = LoggerFactory.getLogger(JmxAccess.class);
+
+  /**
+   * Blocks until it is safe to access JMX.
+   *
+   * <p>The wait is limited to 2 minutes (same as {@link LazyHttpClient}), in case the agent
+   * incorrectly anticipated needing to delay JUL initialization in an environment that never loads
+   * JUL.
+   */
+  public static void awaitSafeToAccess() {
+    CountDownLatch safeToInitLatch = LazyHttpClient.safeToInitLatch;
+    if (safeToInitLatch == null) {
+      return;
+    }
+    try {
+      safeToInitLatch.await(2, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Registers the MBean (replacing any MBean already registered under the same name) as soon as it
+   * is safe to access JMX. Registers right away if that is already the case, otherwise registers
+   * from a new daemon thread (named after {@code owner}), so that the caller isn't blocked.
+   */
+  public static void registerWhenSafe(Object mbean, String objectName, Class<?> owner) {
+    if (LazyHttpClient.safeToInitLatch == null) {
+      register(mbean, objectName);
+      return;
+    }
+    ThreadPoolUtils.createDaemonThreadFactory(owner)
+        .newThread(
+            () -> {
+              awaitSafeToAccess();
+              if (!Thread.currentThread().isInterrupted()) {
+                register(mbean, objectName);
+              }
+            })
+        .start();
+  }
+
+  /**
+   * Registers the MBean right away (replacing any MBean already registered under the same name),
+   * must only be called once it is safe to access JMX.
+   */
+  public static void register(Object mbean, String objectName) {
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(objectName);
+      if (mbeanServer.isRegistered(name)) {
+        mbeanServer.unregisterMBean(name);
+      }
+      mbeanServer.registerMBean(mbean, name);
+    } catch (Exception e) {
+      logger.debug("Failed to register MBean {}", objectName, e);
+    }
+  }
+
+  private JmxAccess() {}
+}
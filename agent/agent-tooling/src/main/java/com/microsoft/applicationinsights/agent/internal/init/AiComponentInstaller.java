@@ -41,15 +41,17 @@ import com.microsoft.applicationinsights.agent.internal.legacysdk.ApplicationIns
 import com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.DependencyTelemetryClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.HeartBeatModuleClassFileTransformer;
+import com.microsoft.applicationinsights.agent.internal.legacysdk.MetricAggregator;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.PerformanceCounterModuleClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.QuickPulseClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.RequestNameHandlerClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.RequestTelemetryClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.TelemetryClientClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.WebRequestTrackingFilterClassFileTransformer;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFilePurger;
+import com.microsoft.applicationinsights.agent.internal.perfcounter.PerformanceCounterContainer;
 import com.microsoft.applicationinsights.agent.internal.profiler.GcEventMonitor;
 import com.microsoft.applicationinsights.agent.internal.profiler.ProfilerServiceInitializer;
+import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
 import com.microsoft.applicationinsights.agent.internal.telemetry.ConnectionString;
 import com.microsoft.applicationinsights.agent.internal.telemetry.InvalidConnectionStringException;
@@ -153,9 +155,13 @@ public class AiComponentInstaller implements AgentListener {
       }
     }
     // TODO (trask) should configuration validation be performed earlier?
+    config.preview.validate();
+    config.preview.localStorage.validate();
+    config.preview.metricAggregation.validate();
     for (Configuration.SamplingOverride samplingOverride : config.preview.sampling.overrides) {
       samplingOverride.validate();
     }
+    config.preview.tailSampling.validate();
     for (Configuration.InstrumentationKeyOverride instrumentationKeyOverride :
         config.preview.instrumentationKeyOverrides) {
       instrumentationKeyOverride.validate();
@@ -196,11 +202,17 @@ public class AiComponentInstaller implements AgentListener {
             .setIkeyEndpointMap(ikeyEndpointMap)
             .setStatsbeatModule(statsbeatModule)
             .setReadOnlyFileSystem(readOnlyFileSystem)
+            .setExporterThreads(config.preview.exporterThreads)
+            .setMaxInFlightRequests(config.preview.maxInFlightRequests)
+            .setBufferPool(config.preview.bufferPool)
+            .setCompressionLevel(config.preview.compressionLevel)
+            .setLocalStorage(config.preview.localStorage)
             .setAadAuthentication(config.preview.authentication)
             .build();
 
     TelemetryClientInitializer.initialize(telemetryClient, config);
     TelemetryClient.setActive(telemetryClient);
+    PerformanceCounterContainer.INSTANCE.start();
 
     try {
       ConnectionString.updateStatsbeatConnectionString(
@@ -211,7 +223,8 @@ public class AiComponentInstaller implements AgentListener {
       startupLogger.warn("Statsbeat endpoint is invalid. {}", ex.getMessage());
     }
 
-    BytecodeUtilImpl.samplingPercentage = config.sampling.percentage;
+    BytecodeUtilImpl.samplingPercentage =
+        Samplers.getDefaultSamplingPercentageSupplier(config.sampling.percentage, config);
 
     appIdSupplier = new AppIdSupplier(telemetryClient);
     AiAppId.setSupplier(appIdSupplier);
@@ -241,8 +254,15 @@ public class AiComponentInstaller implements AgentListener {
     }
 
     // this is currently used by Micrometer instrumentation in addition to 2.x SDK
-    BytecodeUtil.setDelegate(new BytecodeUtilImpl());
-    Runtime.getRuntime().addShutdownHook(new ShutdownHook(telemetryClient));
+    MetricAggregator metricAggregator =
+        config.preview.metricAggregation.enabled
+            ? MetricAggregator.create(
+                telemetryClient,
+                config.preview.metricAggregation.maxSeries,
+                config.preview.metricIntervalSeconds)
+            : null;
+    BytecodeUtil.setDelegate(new BytecodeUtilImpl(metricAggregator));
+    Runtime.getRuntime().addShutdownHook(new ShutdownHook(telemetryClient, metricAggregator));
 
     RpConfiguration rpConfiguration = MainEntryPoint.getRpConfiguration();
     if (rpConfiguration != null) {
@@ -251,11 +271,6 @@ public class AiComponentInstaller implements AgentListener {
 
     // initialize StatsbeatModule
     statsbeatModule.start(telemetryClient, config);
-
-    // start local File purger scheduler task
-    if (!readOnlyFileSystem) {
-      LocalFilePurger.startPurging();
-    }
   }
 
   private static GcEventMonitor.GcEventMonitorConfiguration formGcEventMonitorConfiguration(
@@ -318,14 +333,21 @@ public class AiComponentInstaller implements AgentListener {
 
   private static class ShutdownHook extends Thread {
     private final TelemetryClient telemetryClient;
+    @Nullable private final MetricAggregator metricAggregator;
 
-    public ShutdownHook(TelemetryClient telemetryClient) {
+    public ShutdownHook(
+        TelemetryClient telemetryClient, @Nullable MetricAggregator metricAggregator) {
       this.telemetryClient = telemetryClient;
+      this.metricAggregator = metricAggregator;
     }
 
     @Override
     public void run() {
       startupLogger.debug("running shutdown hook");
+      if (metricAggregator != null) {
+        // before flushing the channel batcher, so that the last partial interval is included
+        metricAggregator.flush();
+      }
       CompletableResultCode otelFlush = OpenTelemetryConfigurer.flush();
       CompletableResultCode result = new CompletableResultCode();
       otelFlush.whenComplete(
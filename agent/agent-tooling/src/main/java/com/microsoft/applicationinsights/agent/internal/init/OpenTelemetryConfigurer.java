@@ -27,27 +27,18 @@ import com.microsoft.applicationinsights.agent.internal.configuration.Configurat
 import com.microsoft.applicationinsights.agent.internal.exporter.Exporter;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.AiLegacyHeaderSpanProcessor;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.DelegatingPropagator;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithAttributeProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithLogProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithSpanProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.MySpanData;
+import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithProcessors;
 import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
 import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSamplingExporter;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import io.opentelemetry.sdk.autoconfigure.spi.traces.SdkTracerProviderConfigurer;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
-import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
-import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -127,35 +118,20 @@ public class OpenTelemetryConfigurer implements SdkTracerProviderConfigurer {
     List<ProcessorConfig> processors =
         configuration.preview.processors.stream()
             .filter(processor -> processor.type != Configuration.ProcessorType.METRIC_FILTER)
-            .collect(Collectors.toCollection(ArrayList::new));
-    // Reversing the order of processors before passing it to SpanProcessor
-    Collections.reverse(processors);
+            .collect(Collectors.toList());
 
     SpanExporter currExporter = new Exporter(TelemetryClient.getActive());
 
     // NOTE if changing the span processor to something async, flush it in the shutdown hook before
     // flushing TelemetryClient
     if (!processors.isEmpty()) {
-      for (ProcessorConfig processorConfig : processors) {
-        switch (processorConfig.type) {
-          case ATTRIBUTE:
-            currExporter = new ExporterWithAttributeProcessor(processorConfig, currExporter);
-            break;
-          case SPAN:
-            currExporter = new ExporterWithSpanProcessor(processorConfig, currExporter);
-            break;
-          case LOG:
-            currExporter = new ExporterWithLogProcessor(processorConfig, currExporter);
-            break;
-          default:
-            throw new IllegalStateException(
-                "Not an expected ProcessorType: " + processorConfig.type);
-        }
-      }
+      currExporter = new ExporterWithProcessors(processors, currExporter);
+    }
 
-      // this is temporary until semantic attributes stabilize and we make breaking change
-      // then can use java.util.functions.Predicate<Attributes>
-      currExporter = new BackCompatHttpUrlProcessor(currExporter);
+    // tail sampling is applied first, so that the rules are applied to the original spans, and
+    // processors and live metrics only see the spans that are kept
+    if (configuration.preview.tailSampling.enabled) {
+      currExporter = TailSamplingExporter.create(configuration.preview.tailSampling, currExporter);
     }
 
     // using BatchSpanProcessor in order to get off of the application thread as soon as possible
@@ -163,47 +139,4 @@ public class OpenTelemetryConfigurer implements SdkTracerProviderConfigurer {
     // live metrics. the real batching is done at a lower level
     return BatchSpanProcessor.builder(currExporter).setMaxExportBatchSize(1).build();
   }
-
-  private static class BackCompatHttpUrlProcessor implements SpanExporter {
-
-    private final SpanExporter delegate;
-
-    private BackCompatHttpUrlProcessor(SpanExporter delegate) {
-      this.delegate = delegate;
-    }
-
-    @Override
-    public CompletableResultCode export(Collection<SpanData> spans) {
-      List<SpanData> copy = new ArrayList<>();
-      for (SpanData span : spans) {
-        copy.add(addBackCompatHttpUrl(span));
-      }
-      return delegate.export(copy);
-    }
-
-    private static SpanData addBackCompatHttpUrl(SpanData span) {
-      Attributes attributes = span.getAttributes();
-      if (attributes.get(SemanticAttributes.HTTP_URL) != null) {
-        // already has http.url
-        return span;
-      }
-      String httpUrl = Exporter.getHttpUrlFromServerSpan(attributes);
-      if (httpUrl == null) {
-        return span;
-      }
-      AttributesBuilder builder = attributes.toBuilder();
-      builder.put(SemanticAttributes.HTTP_URL, httpUrl);
-      return new MySpanData(span, builder.build());
-    }
-
-    @Override
-    public CompletableResultCode flush() {
-      return delegate.flush();
-    }
-
-    @Override
-    public CompletableResultCode shutdown() {
-      return delegate.shutdown();
-    }
-  }
 }
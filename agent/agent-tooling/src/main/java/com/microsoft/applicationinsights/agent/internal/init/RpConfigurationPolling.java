@@ -105,15 +105,24 @@ public class RpConfigurationPolling implements Runnable {
         }
 
         if (newRpConfiguration.sampling.percentage != rpConfiguration.sampling.percentage) {
-          logger.debug(
-              "Updating sampling percentage from {} to {}",
-              rpConfiguration.sampling.percentage,
-              newRpConfiguration.sampling.percentage);
-          float roundedSamplingPercentage =
-              ConfigurationBuilder.roundToNearest(newRpConfiguration.sampling.percentage);
-          DelegatingSampler.getInstance()
-              .setDelegate(Samplers.getSampler(roundedSamplingPercentage, configuration));
-          BytecodeUtilImpl.samplingPercentage = roundedSamplingPercentage;
+          if (configuration.preview.sampling.requestsPerSecond != null) {
+            logger.warn(
+                "Ignoring sampling percentage {} from the JSON config file, because"
+                    + " preview.sampling.requestsPerSecond is configured",
+                newRpConfiguration.sampling.percentage);
+          } else {
+            logger.debug(
+                "Updating sampling percentage from {} to {}",
+                rpConfiguration.sampling.percentage,
+                newRpConfiguration.sampling.percentage);
+            float roundedSamplingPercentage =
+                ConfigurationBuilder.roundToNearest(newRpConfiguration.sampling.percentage);
+            DelegatingSampler.getInstance()
+                .setDelegate(Samplers.getSampler(roundedSamplingPercentage, configuration));
+            BytecodeUtilImpl.samplingPercentage =
+                Samplers.getDefaultSamplingPercentageSupplier(
+                    roundedSamplingPercentage, configuration);
+          }
           rpConfiguration.sampling.percentage = newRpConfiguration.sampling.percentage;
         }
         rpConfiguration = newRpConfiguration;
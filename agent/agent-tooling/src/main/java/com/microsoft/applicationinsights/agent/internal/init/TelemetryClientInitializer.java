@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.agent.internal.init;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.microsoft.applicationinsights.agent.internal.common.PropertyHelper;
 import com.microsoft.applicationinsights.agent.internal.common.Strings;
@@ -34,6 +35,7 @@ import com.microsoft.applicationinsights.agent.internal.perfcounter.GcPerformanc
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxAttributeData;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxMetricPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JvmHeapMemoryUsedPerformanceCounter;
+import com.microsoft.applicationinsights.agent.internal.perfcounter.LinuxPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.OshiPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.PerformanceCounterContainer;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.ProcessCpuPerformanceCounter;
@@ -78,12 +80,23 @@ public class TelemetryClientInitializer {
 
     if (!isAgentRunningInSandboxEnvWindows()) {
       // system cpu and process disk i/o
-      PerformanceCounterContainer.INSTANCE.register(new OshiPerformanceCounter());
+      LinuxPerformanceCounter linuxPerformanceCounter = LinuxPerformanceCounter.create();
+      if (linuxPerformanceCounter != null) {
+        PerformanceCounterContainer.INSTANCE.register(linuxPerformanceCounter);
+      } else {
+        PerformanceCounterContainer.INSTANCE.register(new OshiPerformanceCounter());
+      }
     }
 
     ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
     if (threadBean.isSynchronizerUsageSupported()) {
-      PerformanceCounterContainer.INSTANCE.register(new DeadLockDetectorPerformanceCounter());
+      // samples thread states more often than the metrics are reported, but only does full
+      // deadlock detection when threads are waiting on each other
+      PerformanceCounterContainer.INSTANCE.register(
+          new DeadLockDetectorPerformanceCounter(
+              SECONDS.toMillis(configuration.preview.metricIntervalSeconds)),
+          DeadLockDetectorPerformanceCounter.SAMPLE_INTERVAL_MILLIS,
+          DeadLockDetectorPerformanceCounter.SAMPLE_INTERVAL_MILLIS);
     }
     PerformanceCounterContainer.INSTANCE.register(new JvmHeapMemoryUsedPerformanceCounter());
     PerformanceCounterContainer.INSTANCE.register(new GcPerformanceCounter());
@@ -106,7 +119,8 @@ public class TelemetryClientInitializer {
   private static void setQuickPulse(Configuration configuration, TelemetryClient telemetryClient) {
     if (configuration.preview.liveMetrics.enabled) {
       logger.trace("Initializing QuickPulse...");
-      QuickPulse.INSTANCE.initialize(telemetryClient);
+      QuickPulse.INSTANCE.initialize(
+          telemetryClient, configuration.preview.liveMetrics.durationPercentiles);
     }
   }
 
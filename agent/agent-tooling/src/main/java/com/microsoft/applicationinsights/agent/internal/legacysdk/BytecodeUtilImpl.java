@@ -54,6 +54,7 @@ import java.net.URL;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,7 +66,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   private static final AtomicBoolean alreadyLoggedError = new AtomicBoolean();
 
-  public static volatile float samplingPercentage = 100;
+  // changes over time when rate limiting is enabled
+  public static volatile DoubleSupplier samplingPercentage = () -> 100;
+
+  @Nullable private final MetricAggregator metricAggregator;
+
+  public BytecodeUtilImpl(@Nullable MetricAggregator metricAggregator) {
+    this.metricAggregator = metricAggregator;
+  }
 
   @Override
   public void trackEvent(
@@ -127,6 +135,12 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    if (metricAggregator != null && count == null && min == null && max == null && stdDev == null) {
+      // measurements are aggregated and sent once per metric interval, while points that are
+      // already aggregated (e.g. by micrometer) are sent as is below
+      metricAggregator.record(name, value, properties, tags, instrumentationKey);
+      return;
+    }
     TelemetryItem telemetry = new TelemetryItem();
     MetricsData data = new MetricsData();
     MetricDataPoint point = new MetricDataPoint();
@@ -496,7 +510,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (applySampling) {
       float samplingPercentage =
           TelemetryUtil.getSamplingPercentage(
-              spanContext.getTraceState(), BytecodeUtilImpl.samplingPercentage, false);
+              spanContext.getTraceState(), getSamplingPercentage(), false);
 
       if (samplingPercentage != 100) {
         telemetry.setSampleRate(samplingPercentage);
@@ -510,7 +524,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
   private static void trackAsStandalone(TelemetryItem telemetry, boolean applySampling) {
     if (applySampling) {
       // sampling is done using the configured sampling percentage
-      float samplingPercentage = BytecodeUtilImpl.samplingPercentage;
+      float samplingPercentage = getSamplingPercentage();
       if (!sample(telemetry, samplingPercentage)) {
         // sampled out
         return;
@@ -527,6 +541,10 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     TelemetryClient.getActive().trackAsync(telemetry);
   }
 
+  private static float getSamplingPercentage() {
+    return (float) samplingPercentage.getAsDouble();
+  }
+
   private static boolean sample(TelemetryItem telemetry, double samplingPercentage) {
     if (samplingPercentage == 100) {
       return true;
@@ -543,7 +561,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     return telemetry.getTags().get(ContextTagKeys.AI_OPERATION_ID.toString());
   }
 
-  private static void selectivelySetTags(TelemetryItem telemetry, Map<String, String> sourceTags) {
+  static void selectivelySetTags(TelemetryItem telemetry, Map<String, String> sourceTags) {
     Map<String, String> destTags = telemetry.getTags();
     for (Map.Entry<String, String> entry : sourceTags.entrySet()) {
       if (!entry.getKey().equals(ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString())) {
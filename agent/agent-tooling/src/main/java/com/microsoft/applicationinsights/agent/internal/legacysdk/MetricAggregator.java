@@ -0,0 +1,297 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.DataPointType;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricDataPoint;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricsData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.telemetry.FormattedTime;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the custom metric measurements that are tracked through the 2.x SDK bridge, so that
+ * each metric series is sent once per metric interval as a single aggregated data point, instead
+ * of as one telemetry item per call.
+ *
+ * <p>A series is identified by the metric name together with its properties, tags and
+ * instrumentation key. Values are accumulated in striped adders, so concurrent callers don't
+ * contend with each other. The number of series is capped, and the values of new series past the
+ * cap are aggregated into an overflow series per metric name (which only has the overflow
+ * property).
+ */
+public class MetricAggregator {
+
+  private static final Logger logger = LoggerFactory.getLogger(MetricAggregator.class);
+
+  // same property that the other Application Insights SDKs send with their pre-aggregated metrics
+  static final String AGGREGATION_INTERVAL_PROPERTY = "_MS.AggregationIntervalMs";
+  static final String OVERFLOW_PROPERTY = "_MS.AggregationOverflow";
+
+  private static final Map<String, String> OVERFLOW_PROPERTIES =
+      Collections.singletonMap(OVERFLOW_PROPERTY, "True");
+
+  private static final ScheduledExecutorService scheduledExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          ThreadPoolUtils.createDaemonThreadFactory(MetricAggregator.class));
+
+  private static final AtomicBoolean alreadyLoggedDroppedValues = new AtomicBoolean();
+
+  private final TelemetryClient telemetryClient;
+  private final int maxSeries;
+  private final String intervalMillis;
+
+  private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+  private final ConcurrentMap<SeriesKey, Series> overflowSeries = new ConcurrentHashMap<>();
+
+  public static MetricAggregator create(
+      TelemetryClient telemetryClient, int maxSeries, int intervalSeconds) {
+    MetricAggregator aggregator =
+        new MetricAggregator(telemetryClient, maxSeries, SECONDS.toMillis(intervalSeconds));
+    scheduledExecutor.scheduleAtFixedRate(
+        aggregator::flush, intervalSeconds, intervalSeconds, SECONDS);
+    return aggregator;
+  }
+
+  // visible for testing
+  MetricAggregator(TelemetryClient telemetryClient, int maxSeries, long intervalMillis) {
+    this.telemetryClient = telemetryClient;
+    this.maxSeries = maxSeries;
+    this.intervalMillis = Long.toString(intervalMillis);
+  }
+
+  public void record(
+      String name,
+      double value,
+      Map<String, String> properties,
+      Map<String, String> tags,
+      @Nullable String instrumentationKey) {
+    SeriesKey key = new SeriesKey(name, properties, tags, instrumentationKey);
+    Series current = series.get(key);
+    if (current == null) {
+      current = getOrCreateSeries(key);
+      if (current == null) {
+        return;
+      }
+    }
+    current.record(value);
+  }
+
+  @Nullable
+  private Series getOrCreateSeries(SeriesKey key) {
+    // the size check is not atomic with the insert, so the cap can be exceeded slightly when
+    // several new series are created concurrently
+    if (series.size() < maxSeries) {
+      // copying the maps, since the key outlives this call and the caller's maps may be reused
+      return series.computeIfAbsent(key.copy(), k -> new Series());
+    }
+    SeriesKey overflowKey =
+        new SeriesKey(
+            key.name, OVERFLOW_PROPERTIES, Collections.emptyMap(), key.instrumentationKey);
+    Series overflow = overflowSeries.get(overflowKey);
+    if (overflow != null) {
+      return overflow;
+    }
+    if (overflowSeries.size() < maxSeries) {
+      return overflowSeries.computeIfAbsent(overflowKey, k -> new Series());
+    }
+    if (!alreadyLoggedDroppedValues.getAndSet(true)) {
+      logger.warn(
+          "Custom metric values are being dropped, because the limit of {} metric series has been"
+              + " reached, and so has the limit of {} overflow series (this message will only be"
+              + " logged once)",
+          maxSeries,
+          maxSeries);
+    }
+    return null;
+  }
+
+  public void flush() {
+    try {
+      for (TelemetryItem telemetry : collect()) {
+        telemetryClient.trackAsync(telemetry);
+      }
+    } catch (RuntimeException e) {
+      // otherwise the scheduled flush would stop running
+      logger.error("Error flushing aggregated custom metrics", e);
+    }
+  }
+
+  // visible for testing
+  List<TelemetryItem> collect() {
+    OffsetDateTime time = FormattedTime.offSetDateTimeFromNow();
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    collect(series, time, telemetryItems);
+    collect(overflowSeries, time, telemetryItems);
+    return telemetryItems;
+  }
+
+  private void collect(
+      ConcurrentMap<SeriesKey, Series> seriesMap,
+      OffsetDateTime time,
+      List<TelemetryItem> telemetryItems) {
+    Iterator<Map.Entry<SeriesKey, Series>> i = seriesMap.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<SeriesKey, Series> entry = i.next();
+      TelemetryItem telemetry = entry.getValue().collect(entry.getKey(), time);
+      if (telemetry == null) {
+        // removing series that were idle for a whole interval, so that they don't count toward
+        // the cap forever (a value that is recorded concurrently with the removal is lost)
+        i.remove();
+      } else {
+        telemetryItems.add(telemetry);
+      }
+    }
+  }
+
+  private class Series {
+
+    // the adders are not updated or reset atomically together, so a value that is recorded
+    // concurrently with a flush can be split across two intervals (but is not lost)
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+    private final DoubleAccumulator min =
+        new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max =
+        new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    private void record(double value) {
+      sum.add(value);
+      sumOfSquares.add(value * value);
+      min.accumulate(value);
+      max.accumulate(value);
+      // last, so that a flush which sees this count also sees the value in the sum
+      count.increment();
+    }
+
+    @Nullable
+    private TelemetryItem collect(SeriesKey key, OffsetDateTime time) {
+      long count = this.count.sumThenReset();
+      double sum = this.sum.sumThenReset();
+      double sumOfSquares = this.sumOfSquares.sumThenReset();
+      double min = this.min.getThenReset();
+      double max = this.max.getThenReset();
+      if (count == 0) {
+        return null;
+      }
+
+      TelemetryItem telemetry = new TelemetryItem();
+      MetricsData data = new MetricsData();
+      MetricDataPoint point = new MetricDataPoint();
+      telemetryClient.initMetricTelemetry(telemetry, data, point);
+
+      double mean = sum / count;
+      point.setName(key.name);
+      point.setValue(sum);
+      point.setCount((int) Math.min(count, Integer.MAX_VALUE));
+      point.setMin(min);
+      point.setMax(max);
+      point.setStdDev(Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean)));
+      point.setDataPointType(DataPointType.AGGREGATION);
+
+      Map<String, String> properties = new HashMap<>(key.properties);
+      properties.put(AGGREGATION_INTERVAL_PROPERTY, intervalMillis);
+      Map<String, String> existingProperties = data.getProperties();
+      if (existingProperties == null) {
+        data.setProperties(properties);
+      } else {
+        existingProperties.putAll(properties);
+      }
+
+      telemetry.setTime(time);
+      BytecodeUtilImpl.selectivelySetTags(telemetry, key.tags);
+      if (key.instrumentationKey != null) {
+        telemetry.setInstrumentationKey(key.instrumentationKey);
+      }
+      return telemetry;
+    }
+  }
+
+  private static class SeriesKey {
+
+    private final String name;
+    private final Map<String, String> properties;
+    private final Map<String, String> tags;
+    @Nullable private final String instrumentationKey;
+    private final int hashCode;
+
+    private SeriesKey(
+        String name,
+        Map<String, String> properties,
+        Map<String, String> tags,
+        @Nullable String instrumentationKey) {
+      this.name = name;
+      this.properties = properties;
+      this.tags = tags;
+      this.instrumentationKey = instrumentationKey;
+      hashCode = Objects.hash(name, properties, tags, instrumentationKey);
+    }
+
+    private SeriesKey copy() {
+      return new SeriesKey(
+          name, new HashMap<>(properties), new HashMap<>(tags), instrumentationKey);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) obj;
+      return name.equals(other.name)
+          && properties.equals(other.properties)
+          && tags.equals(other.tags)
+          && Objects.equals(instrumentationKey, other.instrumentationKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
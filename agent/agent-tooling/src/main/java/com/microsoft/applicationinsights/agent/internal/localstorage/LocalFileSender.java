@@ -24,50 +24,111 @@ package com.microsoft.applicationinsights.agent.internal.localstorage;
 import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryChannel;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sends the telemetry persisted in the {@link LocalFileSpool} in rounds.
+ *
+ * <p>Each round sends up to {@code window} batches concurrently. While every batch of a round is
+ * accepted by ingestion, the window doubles (up to half of the channel's in-flight limit, leaving
+ * the rest for live telemetry) and the next round starts right away, so a backlog is drained
+ * quickly once ingestion is available again. As soon as a batch fails, the window is halved and
+ * the sender goes back to checking every 30 seconds.
+ */
 public class LocalFileSender implements Runnable {
 
   private static final Logger logger = LoggerFactory.getLogger(LocalFileSender.class);
 
-  // send persisted telemetries from local disk every 30 seconds.
+  // send persisted telemetries from local disk every 30 seconds when there is nothing to replay or
+  // when ingestion is failing.
   private static final long INTERVAL_SECONDS = 30;
+  // max time to wait for a round to complete
+  private static final long ROUND_TIMEOUT_SECONDS = 30;
+
   private static final ScheduledExecutorService scheduledExecutor =
       Executors.newSingleThreadScheduledExecutor(
-          ThreadPoolUtils.createDaemonThreadFactory(LocalFileLoader.class));
+          ThreadPoolUtils.createDaemonThreadFactory(LocalFileSender.class));
 
-  private final LocalFileLoader localFileLoader;
+  private final LocalFileSpool localFileSpool;
   private final TelemetryChannel telemetryChannel;
+  private final ScheduledExecutorService executor;
+  private final int maxWindow;
+
+  // only accessed from the executor thread
+  private int window = 1;
 
-  public static void start(LocalFileLoader localFileLoader, TelemetryChannel telemetryChannel) {
-    LocalFileSender localFileSender = new LocalFileSender(localFileLoader, telemetryChannel);
-    scheduledExecutor.scheduleWithFixedDelay(
-        localFileSender, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+  public static void start(LocalFileSpool localFileSpool, TelemetryChannel telemetryChannel) {
+    LocalFileSender localFileSender =
+        new LocalFileSender(localFileSpool, telemetryChannel, scheduledExecutor);
+    scheduledExecutor.schedule(localFileSender, INTERVAL_SECONDS, TimeUnit.SECONDS);
   }
 
-  private LocalFileSender(LocalFileLoader localFileLoader, TelemetryChannel telemetryChannel) {
-    this.localFileLoader = localFileLoader;
+  // visible for testing
+  LocalFileSender(
+      LocalFileSpool localFileSpool,
+      TelemetryChannel telemetryChannel,
+      ScheduledExecutorService executor) {
+    this.localFileSpool = localFileSpool;
     this.telemetryChannel = telemetryChannel;
+    this.executor = executor;
+    this.maxWindow = Math.max(1, telemetryChannel.getMaxInFlightRequests() / 2);
   }
 
   @Override
   public void run() {
-    // TODO (heya) load all persisted files on disk in one or more batch per batch capacity?
+    boolean drainFaster = false;
     try {
-      LocalFileLoader.PersistedFile persistedFile = localFileLoader.loadTelemetriesFromDisk();
-      if (persistedFile != null) {
-        CompletableResultCode resultCode =
-            telemetryChannel.sendRawBytes(persistedFile.rawBytes, persistedFile.instrumentationKey);
-        resultCode.join(30, TimeUnit.SECONDS); // wait max 30 seconds for request to be completed.
-        localFileLoader.updateProcessedFileStatus(resultCode.isSuccess(), persistedFile.file);
-      }
+      drainFaster = sendRound();
     } catch (RuntimeException ex) {
       logger.error(
           "Unexpected error occurred while sending telemetries from the local storage.", ex);
+    } finally {
+      if (drainFaster) {
+        executor.execute(this);
+      } else {
+        executor.schedule(this, INTERVAL_SECONDS, TimeUnit.SECONDS);
+      }
     }
   }
+
+  // returns true if all batches of the round were sent successfully and there may be more to send
+  // visible for testing
+  boolean sendRound() {
+    List<CompletableResultCode> resultCodes = new ArrayList<>(window);
+    for (int i = 0; i < window; i++) {
+      LocalFileSpool.PersistedBatch persistedBatch = localFileSpool.loadTelemetriesFromDisk();
+      if (persistedBatch == null) {
+        break;
+      }
+      CompletableResultCode resultCode =
+          telemetryChannel.sendRawBytes(persistedBatch.rawBytes, persistedBatch.instrumentationKey);
+      resultCode.whenComplete(
+          () -> localFileSpool.updateProcessedStatus(resultCode.isSuccess(), persistedBatch));
+      resultCodes.add(resultCode);
+    }
+    if (resultCodes.isEmpty()) {
+      window = 1;
+      return false;
+    }
+
+    CompletableResultCode resultCode =
+        CompletableResultCode.ofAll(resultCodes).join(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    if (resultCode.isSuccess()) {
+      window = Math.min(window * 2, maxWindow);
+      return true;
+    }
+    window = Math.max(window / 2, 1);
+    return false;
+  }
+
+  // visible for testing
+  int getWindow() {
+    return window;
+  }
 }
@@ -0,0 +1,808 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.localstorage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+
+import com.microsoft.applicationinsights.agent.internal.common.OperationLogger;
+import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
+import com.microsoft.applicationinsights.agent.internal.statsbeat.NonessentialStatsbeat;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only spool for telemetry batches that could not be sent to the ingestion service.
+ *
+ * <p>Batches are appended as records to large pre-allocated segment files, instead of creating
+ * one file per batch. Each record is framed as:
+ *
+ * <pre>
+ *   int      magic (overwritten once the batch has been sent successfully)
+ *   int      length of the payload
+ *   long     time the batch was written (epoch millis)
+ *   int      crc32 of the instrumentation key and the payload
+ *   byte[36] instrumentation key
+ *   byte[]   payload (gzipped request body)
+ * </pre>
+ *
+ * <p>A segment file is deleted (in the background) once every record in it has been sent. The
+ * total size of the segments is tracked as records are written and segments are deleted, so the
+ * capacity check does not need to list the folder. The capacity is shared by all processes writing
+ * to the same folder: the size of the segments of the other processes is added on startup and
+ * refreshed each time a new segment is created.
+ *
+ * <p>Segments are locked by the process that writes them. On startup, segments that are not
+ * locked (left over by a process that has exited or crashed) are scanned and every record that was
+ * not marked as sent is queued to be sent again. The scan stops at the first record which is torn
+ * or fails its checksum, so a crash in the middle of a write only loses that one batch. Records
+ * are marked as sent without forcing to disk, so a crash can result in a batch being sent twice.
+ *
+ * <p>Files written by the previous one-file-per-batch storage ("*.trn") are imported into the
+ * spool on startup.
+ */
+public final class LocalFileSpool {
+
+  private static final Logger logger = LoggerFactory.getLogger(LocalFileSpool.class);
+
+  public enum FsyncPolicy {
+    // leave it to the operating system to write the segments to disk
+    NEVER,
+    // force the active segment to disk at most once per fsync interval
+    INTERVAL,
+    // force the active segment to disk after every batch
+    ALWAYS
+  }
+
+  // A regex to validate that an instrumentation key is well-formed. It's copied straight from the
+  // Breeze repo.
+  private static final String INSTRUMENTATION_KEY_REGEX =
+      "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$";
+  private static final int INSTRUMENTATION_KEY_LENGTH = 36;
+
+  // 50MB per folder
+  static final long MAX_SIZE_IN_BYTES = 52428800;
+  public static final long DEFAULT_SEGMENT_SIZE_IN_BYTES = 4 * 1024 * 1024;
+  public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+  private static final long EXPIRATION_MILLIS = TimeUnit.HOURS.toMillis(48);
+  // segments which are younger than this and have no records may still be in the middle of being
+  // created by another process (between creating the file and locking it)
+  private static final long NEW_SEGMENT_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  static final String SEGMENT_FILE_EXTENSION = ".seg";
+  private static final String LEGACY_FILE_EXTENSION = ".trn";
+  private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+  // "AIS1"
+  static final int LIVE_MAGIC = 0x41495331;
+  // "AIS0"
+  static final int SENT_MAGIC = 0x41495330;
+  static final int HEADER_SIZE = 4 + 4 + 8 + 4 + INSTRUMENTATION_KEY_LENGTH;
+
+  private static final OperationLogger operationLogger =
+      new OperationLogger(
+          LocalFileSpool.class, "Writing telemetry to disk (telemetry is discarded on failure)");
+
+  private static final OperationLogger loadOperationLogger =
+      new OperationLogger(LocalFileSpool.class, "Loading telemetry from disk");
+
+  private static final OperationLogger updateOperationLogger =
+      new OperationLogger(LocalFileSpool.class, "Updating local telemetry on disk");
+
+  private static final OperationLogger recoveryOperationLogger =
+      new OperationLogger(LocalFileSpool.class, "Recovering local telemetry from disk");
+
+  private final File folder;
+  private final long maxSizeInBytes;
+  private final long segmentSizeInBytes;
+  private final FsyncPolicy fsyncPolicy;
+  private final long fsyncIntervalNanos;
+  private final long expirationMillis;
+  // this is null for Statsbeat telemetry
+  @Nullable private final NonessentialStatsbeat nonessentialStatsbeat;
+
+  // closes and deletes segments, see deleteSegment()
+  private final ExecutorService cleanupExecutor =
+      new ThreadPoolExecutor(
+          0,
+          1,
+          1,
+          TimeUnit.MINUTES,
+          new LinkedBlockingQueue<>(),
+          ThreadPoolUtils.createDaemonThreadFactory(LocalFileSpool.class, "Cleanup"));
+
+  private final Object lock = new Object();
+
+  // all fields below are guarded by lock
+
+  @Nullable private Segment activeSegment;
+  private final List<Segment> segments = new ArrayList<>();
+  // records waiting to be sent, in FIFO order
+  private final Deque<Record> pendingRecords = new ArrayDeque<>();
+  // sum of the bytes written to the segments that are still on disk
+  private long sizeInBytes;
+  // segments that have been handed to the cleanup thread, but may not be deleted yet
+  private final Set<File> deletingFiles = new HashSet<>();
+  // sum of the sizes of the segments that are written by other processes
+  private long otherProcessesSizeInBytes;
+  private long lastFsyncNanos = System.nanoTime();
+
+  public LocalFileSpool(File folder, @Nullable NonessentialStatsbeat nonessentialStatsbeat) {
+    this(
+        folder,
+        DEFAULT_SEGMENT_SIZE_IN_BYTES,
+        FsyncPolicy.INTERVAL,
+        DEFAULT_FSYNC_INTERVAL_MILLIS,
+        nonessentialStatsbeat);
+  }
+
+  public LocalFileSpool(
+      File folder,
+      long segmentSizeInBytes,
+      FsyncPolicy fsyncPolicy,
+      long fsyncIntervalMillis,
+      @Nullable NonessentialStatsbeat nonessentialStatsbeat) {
+    this(
+        folder,
+        MAX_SIZE_IN_BYTES,
+        segmentSizeInBytes,
+        fsyncPolicy,
+        fsyncIntervalMillis,
+        EXPIRATION_MILLIS,
+        nonessentialStatsbeat);
+  }
+
+  // visible for testing
+  LocalFileSpool(
+      File folder,
+      long maxSizeInBytes,
+      long segmentSizeInBytes,
+      FsyncPolicy fsyncPolicy,
+      long fsyncIntervalMillis,
+      long expirationMillis,
+      @Nullable NonessentialStatsbeat nonessentialStatsbeat) {
+    this.folder = folder;
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.segmentSizeInBytes = segmentSizeInBytes;
+    this.fsyncPolicy = fsyncPolicy;
+    this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+    this.expirationMillis = expirationMillis;
+    this.nonessentialStatsbeat = nonessentialStatsbeat;
+
+    synchronized (lock) {
+      recoverSegments();
+      updateOtherProcessesSize();
+    }
+    importLegacyFiles();
+  }
+
+  public void writeToDisk(List<ByteBuffer> buffers, String instrumentationKey) {
+    write(buffers, instrumentationKey, System.currentTimeMillis());
+  }
+
+  private void write(List<ByteBuffer> buffers, String instrumentationKey, long timeMillis) {
+    byte[] ikeyBytes = instrumentationKey.getBytes(UTF_8);
+    if (ikeyBytes.length != INSTRUMENTATION_KEY_LENGTH) {
+      operationLogger.recordFailure("Invalid instrumentation key: " + instrumentationKey);
+      incrementWriteFailureCount();
+      return;
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(ikeyBytes);
+    int payloadLength = 0;
+    for (ByteBuffer buffer : buffers) {
+      payloadLength += buffer.remaining();
+      crc.update(buffer.duplicate());
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(LIVE_MAGIC);
+    header.putInt(payloadLength);
+    header.putLong(timeMillis);
+    header.putInt((int) crc.getValue());
+    header.put(ikeyBytes);
+    header.flip();
+
+    long recordSize = (long) HEADER_SIZE + payloadLength;
+
+    synchronized (lock) {
+      if (sizeInBytes + otherProcessesSizeInBytes + recordSize > maxSizeInBytes) {
+        operationLogger.recordFailure(
+            "Local persistent storage capacity has been reached. It's currently at ("
+                + ((sizeInBytes + otherProcessesSizeInBytes) / 1024)
+                + "KB). Telemetry will be lost");
+        incrementWriteFailureCount();
+        return;
+      }
+
+      Segment segment;
+      try {
+        segment = getSegmentWithRoomFor(recordSize);
+      } catch (IOException e) {
+        operationLogger.recordFailure("unable to create segment file: " + e, e);
+        incrementWriteFailureCount();
+        return;
+      }
+
+      long offset = segment.writePosition;
+      try {
+        // the header is written first, the checksum in it protects against a torn payload
+        writeFully(segment.channel, header, offset);
+        long position = offset + HEADER_SIZE;
+        for (ByteBuffer buffer : buffers) {
+          ByteBuffer duplicate = buffer.duplicate();
+          int length = duplicate.remaining();
+          writeFully(segment.channel, duplicate, position);
+          position += length;
+        }
+        maybeForce(segment);
+      } catch (IOException e) {
+        // nothing to undo, the next record overwrites the partially written one
+        operationLogger.recordFailure(String.format("unable to write to file: %s", e), e);
+        incrementWriteFailureCount();
+        return;
+      }
+
+      segment.writePosition += recordSize;
+      segment.liveRecords++;
+      sizeInBytes += recordSize;
+      pendingRecords.add(
+          new Record(segment, offset, payloadLength, timeMillis, instrumentationKey));
+    }
+
+    operationLogger.recordSuccess();
+  }
+
+  // Load the next batch that is waiting to be sent, in FIFO order.
+  @Nullable
+  PersistedBatch loadTelemetriesFromDisk() {
+    int numExpired = 0;
+    try {
+      while (true) {
+        Record record;
+        synchronized (lock) {
+          record = pendingRecords.poll();
+        }
+        if (record == null) {
+          return null;
+        }
+        if (System.currentTimeMillis() - record.timeMillis > expirationMillis) {
+          markSent(record);
+          numExpired++;
+          continue;
+        }
+
+        ByteBuffer rawBytes;
+        try {
+          rawBytes = read(record);
+        } catch (IOException e) {
+          loadOperationLogger.recordFailure(
+              "Fail to read telemetry from " + record.segment.file.getName(), e);
+          incrementReadFailureCount();
+          // drop the record, otherwise it would be retried over and over again
+          markSent(record);
+          return null;
+        }
+        loadOperationLogger.recordSuccess();
+        return new PersistedBatch(record, rawBytes);
+      }
+    } finally {
+      if (numExpired > 0) {
+        logger.warn(
+            "{} local telemetry batch(es) in folder '{}' expired after {} hours and were deleted",
+            numExpired,
+            folder.getName(),
+            TimeUnit.MILLISECONDS.toHours(expirationMillis));
+      }
+    }
+  }
+
+  // batches are copied to the heap instead of being memory-mapped, because on Windows a file can't
+  // be deleted for as long as it is mapped, and mappings are only released by the GC
+  private static ByteBuffer read(Record record) throws IOException {
+    long position = record.offset + HEADER_SIZE;
+    ByteBuffer rawBytes = ByteBuffer.allocate(record.length);
+    readFully(record.segment.channel, rawBytes, position);
+    rawBytes.flip();
+    return rawBytes;
+  }
+
+  // either mark it as sent on success or queue it again to be sent later on failure
+  void updateProcessedStatus(boolean success, PersistedBatch batch) {
+    if (success) {
+      markSent(batch.record);
+    } else {
+      synchronized (lock) {
+        pendingRecords.add(batch.record);
+      }
+    }
+  }
+
+  public long getSizeInBytes() {
+    synchronized (lock) {
+      return sizeInBytes;
+    }
+  }
+
+  // only used by tests
+  public int getPendingCount() {
+    synchronized (lock) {
+      return pendingRecords.size();
+    }
+  }
+
+  // only used by tests
+  int getSegmentCount() {
+    synchronized (lock) {
+      return segments.size();
+    }
+  }
+
+  // releases the segments without truncating or deleting them, which leaves them on disk exactly
+  // as if the process had exited, only used by tests
+  void close() {
+    synchronized (lock) {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+      segments.clear();
+      pendingRecords.clear();
+      activeSegment = null;
+      sizeInBytes = 0;
+    }
+  }
+
+  static boolean isInstrumentationKeyValid(String instrumentationKey) {
+    return Pattern.matches(INSTRUMENTATION_KEY_REGEX, instrumentationKey.toLowerCase());
+  }
+
+  private void markSent(Record record) {
+    synchronized (lock) {
+      Segment segment = record.segment;
+      try {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        magic.putInt(SENT_MAGIC);
+        magic.flip();
+        writeFully(segment.channel, magic, record.offset);
+        updateOperationLogger.recordSuccess();
+      } catch (IOException e) {
+        // the batch will be sent again if the process restarts before the segment is deleted
+        updateOperationLogger.recordFailure(
+            "Fail to mark telemetry as sent in " + segment.file.getName(), e);
+      }
+      segment.liveRecords--;
+      if (segment.liveRecords == 0 && segment != activeSegment) {
+        deleteSegment(segment);
+      }
+    }
+  }
+
+  private Segment getSegmentWithRoomFor(long recordSize) throws IOException {
+    Segment segment = activeSegment;
+    if (segment != null && segment.writePosition + recordSize <= segment.capacity) {
+      return segment;
+    }
+    if (segment != null) {
+      seal(segment);
+    }
+    updateOtherProcessesSize();
+    // a batch which is larger than a segment gets a segment of its own
+    segment = createSegment(Math.max(segmentSizeInBytes, recordSize));
+    segments.add(segment);
+    activeSegment = segment;
+    return segment;
+  }
+
+  private Segment createSegment(long capacity) throws IOException {
+    String prefix = System.currentTimeMillis() + "-";
+    File file = File.createTempFile(prefix, SEGMENT_FILE_EXTENSION, folder);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      FileLock fileLock = randomAccessFile.getChannel().tryLock();
+      if (fileLock == null) {
+        throw new IOException("segment was locked by another process: " + file.getName());
+      }
+      randomAccessFile.setLength(capacity);
+      // make sure that the pre-allocated length is durable before records are written
+      randomAccessFile.getChannel().force(true);
+      return new Segment(file, randomAccessFile, fileLock, capacity);
+    } catch (IOException | RuntimeException e) {
+      randomAccessFile.close();
+      deleteFile(file);
+      throw e;
+    }
+  }
+
+  // the active segment is full, give back the unused pre-allocated space
+  private void seal(Segment segment) {
+    activeSegment = null;
+    if (segment.liveRecords == 0) {
+      deleteSegment(segment);
+      return;
+    }
+    try {
+      segment.channel.truncate(segment.writePosition);
+      if (fsyncPolicy != FsyncPolicy.NEVER) {
+        segment.channel.force(false);
+      }
+    } catch (IOException e) {
+      // not fatal, recovery ignores the unused pre-allocated space at the end of a segment
+      logger.debug("Fail to truncate {}", segment.file.getName(), e);
+    }
+  }
+
+  // The segment is closed and deleted on the cleanup thread, since deleting can be retried for a
+  // while (e.g. on Windows, where a file can't be deleted while another process has it open). That
+  // would otherwise block writers on the lock, and block the thread processing the response of the
+  // batch that was sent last. The size is only given back once the file is actually gone.
+  private void deleteSegment(Segment segment) {
+    segments.remove(segment);
+    deletingFiles.add(segment.file);
+    cleanupExecutor.execute(
+        () -> {
+          segment.close();
+          boolean deleted = LocalStorageUtils.deleteFileWithRetries(segment.file);
+          synchronized (lock) {
+            deletingFiles.remove(segment.file);
+            if (deleted) {
+              sizeInBytes -= segment.writePosition;
+            }
+          }
+          if (!deleted) {
+            updateOperationLogger.recordFailure("Fail to delete " + segment.file.getName());
+          }
+        });
+  }
+
+  // deletes a file which is not (or no longer) accounted for in the size, on the cleanup thread
+  private void deleteFile(File file) {
+    cleanupExecutor.execute(
+        () -> {
+          if (!LocalStorageUtils.deleteFileWithRetries(file)) {
+            updateOperationLogger.recordFailure("Fail to delete " + file.getName());
+          }
+        });
+  }
+
+  // the segments in the folder that are not owned by this spool belong to other processes (or to
+  // other spools of this process, which is only the case in tests)
+  private void updateOtherProcessesSize() {
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    Set<File> ownFiles = new HashSet<>(deletingFiles);
+    for (Segment segment : segments) {
+      ownFiles.add(segment.file);
+    }
+    long size = 0;
+    for (File file : files) {
+      if (!ownFiles.contains(file)) {
+        size += file.length();
+      }
+    }
+    otherProcessesSizeInBytes = size;
+  }
+
+  private void maybeForce(Segment segment) throws IOException {
+    switch (fsyncPolicy) {
+      case ALWAYS:
+        segment.channel.force(false);
+        return;
+      case INTERVAL:
+        long now = System.nanoTime();
+        if (now - lastFsyncNanos >= fsyncIntervalNanos) {
+          segment.channel.force(false);
+          lastFsyncNanos = now;
+        }
+        return;
+      case NEVER:
+        return;
+    }
+  }
+
+  private void recoverSegments() {
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    // segment names start with the time they were created
+    Arrays.sort(files);
+    for (File file : files) {
+      try {
+        recoverSegment(file);
+      } catch (IOException e) {
+        recoveryOperationLogger.recordFailure("Fail to recover " + file.getName(), e);
+        incrementReadFailureCount();
+      }
+    }
+  }
+
+  private void recoverSegment(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    FileLock fileLock;
+    try {
+      fileLock = randomAccessFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      // already owned by another spool in this process
+      fileLock = null;
+    } catch (IOException | RuntimeException e) {
+      randomAccessFile.close();
+      throw e;
+    }
+    if (fileLock == null) {
+      // still being written by another process
+      randomAccessFile.close();
+      return;
+    }
+
+    Segment segment = new Segment(file, randomAccessFile, fileLock, randomAccessFile.length());
+    List<Record> records;
+    try {
+      records = scan(segment);
+    } catch (IOException | RuntimeException e) {
+      segment.close();
+      throw e;
+    }
+
+    if (segment.liveRecords == 0) {
+      if (segment.writePosition == 0
+          && System.currentTimeMillis() - file.lastModified() < NEW_SEGMENT_GRACE_MILLIS) {
+        segment.close();
+        return;
+      }
+      segment.close();
+      deleteFile(file);
+      return;
+    }
+
+    if (segment.writePosition < segment.capacity) {
+      // drops the torn record (if any) and the unused pre-allocated space
+      segment.channel.truncate(segment.writePosition);
+    }
+    segments.add(segment);
+    sizeInBytes += segment.writePosition;
+    pendingRecords.addAll(records);
+    recoveryOperationLogger.recordSuccess();
+  }
+
+  // reads the records of the segment, up to the first one that is incomplete or corrupted
+  private static List<Record> scan(Segment segment) throws IOException {
+    List<Record> records = new ArrayList<>();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    byte[] ikeyBytes = new byte[INSTRUMENTATION_KEY_LENGTH];
+    long position = 0;
+    while (position + HEADER_SIZE <= segment.capacity) {
+      header.clear();
+      readFully(segment.channel, header, position);
+      header.flip();
+      int magic = header.getInt();
+      if (magic != LIVE_MAGIC && magic != SENT_MAGIC) {
+        // reached the unused pre-allocated space (or garbage)
+        break;
+      }
+      int length = header.getInt();
+      if (length < 0 || position + HEADER_SIZE + length > segment.capacity) {
+        break;
+      }
+      long timeMillis = header.getLong();
+      int expectedCrc = header.getInt();
+      header.get(ikeyBytes);
+
+      if (magic == LIVE_MAGIC) {
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(segment.channel, payload, position + HEADER_SIZE);
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(ikeyBytes);
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+          // torn write, nothing after this point can be trusted
+          break;
+        }
+        String instrumentationKey = new String(ikeyBytes, UTF_8);
+        if (isInstrumentationKeyValid(instrumentationKey)) {
+          records.add(new Record(segment, position, length, timeMillis, instrumentationKey));
+          segment.liveRecords++;
+        }
+      }
+      position += HEADER_SIZE + length;
+    }
+    segment.writePosition = position;
+    return records;
+  }
+
+  // imports the files written by the previous one-file-per-batch storage
+  private void importLegacyFiles() {
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(LEGACY_FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      // rename the file first to make sure that only one process imports it
+      File tempFile =
+          new File(folder, FilenameUtils.getBaseName(file.getName()) + TEMPORARY_FILE_EXTENSION);
+      try {
+        FileUtils.moveFile(file, tempFile);
+      } catch (IOException e) {
+        continue;
+      }
+      try {
+        importLegacyFile(tempFile, getLegacyFileTime(file));
+      } catch (IOException e) {
+        recoveryOperationLogger.recordFailure("Fail to import " + file.getName(), e);
+        incrementReadFailureCount();
+      }
+      if (!LocalStorageUtils.deleteFileWithRetries(tempFile)) {
+        recoveryOperationLogger.recordFailure("Fail to delete " + tempFile.getName());
+      }
+    }
+  }
+
+  private void importLegacyFile(File file, long timeMillis) throws IOException {
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    if (bytes.length <= INSTRUMENTATION_KEY_LENGTH) {
+      recoveryOperationLogger.recordFailure(
+          "Skipping a corrupted persisted file: length is " + bytes.length);
+      return;
+    }
+    String instrumentationKey = new String(bytes, 0, INSTRUMENTATION_KEY_LENGTH, UTF_8);
+    if (!isInstrumentationKeyValid(instrumentationKey)) {
+      recoveryOperationLogger.recordFailure(
+          "Skipping an old persisted file with an invalid instrumentation key " + file.getName());
+      return;
+    }
+    ByteBuffer rawBytes =
+        ByteBuffer.wrap(
+            bytes, INSTRUMENTATION_KEY_LENGTH, bytes.length - INSTRUMENTATION_KEY_LENGTH);
+    write(singletonList(rawBytes), instrumentationKey, timeMillis);
+  }
+
+  // legacy files are named "<creation time millis>-<random>.trn"
+  private static long getLegacyFileTime(File file) {
+    String name = file.getName();
+    int index = name.indexOf('-');
+    if (index > 0) {
+      try {
+        return Long.parseLong(name.substring(0, index));
+      } catch (NumberFormatException ignored) {
+        // fall back to the last modified time
+      }
+    }
+    return file.lastModified();
+  }
+
+  private void incrementWriteFailureCount() {
+    if (nonessentialStatsbeat != null) {
+      nonessentialStatsbeat.incrementWriteFailureCount();
+    }
+  }
+
+  private void incrementReadFailureCount() {
+    if (nonessentialStatsbeat != null) {
+      nonessentialStatsbeat.incrementReadFailureCount();
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int numRead = channel.read(buffer, position);
+      if (numRead < 0) {
+        throw new EOFException();
+      }
+      position += numRead;
+    }
+  }
+
+  private static final class Segment {
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final long capacity;
+    // end of the last record
+    private long writePosition;
+    // records which have not been sent yet
+    private int liveRecords;
+
+    private Segment(
+        File file, RandomAccessFile randomAccessFile, FileLock fileLock, long capacity) {
+      this.file = file;
+      this.randomAccessFile = randomAccessFile;
+      this.channel = randomAccessFile.getChannel();
+      this.fileLock = fileLock;
+      this.capacity = capacity;
+    }
+
+    private void close() {
+      try {
+        fileLock.release();
+        randomAccessFile.close();
+      } catch (IOException e) {
+        logger.debug("Fail to close {}", file.getName(), e);
+      }
+    }
+  }
+
+  private static final class Record {
+    private final Segment segment;
+    private final long offset;
+    private final int length;
+    private final long timeMillis;
+    private final String instrumentationKey;
+
+    private Record(
+        Segment segment, long offset, int length, long timeMillis, String instrumentationKey) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.timeMillis = timeMillis;
+      this.instrumentationKey = instrumentationKey;
+    }
+  }
+
+  static final class PersistedBatch {
+    final String instrumentationKey;
+    final ByteBuffer rawBytes;
+    private final Record record;
+
+    private PersistedBatch(Record record, ByteBuffer rawBytes) {
+      this.instrumentationKey = record.instrumentationKey;
+      this.rawBytes = rawBytes;
+      this.record = record;
+    }
+  }
+}
@@ -49,21 +49,21 @@ public final class LocalStorageUtils {
 
   // delete a file and then retry 3 times when it fails.
   static boolean deleteFileWithRetries(File file) {
-    if (!file.delete()) {
-      for (int i = 0; i < 3; i++) {
-        try {
-          Thread.sleep(500);
-        } catch (InterruptedException ex) {
-          Thread.currentThread().interrupt();
-          return false;
-        }
-        if (file.delete()) {
-          break;
-        }
+    if (file.delete()) {
+      return true;
+    }
+    for (int i = 0; i < 3; i++) {
+      try {
+        Thread.sleep(500);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      if (file.delete()) {
+        return true;
       }
     }
-
-    return true;
+    return false;
   }
 
   // retrieve the default folder name based on telemetry type.
@@ -63,6 +63,8 @@ public abstract class AbstractJmxPerformanceCounter implements PerformanceCounte
           try {
             if (obj instanceof Boolean) {
               value = ((Boolean) obj).booleanValue() ? 1 : 0;
+            } else if (obj instanceof Number) {
+              value += ((Number) obj).doubleValue();
             } else {
               value += Double.parseDouble(String.valueOf(obj));
             }
@@ -24,6 +24,7 @@ package com.microsoft.applicationinsights.agent.internal.perfcounter;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
+import javax.annotation.Nullable;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import org.slf4j.Logger;
@@ -41,9 +42,13 @@ public final class CpuPerformanceCounterCalculator {
 
   private ObjectName osBean;
 
+  // reading /proc/self/stat is cheaper than going through the platform MBean server
+  @Nullable private final LinuxProcStats procStats;
+
   public CpuPerformanceCounterCalculator() {
     OperatingSystemMXBean operatingSystemMxBean = ManagementFactory.getOperatingSystemMXBean();
     numberOfCpus = operatingSystemMxBean.getAvailableProcessors();
+    procStats = LinuxProcStats.getInstance();
   }
 
   public Double getProcessCpuUsage() {
@@ -79,6 +84,12 @@ public final class CpuPerformanceCounterCalculator {
   }
 
   private long getProcessCpuTime() throws Exception {
+    if (procStats != null) {
+      long processCpuTime = procStats.getProcessCpuTimeNanos();
+      if (processCpuTime != -1) {
+        return processCpuTime;
+      }
+    }
     MBeanServer bsvr = ManagementFactory.getPlatformMBeanServer();
     if (osBean == null) {
       osBean = ObjectName.getInstance(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
@@ -21,37 +21,109 @@
 
 package com.microsoft.applicationinsights.agent.internal.perfcounter;
 
-import com.microsoft.applicationinsights.agent.internal.exporter.models.DataPointType;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 import com.microsoft.applicationinsights.agent.internal.exporter.models.MessageData;
-import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricDataPoint;
-import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricsData;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
 import com.microsoft.applicationinsights.agent.internal.telemetry.FormattedTime;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryUtil;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MonitorInfo;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * The class uses the JVM ThreadMXBean to detect thread deadlocks.
+ * The class uses the JVM ThreadMXBean to detect thread deadlocks and lock contention.
  *
- * <p>A metric with value 0 is sent when there are no blocked threads.
+ * <p>Thread states are sampled every {@link #SAMPLE_INTERVAL_MILLIS}, without stack traces, which
+ * (unlike {@link ThreadMXBean#findDeadlockedThreads()}) doesn't need to bring the JVM to a
+ * safepoint. Full deadlock detection only runs when threads are seen waiting on locks that are
+ * owned by other threads, and at most every {@link #MIN_DETECTION_INTERVAL_MILLIS}.
  *
- * <p>Otherwise the number of detected blocked threads is sent, along with minimal stack traces as
- * trace telemetries.
+ * <p>Once per reporting interval, a metric with the number of suspected deadlocked threads is sent
+ * (0 when there are none), along with stack traces as trace telemetries when there are some. The
+ * average number of blocked and waiting threads, and the locks that threads spent the most time
+ * waiting on, are sent as well.
  */
 public final class DeadLockDetectorPerformanceCounter implements PerformanceCounter {
 
+  private static final Logger logger =
+      LoggerFactory.getLogger(DeadLockDetectorPerformanceCounter.class);
+
   private static final String METRIC_NAME = "Suspected Deadlocked Threads";
+  private static final String BLOCKED_THREADS_METRIC_NAME = "Blocked Threads";
+  private static final String WAITING_THREADS_METRIC_NAME = "Waiting Threads";
+  private static final String LOCK_CONTENTION_METRIC_NAME = "Lock Contention Time";
+  private static final String LOCK_PROPERTY_NAME = "Lock";
+
+  public static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+  static final long MIN_DETECTION_INTERVAL_MILLIS = 10000;
+
+  // bounds the work done by a single sample on JVMs with lots of threads, the remaining threads
+  // are sampled by the next samples
+  static final int MAX_THREADS_PER_SAMPLE = 1000;
+
+  // number of locks reported per interval, and number of locks tracked within an interval
+  static final int MAX_HOTSPOTS = 5;
+  private static final int MAX_TRACKED_LOCKS = 1000;
+
+  private static final int MAX_STACK_TRACE = 20;
 
-  // TODO (trask) this seems low..
-  private static final int MAX_STACK_TRACE = 3;
+  private static final long[] NO_THREAD_IDS = new long[0];
 
   private final ThreadMXBean threadBean;
+  private final long reportIntervalNanos;
+  private final LongSupplier nanoTime;
+
+  // all fields below are guarded by this
+
+  // the threads that are being sampled, a new snapshot is taken once all of them have been sampled
+  private long[] threadIds = NO_THREAD_IDS;
+  private int nextThreadIndex;
+
+  private double previousContendedThreads;
+  private long lastDetectionNanos;
+  private long[] deadlockedThreadIds = NO_THREAD_IDS;
+
+  private long intervalStartNanos;
+  private int intervalSamples;
+  private double intervalBlockedThreads;
+  private double intervalWaitingThreads;
+  private boolean intervalContended;
+  private boolean intervalDetected;
+  private final Map<String, Double> intervalLockWaitMillis = new HashMap<>();
+
+  // the overhead of the counter itself
+  private long samplingNanos;
+  private long detectionNanos;
+  private int detections;
+
+  public DeadLockDetectorPerformanceCounter(long reportIntervalMillis) {
+    this(ManagementFactory.getThreadMXBean(), reportIntervalMillis, System::nanoTime);
+  }
 
-  public DeadLockDetectorPerformanceCounter() {
-    threadBean = ManagementFactory.getThreadMXBean();
+  // visible for testing
+  DeadLockDetectorPerformanceCounter(
+      ThreadMXBean threadBean, long reportIntervalMillis, LongSupplier nanoTime) {
+    this.threadBean = threadBean;
+    this.reportIntervalNanos = MILLISECONDS.toNanos(reportIntervalMillis);
+    this.nanoTime = nanoTime;
+    long now = nanoTime.getAsLong();
+    intervalStartNanos = now;
+    lastDetectionNanos = now - MILLISECONDS.toNanos(MIN_DETECTION_INTERVAL_MILLIS);
   }
 
   @Override
@@ -61,33 +133,170 @@ public final class DeadLockDetectorPerformanceCounter implements PerformanceCoun
 
   @Override
   public void report(TelemetryClient telemetryClient) {
-    TelemetryItem telemetry = new TelemetryItem();
-    MetricsData data = new MetricsData();
-    MetricDataPoint point = new MetricDataPoint();
-    TelemetryClient.getActive().initMetricTelemetry(telemetry, data, point);
+    Interval interval;
+    synchronized (this) {
+      sample();
+      if (nanoTime.getAsLong() - intervalStartNanos < reportIntervalNanos) {
+        return;
+      }
+      interval = collectInterval();
+    }
 
-    point.setName(METRIC_NAME);
-    point.setValue(0);
-    point.setDataPointType(DataPointType.MEASUREMENT);
+    send(telemetryClient, METRIC_NAME, interval.deadlockedThreadIds.length, null);
+    send(telemetryClient, BLOCKED_THREADS_METRIC_NAME, interval.blockedThreads, null);
+    send(telemetryClient, WAITING_THREADS_METRIC_NAME, interval.waitingThreads, null);
+    for (Map.Entry<String, Double> hotspot : interval.hotspots) {
+      send(telemetryClient, LOCK_CONTENTION_METRIC_NAME, hotspot.getValue(), hotspot.getKey());
+    }
 
-    long[] threadIds = threadBean.findDeadlockedThreads();
-    int blockedThreadCount = threadIds == null ? 0 : threadIds.length;
+    if (interval.deadlockedThreadIds.length > 0) {
+      sendDetailedMessage(telemetryClient, interval.deadlockedThreadIds);
+    }
 
-    data.getMetrics().get(0).setValue(blockedThreadCount);
-    telemetry.setTime(FormattedTime.offSetDateTimeFromNow());
+    logger.debug(
+        "Thread contention sampling took {} ms over {} samples, deadlock detection took {} ms over"
+            + " {} detections",
+        NANOSECONDS.toMillis(interval.samplingNanos),
+        interval.samples,
+        NANOSECONDS.toMillis(interval.detectionNanos),
+        interval.detections);
+  }
 
-    telemetryClient.trackAsync(telemetry);
+  // visible for testing
+  synchronized void sample() {
+    long start = nanoTime.getAsLong();
 
-    if (blockedThreadCount > 0) {
-      sendDetailedMessage(telemetryClient, threadIds);
+    if (nextThreadIndex >= threadIds.length) {
+      threadIds = threadBean.getAllThreadIds();
+      nextThreadIndex = 0;
+      if (threadIds.length == 0) {
+        return;
+      }
+    }
+    int end = Math.min(nextThreadIndex + MAX_THREADS_PER_SAMPLE, threadIds.length);
+    long[] sampledThreadIds = Arrays.copyOfRange(threadIds, nextThreadIndex, end);
+    nextThreadIndex = end;
+    // each sampled thread stands for this many threads
+    double scale = (double) threadIds.length / sampledThreadIds.length;
+
+    // no stack traces, so that the JVM doesn't need to reach a safepoint
+    ThreadInfo[] threadInfos = threadBean.getThreadInfo(sampledThreadIds, 0);
+
+    int blocked = 0;
+    int waiting = 0;
+    int contended = 0;
+    for (ThreadInfo threadInfo : threadInfos) {
+      if (threadInfo == null) {
+        // the thread has terminated since the thread ids were captured
+        continue;
+      }
+      switch (threadInfo.getThreadState()) {
+        case BLOCKED:
+          blocked++;
+          break;
+        case WAITING:
+        case TIMED_WAITING:
+          waiting++;
+          if (threadInfo.getLockOwnerId() == -1) {
+            // not waiting on a lock that is owned by another thread
+            continue;
+          }
+          break;
+        default:
+          continue;
+      }
+      contended++;
+      String lockName = threadInfo.getLockName();
+      if (lockName != null
+          && (intervalLockWaitMillis.size() < MAX_TRACKED_LOCKS
+              || intervalLockWaitMillis.containsKey(lockName))) {
+        intervalLockWaitMillis.merge(lockName, scale * SAMPLE_INTERVAL_MILLIS, Double::sum);
+      }
+    }
+
+    intervalSamples++;
+    intervalBlockedThreads += blocked * scale;
+    intervalWaitingThreads += waiting * scale;
+
+    double contendedThreads = contended * scale;
+    boolean rising = contendedThreads > previousContendedThreads;
+    previousContendedThreads = contendedThreads;
+    if (contended > 0) {
+      intervalContended = true;
+    }
+
+    long now = nanoTime.getAsLong();
+    samplingNanos += now - start;
+
+    // deadlocked threads are always waiting on locks owned by other threads, so full detection is
+    // only needed when there are such threads, and then only when their number goes up (or it
+    // hasn't run yet in this interval, so that ongoing deadlocks keep being reported)
+    if (contended > 0
+        && (rising || !intervalDetected)
+        && now - lastDetectionNanos >= MILLISECONDS.toNanos(MIN_DETECTION_INTERVAL_MILLIS)) {
+      long[] deadlocked = threadBean.findDeadlockedThreads();
+      deadlockedThreadIds = deadlocked == null ? NO_THREAD_IDS : deadlocked;
+      lastDetectionNanos = nanoTime.getAsLong();
+      detectionNanos += lastDetectionNanos - now;
+      detections++;
+      intervalDetected = true;
     }
   }
 
+  // visible for testing
+  synchronized Interval collectInterval() {
+    if (!intervalContended) {
+      // threads can't be deadlocked without waiting on locks
+      deadlockedThreadIds = NO_THREAD_IDS;
+    }
+
+    List<Map.Entry<String, Double>> hotspots = new ArrayList<>(intervalLockWaitMillis.entrySet());
+    hotspots.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+    if (hotspots.size() > MAX_HOTSPOTS) {
+      hotspots = new ArrayList<>(hotspots.subList(0, MAX_HOTSPOTS));
+    }
+
+    int samples = Math.max(intervalSamples, 1);
+    Interval interval =
+        new Interval(
+            deadlockedThreadIds,
+            intervalBlockedThreads / samples,
+            intervalWaitingThreads / samples,
+            hotspots,
+            intervalSamples,
+            samplingNanos,
+            detections,
+            detectionNanos);
+
+    intervalStartNanos = nanoTime.getAsLong();
+    intervalSamples = 0;
+    intervalBlockedThreads = 0;
+    intervalWaitingThreads = 0;
+    intervalContended = false;
+    intervalDetected = false;
+    intervalLockWaitMillis.clear();
+    samplingNanos = 0;
+    detectionNanos = 0;
+    detections = 0;
+
+    return interval;
+  }
+
+  private static void send(
+      TelemetryClient telemetryClient, String name, double value, @Nullable String lockName) {
+    TelemetryItem telemetry = TelemetryUtil.createMetricsTelemetry(telemetryClient, name, value);
+    if (lockName != null) {
+      TelemetryUtil.getProperties(telemetry.getData().getBaseData())
+          .put(LOCK_PROPERTY_NAME, lockName);
+    }
+    telemetryClient.trackAsync(telemetry);
+  }
+
   private void sendDetailedMessage(TelemetryClient telemetryClient, long[] threadIds) {
 
     TelemetryItem messageTelemetry = new TelemetryItem();
     MessageData messageData = new MessageData();
-    TelemetryClient.getActive().initMessageTelemetry(messageTelemetry, messageData);
+    telemetryClient.initMessageTelemetry(messageTelemetry, messageData);
 
     StringBuilder sb = new StringBuilder("Suspected deadlocked threads: ");
     for (long threadId : threadIds) {
@@ -140,4 +349,37 @@ public final class DeadLockDetectorPerformanceCounter implements PerformanceCoun
           .append(threadInfo.getLockOwnerId());
     }
   }
+
+  static final class Interval {
+
+    final long[] deadlockedThreadIds;
+    final double blockedThreads;
+    final double waitingThreads;
+    // lock names and the estimated time threads spent waiting on them, in milliseconds
+    final List<Map.Entry<String, Double>> hotspots;
+
+    final int samples;
+    final long samplingNanos;
+    final int detections;
+    final long detectionNanos;
+
+    private Interval(
+        long[] deadlockedThreadIds,
+        double blockedThreads,
+        double waitingThreads,
+        List<Map.Entry<String, Double>> hotspots,
+        int samples,
+        long samplingNanos,
+        int detections,
+        long detectionNanos) {
+      this.deadlockedThreadIds = deadlockedThreadIds;
+      this.blockedThreads = blockedThreads;
+      this.waitingThreads = waitingThreads;
+      this.hotspots = hotspots;
+      this.samples = samples;
+      this.samplingNanos = samplingNanos;
+      this.detections = detections;
+      this.detectionNanos = detectionNanos;
+    }
+  }
 }
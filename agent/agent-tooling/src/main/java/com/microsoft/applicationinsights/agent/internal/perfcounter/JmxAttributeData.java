@@ -21,6 +21,8 @@
 
 package com.microsoft.applicationinsights.agent.internal.perfcounter;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents JMX data of an Attribute The display name The name of the attribute The type of the
  * attribute.
@@ -29,8 +31,22 @@ public final class JmxAttributeData {
   public final String metricName;
   public final String attribute;
 
+  // the attribute path is split up front, instead of on every fetch
+  final String attributeName;
+  // the key inside of the composite data, when the attribute is of the form "attribute.key"
+  @Nullable final String compositeKey;
+
   public JmxAttributeData(String metricName, String attribute) {
     this.attribute = attribute;
     this.metricName = metricName;
+
+    String[] inners = attribute.split("\\.");
+    if (inners.length == 1) {
+      attributeName = attribute;
+      compositeKey = null;
+    } else {
+      attributeName = inners[0];
+      compositeKey = inners[1];
+    }
   }
 }
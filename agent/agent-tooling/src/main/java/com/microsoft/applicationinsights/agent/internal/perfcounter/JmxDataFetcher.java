@@ -25,23 +25,43 @@ import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.management.AttributeNotFoundException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.management.Attribute;
 import javax.management.InstanceNotFoundException;
-import javax.management.MBeanException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
 import javax.management.ObjectName;
-import javax.management.ReflectionException;
 import javax.management.openmbean.CompositeData;
+import javax.management.relation.MBeanServerNotificationFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** A utility class that knows how to fetch JMX data. */
+/**
+ * A utility class that knows how to fetch JMX data.
+ *
+ * <p>The object names that each configured object name (or pattern) resolves to are cached, and
+ * the cache is invalidated when a matching MBean is registered or unregistered. The attributes of
+ * each MBean are fetched with a single {@code getAttributes()} call.
+ */
 public class JmxDataFetcher {
 
   private static final Logger logger = LoggerFactory.getLogger(JmxDataFetcher.class);
 
+  private static final ConcurrentMap<String, ObjectNameQuery> queries = new ConcurrentHashMap<>();
+
+  // without the listener, the object names are resolved on every fetch
+  private static volatile boolean listenerRegistered;
+
   /**
    * Gets an object name and its attributes to fetch and will return the data.
    *
@@ -53,57 +73,150 @@ public class JmxDataFetcher {
    */
   public static Map<String, Collection<Object>> fetch(
       String objectName, Collection<JmxAttributeData> attributes) throws Exception {
-    Map<String, Collection<Object>> result = new HashMap<>();
-
     MBeanServer server = ManagementFactory.getPlatformMBeanServer();
-    Set<ObjectName> objects = server.queryNames(new ObjectName(objectName), null);
+    Set<ObjectName> objects = getQuery(server, objectName).resolve(server);
     if (objects.isEmpty()) {
       String errorMsg = String.format("Cannot find object name '%s'", objectName);
       throw new IllegalArgumentException(errorMsg);
     }
 
+    Set<String> distinctAttributeNames = new LinkedHashSet<>();
     for (JmxAttributeData attribute : attributes) {
-      try {
-        Collection<Object> resultForAttribute = fetch(server, objects, attribute.attribute);
-        result.put(attribute.metricName, resultForAttribute);
-      } catch (Exception e) {
-        logger.warn(
-            "Failed to fetch JMX object '{}' with attribute '{}': ",
-            objectName,
-            attribute.attribute);
-        throw e;
+      distinctAttributeNames.add(attribute.attributeName);
+    }
+    String[] attributeNames = distinctAttributeNames.toArray(new String[0]);
+
+    List<List<Object>> values = new ArrayList<>(attributes.size());
+    for (int i = 0; i < attributes.size(); i++) {
+      values.add(new ArrayList<>());
+    }
+    for (ObjectName object : objects) {
+      Map<String, Object> objectValues = getAttributes(server, object, attributeNames);
+      int i = 0;
+      for (JmxAttributeData attribute : attributes) {
+        Object value = objectValues.get(attribute.attributeName);
+        if (value != null && attribute.compositeKey != null) {
+          value = ((CompositeData) value).get(attribute.compositeKey);
+        }
+        if (value != null) {
+          values.get(i).add(value);
+        }
+        i++;
       }
     }
 
+    Map<String, Collection<Object>> result = new HashMap<>();
+    int i = 0;
+    for (JmxAttributeData attribute : attributes) {
+      result.put(attribute.metricName, values.get(i++));
+    }
     return result;
   }
 
-  private static Collection<Object> fetch(
-      MBeanServer server, Set<ObjectName> objects, String attributeName)
-      throws AttributeNotFoundException, MBeanException, ReflectionException,
-          InstanceNotFoundException {
-    ArrayList<Object> result = new ArrayList<>();
-
-    String[] inners = attributeName.split("\\.");
+  private static Map<String, Object> getAttributes(
+      MBeanServer server, ObjectName object, String[] attributeNames) throws Exception {
+    Map<String, Object> values = new HashMap<>();
+    for (Attribute attribute : server.getAttributes(object, attributeNames).asList()) {
+      values.put(attribute.getName(), attribute.getValue());
+    }
+    if (values.size() < attributeNames.length) {
+      // getAttributes() silently leaves out the attributes that could not be read, so those are
+      // read one by one in order to surface the reason
+      for (String attributeName : attributeNames) {
+        if (!values.containsKey(attributeName)) {
+          try {
+            values.put(attributeName, server.getAttribute(object, attributeName));
+          } catch (Exception e) {
+            logger.warn(
+                "Failed to fetch JMX object '{}' with attribute '{}': ", object, attributeName);
+            throw e;
+          }
+        }
+      }
+    }
+    return values;
+  }
 
-    for (ObjectName object : objects) {
+  private static ObjectNameQuery getQuery(MBeanServer server, String objectName)
+      throws MalformedObjectNameException {
+    ObjectNameQuery query = queries.get(objectName);
+    if (query == null) {
+      registerListener(server);
+      query = new ObjectNameQuery(new ObjectName(objectName));
+      ObjectNameQuery existing = queries.putIfAbsent(objectName, query);
+      if (existing != null) {
+        query = existing;
+      }
+    }
+    return query;
+  }
 
-      Object value;
+  private static synchronized void registerListener(MBeanServer server) {
+    if (listenerRegistered) {
+      return;
+    }
+    MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+    filter.enableAllObjectNames();
+    try {
+      server.addNotificationListener(
+          MBeanServerDelegate.DELEGATE_NAME, JmxDataFetcher::handleNotification, filter, null);
+    } catch (InstanceNotFoundException e) {
+      // not expected, the delegate is always registered
+      logger.debug(e.getMessage(), e);
+      return;
+    }
+    listenerRegistered = true;
+  }
 
-      if (inners.length == 1) {
-        value = server.getAttribute(object, attributeName);
-      } else {
-        value = server.getAttribute(object, inners[0]);
-        if (value != null) {
-          value = ((CompositeData) value).get(inners[1]);
-        }
+  private static void handleNotification(Notification notification, @Nullable Object handback) {
+    if (!(notification instanceof MBeanServerNotification)) {
+      return;
+    }
+    ObjectName objectName = ((MBeanServerNotification) notification).getMBeanName();
+    for (ObjectNameQuery query : queries.values()) {
+      if (query.objectName.apply(objectName)) {
+        query.invalidate();
       }
-      if (value != null) {
-        result.add(value);
+    }
+  }
+
+  private static class ObjectNameQuery {
+
+    private final ObjectName objectName;
+    private final AtomicLong version = new AtomicLong();
+    @Nullable private volatile ResolvedObjectNames resolved;
+
+    private ObjectNameQuery(ObjectName objectName) {
+      this.objectName = objectName;
+    }
+
+    private Set<ObjectName> resolve(MBeanServer server) {
+      // the version is read before querying, so that a registration which races with the query
+      // leaves the result stale instead of being missed
+      long currentVersion = version.get();
+      ResolvedObjectNames current = resolved;
+      if (current != null && current.version == currentVersion && listenerRegistered) {
+        return current.objectNames;
       }
+      Set<ObjectName> objectNames = server.queryNames(objectName, null);
+      resolved = new ResolvedObjectNames(currentVersion, objectNames);
+      return objectNames;
     }
 
-    return result;
+    private void invalidate() {
+      version.incrementAndGet();
+    }
+  }
+
+  private static class ResolvedObjectNames {
+
+    private final long version;
+    private final Set<ObjectName> objectNames;
+
+    private ResolvedObjectNames(long version, Set<ObjectName> objectNames) {
+      this.version = version;
+      this.objectNames = objectNames;
+    }
   }
 
   private JmxDataFetcher() {}
@@ -0,0 +1,109 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryUtil;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Same as {@link OshiPerformanceCounter}, but reads /proc directly (see {@link LinuxProcStats}),
+ * which is a lot cheaper than going through OSHI.
+ */
+public class LinuxPerformanceCounter implements PerformanceCounter {
+
+  private static final Logger logger = LoggerFactory.getLogger(LinuxPerformanceCounter.class);
+  private static final String ID =
+      Constants.PERFORMANCE_COUNTER_PREFIX + "LinuxPerformanceCounter";
+
+  private static final double MILLIS_IN_SECOND = 1000;
+
+  private final LinuxProcStats procStats;
+
+  private long prevCollectionTimeMillis;
+  private long prevProcessBytes;
+  private long prevTotalProcessorMillis;
+
+  /**
+   * Returns a performance counter reading /proc, or null when not running on Linux or /proc can't
+   * be read, in which case {@link OshiPerformanceCounter} should be used instead.
+   */
+  @Nullable
+  public static LinuxPerformanceCounter create() {
+    LinuxProcStats procStats = LinuxProcStats.getInstance();
+    return procStats == null ? null : new LinuxPerformanceCounter(procStats);
+  }
+
+  private LinuxPerformanceCounter(LinuxProcStats procStats) {
+    this.procStats = procStats;
+  }
+
+  @Override
+  public String getId() {
+    return ID;
+  }
+
+  @Override
+  public void report(TelemetryClient telemetryClient) {
+    long currCollectionTimeMillis = System.currentTimeMillis();
+    long currProcessBytes = procStats.getProcessIoBytes();
+    long currTotalProcessorMillis = procStats.getSystemCpuMillis();
+    int cpuCount = procStats.getCpuCount();
+
+    if (prevCollectionTimeMillis != 0) {
+      double elapsedMillis = currCollectionTimeMillis - prevCollectionTimeMillis;
+      double elapsedSeconds = elapsedMillis / MILLIS_IN_SECOND;
+      if (currProcessBytes != -1 && prevProcessBytes != -1) {
+        double processBytes = (currProcessBytes - prevProcessBytes) / elapsedSeconds;
+        send(telemetryClient, processBytes, Constants.PROCESS_IO_PC_METRIC_NAME);
+        logger.trace(
+            "Sent performance counter for '{}': '{}'",
+            Constants.PROCESS_IO_PC_METRIC_NAME,
+            processBytes);
+      }
+
+      if (currTotalProcessorMillis != -1 && prevTotalProcessorMillis != -1 && cpuCount > 0) {
+        double processorLoad =
+            (currTotalProcessorMillis - prevTotalProcessorMillis) / (elapsedMillis * cpuCount);
+        double processorPercentage = 100 * processorLoad;
+        send(telemetryClient, processorPercentage, Constants.TOTAL_CPU_PC_METRIC_NAME);
+        logger.trace(
+            "Sent performance counter for '{}': '{}'",
+            Constants.TOTAL_CPU_PC_METRIC_NAME,
+            processorPercentage);
+      }
+    }
+
+    prevCollectionTimeMillis = currCollectionTimeMillis;
+    prevProcessBytes = currProcessBytes;
+    prevTotalProcessorMillis = currTotalProcessorMillis;
+  }
+
+  private static void send(TelemetryClient telemetryClient, double value, String metricName) {
+    TelemetryItem telemetry =
+        TelemetryUtil.createMetricsTelemetry(telemetryClient, metricName, value);
+    telemetryClient.trackAsync(telemetry);
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads process and system cpu and i/o statistics directly from the Linux /proc file system.
+ *
+ * <p>The files are opened once and kept open, and each read goes into a reused buffer which is
+ * parsed in place, so that collecting doesn't allocate.
+ *
+ * <p>Values are -1 when they can't be read.
+ */
+final class LinuxProcStats {
+
+  private static final Logger logger = LoggerFactory.getLogger(LinuxProcStats.class);
+
+  // the unit of the cpu times in /proc (USER_HZ), which is 100 on all architectures
+  private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+  private static final long NANOS_PER_TICK = 1_000_000_000 / CLOCK_TICKS_PER_SECOND;
+  private static final long MILLIS_PER_TICK = 1000 / CLOCK_TICKS_PER_SECOND;
+
+  // the fields of /proc/self/stat are numbered from 1, and the fields after the command name start
+  // at 3 (see "man 5 proc")
+  private static final int UTIME_FIELD = 14;
+  private static final int STIME_FIELD = 15;
+
+  private static final byte[] READ_BYTES = ascii("read_bytes:");
+  private static final byte[] WRITE_BYTES = ascii("write_bytes:");
+  private static final byte[] CPU = ascii("cpu");
+
+  private final ProcFile selfStat;
+  @Nullable private final ProcFile selfIo;
+  @Nullable private final ProcFile stat;
+
+  // the number of cpus found the last time /proc/stat was read
+  private int cpuCount;
+
+  /** Returns the shared instance, or null when not running on Linux or /proc can't be read. */
+  @Nullable
+  static LinuxProcStats getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private LinuxProcStats(ProcFile selfStat, @Nullable ProcFile selfIo, @Nullable ProcFile stat) {
+    this.selfStat = selfStat;
+    this.selfIo = selfIo;
+    this.stat = stat;
+  }
+
+  /** Returns the cpu time used by this process (user and system), in nanoseconds. */
+  synchronized long getProcessCpuTimeNanos() {
+    if (!selfStat.read()) {
+      return -1;
+    }
+    long ticks = parseProcessCpuTicks(selfStat.buffer, selfStat.length);
+    return ticks == -1 ? -1 : ticks * NANOS_PER_TICK;
+  }
+
+  /** Returns the number of bytes this process has read from and written to storage. */
+  synchronized long getProcessIoBytes() {
+    if (selfIo == null || !selfIo.read()) {
+      return -1;
+    }
+    return parseIoBytes(selfIo.buffer, selfIo.length);
+  }
+
+  /**
+   * Returns the cpu time spent in user and system mode, summed over all cpus, in milliseconds.
+   *
+   * <p>Also updates {@link #getCpuCount()}.
+   */
+  synchronized long getSystemCpuMillis() {
+    if (stat == null || !stat.read()) {
+      return -1;
+    }
+    cpuCount = parseCpuCount(stat.buffer, stat.length);
+    long ticks = parseSystemCpuTicks(stat.buffer, stat.length);
+    return ticks == -1 ? -1 : ticks * MILLIS_PER_TICK;
+  }
+
+  /** Returns the number of cpus that {@link #getSystemCpuMillis()} is summed over. */
+  synchronized int getCpuCount() {
+    return cpuCount;
+  }
+
+  // parses the utime and stime fields of /proc/self/stat
+  static long parseProcessCpuTicks(byte[] buffer, int length) {
+    // the command name (field 2) is in parentheses and can itself contain spaces and parentheses
+    int i = length - 1;
+    while (i >= 0 && buffer[i] != ')') {
+      i--;
+    }
+    if (i < 0) {
+      return -1;
+    }
+    i++;
+    long ticks = 0;
+    for (int field = 3; field <= STIME_FIELD; field++) {
+      i = skipSpaces(buffer, i, length);
+      if (field >= UTIME_FIELD) {
+        long value = parseLong(buffer, i, length);
+        if (value == -1) {
+          return -1;
+        }
+        ticks += value;
+      }
+      i = skipToken(buffer, i, length);
+    }
+    return ticks;
+  }
+
+  // parses the read_bytes and write_bytes lines of /proc/self/io
+  static long parseIoBytes(byte[] buffer, int length) {
+    long readBytes = -1;
+    long writeBytes = -1;
+    for (int i = 0; i < length; i = nextLine(buffer, i, length)) {
+      if (startsWith(buffer, i, length, READ_BYTES)) {
+        readBytes = parseLong(buffer, skipSpaces(buffer, i + READ_BYTES.length, length), length);
+      } else if (startsWith(buffer, i, length, WRITE_BYTES)) {
+        writeBytes = parseLong(buffer, skipSpaces(buffer, i + WRITE_BYTES.length, length), length);
+      }
+    }
+    if (readBytes == -1 || writeBytes == -1) {
+      return -1;
+    }
+    return readBytes + writeBytes;
+  }
+
+  // parses the user and system fields of the aggregate "cpu" line of /proc/stat
+  static long parseSystemCpuTicks(byte[] buffer, int length) {
+    if (!startsWith(buffer, 0, length, CPU) || CPU.length >= length || buffer[CPU.length] != ' ') {
+      return -1;
+    }
+    // cpu user nice system ...
+    int i = CPU.length;
+    long ticks = 0;
+    for (int field = 1; field <= 3; field++) {
+      i = skipSpaces(buffer, i, length);
+      if (field != 2) {
+        long value = parseLong(buffer, i, length);
+        if (value == -1) {
+          return -1;
+        }
+        ticks += value;
+      }
+      i = skipToken(buffer, i, length);
+    }
+    return ticks;
+  }
+
+  // counts the "cpuN" lines of /proc/stat, which come right after the aggregate "cpu" line
+  static int parseCpuCount(byte[] buffer, int length) {
+    int cpuCount = 0;
+    for (int i = 0; i < length && startsWith(buffer, i, length, CPU); ) {
+      int next = i + CPU.length;
+      if (next < length && isDigit(buffer[next])) {
+        cpuCount++;
+      }
+      i = nextLine(buffer, i, length);
+    }
+    return cpuCount;
+  }
+
+  private static int skipSpaces(byte[] buffer, int i, int length) {
+    while (i < length && buffer[i] == ' ') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipToken(byte[] buffer, int i, int length) {
+    while (i < length && buffer[i] != ' ' && buffer[i] != '\n') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int nextLine(byte[] buffer, int i, int length) {
+    while (i < length && buffer[i] != '\n') {
+      i++;
+    }
+    return i + 1;
+  }
+
+  // returns -1 if there is no number at the given position
+  private static long parseLong(byte[] buffer, int i, int length) {
+    if (i >= length || !isDigit(buffer[i])) {
+      return -1;
+    }
+    long value = 0;
+    while (i < length && isDigit(buffer[i])) {
+      value = value * 10 + (buffer[i] - '0');
+      i++;
+    }
+    return value;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean startsWith(byte[] buffer, int i, int length, byte[] prefix) {
+    if (length - i < prefix.length) {
+      return false;
+    }
+    for (int j = 0; j < prefix.length; j++) {
+      if (buffer[i + j] != prefix[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ascii(String value) {
+    byte[] bytes = new byte[value.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) value.charAt(i);
+    }
+    return bytes;
+  }
+
+  @Nullable
+  private static LinuxProcStats create() {
+    if (!SystemUtils.IS_OS_LINUX) {
+      return null;
+    }
+    ProcFile selfStat = ProcFile.open("/proc/self/stat");
+    if (selfStat == null || !selfStat.read()) {
+      return null;
+    }
+    // /proc/self/io isn't readable in some restricted environments
+    ProcFile selfIo = ProcFile.open("/proc/self/io");
+    if (selfIo != null && !selfIo.read()) {
+      selfIo = null;
+    }
+    ProcFile stat = ProcFile.open("/proc/stat");
+    if (stat != null && !stat.read()) {
+      stat = null;
+    }
+    return new LinuxProcStats(selfStat, selfIo, stat);
+  }
+
+  private static class Holder {
+    @Nullable private static final LinuxProcStats INSTANCE = create();
+  }
+
+  private static final class ProcFile {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    // /proc/stat gets long on machines with lots of cpus and interrupts, but only the cpu lines at
+    // the start of it are needed
+    private static final int MAX_BUFFER_SIZE = 1 << 16;
+
+    private final String path;
+    private final RandomAccessFile file;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    @Nullable
+    private static ProcFile open(String path) {
+      try {
+        return new ProcFile(path, new RandomAccessFile(path, "r"));
+      } catch (IOException | SecurityException e) {
+        logger.debug("could not open {}: {}", path, e.toString());
+        return null;
+      }
+    }
+
+    private ProcFile(String path, RandomAccessFile file) {
+      this.path = path;
+      this.file = file;
+    }
+
+    // reads the file from the start, which makes the kernel generate its current content
+    private boolean read() {
+      try {
+        while (true) {
+          file.seek(0);
+          int n = 0;
+          int read;
+          while (n < buffer.length && (read = file.read(buffer, n, buffer.length - n)) != -1) {
+            n += read;
+          }
+          if (n < buffer.length || buffer.length >= MAX_BUFFER_SIZE) {
+            length = n;
+            return true;
+          }
+          // the file didn't fit, which only happens until the buffer has grown large enough
+          buffer = new byte[buffer.length * 2];
+        }
+      } catch (IOException e) {
+        logger.debug("could not read {}: {}", path, e.toString());
+        return false;
+      }
+    }
+  }
+}
@@ -22,11 +22,13 @@
 package com.microsoft.applicationinsights.agent.internal.perfcounter;
 
 import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
+import com.microsoft.applicationinsights.agent.internal.httpclient.JmxAccess;
+import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,16 +39,12 @@ import org.slf4j.LoggerFactory;
  * <p>If there is a need for a performance counter, the user of this class should create an
  * implementation of that interface and then register it in this container.
  *
- * <p>Note that the container will only start working after the first registration of a Performance
- * Counter. That means that setting the timeouts is only relevant if done before the first
- * registration of a Performance Counter.
+ * <p>Once started, each registered Performance Counter is reported on its own schedule (see {@link
+ * PerformanceCounterScheduler}), by default every 1 minute, starting right away. Setting the
+ * collection frequency is only relevant if done before the Performance Counters are registered.
  *
- * <p>The container will go through all the registered Performance Counters and will trigger their
- * 'report' method. By default the container will start reporting after 5 minutes and will continue
- * doing so every 1 minute.
- *
- * <p>The user of this class can add (register), remove (unregister) a performance counter while the
- * container is working.
+ * <p>The user of this class can add (register) a performance counter while the container is
+ * working.
  *
  * <p>The container will be stopped automatically when the application exists.
  */
@@ -55,36 +53,55 @@ public enum PerformanceCounterContainer {
 
   private static final Logger logger = LoggerFactory.getLogger(PerformanceCounterContainer.class);
 
-  // By default the container will wait 2 minutes before the collection of performance data.
-  private static final long START_COLLECTING_DELAY_IN_MILLIS = 60000;
-
   // By default the container will collect performance data every 1 minute.
   public static final long DEFAULT_COLLECTION_FREQUENCY_IN_SEC = 60;
   private static final long MIN_COLLECTION_FREQUENCY_IN_SEC = 1;
 
-  private final ConcurrentMap<String, PerformanceCounter> performanceCounters =
-      new ConcurrentHashMap<>();
+  // By default collections that take longer than this (or than the period, if it is shorter) are
+  // counted as overruns.
+  private static final long DEFAULT_EXPECTED_DURATION_IN_MILLIS = 10000;
+
+  // guarded by this
+  private final Map<String, Registration> registrations = new LinkedHashMap<>();
 
   private volatile @Nullable AvailableJmxMetricLogger availableJmxMetricLogger;
 
-  private volatile boolean initialized = false;
+  private volatile long collectionFrequencyInMillis = DEFAULT_COLLECTION_FREQUENCY_IN_SEC * 1000;
 
-  private long collectionFrequencyInMillis = DEFAULT_COLLECTION_FREQUENCY_IN_SEC * 1000;
+  // guarded by this
+  private boolean started;
 
-  private ScheduledThreadPoolExecutor threads;
+  // guarded by this, non-null once collection has started
+  private @Nullable PerformanceCounterScheduler scheduler;
 
   /**
-   * /** Registers a {@link PerformanceCounter} that can collect data.
+   * Registers a {@link PerformanceCounter} that can collect data, using the default collection
+   * frequency and expected duration.
    *
    * @param performanceCounter The Performance Counter.
    * @return True on success.
    */
   public boolean register(PerformanceCounter performanceCounter) {
-    initialize();
+    return register(performanceCounter, 0, 0);
+  }
 
+  /**
+   * Registers a {@link PerformanceCounter} that can collect data.
+   *
+   * @param performanceCounter The Performance Counter.
+   * @param periodMillis How often the counter is reported, or 0 for the default collection
+   *     frequency.
+   * @param expectedDurationMillis How long a collection of the counter is expected to take at
+   *     most, or 0 for the default. Longer collections are counted as overruns, but are not
+   *     interrupted.
+   * @return True on success.
+   */
+  public synchronized boolean register(
+      PerformanceCounter performanceCounter, long periodMillis, long expectedDurationMillis) {
     logger.trace("Registering PC '{}'", performanceCounter.getId());
-    PerformanceCounter prev =
-        performanceCounters.putIfAbsent(performanceCounter.getId(), performanceCounter);
+    Registration registration =
+        new Registration(performanceCounter, periodMillis, expectedDurationMillis);
+    Registration prev = registrations.putIfAbsent(performanceCounter.getId(), registration);
     if (prev != null) {
       logger.trace(
           "Failed to store performance counter '{}', since there is already one",
@@ -92,6 +109,9 @@ public enum PerformanceCounterContainer {
       return false;
     }
 
+    if (scheduler != null) {
+      schedule(scheduler, registration);
+    }
     return true;
   }
 
@@ -100,8 +120,8 @@ public enum PerformanceCounterContainer {
    *
    * <p>The number must be a positive number
    *
-   * <p>Note that the method will be effective if called before the first call to the 'register'
-   * method.
+   * <p>Note that the method will only be effective for Performance Counters that are scheduled
+   * after it is called.
    *
    * @param collectionFrequencyInSec The timeout to wait between collection of Performance Counters.
    */
@@ -125,63 +145,87 @@ public enum PerformanceCounterContainer {
   }
 
   /**
-   * A private method that is called only when the container needs to start collecting performance
-   * counters data. The method will schedule a callback to be called, it will initialize a {@link
-   * TelemetryClient} that the Performance Counters will use to report their data
+   * Starts collecting, must be called once the active {@link TelemetryClient} has been set.
+   *
+   * <p>Collection starts right away, unless JMX can't be accessed yet (see {@link
+   * LazyHttpClient#safeToInitLatch}), in which case it starts as soon as it can.
    */
-  private void initialize() {
-    if (!initialized) {
-      synchronized (INSTANCE) {
-        if (!initialized) {
-          createThreadToCollect();
-
-          scheduleWork();
+  public synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+
+    ScheduledExecutorService scheduledExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtils.createDaemonThreadFactory(PerformanceCounterContainer.class));
+    PerformanceCounterScheduler newScheduler =
+        new PerformanceCounterScheduler(
+            scheduledExecutor,
+            Executors.newCachedThreadPool(
+                ThreadPoolUtils.createDaemonThreadFactory(
+                    PerformanceCounterContainer.class, "Worker")),
+            TelemetryClient::getActive);
+    scheduledExecutor.execute(
+        () -> {
+          JmxAccess.awaitSafeToAccess();
+          startScheduling(newScheduler);
+        });
+  }
 
-          initialized = true;
-        }
-      }
+  private synchronized void startScheduling(PerformanceCounterScheduler newScheduler) {
+    AvailableJmxMetricLogger availableJmxMetricLogger = this.availableJmxMetricLogger;
+    if (availableJmxMetricLogger != null) {
+      schedule(
+          newScheduler,
+          new Registration(new AvailableJmxMetricLoggerCounter(availableJmxMetricLogger), 0, 0));
     }
+    for (Registration registration : registrations.values()) {
+      schedule(newScheduler, registration);
+    }
+    scheduler = newScheduler;
   }
 
-  private void scheduleWork() {
-    threads.scheduleAtFixedRate(
-        new Runnable() {
-          @Override
-          public void run() {
-            if (availableJmxMetricLogger != null) {
-              availableJmxMetricLogger.logAvailableJmxMetrics();
-            }
-
-            TelemetryClient telemetryClient = TelemetryClient.getActive();
-
-            for (PerformanceCounter performanceCounter : performanceCounters.values()) {
-              try {
-                performanceCounter.report(telemetryClient);
-              } catch (ThreadDeath td) {
-                throw td;
-              } catch (Throwable t) {
-                try {
-                  logger.error(
-                      "Exception while reporting performance counter '{}'",
-                      performanceCounter.getId(),
-                      t);
-                } catch (ThreadDeath td) {
-                  throw td;
-                } catch (Throwable t2) {
-                  // chomp
-                }
-              }
-            }
-          }
-        },
-        START_COLLECTING_DELAY_IN_MILLIS,
-        collectionFrequencyInMillis,
-        TimeUnit.MILLISECONDS);
+  private void schedule(PerformanceCounterScheduler scheduler, Registration registration) {
+    long periodMillis =
+        registration.periodMillis > 0 ? registration.periodMillis : collectionFrequencyInMillis;
+    long expectedDurationMillis =
+        registration.expectedDurationMillis > 0
+            ? registration.expectedDurationMillis
+            : Math.min(DEFAULT_EXPECTED_DURATION_IN_MILLIS, periodMillis);
+    scheduler.schedule(registration.performanceCounter, periodMillis, expectedDurationMillis);
   }
 
-  private void createThreadToCollect() {
-    threads = new ScheduledThreadPoolExecutor(1);
-    threads.setThreadFactory(
-        ThreadPoolUtils.createDaemonThreadFactory(PerformanceCounterContainer.class));
+  private static class Registration {
+
+    private final PerformanceCounter performanceCounter;
+    private final long periodMillis;
+    private final long expectedDurationMillis;
+
+    private Registration(
+        PerformanceCounter performanceCounter, long periodMillis, long expectedDurationMillis) {
+      this.performanceCounter = performanceCounter;
+      this.periodMillis = periodMillis;
+      this.expectedDurationMillis = expectedDurationMillis;
+    }
+  }
+
+  private static class AvailableJmxMetricLoggerCounter implements PerformanceCounter {
+
+    private final AvailableJmxMetricLogger availableJmxMetricLogger;
+
+    private AvailableJmxMetricLoggerCounter(AvailableJmxMetricLogger availableJmxMetricLogger) {
+      this.availableJmxMetricLogger = availableJmxMetricLogger;
+    }
+
+    @Override
+    public String getId() {
+      return AvailableJmxMetricLogger.class.getSimpleName();
+    }
+
+    @Override
+    public void report(TelemetryClient telemetryClient) {
+      availableJmxMetricLogger.logAvailableJmxMetrics();
+    }
   }
 }
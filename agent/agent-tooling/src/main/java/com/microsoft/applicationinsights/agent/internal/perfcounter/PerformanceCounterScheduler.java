@@ -0,0 +1,202 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.microsoft.applicationinsights.agent.internal.httpclient.JmxAccess;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each performance counter on its own schedule.
+ *
+ * <p>A single thread keeps the schedule and hands each collection off to a worker thread, so a
+ * slow counter only delays itself. A counter never has more than one collection in flight. If its
+ * previous collection is still running at the next tick, that tick is skipped. Collections that
+ * take longer than the counter's expected duration are counted as overruns, but are not
+ * interrupted.
+ *
+ * <p>The collection statistics of each counter (latency, overruns and skips) are only exposed as an
+ * MXBean, and are not sent as telemetry.
+ */
+class PerformanceCounterScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(PerformanceCounterScheduler.class);
+
+  private static final String JMX_KEY_PREFIX = "com.microsoft:type=AI-perfcounter,name=";
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService workers;
+  private final Supplier<TelemetryClient> telemetryClientSupplier;
+
+  PerformanceCounterScheduler(
+      ScheduledExecutorService scheduler,
+      ExecutorService workers,
+      Supplier<TelemetryClient> telemetryClientSupplier) {
+    this.scheduler = scheduler;
+    this.workers = workers;
+    this.telemetryClientSupplier = telemetryClientSupplier;
+  }
+
+  ScheduledCounter schedule(
+      PerformanceCounter counter, long periodMillis, long expectedDurationMillis) {
+    ScheduledCounter scheduled =
+        new ScheduledCounter(counter, periodMillis, expectedDurationMillis);
+    // scheduling only starts once it is safe to access JMX
+    JmxAccess.register(scheduled, JMX_KEY_PREFIX + ObjectName.quote(counter.getId()));
+    scheduler.scheduleAtFixedRate(() -> dispatch(scheduled), 0, periodMillis, MILLISECONDS);
+    return scheduled;
+  }
+
+  private void dispatch(ScheduledCounter scheduled) {
+    if (!scheduled.running.compareAndSet(false, true)) {
+      scheduled.skippedCount.incrementAndGet();
+      if (!scheduled.alreadyLoggedSkip) {
+        logger.warn(
+            "Skipping collection of performance counter '{}', since its previous collection is"
+                + " still running (this message will only be logged once per counter)",
+            scheduled.counter.getId());
+        scheduled.alreadyLoggedSkip = true;
+      }
+      return;
+    }
+    try {
+      workers.execute(() -> collect(scheduled));
+    } catch (RejectedExecutionException e) {
+      scheduled.running.set(false);
+    }
+  }
+
+  private void collect(ScheduledCounter scheduled) {
+    long startNanos = System.nanoTime();
+    try {
+      scheduled.counter.report(telemetryClientSupplier.get());
+    } catch (ThreadDeath td) {
+      throw td;
+    } catch (Throwable t) {
+      try {
+        logger.error(
+            "Exception while reporting performance counter '{}'", scheduled.counter.getId(), t);
+      } catch (ThreadDeath td) {
+        throw td;
+      } catch (Throwable t2) {
+        // chomp
+      }
+    } finally {
+      scheduled.recordCollection(System.nanoTime() - startNanos);
+      scheduled.running.set(false);
+    }
+  }
+
+  static class ScheduledCounter implements PerformanceCounterStatsMXBean {
+
+    private final PerformanceCounter counter;
+    private final long periodMillis;
+    private final long expectedDurationMillis;
+    private final long expectedDurationNanos;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong collectionCount = new AtomicLong();
+    private final AtomicLong overrunCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    // only written by the collection in flight (or by the scheduler thread, for the skip flag)
+    private volatile long lastCollectionNanos;
+    private volatile long maxCollectionNanos;
+    private volatile boolean alreadyLoggedSkip;
+    private volatile boolean alreadyLoggedOverrun;
+
+    private ScheduledCounter(
+        PerformanceCounter counter, long periodMillis, long expectedDurationMillis) {
+      this.counter = counter;
+      this.periodMillis = periodMillis;
+      this.expectedDurationMillis = expectedDurationMillis;
+      expectedDurationNanos = MILLISECONDS.toNanos(expectedDurationMillis);
+    }
+
+    private void recordCollection(long durationNanos) {
+      lastCollectionNanos = durationNanos;
+      if (durationNanos > maxCollectionNanos) {
+        maxCollectionNanos = durationNanos;
+      }
+      collectionCount.incrementAndGet();
+      if (durationNanos > expectedDurationNanos) {
+        overrunCount.incrementAndGet();
+        if (!alreadyLoggedOverrun) {
+          logger.warn(
+              "Collection of performance counter '{}' took {} ms, which is longer than its"
+                  + " expected duration of {} ms (this message will only be logged once per"
+                  + " counter)",
+              counter.getId(),
+              NANOSECONDS.toMillis(durationNanos),
+              expectedDurationMillis);
+          alreadyLoggedOverrun = true;
+        }
+      }
+    }
+
+    @Override
+    public long getPeriodMillis() {
+      return periodMillis;
+    }
+
+    @Override
+    public long getExpectedDurationMillis() {
+      return expectedDurationMillis;
+    }
+
+    @Override
+    public long getCollectionCount() {
+      return collectionCount.get();
+    }
+
+    @Override
+    public double getLastCollectionMillis() {
+      return lastCollectionNanos / 1_000_000.0;
+    }
+
+    @Override
+    public double getMaxCollectionMillis() {
+      return maxCollectionNanos / 1_000_000.0;
+    }
+
+    @Override
+    public long getOverrunCount() {
+      return overrunCount.get();
+    }
+
+    @Override
+    public long getSkippedCount() {
+      return skippedCount.get();
+    }
+  }
+}
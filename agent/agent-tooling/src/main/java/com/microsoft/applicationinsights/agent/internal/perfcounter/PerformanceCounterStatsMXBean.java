@@ -0,0 +1,45 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+// This class name must end in MXBean (case sensitive)
+@SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+public interface PerformanceCounterStatsMXBean {
+
+  long getPeriodMillis();
+
+  // collections that take longer than this are counted as overruns (but are not interrupted)
+  long getExpectedDurationMillis();
+
+  long getCollectionCount();
+
+  // duration of the most recent collection
+  double getLastCollectionMillis();
+
+  // longest collection since the counter was scheduled
+  double getMaxCollectionMillis();
+
+  long getOverrunCount();
+
+  // number of collections that were skipped because the previous collection was still running
+  long getSkippedCount();
+}
@@ -25,13 +25,15 @@ import com.microsoft.applicationinsights.agent.internal.configuration.Configurat
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAttribute;
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
 import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 public abstract class AgentProcessor {
@@ -58,18 +60,38 @@ public abstract class AgentProcessor {
     return exclude;
   }
 
+  // applies this processor to the span (or log), if it is included and not excluded
+  abstract void process(ProcessedSpan span);
+
+  boolean isIncludedAndNotExcluded(ProcessedSpan span) {
+    boolean isLog = span.isLog();
+    if (include != null && !include.isMatch(span, isLog)) {
+      return false;
+    }
+    return exclude == null || !exclude.isMatch(span, isLog);
+  }
+
   public abstract static class IncludeExclude {
     // Function to compare span with user provided span names or span patterns
-    public abstract boolean isMatch(SpanData span, boolean isLog);
+    abstract boolean isMatch(ProcessedSpan span, boolean isLog);
   }
 
   public static class StrictIncludeExclude extends IncludeExclude {
-    private final List<ProcessorAttribute> attributes;
-    private final List<String> spanNames;
+    // precomputed, since this is checked for every span
+    private final AttributeKey<?>[] attributeKeys;
+    // null elements only require the attribute to be present
+    private final String[] attributeValues;
+    private final Set<String> spanNames;
 
     public StrictIncludeExclude(List<ProcessorAttribute> attributes, List<String> spanNames) {
-      this.attributes = attributes;
-      this.spanNames = spanNames;
+      attributeKeys = new AttributeKey<?>[attributes.size()];
+      attributeValues = new String[attributes.size()];
+      for (int i = 0; i < attributes.size(); i++) {
+        ProcessorAttribute attribute = attributes.get(i);
+        attributeKeys[i] = AttributeKey.stringKey(attribute.key);
+        attributeValues[i] = attribute.value;
+      }
+      this.spanNames = new HashSet<>(spanNames);
     }
 
     public static StrictIncludeExclude create(ProcessorIncludeExclude includeExclude) {
@@ -86,7 +108,7 @@ public abstract class AgentProcessor {
 
     // Function to compare span with user provided span names
     @Override
-    public boolean isMatch(SpanData span, boolean isLog) {
+    boolean isMatch(ProcessedSpan span, boolean isLog) {
       if (isLog) {
         // If user provided spanNames , then donot include log in the include/exclude criteria
         if (!spanNames.isEmpty()) {
@@ -101,19 +123,16 @@ public abstract class AgentProcessor {
     }
 
     // Function to compare span with user provided attributes list
-    private boolean checkAttributes(SpanData span) {
-      for (ProcessorAttribute attribute : attributes) {
+    private boolean checkAttributes(ProcessedSpan span) {
+      for (int i = 0; i < attributeKeys.length; i++) {
         // All of these attributes must match exactly for a match to occur.
-        Object existingAttributeValue =
-            span.getAttributes().get(AttributeKey.stringKey(attribute.key));
-        // to get the string value
-        // existingAttributeValue.toString()
-        // String.valueOf(existingAttributeValue);
+        Object existingAttributeValue = span.get(attributeKeys[i]);
         if (!(existingAttributeValue instanceof String)) {
           // user specified key not found
           return false;
         }
-        if (attribute.value != null && !existingAttributeValue.equals(attribute.value)) {
+        String value = attributeValues[i];
+        if (value != null && !existingAttributeValue.equals(value)) {
           // user specified value doesn't match
           return false;
         }
@@ -125,13 +144,33 @@ public abstract class AgentProcessor {
 
   public static class RegexpIncludeExclude extends IncludeExclude {
 
+    // these can't safely be wrapped in a group and combined with other patterns:
+    // back references (whose group numbers would shift), quoting without an end (which would
+    // quote the closing parenthesis) and comments (which could comment it out)
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|#");
+
+    private final boolean hasSpanPatterns;
+    // all of the span patterns combined into one, so that the span name is only scanned once,
+    // or null if they couldn't be combined
+    @Nullable private final Pattern combinedSpanPattern;
     private final List<Pattern> spanPatterns;
-    private final Map<AttributeKey<?>, Pattern> attributeValuePatterns;
+    // precomputed, since this is checked for every span
+    private final AttributeKey<?>[] attributeKeys;
+    private final Pattern[] attributeValuePatterns;
 
     public RegexpIncludeExclude(
         List<Pattern> spanPatterns, Map<AttributeKey<?>, Pattern> attributeValuePatterns) {
+      hasSpanPatterns = !spanPatterns.isEmpty();
+      combinedSpanPattern = combine(spanPatterns);
       this.spanPatterns = spanPatterns;
-      this.attributeValuePatterns = attributeValuePatterns;
+      attributeKeys = new AttributeKey<?>[attributeValuePatterns.size()];
+      this.attributeValuePatterns = new Pattern[attributeValuePatterns.size()];
+      int i = 0;
+      for (Entry<AttributeKey<?>, Pattern> entry : attributeValuePatterns.entrySet()) {
+        attributeKeys[i] = entry.getKey();
+        this.attributeValuePatterns[i] = entry.getValue();
+        i++;
+      }
     }
 
     public static RegexpIncludeExclude create(ProcessorIncludeExclude includeExclude) {
@@ -155,13 +194,45 @@ public abstract class AgentProcessor {
       return new RegexpIncludeExclude(spanPatterns, attributeKeyValuePatterns);
     }
 
+    // visible for testing
+    @Nullable
+    static Pattern combine(List<Pattern> patterns) {
+      if (patterns.size() == 1) {
+        return patterns.get(0);
+      }
+      if (patterns.isEmpty()) {
+        return null;
+      }
+      StringBuilder sb = new StringBuilder();
+      for (Pattern pattern : patterns) {
+        if (NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+          return null;
+        }
+        if (sb.length() > 0) {
+          sb.append('|');
+        }
+        // the patterns are compiled without flags, and inline flags, e.g. (?i), only apply until
+        // the end of the enclosing group
+        sb.append("(?:").append(pattern.pattern()).append(')');
+      }
+      try {
+        return Pattern.compile(sb.toString());
+      } catch (PatternSyntaxException e) {
+        // e.g. the same named group in more than one of the patterns
+        return null;
+      }
+    }
+
     // Function to compare span attribute value with user provided value
     private static boolean isAttributeValueMatch(String attributeValue, Pattern valuePattern) {
       return valuePattern.matcher(attributeValue).find();
     }
 
-    private static boolean isPatternFound(SpanData span, List<Pattern> patterns) {
-      for (Pattern pattern : patterns) {
+    private boolean isPatternFound(ProcessedSpan span) {
+      if (combinedSpanPattern != null) {
+        return combinedSpanPattern.matcher(span.getName()).find();
+      }
+      for (Pattern pattern : spanPatterns) {
         if (pattern.matcher(span.getName()).find()) {
           // pattern matches the span!!!
           return true;
@@ -173,14 +244,14 @@ public abstract class AgentProcessor {
 
     // Function to compare span/log with user provided span patterns/log patterns
     @Override
-    public boolean isMatch(SpanData span, boolean isLog) {
+    boolean isMatch(ProcessedSpan span, boolean isLog) {
       if (isLog) {
         // If user provided spanNames, then do not include log in the include/exclude criteria
-        if (!spanPatterns.isEmpty()) {
+        if (hasSpanPatterns) {
           return false;
         }
       } else {
-        if (!spanPatterns.isEmpty() && !isPatternFound(span, spanPatterns)) {
+        if (hasSpanPatterns && !isPatternFound(span)) {
           return false;
         }
       }
@@ -188,16 +259,15 @@ public abstract class AgentProcessor {
     }
 
     // Function to compare span with user provided attributes list
-    private boolean checkAttributes(SpanData span) {
-      for (Entry<AttributeKey<?>, Pattern> attributeEntry : attributeValuePatterns.entrySet()) {
+    private boolean checkAttributes(ProcessedSpan span) {
+      for (int i = 0; i < attributeKeys.length; i++) {
         // All of these attributes must match exactly for a match to occur.
-        Object existingAttributeValue = span.getAttributes().get(attributeEntry.getKey());
+        Object existingAttributeValue = span.get(attributeKeys[i]);
         if (!(existingAttributeValue instanceof String)) {
           // user specified key not found
           return false;
         }
-        if (attributeEntry.getValue() != null
-            && !isAttributeValueMatch((String) existingAttributeValue, attributeEntry.getValue())) {
+        if (!isAttributeValueMatch((String) existingAttributeValue, attributeValuePatterns[i])) {
           // user specified value doesn't match
           return false;
         }
@@ -23,10 +23,6 @@ package com.microsoft.applicationinsights.agent.internal.processors;
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
-import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
-import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.List;
 import java.util.regex.Matcher;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -55,152 +51,97 @@ public class AttributeProcessor extends AgentProcessor {
     return new AttributeProcessor(config.actions, normalizedInclude, normalizedExclude);
   }
 
-  // this won't be needed once we update to 0.13.0
-  // see https://github.com/open-telemetry/opentelemetry-java/pull/2284
-  @Nullable
-  public static String getAttribute(Attributes attributes, AttributeKey<String> key) {
-    Object existingValueObj = attributes.get(key);
-    // checking the return type won't be needed once we update to 0.13.0
-    // see https://github.com/open-telemetry/opentelemetry-java/pull/2284
-    if (existingValueObj instanceof String) {
-      return (String) existingValueObj;
+  @Override
+  void process(ProcessedSpan span) {
+    if (!isIncludedAndNotExcluded(span)) {
+      return;
     }
-    return null;
-  }
-
-  // Function to process actions
-  public SpanData processActions(SpanData span) {
-    SpanData updatedSpan = span;
     for (ProcessorAction actionObj : actions) {
-      updatedSpan = processAction(updatedSpan, actionObj);
+      processAction(span, actionObj);
     }
-    return updatedSpan;
   }
 
-  private static SpanData processAction(SpanData span, ProcessorAction actionObj) {
+  private static void processAction(ProcessedSpan span, ProcessorAction actionObj) {
     switch (actionObj.action) {
       case INSERT:
-        return processInsertAction(span, actionObj);
+        processInsertAction(span, actionObj);
+        return;
       case UPDATE:
-        return processUpdateAction(span, actionObj);
+        processUpdateAction(span, actionObj);
+        return;
       case DELETE:
-        return processDeleteAction(span, actionObj);
+        processDeleteAction(span, actionObj);
+        return;
       case HASH:
-        return procesHashAction(span, actionObj);
+        procesHashAction(span, actionObj);
+        return;
       case EXTRACT:
-        return processExtractAction(span, actionObj);
+        processExtractAction(span, actionObj);
+        return;
     }
-    return span;
   }
 
-  private static SpanData processInsertAction(SpanData span, ProcessorAction actionObj) {
-    Attributes existingSpanAttributes = span.getAttributes();
+  private static void processInsertAction(ProcessedSpan span, ProcessorAction actionObj) {
     // Update from existing attribute
     if (actionObj.value != null) {
       // update to new value
-      AttributesBuilder builder = Attributes.builder();
-      builder.put(actionObj.key, actionObj.value);
-      builder.putAll(existingSpanAttributes);
-      return new MySpanData(span, builder.build());
+      span.putIfAbsent(actionObj.key, actionObj.value);
+      return;
     }
-    String fromAttributeValue = getAttribute(existingSpanAttributes, actionObj.fromAttribute);
+    String fromAttributeValue = span.getString(actionObj.fromAttribute);
     if (fromAttributeValue != null) {
-      AttributesBuilder builder = Attributes.builder();
-      builder.put(actionObj.key, fromAttributeValue);
-      builder.putAll(existingSpanAttributes);
-      return new MySpanData(span, builder.build());
+      span.putIfAbsent(actionObj.key, fromAttributeValue);
     }
-    return span;
   }
 
-  private static SpanData processUpdateAction(SpanData span, ProcessorAction actionObj) {
+  private static void processUpdateAction(ProcessedSpan span, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = getAttribute(span.getAttributes(), actionObj.key);
+    String existingValue = span.getString(actionObj.key);
     if (existingValue == null) {
-      return span;
+      return;
     }
     // Update from existing attribute
     if (actionObj.value != null) {
       // update to new value
-      AttributesBuilder builder = span.getAttributes().toBuilder();
-      builder.put(actionObj.key, actionObj.value);
-      return new MySpanData(span, builder.build());
+      span.put(actionObj.key, actionObj.value);
+      return;
     }
-    String fromAttributeValue = getAttribute(span.getAttributes(), actionObj.fromAttribute);
+    String fromAttributeValue = span.getString(actionObj.fromAttribute);
     if (fromAttributeValue != null) {
-      AttributesBuilder builder = span.getAttributes().toBuilder();
-      builder.put(actionObj.key, fromAttributeValue);
-      return new MySpanData(span, builder.build());
+      span.put(actionObj.key, fromAttributeValue);
     }
-    return span;
   }
 
-  private static SpanData processDeleteAction(SpanData span, ProcessorAction actionObj) {
+  private static void processDeleteAction(ProcessedSpan span, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = getAttribute(span.getAttributes(), actionObj.key);
+    String existingValue = span.getString(actionObj.key);
     if (existingValue == null) {
-      return span;
+      return;
     }
-    AttributesBuilder builder = Attributes.builder();
-    span.getAttributes()
-        .forEach(
-            (key, value) -> {
-              if (!key.equals(actionObj.key)) {
-                putIntoBuilder(builder, key, value);
-              }
-            });
-    return new MySpanData(span, builder.build());
+    span.remove(actionObj.key);
   }
 
-  private static SpanData procesHashAction(SpanData span, ProcessorAction actionObj) {
+  private static void procesHashAction(ProcessedSpan span, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = getAttribute(span.getAttributes(), actionObj.key);
+    String existingValue = span.getString(actionObj.key);
     if (existingValue == null) {
-      return span;
+      return;
     }
-    AttributesBuilder builderCopy = span.getAttributes().toBuilder();
-    builderCopy.put(actionObj.key, DigestUtils.sha1Hex(existingValue));
-    return new MySpanData(span, builderCopy.build());
+    span.put(actionObj.key, DigestUtils.sha1Hex(existingValue));
   }
 
-  private static SpanData processExtractAction(SpanData span, ProcessorAction actionObj) {
+  private static void processExtractAction(ProcessedSpan span, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = getAttribute(span.getAttributes(), actionObj.key);
+    String existingValue = span.getString(actionObj.key);
     if (existingValue == null) {
-      return span;
+      return;
     }
     Matcher matcher = actionObj.extractAttribute.pattern.matcher(existingValue);
     if (!matcher.matches()) {
-      return span;
+      return;
     }
-    AttributesBuilder builder = span.getAttributes().toBuilder();
     for (String groupName : actionObj.extractAttribute.groupNames) {
-      builder.put(groupName, matcher.group(groupName));
-    }
-    return new MySpanData(span, builder.build());
-  }
-
-  @SuppressWarnings("unchecked")
-  private static void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
-    switch (key.getType()) {
-      case STRING:
-        builder.put((AttributeKey<String>) key, (String) value);
-        break;
-      case LONG:
-        builder.put((AttributeKey<Long>) key, (Long) value);
-        break;
-      case BOOLEAN:
-        builder.put((AttributeKey<Boolean>) key, (Boolean) value);
-        break;
-      case DOUBLE:
-        builder.put((AttributeKey<Double>) key, (Double) value);
-        break;
-      case STRING_ARRAY:
-      case LONG_ARRAY:
-      case BOOLEAN_ARRAY:
-      case DOUBLE_ARRAY:
-        builder.put((AttributeKey<List<?>>) key, (List<?>) value);
-        break;
+      span.put(groupName, matcher.group(groupName));
     }
   }
 }
@@ -22,30 +22,52 @@
 package com.microsoft.applicationinsights.agent.internal.processors;
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
-import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.IncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.exporter.Exporter;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-public class ExporterWithSpanProcessor implements SpanExporter {
+/**
+ * Applies all of the configured attribute, span and log processors (in the configured order) in a
+ * single pass over each span, instead of chaining one exporter per processor, so that the span
+ * attributes are copied at most once, and a new {@link SpanData} is only created if one of the
+ * processors changed something.
+ */
+public class ExporterWithProcessors implements SpanExporter {
 
   private final SpanExporter delegate;
-  private final SpanProcessor spanProcessor;
+  private final AgentProcessor[] processors;
 
-  // caller should check config.isValid before creating
-  public ExporterWithSpanProcessor(ProcessorConfig config, SpanExporter delegate) {
-    config.validate();
-    spanProcessor = SpanProcessor.create(config);
+  public ExporterWithProcessors(List<ProcessorConfig> configs, SpanExporter delegate) {
+    processors = new AgentProcessor[configs.size()];
+    for (int i = 0; i < configs.size(); i++) {
+      processors[i] = createProcessor(configs.get(i));
+    }
     this.delegate = delegate;
   }
 
+  private static AgentProcessor createProcessor(ProcessorConfig config) {
+    config.validate();
+    switch (config.type) {
+      case ATTRIBUTE:
+        return AttributeProcessor.create(config);
+      case SPAN:
+        return SpanProcessor.create(config);
+      case LOG:
+        return LogProcessor.create(config);
+      default:
+        throw new IllegalStateException("Not an expected ProcessorType: " + config.type);
+    }
+  }
+
   @Override
   public CompletableResultCode export(Collection<SpanData> spans) {
-    // we need to filter attributes before passing on to delegate
-    List<SpanData> copy = new ArrayList<>();
+    List<SpanData> copy = new ArrayList<>(spans.size());
     for (SpanData span : spans) {
       copy.add(process(span));
     }
@@ -53,21 +75,22 @@ public class ExporterWithSpanProcessor implements SpanExporter {
   }
 
   private SpanData process(SpanData span) {
-    if (ProcessorUtil.isSpanOfTypeLog(span)) {
-      return span;
-    }
-    IncludeExclude include = spanProcessor.getInclude();
-    if (include != null && !include.isMatch(span, false)) {
-      // If Not included we can skip further processing
-      return span;
-    }
-    IncludeExclude exclude = spanProcessor.getExclude();
-    if (exclude != null && exclude.isMatch(span, false)) {
-      return span;
+    ProcessedSpan processedSpan = new ProcessedSpan(span);
+    addBackCompatHttpUrl(processedSpan, span.getAttributes());
+    for (AgentProcessor processor : processors) {
+      processor.process(processedSpan);
     }
+    return processedSpan.toSpanData();
+  }
 
-    SpanData updatedSpan = spanProcessor.processFromAttributes(span);
-    return spanProcessor.processToAttributes(updatedSpan);
+  // this is temporary until semantic attributes stabilize and we make breaking change
+  // then can use java.util.functions.Predicate<Attributes>
+  private static void addBackCompatHttpUrl(ProcessedSpan span, Attributes attributes) {
+    if (attributes.get(SemanticAttributes.HTTP_URL) != null) {
+      // already has http.url
+      return;
+    }
+    span.put(SemanticAttributes.HTTP_URL, Exporter.getHttpUrlFromServerSpan(attributes));
   }
 
   @Override
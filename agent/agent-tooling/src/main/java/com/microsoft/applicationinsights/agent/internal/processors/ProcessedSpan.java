@@ -0,0 +1,178 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Mutable view of a span (or log) that is passed through all of the configured processors, so that
+ * its attributes are copied at most once (on the first change), and a new {@link SpanData} is only
+ * created at the end, and only if something changed.
+ */
+final class ProcessedSpan {
+
+  private final SpanData span;
+  private final boolean log;
+
+  private String name;
+  // copy of the span attributes, created on the first change, keyed by attribute name since (same
+  // as with Attributes) a later attribute replaces an earlier one with the same name, even if the
+  // type is different
+  @Nullable private Map<String, Attribute> attributes;
+  private boolean changed;
+
+  ProcessedSpan(SpanData span) {
+    this.span = span;
+    log = ProcessorUtil.isSpanOfTypeLog(span);
+    name = span.getName();
+  }
+
+  boolean isLog() {
+    return log;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  void setName(String name) {
+    if (!name.equals(this.name)) {
+      this.name = name;
+      changed = true;
+    }
+  }
+
+  @Nullable
+  Object get(AttributeKey<?> key) {
+    Map<String, Attribute> attributes = this.attributes;
+    if (attributes == null) {
+      return span.getAttributes().get(key);
+    }
+    Attribute attribute = attributes.get(key.getKey());
+    return attribute != null && attribute.key.equals(key) ? attribute.value : null;
+  }
+
+  // checking the type of the value, since Attributes.get() doesn't guarantee it
+  // see https://github.com/open-telemetry/opentelemetry-java/pull/2284
+  @Nullable
+  String getString(AttributeKey<String> key) {
+    Object value = get(key);
+    return value instanceof String ? (String) value : null;
+  }
+
+  // null values are ignored, same as with AttributesBuilder
+  void put(AttributeKey<String> key, @Nullable String value) {
+    if (value != null) {
+      getAttributesForUpdate().put(key.getKey(), new Attribute(key, value));
+      changed = true;
+    }
+  }
+
+  void put(String key, @Nullable String value) {
+    put(AttributeKey.stringKey(key), value);
+  }
+
+  // only puts the value if there is no attribute with the same name yet
+  void putIfAbsent(AttributeKey<String> key, String value) {
+    if (getAttributesForUpdate().putIfAbsent(key.getKey(), new Attribute(key, value)) == null) {
+      changed = true;
+    }
+  }
+
+  void remove(AttributeKey<?> key) {
+    Map<String, Attribute> attributes = getAttributesForUpdate();
+    Attribute attribute = attributes.get(key.getKey());
+    if (attribute != null && attribute.key.equals(key)) {
+      attributes.remove(key.getKey());
+      changed = true;
+    }
+  }
+
+  SpanData toSpanData() {
+    if (!changed) {
+      return span;
+    }
+    Map<String, Attribute> attributes = this.attributes;
+    if (attributes == null) {
+      return new MySpanData(span, span.getAttributes(), name);
+    }
+    AttributesBuilder builder = Attributes.builder();
+    for (Attribute attribute : attributes.values()) {
+      putIntoBuilder(builder, attribute.key, attribute.value);
+    }
+    return new MySpanData(span, builder.build(), name);
+  }
+
+  private Map<String, Attribute> getAttributesForUpdate() {
+    Map<String, Attribute> attributes = this.attributes;
+    if (attributes == null) {
+      Attributes original = span.getAttributes();
+      Map<String, Attribute> copy = new HashMap<>(original.size() * 2);
+      original.forEach((key, value) -> copy.put(key.getKey(), new Attribute(key, value)));
+      attributes = copy;
+      this.attributes = attributes;
+    }
+    return attributes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
+    switch (key.getType()) {
+      case STRING:
+        builder.put((AttributeKey<String>) key, (String) value);
+        break;
+      case LONG:
+        builder.put((AttributeKey<Long>) key, (Long) value);
+        break;
+      case BOOLEAN:
+        builder.put((AttributeKey<Boolean>) key, (Boolean) value);
+        break;
+      case DOUBLE:
+        builder.put((AttributeKey<Double>) key, (Double) value);
+        break;
+      case STRING_ARRAY:
+      case LONG_ARRAY:
+      case BOOLEAN_ARRAY:
+      case DOUBLE_ARRAY:
+        builder.put((AttributeKey<List<?>>) key, (List<?>) value);
+        break;
+    }
+  }
+
+  private static final class Attribute {
+
+    private final AttributeKey<?> key;
+    private final Object value;
+
+    private Attribute(AttributeKey<?> key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
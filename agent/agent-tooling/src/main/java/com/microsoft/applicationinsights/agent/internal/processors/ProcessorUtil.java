@@ -23,8 +23,6 @@ package com.microsoft.applicationinsights.agent.internal.processors;
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Patterns;
 import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.ArrayList;
 import java.util.List;
@@ -40,8 +38,8 @@ public class ProcessorUtil {
     return isLog != null && isLog;
   }
 
-  public static String applyRule(
-      List<String> groupNamesList, Pattern pattern, String spanName, AttributesBuilder builder) {
+  static String applyRule(
+      List<String> groupNamesList, Pattern pattern, String spanName, ProcessedSpan span) {
     if (groupNamesList.isEmpty()) {
       return spanName;
     }
@@ -57,7 +55,7 @@ public class ProcessorUtil {
         sb.append("{");
         sb.append(groupNamesList.get(i - 1));
         // add attribute key=groupNames.get(i-1), value=matcher.group(i)
-        builder.put(groupNamesList.get(i - 1), matcher.group(i));
+        span.put(groupNamesList.get(i - 1), matcher.group(i));
         sb.append("}");
         innerLastEnd = matcher.end(i);
       }
@@ -77,63 +75,18 @@ public class ProcessorUtil {
     return groupNamesList;
   }
 
-  public static boolean spanHasAllFromAttributeKeys(
-      SpanData span, List<AttributeKey<?>> fromAttributes) {
+  static boolean spanHasAllFromAttributeKeys(
+      ProcessedSpan span, List<AttributeKey<?>> fromAttributes) {
     if (fromAttributes.isEmpty()) {
       return false;
     }
-    Attributes existingSpanAttributes = span.getAttributes();
     for (AttributeKey<?> attributeKey : fromAttributes) {
-      if (existingSpanAttributes.get(attributeKey) == null) {
+      if (span.get(attributeKey) == null) {
         return false;
       }
     }
     return true;
   }
 
-  // fromAttributes represents the attribute keys to pull the values from to generate the new span
-  // name.
-  // TODO (kryalama) this looks unused, but also there are similar methods under SpanProcessor and
-  //  LogProcessor
-  public static SpanData processFromAttributes(
-      SpanData span, List<AttributeKey<?>> fromAttributes, String separator) {
-    if (spanHasAllFromAttributeKeys(span, fromAttributes)) {
-      StringBuilder updatedSpanBuffer = new StringBuilder();
-      Attributes existingSpanAttributes = span.getAttributes();
-      for (AttributeKey<?> attributeKey : fromAttributes) {
-        updatedSpanBuffer.append(existingSpanAttributes.get(attributeKey));
-        updatedSpanBuffer.append(separator);
-      }
-      // Removing the last appended separator
-      if (separator.length() > 0) {
-        updatedSpanBuffer.setLength(updatedSpanBuffer.length() - separator.length());
-      }
-      return new MySpanData(span, span.getAttributes(), updatedSpanBuffer.toString());
-    }
-    return span;
-  }
-
-  // The following function extracts attributes from span name and replaces extracted parts with
-  // attribute names
-  // TODO (kryalama) this looks unused, but also there are similar methods under SpanProcessor and
-  //  LogProcessor
-  public static SpanData processToAttributes(
-      SpanData span, List<Pattern> toAttributeRulePatterns, List<List<String>> groupNames) {
-    if (toAttributeRulePatterns.isEmpty()) {
-      return span;
-    }
-
-    String spanName = span.getName();
-    // copy existing attributes.
-    // According to Collector docs, The matched portion
-    // in the span name is replaced by extracted attribute name. If the attributes exist
-    // they will be overwritten. Need a way to optimize this.
-    AttributesBuilder builder = span.getAttributes().toBuilder();
-    for (int i = 0; i < groupNames.size(); i++) {
-      spanName = applyRule(groupNames.get(i), toAttributeRulePatterns.get(i), spanName, builder);
-    }
-    return new MySpanData(span, builder.build(), spanName);
-  }
-
   private ProcessorUtil() {}
 }
@@ -27,9 +27,6 @@ import static com.microsoft.applicationinsights.agent.internal.processors.Proces
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
 import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
-import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -87,40 +84,45 @@ public class SpanProcessor extends AgentProcessor {
         separator);
   }
 
+  @Override
+  void process(ProcessedSpan span) {
+    if (span.isLog() || !isIncludedAndNotExcluded(span)) {
+      return;
+    }
+    processFromAttributes(span);
+    processToAttributes(span);
+  }
+
   // fromAttributes represents the attribute keys to pull the values from to generate the new span
   // name.
-  public SpanData processFromAttributes(SpanData span) {
+  private void processFromAttributes(ProcessedSpan span) {
     if (spanHasAllFromAttributeKeys(span, fromAttributes)) {
       StringBuilder updatedSpanBuffer = new StringBuilder();
-      Attributes existingSpanAttributes = span.getAttributes();
       for (AttributeKey<?> attributeKey : fromAttributes) {
-        updatedSpanBuffer.append(existingSpanAttributes.get(attributeKey));
+        updatedSpanBuffer.append(span.get(attributeKey));
         updatedSpanBuffer.append(separator);
       }
       // Removing the last appended separator
       if (separator.length() > 0) {
         updatedSpanBuffer.setLength(updatedSpanBuffer.length() - separator.length());
       }
-      return new MySpanData(span, span.getAttributes(), updatedSpanBuffer.toString());
+      span.setName(updatedSpanBuffer.toString());
     }
-    return span;
   }
 
   // The following function extracts attributes from span name and replaces extracted parts with
   // attribute names
-  public SpanData processToAttributes(SpanData span) {
+  private void processToAttributes(ProcessedSpan span) {
     if (toAttributeRulePatterns.isEmpty()) {
-      return span;
+      return;
     }
     String spanName = span.getName();
-    // copy existing attributes.
     // According to Collector docs, The matched portion
     // in the span name is replaced by extracted attribute name. If the attributes exist
-    // they will be overwritten. Need a way to optimize this.
-    AttributesBuilder builder = span.getAttributes().toBuilder();
+    // they will be overwritten.
     for (int i = 0; i < groupNames.size(); i++) {
-      spanName = applyRule(groupNames.get(i), toAttributeRulePatterns.get(i), spanName, builder);
+      spanName = applyRule(groupNames.get(i), toAttributeRulePatterns.get(i), spanName, span);
     }
-    return new MySpanData(span, builder.build(), spanName);
+    span.setName(spanName);
   }
 }
@@ -44,13 +44,13 @@ public enum QuickPulse {
   // can cause slowness during startup in some environments
   @Deprecated
   public void initialize() {
-    initialize(TelemetryClient.getActive());
+    initialize(TelemetryClient.getActive(), false);
   }
 
-  public void initialize(TelemetryClient telemetryClient) {
+  public void initialize(TelemetryClient telemetryClient, boolean durationPercentiles) {
     CountDownLatch latch = new CountDownLatch(1);
     Executors.newSingleThreadExecutor(ThreadPoolUtils.createDaemonThreadFactory(QuickPulse.class))
-        .execute(() -> initializeSync(latch, telemetryClient));
+        .execute(() -> initializeSync(latch, telemetryClient, durationPercentiles));
     // don't return until initialization thread has INSTANCE lock
     try {
       latch.await();
@@ -59,7 +59,8 @@ public enum QuickPulse {
     }
   }
 
-  private void initializeSync(CountDownLatch latch, TelemetryClient telemetryClient) {
+  private void initializeSync(
+      CountDownLatch latch, TelemetryClient telemetryClient, boolean durationPercentiles) {
     if (initialized) {
       latch.countDown();
     } else {
@@ -90,7 +91,12 @@ public enum QuickPulse {
                   httpPipeline, telemetryClient, machineName, instanceName, quickPulseId);
           QuickPulseDataFetcher quickPulseDataFetcher =
               new QuickPulseDataFetcher(
-                  sendQueue, telemetryClient, machineName, instanceName, quickPulseId);
+                  sendQueue,
+                  telemetryClient,
+                  machineName,
+                  instanceName,
+                  quickPulseId,
+                  durationPercentiles);
 
           QuickPulseCoordinatorInitData coordinatorInitData =
               new QuickPulseCoordinatorInitDataBuilder()
@@ -41,24 +41,31 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.LoggerFactory;
 
 public enum QuickPulseDataCollector {
   INSTANCE;
 
-  private TelemetryClient telemetryClient;
+  private volatile TelemetryClient telemetryClient;
 
   static class FinalCounters {
-    public final int exceptions;
+    public final long exceptions;
     public final long requests;
     public final double requestsDuration;
-    public final int unsuccessfulRequests;
+    public final long unsuccessfulRequests;
+    public final long requestsDurationP50;
+    public final long requestsDurationP95;
+    public final long requestsDurationP99;
     public final long rdds;
     public final double rddsDuration;
-    public final int unsuccessfulRdds;
+    public final long unsuccessfulRdds;
+    public final long rddsDurationP50;
+    public final long rddsDurationP95;
+    public final long rddsDurationP99;
     public final long memoryCommitted;
     public final double cpuUsage;
     public final List<QuickPulseDocument> documentList = new ArrayList<>();
@@ -82,58 +89,124 @@ public enum QuickPulseDataCollector {
       } else {
         cpuUsage = -1;
       }
-      exceptions = currentCounters.exceptions.get();
-
-      CountAndDuration countAndDuration =
-          Counters.decodeCountAndDuration(currentCounters.requestsAndDurations.get());
-      requests = countAndDuration.count;
-      this.requestsDuration = countAndDuration.duration;
-      this.unsuccessfulRequests = currentCounters.unsuccessfulRequests.get();
-
-      countAndDuration = Counters.decodeCountAndDuration(currentCounters.rddsAndDuations.get());
-      this.rdds = countAndDuration.count;
-      this.rddsDuration = countAndDuration.duration;
-      this.unsuccessfulRdds = currentCounters.unsuccessfulRdds.get();
-      synchronized (currentCounters.documentList) {
-        this.documentList.addAll(currentCounters.documentList);
+      exceptions = currentCounters.exceptions.sum();
+
+      requests = currentCounters.requests.sum();
+      requestsDuration = currentCounters.requestsDuration.sum();
+      unsuccessfulRequests = currentCounters.unsuccessfulRequests.sum();
+      requestsDurationP50 = currentCounters.requestsHistogram.percentile(50);
+      requestsDurationP95 = currentCounters.requestsHistogram.percentile(95);
+      requestsDurationP99 = currentCounters.requestsHistogram.percentile(99);
+
+      rdds = currentCounters.rdds.sum();
+      rddsDuration = currentCounters.rddsDuration.sum();
+      unsuccessfulRdds = currentCounters.unsuccessfulRdds.sum();
+      rddsDurationP50 = currentCounters.rddsHistogram.percentile(50);
+      rddsDurationP95 = currentCounters.rddsHistogram.percentile(95);
+      rddsDurationP99 = currentCounters.rddsHistogram.percentile(99);
+
+      // the documents are built here (on the sending thread) instead of when the telemetry is added
+      // (on the application threads)
+      int documentCount =
+          Math.min(currentCounters.documentDataCount.get(), Counters.MAX_DOCUMENTS_SIZE);
+      for (int i = 0; i < documentCount; i++) {
+        MonitorDomain data = currentCounters.documentData.get(i);
+        // null if the slot was reserved, but the telemetry hadn't been stored yet
+        if (data != null) {
+          documentList.add(createDocument(data));
+        }
       }
     }
   }
 
-  static class CountAndDuration {
-    public final long count;
-    public final long duration;
-
-    private CountAndDuration(long count, long duration) {
-      this.count = count;
-      this.duration = duration;
-    }
-  }
-
-  static class Counters {
-    private static final long MAX_COUNT = 524287L;
-    private static final long MAX_DURATION = 17592186044415L;
-    private static final int MAX_DOCUMENTS_SIZE = 1000;
+  // fixed-bucket histogram of durations in milliseconds, so that percentiles can be reported
+  // without keeping the individual durations around, and without any contention beyond that of
+  // the LongAdder for the bucket
+  static class LatencyHistogram {
+    // inclusive upper bounds of the buckets, the last bucket holds everything above the last bound
+    static final long[] BUCKET_BOUNDS = {
+      1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000
+    };
 
-    public final AtomicInteger exceptions = new AtomicInteger(0);
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
 
-    final AtomicLong requestsAndDurations = new AtomicLong(0);
-    final AtomicInteger unsuccessfulRequests = new AtomicInteger(0);
+    LatencyHistogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
 
-    final AtomicLong rddsAndDuations = new AtomicLong(0);
-    final AtomicInteger unsuccessfulRdds = new AtomicInteger(0);
-    final List<QuickPulseDocument> documentList = new ArrayList<>();
+    void record(long durationMillis, int count) {
+      buckets[bucketIndex(durationMillis)].add(count);
+    }
 
-    static long encodeCountAndDuration(long count, long duration) {
-      if (count > MAX_COUNT || duration > MAX_DURATION) {
+    // returns the upper bound of the bucket that the given percentile falls into,
+    // or 0 if nothing has been recorded
+    long percentile(double percentile) {
+      long[] counts = new long[buckets.length];
+      long total = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        counts[i] = buckets[i].sum();
+        total += counts[i];
+      }
+      if (total == 0) {
         return 0;
       }
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long cumulative = 0;
+      for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= rank) {
+          return BUCKET_BOUNDS[i];
+        }
+      }
+      // the overflow bucket has no upper bound, so the last bound is the best that can be reported
+      return BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1];
+    }
 
-      return (count << 44) + duration;
+    private static int bucketIndex(long durationMillis) {
+      // the bounds are few enough that a linear scan beats a binary search
+      for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+        if (durationMillis <= BUCKET_BOUNDS[i]) {
+          return i;
+        }
+      }
+      return BUCKET_BOUNDS.length;
     }
+  }
+
+  static class Counters {
+    private static final int MAX_DOCUMENTS_SIZE = 1000;
 
-    static CountAndDuration decodeCountAndDuration(long countAndDuration) {
-      return new CountAndDuration(countAndDuration >> 44, countAndDuration & MAX_DURATION);
+    // LongAdder instead of AtomicLong since these are incremented from all of the application
+    // threads, and are only read once per interval
+    final LongAdder exceptions = new LongAdder();
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder requestsDuration = new LongAdder();
+    final LongAdder unsuccessfulRequests = new LongAdder();
+    final LatencyHistogram requestsHistogram = new LatencyHistogram();
+
+    final LongAdder rdds = new LongAdder();
+    final LongAdder rddsDuration = new LongAdder();
+    final LongAdder unsuccessfulRdds = new LongAdder();
+    final LatencyHistogram rddsHistogram = new LatencyHistogram();
+
+    // the telemetry that documents are built from, bounded and lock-free since this is written to
+    // from the application threads
+    final AtomicReferenceArray<MonitorDomain> documentData =
+        new AtomicReferenceArray<>(MAX_DOCUMENTS_SIZE);
+    final AtomicInteger documentDataCount = new AtomicInteger(0);
+
+    void addDocumentData(MonitorDomain data) {
+      // checking first, so that the count doesn't keep growing once the buffer is full
+      if (documentDataCount.get() >= MAX_DOCUMENTS_SIZE) {
+        return;
+      }
+      int index = documentDataCount.getAndIncrement();
+      if (index < MAX_DOCUMENTS_SIZE) {
+        documentData.set(index, data);
+      }
     }
   }
 
@@ -207,12 +280,13 @@ public enum QuickPulseDataCollector {
   }
 
   public void add(TelemetryItem telemetryItem) {
+    TelemetryClient telemetryClient = this.telemetryClient;
     if (telemetryClient == null || quickPulseStatus != QuickPulseStatus.QP_IS_ON) {
       // quick pulse is not enabled or quick pulse data sender is not enabled
       return;
     }
 
-    if (!telemetryItem.getInstrumentationKey().equals(getInstrumentationKey())) {
+    if (!telemetryItem.getInstrumentationKey().equals(telemetryClient.getInstrumentationKey())) {
       return;
     }
 
@@ -234,21 +308,23 @@ public enum QuickPulseDataCollector {
     }
   }
 
-  private synchronized String getInstrumentationKey() {
-    return telemetryClient.getInstrumentationKey();
-  }
-
   private void addDependency(RemoteDependencyData telemetry, int itemCount) {
     Counters counters = this.counters.get();
     if (counters == null) {
       return;
     }
-    counters.rddsAndDuations.addAndGet(
-        Counters.encodeCountAndDuration(itemCount, parseDurationToMillis(telemetry.getDuration())));
+    long durationMillis = parseDurationToMillis(telemetry.getDuration());
+    counters.rdds.add(itemCount);
+    counters.rddsDuration.add(durationMillis);
+    counters.rddsHistogram.record(durationMillis, itemCount);
     Boolean success = telemetry.isSuccess();
     if (success != null && !success) { // success should not be null
-      counters.unsuccessfulRdds.incrementAndGet();
+      counters.unsuccessfulRdds.increment();
     }
+    counters.addDocumentData(telemetry);
+  }
+
+  private static QuickPulseDocument createDependencyDocument(RemoteDependencyData telemetry) {
     QuickPulseDependencyDocument quickPulseDependencyDocument = new QuickPulseDependencyDocument();
     quickPulseDependencyDocument.setDocumentType("RemoteDependency");
     quickPulseDependencyDocument.setType("DependencyTelemetryDocument");
@@ -264,11 +340,7 @@ public enum QuickPulseDataCollector {
     quickPulseDependencyDocument.setDependencyTypeName(telemetry.getType());
     quickPulseDependencyDocument.setProperties(
         aggregateProperties(telemetry.getProperties(), telemetry.getMeasurements()));
-    synchronized (counters.documentList) {
-      if (counters.documentList.size() < Counters.MAX_DOCUMENTS_SIZE) {
-        counters.documentList.add(quickPulseDependencyDocument);
-      }
-    }
+    return quickPulseDependencyDocument;
   }
 
   private void addException(TelemetryExceptionData exceptionData, int itemCount) {
@@ -277,7 +349,11 @@ public enum QuickPulseDataCollector {
       return;
     }
 
-    counters.exceptions.addAndGet(itemCount);
+    counters.exceptions.add(itemCount);
+    counters.addDocumentData(exceptionData);
+  }
+
+  private static QuickPulseDocument createExceptionDocument(TelemetryExceptionData exceptionData) {
     QuickPulseExceptionDocument quickPulseExceptionDocument = new QuickPulseExceptionDocument();
     quickPulseExceptionDocument.setDocumentType("Exception");
     quickPulseExceptionDocument.setType("ExceptionTelemetryDocument");
@@ -301,11 +377,7 @@ public enum QuickPulseDataCollector {
       quickPulseExceptionDocument.setExceptionMessage(exceptionList.get(0).getMessage());
       quickPulseExceptionDocument.setExceptionType(exceptionList.get(0).getTypeName());
     }
-    synchronized (counters.documentList) {
-      if (counters.documentList.size() < Counters.MAX_DOCUMENTS_SIZE) {
-        counters.documentList.add(quickPulseExceptionDocument);
-      }
-    }
+    return quickPulseExceptionDocument;
   }
 
   private void addRequest(RequestData requestTelemetry, int itemCount) {
@@ -314,12 +386,17 @@ public enum QuickPulseDataCollector {
       return;
     }
 
-    counters.requestsAndDurations.addAndGet(
-        Counters.encodeCountAndDuration(
-            itemCount, parseDurationToMillis(requestTelemetry.getDuration())));
+    long durationMillis = parseDurationToMillis(requestTelemetry.getDuration());
+    counters.requests.add(itemCount);
+    counters.requestsDuration.add(durationMillis);
+    counters.requestsHistogram.record(durationMillis, itemCount);
     if (!requestTelemetry.isSuccess()) {
-      counters.unsuccessfulRequests.incrementAndGet();
+      counters.unsuccessfulRequests.increment();
     }
+    counters.addDocumentData(requestTelemetry);
+  }
+
+  private static QuickPulseDocument createRequestDocument(RequestData requestTelemetry) {
     QuickPulseRequestDocument quickPulseRequestDocument = new QuickPulseRequestDocument();
     quickPulseRequestDocument.setDocumentType("Request");
     quickPulseRequestDocument.setType("RequestTelemetryDocument");
@@ -331,10 +408,16 @@ public enum QuickPulseDataCollector {
     quickPulseRequestDocument.setOperationName(requestTelemetry.getName());
     quickPulseRequestDocument.setProperties(
         aggregateProperties(requestTelemetry.getProperties(), requestTelemetry.getMeasurements()));
-    synchronized (counters.documentList) {
-      if (counters.documentList.size() < Counters.MAX_DOCUMENTS_SIZE) {
-        counters.documentList.add(quickPulseRequestDocument);
-      }
+    return quickPulseRequestDocument;
+  }
+
+  private static QuickPulseDocument createDocument(MonitorDomain data) {
+    if (data instanceof RequestData) {
+      return createRequestDocument((RequestData) data);
+    } else if (data instanceof RemoteDependencyData) {
+      return createDependencyDocument((RemoteDependencyData) data);
+    } else {
+      return createExceptionDocument((TelemetryExceptionData) data);
     }
   }
 
@@ -59,6 +59,7 @@ class QuickPulseDataFetcher {
   private final String instanceName;
   private final String machineName;
   private final String quickPulseId;
+  private final boolean durationPercentiles;
 
   public QuickPulseDataFetcher(
       ArrayBlockingQueue<HttpRequest> sendQueue,
@@ -66,11 +67,22 @@ class QuickPulseDataFetcher {
       String machineName,
       String instanceName,
       String quickPulseId) {
+    this(sendQueue, telemetryClient, machineName, instanceName, quickPulseId, false);
+  }
+
+  public QuickPulseDataFetcher(
+      ArrayBlockingQueue<HttpRequest> sendQueue,
+      TelemetryClient telemetryClient,
+      String machineName,
+      String instanceName,
+      String quickPulseId,
+      boolean durationPercentiles) {
     this.sendQueue = sendQueue;
     this.telemetryClient = telemetryClient;
     this.instanceName = instanceName;
     this.machineName = machineName;
     this.quickPulseId = quickPulseId;
+    this.durationPercentiles = durationPercentiles;
     sdkVersion = getCurrentSdkVersion();
     if (logger.isTraceEnabled()) {
       logger.trace(
@@ -151,7 +163,8 @@ class QuickPulseDataFetcher {
     return mapper.writeValueAsString(envelopes);
   }
 
-  private static List<QuickPulseMetrics> addMetricsToQuickPulseEnvelope(
+  // visible for testing
+  List<QuickPulseMetrics> addMetricsToQuickPulseEnvelope(
       QuickPulseDataCollector.FinalCounters counters) {
     List<QuickPulseMetrics> metricsList = new ArrayList<>();
     metricsList.add(
@@ -161,6 +174,12 @@ class QuickPulseDataFetcher {
             "\\ApplicationInsights\\Request Duration",
             (long) counters.requestsDuration,
             (int) counters.requests));
+    addDurationPercentiles(
+        metricsList,
+        "\\ApplicationInsights\\Request Duration",
+        counters.requestsDurationP50,
+        counters.requestsDurationP95,
+        counters.requestsDurationP99);
     metricsList.add(
         new QuickPulseMetrics(
             "\\ApplicationInsights\\Requests Failed/Sec", counters.unsuccessfulRequests, 1));
@@ -176,6 +195,12 @@ class QuickPulseDataFetcher {
             "\\ApplicationInsights\\Dependency Call Duration",
             (long) counters.rddsDuration,
             (int) counters.rdds));
+    addDurationPercentiles(
+        metricsList,
+        "\\ApplicationInsights\\Dependency Call Duration",
+        counters.rddsDurationP50,
+        counters.rddsDurationP95,
+        counters.rddsDurationP99);
     metricsList.add(
         new QuickPulseMetrics(
             "\\ApplicationInsights\\Dependency Calls Failed/Sec", counters.unsuccessfulRdds, 1));
@@ -194,4 +219,15 @@ class QuickPulseDataFetcher {
 
     return metricsList;
   }
+
+  private void addDurationPercentiles(
+      List<QuickPulseMetrics> metricsList, String name, long p50, long p95, long p99) {
+    // the live metrics service doesn't know these metric names, so they are only sent on opt-in
+    if (!durationPercentiles) {
+      return;
+    }
+    metricsList.add(new QuickPulseMetrics(name + " P50", p50, 1));
+    metricsList.add(new QuickPulseMetrics(name + " P95", p95, 1));
+    metricsList.add(new QuickPulseMetrics(name + " P99", p99, 1));
+  }
 }
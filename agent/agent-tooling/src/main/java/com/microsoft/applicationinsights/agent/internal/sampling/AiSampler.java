@@ -48,8 +48,10 @@ class AiSampler implements Sampler {
   //
   // failure to follow this pattern can result in unexpected / incorrect computation of values in
   // the portal
-  private final double defaultSamplingPercentage;
-  private final SamplingResult recordAndSampleAndAddTraceStateIfMissing;
+  private final SamplingPercentage defaultSamplingPercentage;
+  // the result for the most recent default sampling percentage (which only changes when it is
+  // rate limited)
+  private volatile DefaultResult defaultResult;
 
   private final SamplingOverrides samplingOverrides;
 
@@ -67,9 +69,18 @@ class AiSampler implements Sampler {
       double samplingPercentage,
       SamplingOverrides samplingOverrides,
       BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides) {
+    this(
+        SamplingPercentage.fixed(samplingPercentage),
+        samplingOverrides,
+        behaviorIfNoMatchingOverrides);
+  }
+
+  AiSampler(
+      SamplingPercentage samplingPercentage,
+      SamplingOverrides samplingOverrides,
+      BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides) {
     this.defaultSamplingPercentage = samplingPercentage;
-    recordAndSampleAndAddTraceStateIfMissing =
-        SamplingOverrides.getRecordAndSampleAndAddTraceStateIfMissing(samplingPercentage);
+    defaultResult = new DefaultResult(samplingPercentage.getCurrent());
 
     this.samplingOverrides = samplingOverrides;
 
@@ -102,11 +113,16 @@ class AiSampler implements Sampler {
         // this is used for localParentSampled and remoteParentSampled
         // (note: currently sampling percentage portion of trace state is not propagated,
         //        so it will always be missing in the remoteParentSampled case)
-        return recordAndSampleAndAddTraceStateIfMissing;
+        return getDefaultResult(defaultSamplingPercentage.getCurrent())
+            .recordAndSampleAndAddTraceStateIfMissing;
       case USE_DEFAULT_SAMPLING_PERCENTAGE:
         // this is used for root sampler
+        double percentage = defaultSamplingPercentage.get();
         return getSamplingResult(
-            defaultSamplingPercentage, recordAndSampleAndAddTraceStateIfMissing, traceId, name);
+            percentage,
+            getDefaultResult(percentage).recordAndSampleAndAddTraceStateIfMissing,
+            traceId,
+            name);
     }
     throw new IllegalStateException(
         "Unexpected BehaviorIfNoMatchingOverrides: " + behaviorIfNoMatchingOverrides);
@@ -129,10 +145,30 @@ class AiSampler implements Sampler {
     return sampledSamplingResult;
   }
 
+  private DefaultResult getDefaultResult(double percentage) {
+    DefaultResult result = defaultResult;
+    if (result.percentage != percentage) {
+      result = new DefaultResult(percentage);
+      defaultResult = result;
+    }
+    return result;
+  }
+
   @Override
   public String getDescription() {
     return "ApplicationInsights-specific trace id based sampler, with default sampling percentage: "
-        + defaultSamplingPercentage;
+        + defaultSamplingPercentage.getCurrent();
+  }
+
+  private static class DefaultResult {
+    private final double percentage;
+    private final SamplingResult recordAndSampleAndAddTraceStateIfMissing;
+
+    private DefaultResult(double percentage) {
+      this.percentage = percentage;
+      recordAndSampleAndAddTraceStateIfMissing =
+          SamplingOverrides.getRecordAndSampleAndAddTraceStateIfMissing(percentage);
+    }
   }
 
   enum BehaviorIfNoMatchingOverrides {
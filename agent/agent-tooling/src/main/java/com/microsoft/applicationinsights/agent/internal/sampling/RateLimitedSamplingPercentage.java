@@ -0,0 +1,127 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.microsoft.applicationinsights.agent.internal.httpclient.JmxAccess;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Sampling percentage that is adapted to the rate of new traces, so that roughly the target number
+ * of traces per second are captured.
+ *
+ * <p>New traces are counted in windows of a few seconds. At the end of each window the observed
+ * rate is smoothed with the previous windows, and the percentage is recomputed and rounded down to
+ * the nearest 100/N (which AiSampler requires). Which traces are captured is still decided by the
+ * trace id score, so services with the same effective percentage make the same decisions.
+ *
+ * <p>The window is closed by the first call to {@link #get()} after the window has elapsed, so no
+ * background thread is needed.
+ */
+class RateLimitedSamplingPercentage implements SamplingPercentage, RateLimitedSamplingMXBean {
+
+  private static final String JMX_KEY = "com.microsoft:type=AI-sampling,name=RateLimitedSampling";
+
+  static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  // weight of the most recent window in the smoothed rate
+  private static final double SMOOTHING = 0.5;
+
+  private final double targetPerSecond;
+  private final LongSupplier nanoTime;
+
+  private final LongAdder count = new LongAdder();
+  // the window started WINDOW_NANOS before this
+  private final AtomicLong windowEndNanos;
+
+  // negative until the first window has been closed
+  private volatile double smoothedPerSecond = -1;
+
+  private volatile double percentage = 100;
+
+  RateLimitedSamplingPercentage(double targetPerSecond) {
+    this(targetPerSecond, System::nanoTime);
+  }
+
+  // visible for testing
+  RateLimitedSamplingPercentage(double targetPerSecond, LongSupplier nanoTime) {
+    this.targetPerSecond = targetPerSecond;
+    this.nanoTime = nanoTime;
+    windowEndNanos = new AtomicLong(nanoTime.getAsLong() + WINDOW_NANOS);
+  }
+
+  @Override
+  public double get() {
+    count.increment();
+    long now = nanoTime.getAsLong();
+    long windowEnd = windowEndNanos.get();
+    if (now - windowEnd >= 0 && windowEndNanos.compareAndSet(windowEnd, now + WINDOW_NANOS)) {
+      closeWindow(windowEnd - WINDOW_NANOS, now);
+    }
+    return percentage;
+  }
+
+  @Override
+  public double getCurrent() {
+    return percentage;
+  }
+
+  // only called by the thread that won the race to close the window
+  private void closeWindow(long windowStart, long now) {
+    double elapsedSeconds = (now - windowStart) / (double) TimeUnit.SECONDS.toNanos(1);
+    double perSecond = count.sumThenReset() / elapsedSeconds;
+    double smoothed = smoothedPerSecond;
+    smoothed = smoothed < 0 ? perSecond : SMOOTHING * perSecond + (1 - SMOOTHING) * smoothed;
+    smoothedPerSecond = smoothed;
+    percentage = toPercentage(targetPerSecond, smoothed);
+  }
+
+  // rounded down to the nearest 100/N, so that the target rate is not exceeded
+  static double toPercentage(double targetPerSecond, double perSecond) {
+    if (perSecond <= targetPerSecond) {
+      return 100;
+    }
+    double itemCount = Math.ceil(perSecond / targetPerSecond);
+    return 100 / itemCount;
+  }
+
+  void registerMBean() {
+    JmxAccess.registerWhenSafe(this, JMX_KEY, RateLimitedSamplingPercentage.class);
+  }
+
+  @Override
+  public double getTargetRequestsPerSecond() {
+    return targetPerSecond;
+  }
+
+  @Override
+  public double getObservedRequestsPerSecond() {
+    return Math.max(smoothedPerSecond, 0);
+  }
+
+  @Override
+  public double getEffectivePercentage() {
+    return percentage;
+  }
+}
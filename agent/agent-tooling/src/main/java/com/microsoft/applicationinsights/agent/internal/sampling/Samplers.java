@@ -22,20 +22,29 @@
 package com.microsoft.applicationinsights.agent.internal.sampling;
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
+import java.util.function.DoubleSupplier;
+import javax.annotation.Nullable;
 
 public class Samplers {
 
+  // created only once, so that the observed request rate (and the MBean and statsbeat that report
+  // on it) survive the sampler being rebuilt, e.g. when the RP configuration changes
+  @Nullable private static RateLimitedSamplingPercentage rateLimited;
+
   public static Sampler getSampler(double samplingPercentage, Configuration config) {
     SamplingOverrides samplingOverrides = new SamplingOverrides(config.preview.sampling.overrides);
+    SamplingPercentage defaultSamplingPercentage =
+        getDefaultSamplingPercentage(samplingPercentage, config);
     AiSampler rootSampler =
         new AiSampler(
-            samplingPercentage,
+            defaultSamplingPercentage,
             samplingOverrides,
             AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE);
     AiSampler parentSampledSampler =
         new AiSampler(
-            samplingPercentage,
+            defaultSamplingPercentage,
             samplingOverrides,
             AiSampler.BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE);
     // ignoreRemoteParentNotSampled is currently needed
@@ -60,5 +69,39 @@ public class Samplers {
         .build();
   }
 
+  // the percentage that applies to telemetry outside of any sampling override, which changes over
+  // time when rate limiting is enabled
+  public static DoubleSupplier getDefaultSamplingPercentageSupplier(
+      double samplingPercentage, Configuration config) {
+    return getDefaultSamplingPercentage(samplingPercentage, config)::getCurrent;
+  }
+
+  private static SamplingPercentage getDefaultSamplingPercentage(
+      double samplingPercentage, Configuration config) {
+    Double requestsPerSecond = config.preview.sampling.requestsPerSecond;
+    if (requestsPerSecond == null) {
+      return SamplingPercentage.fixed(samplingPercentage);
+    }
+    return getRateLimitedSamplingPercentage(requestsPerSecond);
+  }
+
+  private static synchronized RateLimitedSamplingPercentage getRateLimitedSamplingPercentage(
+      double requestsPerSecond) {
+    if (rateLimited != null) {
+      return rateLimited;
+    }
+    RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(requestsPerSecond);
+    percentage.registerMBean();
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    if (telemetryClient != null) {
+      telemetryClient
+          .getStatsbeatModule()
+          .getSamplingStatsbeat()
+          .setEffectivePercentageSupplier(percentage::getCurrent);
+    }
+    rateLimited = percentage;
+    return percentage;
+  }
+
   private Samplers() {}
 }
@@ -30,37 +30,60 @@ import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.instrumentation.api.cache.Cache;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 // TODO find a better name for this class (and MatcherGroup too)
+//
+// the overrides are compiled per span kind, so that only the overrides that apply to the span kind
+// are checked
 class SamplingOverrides {
 
-  private final List<MatcherGroup> matcherGroups;
+  // bounded, since the attribute values can be high cardinality (e.g. urls with ids in them)
+  private static final int MAX_CACHED_DECISIONS_PER_SPAN_KIND = 1000;
+
+  private static final int NO_MATCH = -1;
+
+  private final Map<SpanKind, SpanKindOverrides> overridesBySpanKind =
+      new EnumMap<>(SpanKind.class);
 
   SamplingOverrides(List<SamplingOverride> overrides) {
-    matcherGroups = new ArrayList<>();
+    List<MatcherGroup> matcherGroups = new ArrayList<>();
     for (SamplingOverride override : overrides) {
       matcherGroups.add(new MatcherGroup(override));
     }
+    for (SpanKind spanKind : SpanKind.values()) {
+      List<MatcherGroup> applicable = new ArrayList<>();
+      for (MatcherGroup matcherGroup : matcherGroups) {
+        if (matcherGroup.spanKind == null || matcherGroup.spanKind == spanKind) {
+          applicable.add(matcherGroup);
+        }
+      }
+      if (!applicable.isEmpty()) {
+        overridesBySpanKind.put(spanKind, new SpanKindOverrides(applicable));
+      }
+    }
   }
 
   @Nullable
   MatcherGroup getOverride(SpanKind spanKind, Attributes attributes) {
-    LazyHttpUrl lazyHttpUrl = new LazyHttpUrl(attributes);
-    for (MatcherGroup matcherGroups : matcherGroups) {
-      if (matcherGroups.matches(spanKind, attributes, lazyHttpUrl)) {
-        return matcherGroups;
-      }
+    SpanKindOverrides spanKindOverrides = overridesBySpanKind.get(spanKind);
+    if (spanKindOverrides == null) {
+      return null;
     }
-    return null;
+    return spanKindOverrides.getOverride(attributes);
   }
 
   static SamplingResult getRecordAndSampleAndOverwriteTraceState(double samplingPercentage) {
@@ -83,7 +106,7 @@ class SamplingOverrides {
   //  * 0.001
   //  * 0.000001
   // 5 digit of precision, and remove any trailing zeros beyond the decimal point
-  private static String toRoundedString(double percentage) {
+  static String toRoundedString(double percentage) {
     BigDecimal bigDecimal = new BigDecimal(percentage);
     bigDecimal = bigDecimal.round(new MathContext(5));
     String formatted = bigDecimal.toString();
@@ -145,16 +168,13 @@ class SamplingOverrides {
 
   static class MatcherGroup {
     @Nullable private final SpanKind spanKind;
-    private final List<TempPredicate> predicates;
+    private final List<SamplingOverrideAttribute> attributes;
     private final double percentage;
     private final SamplingResult recordAndSampleAndOverwriteTraceState;
 
     private MatcherGroup(SamplingOverride override) {
       spanKind = override.spanKind != null ? override.spanKind.otelSpanKind : null;
-      predicates = new ArrayList<>();
-      for (SamplingOverrideAttribute attribute : override.attributes) {
-        predicates.add(toPredicate(attribute));
-      }
+      attributes = override.attributes;
       percentage = override.percentage;
       recordAndSampleAndOverwriteTraceState =
           SamplingOverrides.getRecordAndSampleAndOverwriteTraceState(percentage);
@@ -167,109 +187,207 @@ class SamplingOverrides {
     SamplingResult getRecordAndSampleAndOverwriteTraceState() {
       return recordAndSampleAndOverwriteTraceState;
     }
+  }
+
+  // the overrides that apply to a single span kind, in configuration order (first match wins)
+  private static class SpanKindOverrides {
+    private final MatcherGroup[] matcherGroups;
+    // the predicates of each matcher group, with the regular expressions last so that they are
+    // only evaluated when all of the cheaper predicates of the group have already matched
+    private final ValuePredicate[][] predicates;
+    // all of the attributes referenced by the predicates
+    private final List<AttributeKey<String>> keys;
+    private final int httpUrlIndex;
+    // keyed by the values of the referenced attributes, only used when there are regular
+    // expressions to evaluate, since otherwise evaluating the predicates is cheaper than the lookup
+    @Nullable private final Cache<DecisionKey, Integer> decisions;
+
+    private SpanKindOverrides(List<MatcherGroup> matcherGroups) {
+      this.matcherGroups = matcherGroups.toArray(new MatcherGroup[0]);
+      predicates = new ValuePredicate[matcherGroups.size()][];
+      Map<String, Integer> keyIndexes = new LinkedHashMap<>();
+      boolean hasRegexp = false;
+      for (int i = 0; i < matcherGroups.size(); i++) {
+        List<ValuePredicate> groupPredicates = new ArrayList<>();
+        List<ValuePredicate> regexpPredicates = new ArrayList<>();
+        for (SamplingOverrideAttribute attribute : matcherGroups.get(i).attributes) {
+          Integer index = keyIndexes.get(attribute.key);
+          if (index == null) {
+            index = keyIndexes.size();
+            keyIndexes.put(attribute.key, index);
+          }
+          if (attribute.matchType == MatchType.STRICT) {
+            groupPredicates.add(new StrictMatcher(index, attribute.value));
+          } else if (attribute.matchType == MatchType.REGEXP) {
+            regexpPredicates.add(new RegexpMatcher(index, attribute.value));
+            hasRegexp = true;
+          } else if (attribute.matchType == null) {
+            groupPredicates.add(new KeyOnlyMatcher(index));
+          } else {
+            throw new IllegalStateException("Unexpected match type: " + attribute.matchType);
+          }
+        }
+        groupPredicates.addAll(regexpPredicates);
+        predicates[i] = groupPredicates.toArray(new ValuePredicate[0]);
+      }
+      keys = new ArrayList<>();
+      for (String key : keyIndexes.keySet()) {
+        keys.add(AttributeKey.stringKey(key));
+      }
+      Integer httpUrlIndex = keyIndexes.get(SemanticAttributes.HTTP_URL.getKey());
+      this.httpUrlIndex = httpUrlIndex == null ? -1 : httpUrlIndex;
+      decisions = hasRegexp ? Cache.bounded(MAX_CACHED_DECISIONS_PER_SPAN_KIND) : null;
+    }
 
-    private boolean matches(SpanKind spanKind, Attributes attributes, LazyHttpUrl lazyHttpUrl) {
-      if (this.spanKind != null && !this.spanKind.equals(spanKind)) {
-        return false;
+    @Nullable
+    private MatcherGroup getOverride(Attributes attributes) {
+      int index;
+      if (decisions == null) {
+        index = findMatch(new LazyAttributeValues(attributes, keys, httpUrlIndex));
+      } else {
+        // all of the values are needed up front, since they are the cache key
+        String[] values = new String[keys.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = attributes.get(keys.get(i));
+        }
+        if (httpUrlIndex != -1 && values[httpUrlIndex] == null) {
+          // this is temporary until semantic attributes stabilize and we make breaking change
+          values[httpUrlIndex] = Exporter.getHttpUrlFromServerSpan(attributes);
+        }
+        index = decisions.computeIfAbsent(new DecisionKey(values), this::findMatch);
+      }
+      return index == NO_MATCH ? null : matcherGroups[index];
+    }
+
+    private int findMatch(AttributeValues values) {
+      for (int i = 0; i < predicates.length; i++) {
+        if (matches(predicates[i], values)) {
+          return i;
+        }
       }
-      for (TempPredicate predicate : predicates) {
-        if (!predicate.test(attributes, lazyHttpUrl)) {
+      return NO_MATCH;
+    }
+
+    private static boolean matches(ValuePredicate[] predicates, AttributeValues values) {
+      for (ValuePredicate predicate : predicates) {
+        if (!predicate.test(values)) {
           return false;
         }
       }
       return true;
     }
+  }
 
-    private static TempPredicate toPredicate(SamplingOverrideAttribute attribute) {
-      if (attribute.matchType == MatchType.STRICT) {
-        return new StrictMatcher(attribute.key, attribute.value);
-      } else if (attribute.matchType == MatchType.REGEXP) {
-        return new RegexpMatcher(attribute.key, attribute.value);
-      } else if (attribute.matchType == null) {
-        return new KeyOnlyMatcher(attribute.key);
-      } else {
-        throw new IllegalStateException("Unexpected match type: " + attribute.matchType);
+  private static final class DecisionKey implements AttributeValues {
+    private final String[] values;
+    private final int hashCode;
+
+    private DecisionKey(String[] values) {
+      this.values = values;
+      hashCode = Arrays.hashCode(values);
+    }
+
+    @Override
+    @Nullable
+    public String get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      return obj instanceof DecisionKey && Arrays.equals(values, ((DecisionKey) obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  // looks up each value only when a predicate needs it, which (without a cache) is cheaper than
+  // looking up all of them up front, since the first predicates that don't match skip the rest
+  private static final class LazyAttributeValues implements AttributeValues {
+    private final Attributes attributes;
+    private final List<AttributeKey<String>> keys;
+    private final int httpUrlIndex;
+    private boolean httpUrlResolved;
+    @Nullable private String httpUrl;
+
+    private LazyAttributeValues(
+        Attributes attributes, List<AttributeKey<String>> keys, int httpUrlIndex) {
+      this.attributes = attributes;
+      this.keys = keys;
+      this.httpUrlIndex = httpUrlIndex;
+    }
+
+    @Override
+    @Nullable
+    public String get(int index) {
+      String value = attributes.get(keys.get(index));
+      if (value != null || index != httpUrlIndex) {
+        return value;
       }
+      if (!httpUrlResolved) {
+        // this is temporary until semantic attributes stabilize and we make breaking change
+        httpUrl = Exporter.getHttpUrlFromServerSpan(attributes);
+        httpUrlResolved = true;
+      }
+      return httpUrl;
     }
   }
 
-  private static class StrictMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
+  private static class StrictMatcher implements ValuePredicate {
+    private final int index;
     private final String value;
 
-    private StrictMatcher(String key, String value) {
-      this.key = AttributeKey.stringKey(key);
+    private StrictMatcher(int index, String value) {
+      this.index = index;
       this.value = value;
     }
 
     @Override
-    public boolean test(Attributes attributes, LazyHttpUrl lazyHttpUrl) {
-      String val = attributes.get(key);
-      if (val == null && key.getKey().equals(SemanticAttributes.HTTP_URL.getKey())) {
-        val = lazyHttpUrl.get();
-      }
-      return value.equals(val);
+    public boolean test(AttributeValues values) {
+      return value.equals(values.get(index));
     }
   }
 
-  private static class RegexpMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
+  private static class RegexpMatcher implements ValuePredicate {
+    private final int index;
     private final Pattern value;
 
-    private RegexpMatcher(String key, String value) {
-      this.key = AttributeKey.stringKey(key);
+    private RegexpMatcher(int index, String value) {
+      this.index = index;
       this.value = Pattern.compile(value);
     }
 
     @Override
-    public boolean test(Attributes attributes, LazyHttpUrl lazyHttpUrl) {
-      String val = attributes.get(key);
-      if (val == null && key.getKey().equals(SemanticAttributes.HTTP_URL.getKey())) {
-        val = lazyHttpUrl.get();
-      }
+    public boolean test(AttributeValues values) {
+      String val = values.get(index);
       return val != null && value.matcher(val).matches();
     }
   }
 
-  private static class KeyOnlyMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
+  private static class KeyOnlyMatcher implements ValuePredicate {
+    private final int index;
 
-    private KeyOnlyMatcher(String key) {
-      this.key = AttributeKey.stringKey(key);
+    private KeyOnlyMatcher(int index) {
+      this.index = index;
     }
 
     @Override
-    public boolean test(Attributes attributes, LazyHttpUrl lazyHttpUrl) {
-      String val = attributes.get(key);
-      if (val == null && key.getKey().equals(SemanticAttributes.HTTP_URL.getKey())) {
-        val = lazyHttpUrl.get();
-      }
-      return val != null;
+    public boolean test(AttributeValues values) {
+      return values.get(index) != null;
     }
   }
 
-  // this is temporary until semantic attributes stabilize and we make breaking change
-  private static class LazyHttpUrl {
-    private final Attributes attributes;
-    private boolean initialized;
-    @Nullable private String value;
-
-    private LazyHttpUrl(Attributes attributes) {
-      this.attributes = attributes;
-    }
-
-    private String get() {
-      if (!initialized) {
-        value = Exporter.getHttpUrlFromServerSpan(attributes);
-        initialized = true;
-      }
-      return value;
-    }
+  // the values of the attributes referenced by the overrides of a span kind, by index (null for
+  // missing attributes)
+  private interface AttributeValues {
+    @Nullable
+    String get(int index);
   }
 
-  // this is temporary until semantic attributes stabilize and we make breaking change
-  // then can use java.util.functions.Predicate<Attributes>
-  private interface TempPredicate {
-    boolean test(Attributes attributes, LazyHttpUrl lazyHttpUrl);
+  private interface ValuePredicate {
+    boolean test(AttributeValues values);
   }
 }
@@ -0,0 +1,415 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.microsoft.applicationinsights.agent.internal.common.ThreadPoolUtils;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverride;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.TailSampling;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryUtil;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.instrumentation.api.cache.Cache;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.extension.incubator.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Span exporter that holds on to the spans of each trace until its local root span has ended, and
+ * then decides whether to keep or drop the whole trace.
+ *
+ * <p>Traces are always kept when one of their spans has an error, when the local root span took at
+ * least the duration threshold, or when one of their spans matches the configured attributes. Other
+ * traces are kept based on the trace id score (same as regular sampling), so services that tail
+ * sample at the same percentage keep the same traces, and that percentage is multiplied into the
+ * sampling percentage that is sent with each of their spans.
+ *
+ * <p>Traces whose local root span doesn't end within the decision wait are decided without it.
+ * Spans that arrive after their trace has been decided follow the same decision.
+ *
+ * <p>The buffered spans are capped at an estimated size. Once the cap is reached, spans are no
+ * longer buffered, and their trace is decided on arrival instead (which then is mostly head
+ * sampling based on the trace id score), until the buffer drains.
+ */
+public class TailSamplingExporter implements SpanExporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(TailSamplingExporter.class);
+
+  private static final long EXPIRATION_INTERVAL_MILLIS = 1000;
+
+  // bounded, this only needs to cover spans that end shortly after their trace has been decided
+  private static final int MAX_DECIDED_TRACES = 10000;
+
+  // rough (upper bound) estimates of the heap used by the different parts of a span
+  private static final long SPAN_OVERHEAD_BYTES = 400;
+  private static final long EVENT_OVERHEAD_BYTES = 100;
+  private static final long LINK_OVERHEAD_BYTES = 100;
+  private static final long ATTRIBUTE_OVERHEAD_BYTES = 64;
+  private static final long BYTES_PER_CHAR = 2;
+  private static final long BYTES_PER_NON_STRING_VALUE = 16;
+
+  private static final ScheduledExecutorService scheduledExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          ThreadPoolUtils.createDaemonThreadFactory(TailSamplingExporter.class));
+
+  private final SpanExporter delegate;
+  private final double percentage;
+  private final String percentageString;
+  private final long durationThresholdNanos;
+  @Nullable private final SamplingOverrides attributeRule;
+  private final long decisionWaitNanos;
+  private final long maxBufferSizeBytes;
+  private final LongSupplier nanoTime;
+
+  private final Cache<String, Decision> decidedTraces = Cache.bounded(MAX_DECIDED_TRACES);
+
+  private final Object lock = new Object();
+
+  // guarded by lock
+  // insertion ordered, so the traces that have been waiting the longest come first
+  private final Map<String, PendingTrace> pendingTraces = new LinkedHashMap<>();
+  // guarded by lock
+  private long bufferSizeBytes;
+  // guarded by lock
+  private boolean bufferFull;
+
+  @Nullable private volatile ScheduledFuture<?> expirationTask;
+
+  public static TailSamplingExporter create(TailSampling config, SpanExporter delegate) {
+    TailSamplingExporter exporter = new TailSamplingExporter(config, delegate, System::nanoTime);
+    exporter.expirationTask =
+        scheduledExecutor.scheduleWithFixedDelay(
+            exporter::expirePendingTraces,
+            EXPIRATION_INTERVAL_MILLIS,
+            EXPIRATION_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+    return exporter;
+  }
+
+  // visible for testing
+  TailSamplingExporter(TailSampling config, SpanExporter delegate, LongSupplier nanoTime) {
+    this.delegate = delegate;
+    percentage = config.percentage;
+    percentageString = SamplingOverrides.toRoundedString(config.percentage);
+    Long durationThresholdMillis = config.durationThresholdMillis;
+    durationThresholdNanos =
+        durationThresholdMillis == null
+            ? Long.MAX_VALUE
+            : TimeUnit.MILLISECONDS.toNanos(durationThresholdMillis);
+    if (config.attributes.isEmpty()) {
+      attributeRule = null;
+    } else {
+      SamplingOverride override = new SamplingOverride();
+      override.attributes = config.attributes;
+      override.percentage = 100f;
+      attributeRule = new SamplingOverrides(Collections.singletonList(override));
+    }
+    decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.decisionWaitMillis);
+    maxBufferSizeBytes = config.maxBufferSizeMb * 1024L * 1024L;
+    this.nanoTime = nanoTime;
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    List<SpanData> kept = new ArrayList<>();
+    synchronized (lock) {
+      long now = nanoTime.getAsLong();
+      for (SpanData span : spans) {
+        add(span, now, kept);
+      }
+      decidePendingTraces(now, false, kept);
+    }
+    // exporting outside of the lock, so that other threads can keep buffering spans meanwhile
+    return exportKept(kept);
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    List<SpanData> kept = new ArrayList<>();
+    synchronized (lock) {
+      decidePendingTraces(nanoTime.getAsLong(), true, kept);
+    }
+    return CompletableResultCode.ofAll(Arrays.asList(exportKept(kept), delegate.flush()));
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    ScheduledFuture<?> task = expirationTask;
+    if (task != null) {
+      task.cancel(false);
+    }
+    flush();
+    return delegate.shutdown();
+  }
+
+  // visible for testing
+  void expirePendingTraces() {
+    try {
+      List<SpanData> kept = new ArrayList<>();
+      synchronized (lock) {
+        decidePendingTraces(nanoTime.getAsLong(), false, kept);
+      }
+      exportKept(kept);
+    } catch (RuntimeException e) {
+      // catching so that the scheduled task keeps running
+      logger.error(e.getMessage(), e);
+    }
+  }
+
+  // visible for testing
+  long getBufferSizeBytes() {
+    synchronized (lock) {
+      return bufferSizeBytes;
+    }
+  }
+
+  // must be called under lock
+  private void add(SpanData span, long now, List<SpanData> kept) {
+    String traceId = span.getTraceId();
+    Decision decision = decidedTraces.get(traceId);
+    if (decision != null) {
+      addIfKept(span, decision, kept);
+      return;
+    }
+    PendingTrace trace = pendingTraces.get(traceId);
+    boolean pending = trace != null;
+    if (trace == null) {
+      trace = new PendingTrace(now);
+    }
+    boolean localRoot = isLocalRoot(span);
+    if (!trace.keep && matchesRule(span, localRoot)) {
+      trace.keep = true;
+    }
+    long size = localRoot ? 0 : estimateSize(span);
+    if (localRoot || bufferSizeBytes + size > maxBufferSizeBytes) {
+      if (!localRoot && !bufferFull) {
+        bufferFull = true;
+        logger.warn(
+            "tail sampling buffer is full, traces will be sampled without waiting for them to"
+                + " complete until the buffer drains");
+      }
+      if (pending) {
+        pendingTraces.remove(traceId);
+        bufferSizeBytes -= trace.sizeBytes;
+      }
+      trace.spans.add(span);
+      decide(traceId, trace, kept);
+      return;
+    }
+    trace.spans.add(span);
+    trace.sizeBytes += size;
+    bufferSizeBytes += size;
+    if (!pending) {
+      pendingTraces.put(traceId, trace);
+    }
+  }
+
+  // must be called under lock
+  private void decidePendingTraces(long now, boolean all, List<SpanData> kept) {
+    Iterator<Map.Entry<String, PendingTrace>> i = pendingTraces.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<String, PendingTrace> entry = i.next();
+      PendingTrace trace = entry.getValue();
+      if (!all && now - trace.startNanos < decisionWaitNanos) {
+        // the remaining traces started waiting later
+        break;
+      }
+      i.remove();
+      bufferSizeBytes -= trace.sizeBytes;
+      decide(entry.getKey(), trace, kept);
+    }
+    if (bufferFull && bufferSizeBytes < maxBufferSizeBytes / 2) {
+      bufferFull = false;
+    }
+  }
+
+  private void decide(String traceId, PendingTrace trace, List<SpanData> kept) {
+    Decision decision = trace.keep ? Decision.KEEP : getScoreDecision(traceId);
+    decidedTraces.put(traceId, decision);
+    for (SpanData span : trace.spans) {
+      addIfKept(span, decision, kept);
+    }
+  }
+
+  private Decision getScoreDecision(String traceId) {
+    if (percentage == 100) {
+      // optimization, no need to calculate score in this case
+      return Decision.KEEP;
+    }
+    if (percentage == 0) {
+      // optimization, no need to calculate score in this case
+      return Decision.DROP;
+    }
+    if (SamplingScoreGeneratorV2.getSamplingScore(traceId) >= percentage) {
+      return Decision.DROP;
+    }
+    return Decision.KEEP_SAMPLED;
+  }
+
+  private void addIfKept(SpanData span, Decision decision, List<SpanData> kept) {
+    switch (decision) {
+      case KEEP:
+        kept.add(span);
+        return;
+      case KEEP_SAMPLED:
+        kept.add(new SampledSpanData(span, getSamplingPercentageTraceState(span)));
+        return;
+      case DROP:
+        // errors are always kept, even if they end after the rest of their trace was dropped
+        if (isError(span)) {
+          kept.add(span);
+        }
+        return;
+    }
+    throw new IllegalStateException("Unexpected decision: " + decision);
+  }
+
+  private TraceState getSamplingPercentageTraceState(SpanData span) {
+    TraceState traceState = span.getSpanContext().getTraceState();
+    float headPercentage = TelemetryUtil.getSamplingPercentage(traceState, 100, false);
+    String samplingPercentage =
+        headPercentage == 100
+            ? percentageString
+            : SamplingOverrides.toRoundedString(headPercentage * percentage / 100);
+    return traceState.toBuilder()
+        .put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, samplingPercentage)
+        .build();
+  }
+
+  private boolean matchesRule(SpanData span, boolean localRoot) {
+    if (isError(span)) {
+      return true;
+    }
+    long durationNanos = span.getEndEpochNanos() - span.getStartEpochNanos();
+    if (localRoot && durationNanos >= durationThresholdNanos) {
+      return true;
+    }
+    return attributeRule != null
+        && attributeRule.getOverride(span.getKind(), span.getAttributes()) != null;
+  }
+
+  private CompletableResultCode exportKept(List<SpanData> kept) {
+    if (kept.isEmpty()) {
+      return CompletableResultCode.ofSuccess();
+    }
+    return delegate.export(kept);
+  }
+
+  private static boolean isLocalRoot(SpanData span) {
+    SpanContext parentSpanContext = span.getParentSpanContext();
+    return !parentSpanContext.isValid() || parentSpanContext.isRemote();
+  }
+
+  private static boolean isError(SpanData span) {
+    return span.getStatus().getStatusCode() == StatusCode.ERROR;
+  }
+
+  // visible for testing
+  static long estimateSize(SpanData span) {
+    long size = SPAN_OVERHEAD_BYTES + BYTES_PER_CHAR * span.getName().length();
+    size += estimateSize(span.getAttributes());
+    for (EventData event : span.getEvents()) {
+      size += EVENT_OVERHEAD_BYTES + BYTES_PER_CHAR * event.getName().length();
+      size += estimateSize(event.getAttributes());
+    }
+    size += LINK_OVERHEAD_BYTES * span.getLinks().size();
+    return size;
+  }
+
+  private static long estimateSize(Attributes attributes) {
+    long[] size = new long[1];
+    attributes.forEach(
+        (key, value) -> {
+          size[0] += ATTRIBUTE_OVERHEAD_BYTES + BYTES_PER_CHAR * key.getKey().length();
+          if (value instanceof String) {
+            size[0] += BYTES_PER_CHAR * ((String) value).length();
+          } else if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+              size[0] +=
+                  element instanceof String
+                      ? BYTES_PER_CHAR * ((String) element).length()
+                      : BYTES_PER_NON_STRING_VALUE;
+            }
+          } else {
+            size[0] += BYTES_PER_NON_STRING_VALUE;
+          }
+        });
+    return size[0];
+  }
+
+  private enum Decision {
+    // kept by one of the rules, sampling percentage is unchanged
+    KEEP,
+    // kept based on the trace id score, sampling percentage needs to be applied
+    KEEP_SAMPLED,
+    DROP
+  }
+
+  private static class PendingTrace {
+
+    private final long startNanos;
+    private final List<SpanData> spans = new ArrayList<>();
+    private long sizeBytes;
+    private boolean keep;
+
+    private PendingTrace(long startNanos) {
+      this.startNanos = startNanos;
+    }
+  }
+
+  private static class SampledSpanData extends DelegatingSpanData {
+
+    private final SpanContext spanContext;
+
+    private SampledSpanData(SpanData delegate, TraceState traceState) {
+      super(delegate);
+      SpanContext original = delegate.getSpanContext();
+      spanContext =
+          SpanContext.create(
+              original.getTraceId(), original.getSpanId(), original.getTraceFlags(), traceState);
+    }
+
+    @Override
+    public SpanContext getSpanContext() {
+      return spanContext;
+    }
+  }
+}
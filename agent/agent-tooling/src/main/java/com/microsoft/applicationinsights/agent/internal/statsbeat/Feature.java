@@ -53,7 +53,11 @@ enum Feature {
   APACHE_CAMEL_DISABLED(22), // preview instrumentation, apache camel is ON by default in OTEL
   AKKA_DISABLED(23), // preview instrumentation, akka is ON by default in OTEL
   PROPAGATION_DISABLED(24),
-  PLAY_DISABLED(25); // preview instrumentation, play is ON by default in OTEL
+  PLAY_DISABLED(25), // preview instrumentation, play is ON by default in OTEL
+  RATE_LIMITED_SAMPLING(26),
+  TAIL_SAMPLING(27),
+  METRIC_AGGREGATION(28),
+  LIVE_METRICS_DURATION_PERCENTILES(29);
 
   private static final Map<String, Feature> javaVendorFeatureMap;
 
@@ -95,6 +95,18 @@ public class FeatureStatsbeat extends BaseStatsbeat {
     if (!config.preview.legacyRequestIdPropagation.enabled) {
       featureList.add(Feature.LEGACY_PROPAGATION_DISABLED);
     }
+    if (config.preview.sampling.requestsPerSecond != null) {
+      featureList.add(Feature.RATE_LIMITED_SAMPLING);
+    }
+    if (config.preview.tailSampling.enabled) {
+      featureList.add(Feature.TAIL_SAMPLING);
+    }
+    if (config.preview.metricAggregation.enabled) {
+      featureList.add(Feature.METRIC_AGGREGATION);
+    }
+    if (config.preview.liveMetrics.durationPercentiles) {
+      featureList.add(Feature.LIVE_METRICS_DURATION_PERCENTILES);
+    }
 
     // disabled instrumentations
     if (!config.instrumentation.azureSdk.enabled) {
@@ -40,6 +40,7 @@ public class NetworkStatsbeat extends BaseStatsbeat {
   private static final String RETRY_COUNT_METRIC_NAME = "Retry Count";
   private static final String THROTTLE_COUNT_METRIC_NAME = "Throttle Count";
   private static final String EXCEPTION_COUNT_METRIC_NAME = "Exception Count";
+  private static final String IN_FLIGHT_REQUEST_COUNT_METRIC_NAME = "In-flight Request Count";
   private static final String BREEZE_ENDPOINT = "breeze";
 
   private final Object lock = new Object();
@@ -107,6 +108,14 @@ public class NetworkStatsbeat extends BaseStatsbeat {
         ikey, intervalMetrics -> intervalMetrics.exceptionCount.incrementAndGet());
   }
 
+  // reports the peak number of concurrent requests seen during the interval
+  public void recordInFlightRequests(int inFlightRequests, String ikey) {
+    doWithIntervalMetrics(
+        ikey,
+        intervalMetrics ->
+            intervalMetrics.maxInFlightRequests.accumulateAndGet(inFlightRequests, Math::max));
+  }
+
   // only used by tests
   long getRequestSuccessCount(String ikey) {
     synchronized (lock) {
@@ -155,6 +164,14 @@ public class NetworkStatsbeat extends BaseStatsbeat {
     }
   }
 
+  // only used by tests
+  long getMaxInFlightRequests(String ikey) {
+    synchronized (lock) {
+      IntervalMetrics intervalMetrics = instrumentationKeyCounterMap.get(ikey);
+      return intervalMetrics == null ? 0L : intervalMetrics.maxInFlightRequests.get();
+    }
+  }
+
   private void doWithIntervalMetrics(String ikey, Consumer<IntervalMetrics> update) {
     synchronized (lock) {
       update.accept(instrumentationKeyCounterMap.computeIfAbsent(ikey, k -> new IntervalMetrics()));
@@ -210,6 +227,16 @@ public class NetworkStatsbeat extends BaseStatsbeat {
       addCommonProperties(exceptionCountSt, ikey, host);
       telemetryClient.trackStatsbeatAsync(exceptionCountSt);
     }
+
+    if (local.maxInFlightRequests.get() != 0) {
+      TelemetryItem inFlightRequestCountSt =
+          createStatsbeatTelemetry(
+              telemetryClient,
+              IN_FLIGHT_REQUEST_COUNT_METRIC_NAME,
+              local.maxInFlightRequests.get());
+      addCommonProperties(inFlightRequestCountSt, ikey, host);
+      telemetryClient.trackStatsbeatAsync(inFlightRequestCountSt);
+    }
   }
 
   private static void addCommonProperties(TelemetryItem telemetryItem, String ikey, String host) {
@@ -228,6 +255,7 @@ public class NetworkStatsbeat extends BaseStatsbeat {
     private final AtomicLong retryCount = new AtomicLong();
     private final AtomicLong throttlingCount = new AtomicLong();
     private final AtomicLong exceptionCount = new AtomicLong();
+    private final AtomicLong maxInFlightRequests = new AtomicLong();
 
     private double getRequestDurationAvg() {
       double sum = totalRequestDuration.get();
@@ -0,0 +1,57 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.statsbeat;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.function.DoubleSupplier;
+import javax.annotation.Nullable;
+
+// reports the sampling percentage that rate limited sampling has currently settled on
+public class SamplingStatsbeat extends BaseStatsbeat {
+
+  private static final String EFFECTIVE_SAMPLING_PERCENTAGE = "Effective Sampling Percentage";
+
+  // only set when rate limited sampling is configured
+  @Nullable private volatile DoubleSupplier effectivePercentageSupplier;
+
+  SamplingStatsbeat(CustomDimensions customDimensions) {
+    super(customDimensions);
+  }
+
+  @Override
+  protected void send(TelemetryClient telemetryClient) {
+    DoubleSupplier effectivePercentageSupplier = this.effectivePercentageSupplier;
+    if (effectivePercentageSupplier != null) {
+      TelemetryItem telemetryItem =
+          createStatsbeatTelemetry(
+              telemetryClient,
+              EFFECTIVE_SAMPLING_PERCENTAGE,
+              effectivePercentageSupplier.getAsDouble());
+      telemetryClient.trackStatsbeatAsync(telemetryItem);
+    }
+  }
+
+  public void setEffectivePercentageSupplier(DoubleSupplier effectivePercentageSupplier) {
+    this.effectivePercentageSupplier = effectivePercentageSupplier;
+  }
+}
@@ -47,6 +47,7 @@ public class StatsbeatModule {
   private final FeatureStatsbeat featureStatsbeat;
   private final FeatureStatsbeat instrumentationStatsbeat;
   private final NonessentialStatsbeat nonessentialStatsbeat;
+  private final SamplingStatsbeat samplingStatsbeat;
 
   private final AtomicBoolean started = new AtomicBoolean();
 
@@ -57,6 +58,7 @@ public class StatsbeatModule {
     featureStatsbeat = new FeatureStatsbeat(customDimensions, FeatureType.FEATURE);
     instrumentationStatsbeat = new FeatureStatsbeat(customDimensions, FeatureType.INSTRUMENTATION);
     nonessentialStatsbeat = new NonessentialStatsbeat(customDimensions);
+    samplingStatsbeat = new SamplingStatsbeat(customDimensions);
   }
 
   public void start(TelemetryClient telemetryClient, Configuration config) {
@@ -112,6 +114,11 @@ public class StatsbeatModule {
           longIntervalSeconds,
           longIntervalSeconds,
           TimeUnit.SECONDS);
+      scheduledExecutor.scheduleWithFixedDelay(
+          new StatsbeatSender(samplingStatsbeat, telemetryClient),
+          shortIntervalSeconds,
+          shortIntervalSeconds,
+          TimeUnit.SECONDS);
     } else {
       logger.debug("Non-essential Statsbeat is disabled.");
     }
@@ -129,6 +136,10 @@ public class StatsbeatModule {
     return nonessentialStatsbeat;
   }
 
+  public SamplingStatsbeat getSamplingStatsbeat() {
+    return samplingStatsbeat;
+  }
+
   /** Runnable which is responsible for calling the send method to transmit Statsbeat telemetry. */
   private static class StatsbeatSender implements Runnable {
 
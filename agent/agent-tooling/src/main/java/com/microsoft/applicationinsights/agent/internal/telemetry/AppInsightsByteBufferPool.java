@@ -21,31 +21,160 @@
 
 package com.microsoft.applicationinsights.agent.internal.telemetry;
 
+import com.microsoft.applicationinsights.agent.internal.httpclient.JmxAccess;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jctools.queues.MpmcArrayQueue;
 
-class AppInsightsByteBufferPool {
+/**
+ * Pool of byte buffers used for encoding and compressing telemetry.
+ *
+ * <p>Buffers come in a few size classes, so that small batches don't tie up large buffers. The
+ * total number of bytes retained by the pool is bounded, and buffers that are offered once the
+ * budget is used up are left for the garbage collector.
+ *
+ * <p>Buffers for the uncompressed json are always heap buffers (the json writer writes directly
+ * into the backing array), while buffers for the compressed output (which are handed to the http
+ * client) can optionally be direct buffers, so that they can be written to the socket without
+ * another copy.
+ */
+class AppInsightsByteBufferPool implements ByteBufferPoolMXBean {
+
+  private static final String JMX_KEY = "com.microsoft:type=AI-exporter,name=ByteBufferPool";
+
+  static final int[] SIZE_CLASSES = {4096, 16384, 65536};
+  static final int LARGEST_SIZE_CLASS = SIZE_CLASSES[SIZE_CLASSES.length - 1];
+
+  static final long DEFAULT_MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+
+  private final long maxRetainedBytes;
+  private final boolean direct;
+
+  // lock-free freelists, one per size class, for heap and direct buffers
+  private final MpmcArrayQueue<ByteBuffer>[] heapFreelists;
+  private final MpmcArrayQueue<ByteBuffer>[] directFreelists;
+
+  private final AtomicLong retainedBytes = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+
+  AppInsightsByteBufferPool() {
+    this(DEFAULT_MAX_RETAINED_BYTES, false);
+  }
 
-  private static final int BYTE_BUFFER_SIZE = 65536;
-  private static final int MAX_RETAINED = 10;
+  AppInsightsByteBufferPool(long maxRetainedBytes, boolean direct) {
+    this.maxRetainedBytes = maxRetainedBytes;
+    this.direct = direct;
+    heapFreelists = newFreelists(maxRetainedBytes);
+    directFreelists = direct ? newFreelists(maxRetainedBytes) : heapFreelists;
+  }
 
-  private final Queue<ByteBuffer> queue = new ArrayBlockingQueue<>(MAX_RETAINED);
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static MpmcArrayQueue<ByteBuffer>[] newFreelists(long maxRetainedBytes) {
+    MpmcArrayQueue<ByteBuffer>[] freelists = new MpmcArrayQueue[SIZE_CLASSES.length];
+    for (int i = 0; i < SIZE_CLASSES.length; i++) {
+      // each size class could use up the whole budget, the budget itself is enforced separately
+      long capacity = Math.max(2, maxRetainedBytes / SIZE_CLASSES[i]);
+      freelists[i] = new MpmcArrayQueue<>((int) Math.min(capacity, 1 << 16));
+    }
+    return freelists;
+  }
 
+  /** Returns a heap buffer of the largest size class, for writing json into its backing array. */
   ByteBuffer remove() {
-    ByteBuffer byteBuffer = queue.poll();
+    return remove(SIZE_CLASSES.length - 1, heapFreelists, false);
+  }
+
+  /**
+   * Returns a buffer for compressed output, of the smallest size class that can hold {@code
+   * minCapacity} bytes (or of the largest size class), which is a direct buffer if the pool was
+   * configured that way.
+   */
+  ByteBuffer removeForOutput(int minCapacity) {
+    return remove(getSizeClass(minCapacity), directFreelists, direct);
+  }
+
+  private ByteBuffer remove(
+      int sizeClass, MpmcArrayQueue<ByteBuffer>[] freelists, boolean allocateDirect) {
+    ByteBuffer byteBuffer = freelists[sizeClass].relaxedPoll();
     if (byteBuffer != null) {
+      retainedBytes.addAndGet(-byteBuffer.capacity());
+      hitCount.incrementAndGet();
       byteBuffer.clear();
       return byteBuffer;
     }
-    return ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    missCount.incrementAndGet();
+    int size = SIZE_CLASSES[sizeClass];
+    allocatedBytes.addAndGet(size);
+    return allocateDirect ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
   }
 
   void offer(List<ByteBuffer> byteBuffers) {
-    // TODO(trask) batch offer?
     for (ByteBuffer byteBuffer : byteBuffers) {
-      queue.offer(byteBuffer);
+      offer(byteBuffer);
+    }
+  }
+
+  private void offer(ByteBuffer byteBuffer) {
+    int capacity = byteBuffer.capacity();
+    int sizeClass = getSizeClass(capacity);
+    if (SIZE_CLASSES[sizeClass] != capacity || (byteBuffer.isDirect() && !direct)) {
+      // not from this pool
+      return;
+    }
+    if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+      retainedBytes.addAndGet(-capacity);
+      return;
+    }
+    MpmcArrayQueue<ByteBuffer> freelist =
+        byteBuffer.isDirect() ? directFreelists[sizeClass] : heapFreelists[sizeClass];
+    if (!freelist.relaxedOffer(byteBuffer)) {
+      retainedBytes.addAndGet(-capacity);
+    }
+  }
+
+  private static int getSizeClass(int minCapacity) {
+    for (int i = 0; i < SIZE_CLASSES.length - 1; i++) {
+      if (minCapacity <= SIZE_CLASSES[i]) {
+        return i;
+      }
     }
+    return SIZE_CLASSES.length - 1;
+  }
+
+  void registerMBean() {
+    JmxAccess.registerWhenSafe(this, JMX_KEY, AppInsightsByteBufferPool.class);
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  @Override
+  public long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+
+  @Override
+  public long getMaxRetainedBytes() {
+    return maxRetainedBytes;
+  }
+
+  @Override
+  public boolean isDirect() {
+    return direct;
   }
 }
@@ -26,7 +26,7 @@ import com.microsoft.applicationinsights.agent.internal.exporter.models.Telemetr
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.internal.DaemonThreadFactory;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -42,7 +42,9 @@ public final class BatchSpanProcessor {
   private static final String WORKER_THREAD_NAME =
       BatchSpanProcessor.class.getSimpleName() + "_WorkerThread";
 
-  private final Worker worker;
+  // each worker has its own queue and thread, and producers are spread across workers by thread id
+  // so that encoding and compression are not bottlenecked on a single thread
+  private final Worker[] workers;
   private final AtomicBoolean isShutdown = new AtomicBoolean(false);
 
   /**
@@ -61,31 +63,76 @@ public final class BatchSpanProcessor {
       long scheduleDelayNanos,
       int maxQueueSize,
       int maxExportBatchSize,
-      long exporterTimeoutNanos) {
-    this.worker =
-        new Worker(
-            spanExporter,
-            scheduleDelayNanos,
-            maxExportBatchSize,
-            exporterTimeoutNanos,
-            new MpscArrayQueue<>(maxQueueSize));
-    Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(worker);
-    workerThread.start();
+      long exporterTimeoutNanos,
+      int numWorkers) {
+    this.workers = new Worker[numWorkers];
+    int workerQueueSize = getWorkerQueueSize(maxQueueSize, maxExportBatchSize, numWorkers);
+    for (int i = 0; i < numWorkers; i++) {
+      Worker worker =
+          new Worker(
+              spanExporter,
+              scheduleDelayNanos,
+              maxExportBatchSize,
+              exporterTimeoutNanos,
+              new MpscArrayQueue<>(workerQueueSize));
+      String threadName = numWorkers == 1 ? WORKER_THREAD_NAME : WORKER_THREAD_NAME + "-" + i;
+      Thread workerThread = new DaemonThreadFactory(threadName).newThread(worker);
+      workerThread.start();
+      workers[i] = worker;
+    }
   }
 
   public void trackAsync(TelemetryItem span) {
-    worker.addSpan(span);
+    getWorker().addSpan(span);
   }
 
   public CompletableResultCode shutdown() {
     if (isShutdown.getAndSet(true)) {
       return CompletableResultCode.ofSuccess();
     }
-    return worker.shutdown();
+    if (workers.length == 1) {
+      return workers[0].shutdown();
+    }
+    List<CompletableResultCode> results = new ArrayList<>(workers.length);
+    for (Worker worker : workers) {
+      results.add(worker.shutdown());
+    }
+    return CompletableResultCode.ofAll(results);
   }
 
   public CompletableResultCode forceFlush() {
-    return worker.forceFlush();
+    if (workers.length == 1) {
+      return workers[0].forceFlush();
+    }
+    List<CompletableResultCode> results = new ArrayList<>(workers.length);
+    for (Worker worker : workers) {
+      results.add(worker.forceFlush());
+    }
+    return CompletableResultCode.ofAll(results);
+  }
+
+  // a given producer thread always lands on the same worker, which keeps the MPSC queues mostly
+  // uncontended and preserves ordering of items tracked from the same thread
+  private Worker getWorker() {
+    if (workers.length == 1) {
+      return workers[0];
+    }
+    long threadId = Thread.currentThread().getId();
+    return workers[(int) (threadId % workers.length)];
+  }
+
+  // the max queue size is split across the workers, so that adding workers doesn't multiply the
+  // number of spans that can be held in memory, but each worker can still hold at least one full
+  // export batch
+  // visible for testing
+  static int getWorkerQueueSize(int maxQueueSize, int maxExportBatchSize, int numWorkers) {
+    int workerQueueSize = (maxQueueSize + numWorkers - 1) / numWorkers;
+    return Math.max(workerQueueSize, Math.min(maxExportBatchSize, maxQueueSize));
+  }
+
+  // visible for testing
+  int getNumWorkers() {
+    return workers.length;
   }
 
   // Worker is a thread that batches multiple spans and calls the registered SpanExporter to export
@@ -110,7 +157,11 @@ public final class BatchSpanProcessor {
     private final BlockingQueue<Boolean> signal;
     private final AtomicReference<CompletableResultCode> flushRequested = new AtomicReference<>();
     private volatile boolean continueWork = true;
-    private final ArrayList<TelemetryItem> batch;
+    private final TelemetryBatchEncoder batch;
+    // exports that have been handed off to the channel but have not completed yet, the worker
+    // doesn't wait for these (the channel blocks it when there are too many in-flight requests),
+    // except when flushing
+    private final List<CompletableResultCode> pendingExports = new ArrayList<>();
 
     private static final OperationLogger queuingSpanLogger =
         new OperationLogger(BatchSpanProcessor.class, "Queuing span");
@@ -127,7 +178,7 @@ public final class BatchSpanProcessor {
       this.exporterTimeoutNanos = exporterTimeoutNanos;
       this.queue = queue;
       this.signal = new ArrayBlockingQueue<>(1);
-      this.batch = new ArrayList<>(this.maxExportBatchSize);
+      this.batch = new TelemetryBatchEncoder(spanExporter.getByteBufferPool());
     }
 
     private void addSpan(TelemetryItem span) {
@@ -184,6 +235,8 @@ public final class BatchSpanProcessor {
         }
       }
       exportCurrentBatch();
+      CompletableResultCode.ofAll(pendingExports).join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
+      pendingExports.clear();
       flushRequested.get().succeed();
       flushRequested.set(null);
     }
@@ -227,12 +280,12 @@ public final class BatchSpanProcessor {
         return;
       }
 
-      try {
-        // batching, retry, logging, and writing to disk on failure occur downstream
-        CompletableResultCode result = spanExporter.send(Collections.unmodifiableList(batch));
-        result.join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
-      } finally {
-        batch.clear();
+      // the batch was encoded while it was drained from the queue, retry, logging, and writing to
+      // disk on failure occur downstream
+      CompletableResultCode result = batch.export(spanExporter);
+      pendingExports.removeIf(CompletableResultCode::isDone);
+      if (!result.isDone()) {
+        pendingExports.add(result);
       }
     }
   }
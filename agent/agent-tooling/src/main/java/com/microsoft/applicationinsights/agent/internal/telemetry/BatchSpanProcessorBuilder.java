@@ -34,12 +34,14 @@ final class BatchSpanProcessorBuilder {
   private static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
   private static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
   private static final int DEFAULT_EXPORT_TIMEOUT_MILLIS = 30_000;
+  private static final int DEFAULT_NUM_WORKERS = 1;
 
   private final TelemetryChannel spanExporter;
   private long scheduleDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCHEDULE_DELAY_MILLIS);
   private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
   private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
   private long exporterTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EXPORT_TIMEOUT_MILLIS);
+  private int numWorkers = DEFAULT_NUM_WORKERS;
 
   BatchSpanProcessorBuilder(TelemetryChannel spanExporter) {
     this.spanExporter = requireNonNull(spanExporter, "spanExporter");
@@ -122,6 +124,24 @@ final class BatchSpanProcessorBuilder {
     return this;
   }
 
+  /**
+   * Sets the number of worker threads. Each worker has its own queue and exports its own batches,
+   * and producer threads are assigned to workers by thread id. The {@code maxQueueSize} is split
+   * evenly across the worker queues, but each worker queue holds at least {@code
+   * maxExportBatchSize} spans.
+   *
+   * <p>Default value is {@code 1}.
+   *
+   * @param numWorkers the number of worker threads.
+   * @return this.
+   * @see BatchSpanProcessorBuilder#DEFAULT_NUM_WORKERS
+   */
+  public BatchSpanProcessorBuilder setNumWorkers(int numWorkers) {
+    checkArgument(numWorkers > 0, "numWorkers must be positive.");
+    this.numWorkers = numWorkers;
+    return this;
+  }
+
   /**
    * Returns a new {@link io.opentelemetry.sdk.trace.export.BatchSpanProcessor} that batches, then
    * converts spans to proto and forwards them to the given {@code spanExporter}.
@@ -131,6 +151,11 @@ final class BatchSpanProcessorBuilder {
    */
   public BatchSpanProcessor build() {
     return new BatchSpanProcessor(
-        spanExporter, scheduleDelayNanos, maxQueueSize, maxExportBatchSize, exporterTimeoutNanos);
+        spanExporter,
+        scheduleDelayNanos,
+        maxQueueSize,
+        maxExportBatchSize,
+        exporterTimeoutNanos,
+        numWorkers);
   }
 }
@@ -36,7 +36,8 @@ class ByteBufferOutputStream extends OutputStream {
 
   ByteBufferOutputStream(AppInsightsByteBufferPool byteBufferPool) {
     this.byteBufferPool = byteBufferPool;
-    current = byteBufferPool.remove();
+    // start small, so that small batches don't tie up large buffers
+    current = byteBufferPool.removeForOutput(0);
     byteBuffers.add(current);
   }
 
@@ -60,7 +61,8 @@ class ByteBufferOutputStream extends OutputStream {
     if (current.remaining() > 0) {
       return;
     }
-    current = byteBufferPool.remove();
+    // each buffer is (up to) four times larger than the previous one, i.e. the next size class
+    current = byteBufferPool.removeForOutput(current.capacity() * 4);
     byteBuffers.add(current);
   }
 
@@ -0,0 +1,141 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compresses json buffers directly into pooled output buffers.
+ *
+ * <p>Compared to wrapping the output in a {@link java.util.zip.GZIPOutputStream}, this reuses its
+ * {@link Deflater} (instead of allocating a new native deflater for every batch, see {@link
+ * GzipCompressorPool}), and deflates straight into the output buffers (instead of going through the
+ * stream's own internal buffer). The gzip header and trailer are written here, the deflater only
+ * produces the raw deflate stream.
+ */
+final class GzipCompressor {
+
+  // magic number, compression method (deflate), flags, mtime (4 bytes), extra flags, OS
+  // (same as java.util.zip.GZIPOutputStream)
+  private static final byte[] HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  // used when the output buffers are direct buffers, since Deflater.deflate(ByteBuffer) is not
+  // available in Java 8
+  private final byte[] scratch = new byte[8192];
+
+  private AppInsightsByteBufferPool byteBufferPool;
+  private List<ByteBuffer> byteBuffers;
+  private ByteBuffer current;
+
+  /**
+   * Compresses the json buffers (each holding data from offset 0 up to its position) and returns
+   * the compressed output, with each buffer flipped and ready to be read.
+   *
+   * <p>The json buffers are not modified and are not returned to the pool.
+   */
+  List<ByteBuffer> compress(
+      List<ByteBuffer> jsonByteBuffers, AppInsightsByteBufferPool byteBufferPool, int level) {
+    this.byteBufferPool = byteBufferPool;
+    byteBuffers = new ArrayList<>();
+    current = byteBufferPool.removeForOutput(0);
+    byteBuffers.add(current);
+    deflater.reset();
+    deflater.setLevel(level);
+    crc.reset();
+    try {
+      current.put(HEADER);
+      for (ByteBuffer jsonByteBuffer : jsonByteBuffers) {
+        byte[] array = jsonByteBuffer.array();
+        int offset = jsonByteBuffer.arrayOffset();
+        int len = jsonByteBuffer.position();
+        crc.update(array, offset, len);
+        deflater.setInput(array, offset, len);
+        while (!deflater.needsInput()) {
+          deflate();
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        deflate();
+      }
+      writeIntLittleEndian((int) crc.getValue());
+      // ISIZE is the uncompressed size modulo 2^32
+      writeIntLittleEndian((int) deflater.getBytesRead());
+
+      for (ByteBuffer byteBuffer : byteBuffers) {
+        byteBuffer.flip();
+      }
+      return byteBuffers;
+    } catch (RuntimeException e) {
+      byteBufferPool.offer(byteBuffers);
+      throw e;
+    } finally {
+      // don't hold on to the buffers while this sits in the compressor pool
+      this.byteBufferPool = null;
+      byteBuffers = null;
+      current = null;
+    }
+  }
+
+  private void deflate() {
+    ensureSomeCapacity();
+    if (current.hasArray()) {
+      int position = current.position();
+      int len =
+          deflater.deflate(
+              current.array(), current.arrayOffset() + position, current.remaining());
+      current.position(position + len);
+    } else {
+      int len = deflater.deflate(scratch, 0, Math.min(scratch.length, current.remaining()));
+      current.put(scratch, 0, len);
+    }
+  }
+
+  private void writeIntLittleEndian(int value) {
+    for (int i = 0; i < 4; i++) {
+      ensureSomeCapacity();
+      current.put((byte) (value >>> (i * 8)));
+    }
+  }
+
+  private void ensureSomeCapacity() {
+    if (current.hasRemaining()) {
+      return;
+    }
+    // each buffer is (up to) four times larger than the previous one, i.e. the next size class
+    current = byteBufferPool.removeForOutput(current.capacity() * 4);
+    byteBuffers.add(current);
+  }
+
+  // releases the native memory held by the deflater, this compressor can't be used afterwards
+  void end() {
+    deflater.end();
+  }
+}
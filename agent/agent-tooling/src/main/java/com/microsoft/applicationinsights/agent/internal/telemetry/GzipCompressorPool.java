@@ -0,0 +1,70 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.jctools.queues.MpmcArrayQueue;
+
+/**
+ * Small bounded pool of {@link GzipCompressor}s, owned by a {@link TelemetryChannel}.
+ *
+ * <p>Each compressor holds a native {@link java.util.zip.Deflater}, which only releases its memory
+ * once it is ended. Compressors are checked out for the duration of a single compression, and
+ * compressors that don't fit back into the pool are ended right away, instead of being left behind
+ * (e.g. on threads that have gone away) until the garbage collector gets to them.
+ */
+final class GzipCompressorPool {
+
+  private final MpmcArrayQueue<GzipCompressor> compressors;
+
+  GzipCompressorPool(int maxPooled) {
+    // MpmcArrayQueue requires a capacity of at least 2
+    compressors = new MpmcArrayQueue<>(Math.max(maxPooled, 2));
+  }
+
+  /**
+   * Compresses the json buffers (each holding data from offset 0 up to its position) and returns
+   * the compressed output, with each buffer flipped and ready to be read.
+   *
+   * <p>The json buffers are not modified and are not returned to the pool.
+   */
+  List<ByteBuffer> compress(
+      List<ByteBuffer> jsonByteBuffers, AppInsightsByteBufferPool byteBufferPool, int level) {
+    GzipCompressor compressor = compressors.poll();
+    if (compressor == null) {
+      compressor = new GzipCompressor();
+    }
+    try {
+      return compressor.compress(jsonByteBuffers, byteBufferPool, level);
+    } finally {
+      if (!compressors.offer(compressor)) {
+        compressor.end();
+      }
+    }
+  }
+
+  // visible for testing
+  int getPooledCount() {
+    return compressors.size();
+  }
+}
@@ -0,0 +1,369 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.utils.SanitizableMap;
+import com.microsoft.applicationinsights.agent.internal.exporter.utils.SanitizationHelper;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * A map of telemetry tags or properties, layered on top of the global tags or properties of the
+ * {@link TelemetryClient}, so that the global values don't need to be copied into every telemetry
+ * item.
+ *
+ * <p>The base map is shared and is never modified. Changes go to a small per-item delta map, and
+ * removed base entries are hidden instead of being removed from the base map.
+ *
+ * <p>When used for properties, the base map can be marked as already sanitized (see {@link
+ * #withSanitizedBase(Map)}), in which case only the delta is sanitized by {@link
+ * SanitizationHelper#sanitizeProperties(Map)}.
+ *
+ * <p>Not thread-safe (same as the {@link HashMap} it replaces).
+ */
+public final class OverlayMap extends AbstractMap<String, String> implements SanitizableMap {
+
+  private final Map<String, String> base;
+  private final boolean baseSanitized;
+  @Nullable private HashMap<String, String> delta;
+  // keys of base entries that have been removed, never contains keys of the delta
+  @Nullable private Set<String> removed;
+  private int expectedDeltaSize;
+
+  /** The base map must not be modified after this call. */
+  public OverlayMap(Map<String, String> base) {
+    this(base, false);
+  }
+
+  /**
+   * Same as {@link #OverlayMap(Map)}, for properties whose base map has already been sanitized
+   * (see {@link SanitizationHelper#sanitizeProperties(Map)}).
+   */
+  public static OverlayMap withSanitizedBase(Map<String, String> base) {
+    return new OverlayMap(base, true);
+  }
+
+  private OverlayMap(Map<String, String> base, boolean baseSanitized) {
+    this.base = base;
+    this.baseSanitized = baseSanitized;
+  }
+
+  /**
+   * Sizes the delta map for the given number of entries (if it hasn't been created yet), so that
+   * it is not rehashed while they are being added.
+   */
+  public void reserve(int expectedSize) {
+    if (delta == null && expectedSize > expectedDeltaSize) {
+      expectedDeltaSize = expectedSize;
+    }
+  }
+
+  @Override
+  @Nullable
+  public String get(Object key) {
+    if (delta != null) {
+      String value = delta.get(key);
+      if (value != null || delta.containsKey(key)) {
+        return value;
+      }
+    }
+    if (removed != null && removed.contains(key)) {
+      return null;
+    }
+    return base.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (delta != null && delta.containsKey(key)) {
+      return true;
+    }
+    return base.containsKey(key) && (removed == null || !removed.contains(key));
+  }
+
+  @Override
+  @Nullable
+  public String put(String key, String value) {
+    String previous = get(key);
+    getOrCreateDelta().put(key, value);
+    if (removed != null) {
+      removed.remove(key);
+    }
+    return previous;
+  }
+
+  @Override
+  @Nullable
+  public String remove(Object key) {
+    String previous = get(key);
+    if (delta != null) {
+      delta.remove(key);
+    }
+    if (base.containsKey(key)) {
+      getOrCreateRemoved().add((String) key);
+    }
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    if (delta != null) {
+      delta.clear();
+    }
+    getOrCreateRemoved().addAll(base.keySet());
+  }
+
+  @Override
+  public int size() {
+    int size = base.size();
+    if (removed != null) {
+      size -= removed.size();
+    }
+    if (delta != null) {
+      for (String key : delta.keySet()) {
+        if (!base.containsKey(key)) {
+          size++;
+        }
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super String> action) {
+    if (delta != null) {
+      delta.forEach(action);
+    }
+    for (Map.Entry<String, String> entry : base.entrySet()) {
+      if (isBaseEntryVisible(entry.getKey())) {
+        action.accept(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return new EntrySet();
+  }
+
+  @Override
+  public void sanitize() {
+    if (!baseSanitized) {
+      SanitizationHelper.sanitizeAllProperties(this);
+      return;
+    }
+    if (delta == null) {
+      return;
+    }
+    for (Iterator<Map.Entry<String, String>> i = delta.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<String, String> entry = i.next();
+      String key = entry.getKey();
+      String value = entry.getValue();
+      if (!SanitizationHelper.isValidProperty(key, value)) {
+        i.remove();
+        // the entry is dropped, instead of the base value (if any) showing through again
+        if (base.containsKey(key)) {
+          getOrCreateRemoved().add(key);
+        }
+        continue;
+      }
+      String sanitizedValue = SanitizationHelper.sanitizePropertyValue(key, value);
+      if (!sanitizedValue.equals(value)) {
+        entry.setValue(sanitizedValue);
+      }
+    }
+  }
+
+  // the following are used by TelemetryItemSerializer to walk both layers without allocating
+
+  @Nullable
+  Map<String, String> getDelta() {
+    return delta;
+  }
+
+  Map<String, String> getBase() {
+    return base;
+  }
+
+  boolean isBaseEntryVisible(String key) {
+    return (delta == null || !delta.containsKey(key))
+        && (removed == null || !removed.contains(key));
+  }
+
+  private HashMap<String, String> getOrCreateDelta() {
+    if (delta == null) {
+      // same as HashMap's default initial capacity when there is no expected size
+      int capacity = expectedDeltaSize == 0 ? 16 : (int) (expectedDeltaSize / 0.75f) + 1;
+      delta = new HashMap<>(capacity);
+    }
+    return delta;
+  }
+
+  private Set<String> getOrCreateRemoved() {
+    if (removed == null) {
+      removed = new HashSet<>();
+    }
+    return removed;
+  }
+
+  private class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return OverlayMap.this.size();
+    }
+  }
+
+  // iterates over the delta entries first, and then over the visible base entries
+  private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+    @Nullable private final Iterator<Map.Entry<String, String>> deltaIterator;
+    private final Iterator<Map.Entry<String, String>> baseIterator = base.entrySet().iterator();
+    @Nullable private Map.Entry<String, String> nextBaseEntry;
+    // the key of the entry returned by the last call to next(), null after remove()
+    @Nullable private String lastKey;
+    private boolean lastFromDelta;
+
+    private EntryIterator() {
+      deltaIterator = delta == null ? null : delta.entrySet().iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (deltaIterator != null && deltaIterator.hasNext()) {
+        return true;
+      }
+      while (nextBaseEntry == null && baseIterator.hasNext()) {
+        Map.Entry<String, String> entry = baseIterator.next();
+        if (isBaseEntryVisible(entry.getKey())) {
+          nextBaseEntry = entry;
+        }
+      }
+      return nextBaseEntry != null;
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (deltaIterator != null && deltaIterator.hasNext()) {
+        Map.Entry<String, String> entry = deltaIterator.next();
+        lastKey = entry.getKey();
+        lastFromDelta = true;
+        return entry;
+      }
+      Map.Entry<String, String> entry = Objects.requireNonNull(nextBaseEntry);
+      nextBaseEntry = null;
+      lastKey = entry.getKey();
+      lastFromDelta = false;
+      return new BaseEntry(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public void remove() {
+      String key = lastKey;
+      if (key == null) {
+        throw new IllegalStateException();
+      }
+      if (lastFromDelta && deltaIterator != null) {
+        deltaIterator.remove();
+      } else if (delta != null) {
+        // a value may have been set through the entry
+        delta.remove(key);
+      }
+      if (base.containsKey(key)) {
+        getOrCreateRemoved().add(key);
+      }
+      lastKey = null;
+    }
+  }
+
+  // a base entry, setting its value adds the new value to the delta (which is no longer being
+  // iterated at that point)
+  private class BaseEntry implements Map.Entry<String, String> {
+
+    private final String key;
+    private String value;
+
+    private BaseEntry(String key, String value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public String setValue(String value) {
+      getOrCreateDelta().put(key, value);
+      String previous = this.value;
+      this.value = value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      return key.equals(other.getKey()) && Objects.equals(value, other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + value;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Handles Breeze "206 Partial Success" responses, which list the index (in the request payload)
+ * and status code of each item that was rejected.
+ */
+final class PartialSuccess {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  /**
+   * Returns the (gzipped, newline-delimited) subset of the request payload containing only the
+   * rejected items that are worth retrying, or {@code null} if there are none.
+   *
+   * <p>The positions of the given buffers are not modified.
+   */
+  @Nullable
+  static byte[] getRetriableItems(List<ByteBuffer> requestBody, String responseBody)
+      throws IOException {
+    List<Integer> indexes = getRetriableIndexes(responseBody);
+    if (indexes.isEmpty()) {
+      return null;
+    }
+    List<byte[]> lines = splitLines(gunzip(requestBody));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    boolean first = true;
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      for (int index : indexes) {
+        if (index < 0 || index >= lines.size()) {
+          continue;
+        }
+        if (!first) {
+          gzip.write('\n');
+        }
+        gzip.write(lines.get(index));
+        first = false;
+      }
+    }
+    return first ? null : out.toByteArray();
+  }
+
+  // visible for testing
+  static List<Integer> getRetriableIndexes(String responseBody) throws IOException {
+    List<Integer> indexes = new ArrayList<>();
+    JsonNode errors = mapper.readTree(responseBody).path("errors");
+    for (JsonNode error : errors) {
+      JsonNode index = error.get("index");
+      if (index == null || !index.canConvertToInt()) {
+        continue;
+      }
+      if (isRetriable(error.path("statusCode").asInt())) {
+        indexes.add(index.asInt());
+      }
+    }
+    return indexes;
+  }
+
+  static boolean isRetriable(int statusCode) {
+    switch (statusCode) {
+      case 408: // REQUEST TIMEOUT
+      case 429: // TOO MANY REQUESTS
+      case 439: // Breeze-specific: THROTTLED OVER EXTENDED TIME
+      case 500: // INTERNAL SERVER ERROR
+      case 503: // SERVICE UNAVAILABLE
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static byte[] gunzip(List<ByteBuffer> byteBuffers) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      ByteBuffer duplicate = byteBuffer.duplicate();
+      byte[] bytes = new byte[duplicate.remaining()];
+      duplicate.get(bytes);
+      compressed.write(bytes);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        out.write(buffer, 0, len);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  // items are newline delimited, and newlines inside of json strings are always escaped
+  private static List<byte[]> splitLines(byte[] bytes) {
+    List<byte[]> lines = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i <= bytes.length; i++) {
+      if (i == bytes.length || bytes[i] == '\n') {
+        byte[] line = new byte[i - start];
+        System.arraycopy(bytes, start, line, 0, line.length);
+        lines.add(line);
+        start = i + 1;
+      }
+    }
+    return lines;
+  }
+
+  private PartialSuccess() {}
+}
@@ -0,0 +1,160 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.microsoft.applicationinsights.agent.internal.common.OperationLogger;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Groups telemetry items by instrumentation key and encodes each item into the json buffers of its
+ * group as soon as it is added, so that a batch is already encoded by the time it is exported.
+ *
+ * <p>Not thread-safe. Each exporter worker owns one and reuses it (including its groups) for every
+ * batch.
+ */
+final class TelemetryBatchEncoder {
+
+  private static final OperationLogger operationLogger =
+      new OperationLogger(TelemetryBatchEncoder.class, "Encoding telemetry");
+
+  private final AppInsightsByteBufferPool byteBufferPool;
+
+  // groups of the current batch, in the order their instrumentation key was first seen
+  private final List<Group> groups = new ArrayList<>();
+  // almost every batch has a single instrumentation key, this avoids searching the groups
+  @Nullable private Group lastGroup;
+  private int size;
+
+  TelemetryBatchEncoder(AppInsightsByteBufferPool byteBufferPool) {
+    this.byteBufferPool = byteBufferPool;
+  }
+
+  void add(TelemetryItem telemetryItem) {
+    Group group = getGroup(telemetryItem.getInstrumentationKey());
+    Utf8JsonWriter writer = group.writer;
+    if (writer == null) {
+      writer = new Utf8JsonWriter(byteBufferPool);
+      group.writer = writer;
+    }
+    long mark = writer.mark();
+    try {
+      if (group.count > 0) {
+        writer.writeByte('\n');
+      }
+      TelemetryItemSerializer.writeTelemetryItem(writer, telemetryItem);
+    } catch (IOException | RuntimeException e) {
+      // drop the partially written item, so that the rest of the batch is still valid
+      writer.reset(mark);
+      operationLogger.recordFailure("Error encoding telemetry item: " + e.getMessage(), e);
+      return;
+    }
+    group.count++;
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Hands the encoded groups over to the channel (which takes ownership of their buffers) and
+   * resets this encoder for the next batch.
+   */
+  CompletableResultCode export(TelemetryChannel channel) {
+    size = 0;
+    if (groups.size() == 1 && groups.get(0).count > 0) {
+      return exportGroup(groups.get(0), channel);
+    }
+    List<CompletableResultCode> resultCodes = new ArrayList<>(groups.size());
+    for (Iterator<Group> i = groups.iterator(); i.hasNext(); ) {
+      Group group = i.next();
+      if (group.count > 0) {
+        resultCodes.add(exportGroup(group, channel));
+      } else {
+        // only the groups of the previous batch are kept, the next batch likely looks the same
+        if (group.writer != null) {
+          // every item of the group failed to encode
+          byteBufferPool.offer(group.writer.getByteBuffers());
+          group.writer = null;
+        }
+        i.remove();
+        if (group == lastGroup) {
+          lastGroup = null;
+        }
+      }
+    }
+    return CompletableResultCode.ofAll(resultCodes);
+  }
+
+  private static CompletableResultCode exportGroup(Group group, TelemetryChannel channel) {
+    Utf8JsonWriter writer = group.writer;
+    group.writer = null;
+    group.count = 0;
+    if (writer == null) {
+      return CompletableResultCode.ofSuccess();
+    }
+    return channel.sendEncoded(writer.getByteBuffers(), group.instrumentationKey);
+  }
+
+  private Group getGroup(String instrumentationKey) {
+    Group group = lastGroup;
+    if (group != null && Objects.equals(group.instrumentationKey, instrumentationKey)) {
+      return group;
+    }
+    group = null;
+    for (Group candidate : groups) {
+      if (Objects.equals(candidate.instrumentationKey, instrumentationKey)) {
+        group = candidate;
+        break;
+      }
+    }
+    if (group == null) {
+      group = new Group(instrumentationKey);
+      groups.add(group);
+    }
+    lastGroup = group;
+    return group;
+  }
+
+  private static final class Group {
+
+    private final String instrumentationKey;
+    @Nullable private Utf8JsonWriter writer;
+    // number of items of the current batch, the writer is non-null when this is non-zero
+    private int count;
+
+    private Group(String instrumentationKey) {
+      this.instrumentationKey = instrumentationKey;
+    }
+  }
+}
@@ -26,85 +26,111 @@ import static java.util.Collections.singletonList;
 import com.azure.core.http.HttpMethod;
 import com.azure.core.http.HttpPipeline;
 import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
 import com.azure.core.util.Context;
 import com.azure.core.util.tracing.Tracer;
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.io.SerializedString;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.microsoft.applicationinsights.agent.internal.common.NetworkFriendlyExceptions;
 import com.microsoft.applicationinsights.agent.internal.common.OperationLogger;
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
 import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
 import com.microsoft.applicationinsights.agent.internal.httpclient.RedirectPolicy;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileWriter;
+import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileSpool;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.NetworkStatsbeat;
 import io.opentelemetry.instrumentation.api.cache.Cache;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 
-// TODO performance testing
+// see :agent:agent-benchmarks for the benchmarks of the encoding and sending path
 public class TelemetryChannel {
 
   private static final Logger logger = LoggerFactory.getLogger(TelemetryChannel.class);
 
-  private static final ObjectMapper mapper = createObjectMapper();
-
-  private static final AppInsightsByteBufferPool byteBufferPool = new AppInsightsByteBufferPool();
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 8;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+  // same as the default exporter timeout of the BatchSpanProcessor, which used to bound how long an
+  // exporter thread waited for a request
+  static final long DEFAULT_IN_FLIGHT_PERMIT_TIMEOUT_MILLIS = 30_000;
 
   private static final OperationLogger operationLogger =
       new OperationLogger(
           TelemetryChannel.class,
           "Sending telemetry to the ingestion service (telemetry will be stored to disk on failure and retried later):");
 
+  private static final OperationLogger throttledOperationLogger =
+      new OperationLogger(TelemetryChannel.class, "Sending telemetry while throttled");
+
   // TODO (kryalama) do we still need this AtomicBoolean, or can we use throttling built in to the
   //  operationLogger?
   private static final AtomicBoolean friendlyExceptionThrown = new AtomicBoolean();
 
-  @SuppressWarnings("CatchAndPrintStackTrace")
-  private static ObjectMapper createObjectMapper() {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    // it's important to pass in the "agent class loader" since TelemetryChannel is initialized
-    // lazily and can be initialized via an application thread, in which case the thread context
-    // class loader is used to look up jsr305 module and its not found
-    mapper.registerModules(ObjectMapper.findModules(TelemetryChannel.class.getClassLoader()));
-    mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-    return mapper;
-  }
-
   private final HttpPipeline pipeline;
+  private final AppInsightsByteBufferPool byteBufferPool;
+  private final GzipCompressorPool compressorPool;
+  private final int compressionLevel;
   private final URL endpointUrl;
-  @Nullable private final LocalFileWriter localFileWriter;
+  @Nullable private final LocalFileSpool localFileSpool;
   // this is null for the statsbeat channel
   @Nullable private final NetworkStatsbeat networkStatsbeat;
 
+  // bounds the number of concurrent requests to the endpoint, so that a slow endpoint blocks the
+  // exporter threads (until a slot frees up) instead of piling up in-flight batches that hold on
+  // to pooled buffers, batches which can't get a slot in time are stored to disk instead
+  private final int maxInFlightRequests;
+  private final Semaphore inFlightPermits;
+  private final long inFlightPermitTimeoutNanos;
+
+  // pauses the whole channel while the ingestion service is throttling
+  private final ThrottlingBackoff throttlingBackoff;
+
   public static TelemetryChannel create(
       URL endpointUrl,
-      LocalFileWriter localFileWriter,
+      LocalFileSpool localFileSpool,
       Cache<String, String> ikeyEndpointMap,
       @Nullable NetworkStatsbeat networkStatsbeat,
-      @Nullable Configuration.AadAuthentication aadAuthentication) {
+      @Nullable Configuration.AadAuthentication aadAuthentication,
+      int maxInFlightRequests,
+      AppInsightsByteBufferPool byteBufferPool,
+      int compressionLevel) {
     HttpPipeline httpPipeline = LazyHttpClient.newHttpPipeLine(aadAuthentication, ikeyEndpointMap);
-    return new TelemetryChannel(httpPipeline, endpointUrl, localFileWriter, networkStatsbeat);
+    return new TelemetryChannel(
+        httpPipeline,
+        endpointUrl,
+        localFileSpool,
+        networkStatsbeat,
+        maxInFlightRequests,
+        byteBufferPool,
+        compressionLevel,
+        DEFAULT_IN_FLIGHT_PERMIT_TIMEOUT_MILLIS);
   }
 
   public CompletableResultCode sendRawBytes(ByteBuffer buffer, String instrumentationKey) {
+    if (throttlingBackoff.isPaused()) {
+      // the batch stays on disk and will be retried later
+      return CompletableResultCode.ofFailure();
+    }
+    // never wait for a slot, replaying a backlog from disk must not hold up live telemetry
+    if (!inFlightPermits.tryAcquire()) {
+      return CompletableResultCode.ofFailure();
+    }
+    recordInFlightRequests(instrumentationKey);
     return internalSend(singletonList(buffer), instrumentationKey, true);
   }
 
@@ -112,91 +138,229 @@ public class TelemetryChannel {
   public TelemetryChannel(
       HttpPipeline pipeline,
       URL endpointUrl,
-      LocalFileWriter localFileWriter,
+      LocalFileSpool localFileSpool,
       @Nullable NetworkStatsbeat networkStatsbeat) {
+    this(
+        pipeline,
+        endpointUrl,
+        localFileSpool,
+        networkStatsbeat,
+        DEFAULT_MAX_IN_FLIGHT_REQUESTS,
+        new AppInsightsByteBufferPool(),
+        DEFAULT_COMPRESSION_LEVEL,
+        DEFAULT_IN_FLIGHT_PERMIT_TIMEOUT_MILLIS);
+  }
+
+  TelemetryChannel(
+      HttpPipeline pipeline,
+      URL endpointUrl,
+      LocalFileSpool localFileSpool,
+      @Nullable NetworkStatsbeat networkStatsbeat,
+      int maxInFlightRequests,
+      AppInsightsByteBufferPool byteBufferPool,
+      int compressionLevel,
+      long inFlightPermitTimeoutMillis) {
     this.pipeline = pipeline;
+    this.byteBufferPool = byteBufferPool;
+    // compression mostly happens while holding an in-flight slot, so there is rarely a need for
+    // more compressors than that
+    this.compressorPool = new GzipCompressorPool(maxInFlightRequests);
+    this.compressionLevel = compressionLevel;
     this.endpointUrl = endpointUrl;
-    this.localFileWriter = localFileWriter;
+    this.localFileSpool = localFileSpool;
     this.networkStatsbeat = networkStatsbeat;
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.inFlightPermits = new Semaphore(maxInFlightRequests);
+    this.inFlightPermitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(inFlightPermitTimeoutMillis);
+    this.throttlingBackoff = new ThrottlingBackoff();
   }
 
   public CompletableResultCode send(List<TelemetryItem> telemetryItems) {
-    Map<String, List<TelemetryItem>> instrumentationKeyMap = new HashMap<>();
-    List<CompletableResultCode> resultCodeList = new ArrayList<>();
+    if (telemetryItems.isEmpty()) {
+      return CompletableResultCode.ofSuccess();
+    }
+    // almost every batch has a single instrumentation key
+    String instrumentationKey = telemetryItems.get(0).getInstrumentationKey();
+    boolean singleInstrumentationKey = true;
     for (TelemetryItem telemetryItem : telemetryItems) {
-      String instrumentationKey = telemetryItem.getInstrumentationKey();
-      if (!instrumentationKeyMap.containsKey(instrumentationKey)) {
-        instrumentationKeyMap.put(instrumentationKey, new ArrayList<>());
+      if (!Objects.equals(telemetryItem.getInstrumentationKey(), instrumentationKey)) {
+        singleInstrumentationKey = false;
+        break;
       }
-      instrumentationKeyMap.get(instrumentationKey).add(telemetryItem);
     }
-    for (String instrumentationKey : instrumentationKeyMap.keySet()) {
-      resultCodeList.add(
-          internalSendByInstrumentationKey(
-              instrumentationKeyMap.get(instrumentationKey), instrumentationKey));
+    if (singleInstrumentationKey) {
+      return internalSendByInstrumentationKey(telemetryItems, instrumentationKey);
+    }
+
+    Map<String, List<TelemetryItem>> instrumentationKeyMap = new LinkedHashMap<>();
+    for (TelemetryItem telemetryItem : telemetryItems) {
+      instrumentationKeyMap
+          .computeIfAbsent(telemetryItem.getInstrumentationKey(), k -> new ArrayList<>())
+          .add(telemetryItem);
+    }
+    List<CompletableResultCode> resultCodeList = new ArrayList<>(instrumentationKeyMap.size());
+    for (Map.Entry<String, List<TelemetryItem>> entry : instrumentationKeyMap.entrySet()) {
+      resultCodeList.add(internalSendByInstrumentationKey(entry.getValue(), entry.getKey()));
     }
     return CompletableResultCode.ofAll(resultCodeList);
   }
 
   public CompletableResultCode internalSendByInstrumentationKey(
       List<TelemetryItem> telemetryItems, String instrumentationKey) {
+    // acquiring before encoding so that batches waiting for a slot only hold on to the telemetry
+    // items, and not to the (larger) encoded buffers
+    boolean acquired = acquireInFlightPermit(instrumentationKey);
     List<ByteBuffer> byteBuffers;
     try {
       byteBuffers = encode(telemetryItems);
     } catch (Throwable t) {
+      if (acquired) {
+        inFlightPermits.release();
+      }
       operationLogger.recordFailure("Error encoding telemetry items: " + t.getMessage(), t);
       return CompletableResultCode.ofFailure();
     }
+    if (!acquired) {
+      return storeWithoutSending(byteBuffers, instrumentationKey);
+    }
+    return sendCompressed(byteBuffers, instrumentationKey);
+  }
+
+  // sends telemetry that was already encoded by a TelemetryBatchEncoder, the json buffers are
+  // returned to the pool once they have been compressed, which is only after an in-flight slot has
+  // been acquired, so they can be held for up to the in-flight permit timeout
+  CompletableResultCode sendEncoded(List<ByteBuffer> jsonByteBuffers, String instrumentationKey) {
+    boolean acquired = acquireInFlightPermit(instrumentationKey);
+    List<ByteBuffer> byteBuffers;
     try {
-      return internalSend(byteBuffers, instrumentationKey, false);
+      byteBuffers = compress(jsonByteBuffers);
     } catch (Throwable t) {
-      operationLogger.recordFailure("Error sending telemetry items: " + t.getMessage(), t);
+      if (acquired) {
+        inFlightPermits.release();
+      }
+      operationLogger.recordFailure("Error compressing telemetry items: " + t.getMessage(), t);
       return CompletableResultCode.ofFailure();
+    } finally {
+      byteBufferPool.offer(jsonByteBuffers);
+    }
+    if (!acquired) {
+      return storeWithoutSending(byteBuffers, instrumentationKey);
     }
+    return sendCompressed(byteBuffers, instrumentationKey);
   }
 
-  List<ByteBuffer> encode(List<TelemetryItem> telemetryItems) throws IOException {
+  private CompletableResultCode sendCompressed(
+      List<ByteBuffer> byteBuffers, String instrumentationKey) {
+    if (throttlingBackoff.isPaused()) {
+      // don't hammer the ingestion service while it is throttling, the telemetry is sent later
+      // from disk instead
+      inFlightPermits.release();
+      throttledOperationLogger.recordFailure(
+          "Ingestion service is throttling, telemetry will be stored to disk and retried later");
+      writeToDiskOnFailure(byteBuffers, instrumentationKey);
+      byteBufferPool.offer(byteBuffers);
+      return CompletableResultCode.ofFailure();
+    }
+    return internalSend(byteBuffers, instrumentationKey, false);
+  }
 
-    if (logger.isDebugEnabled()) {
-      StringWriter debug = new StringWriter();
-      try (JsonGenerator jg = mapper.createGenerator(debug)) {
-        writeTelemetryItems(jg, telemetryItems);
+  // waits for a slot, but not forever, since the http pipeline has no response timeout and a hung
+  // endpoint would otherwise block the exporter threads (and drop everything they have queued)
+  private boolean acquireInFlightPermit(String instrumentationKey) {
+    try {
+      if (!inFlightPermits.tryAcquire(inFlightPermitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+        return false;
       }
-      logger.debug("sending telemetry to ingestion service:\n{}", debug);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     }
+    recordInFlightRequests(instrumentationKey);
+    return true;
+  }
 
-    ByteBufferOutputStream out = new ByteBufferOutputStream(byteBufferPool);
+  // the batch couldn't get an in-flight slot, so it is sent later from disk instead
+  private CompletableResultCode storeWithoutSending(
+      List<ByteBuffer> byteBuffers, String instrumentationKey) {
+    operationLogger.recordFailure(
+        "Timed out waiting for an earlier request to complete, telemetry will be stored to disk"
+            + " and retried later");
+    writeToDiskOnFailure(byteBuffers, instrumentationKey);
+    byteBufferPool.offer(byteBuffers);
+    return CompletableResultCode.ofFailure();
+  }
 
-    try (JsonGenerator jg = mapper.createGenerator(new GZIPOutputStream(out))) {
-      writeTelemetryItems(jg, telemetryItems);
-    } catch (IOException e) {
-      byteBufferPool.offer(out.getByteBuffers());
-      throw e;
+  private void recordInFlightRequests(String instrumentationKey) {
+    // networkStatsbeat is null when it's sending a Statsbeat request.
+    if (networkStatsbeat != null) {
+      networkStatsbeat.recordInFlightRequests(getInFlightRequests(), instrumentationKey);
     }
+  }
 
-    out.close(); // closing ByteBufferOutputStream is a no-op, but this line makes LGTM happy
+  public int getMaxInFlightRequests() {
+    return maxInFlightRequests;
+  }
 
-    List<ByteBuffer> byteBuffers = out.getByteBuffers();
-    for (ByteBuffer byteBuffer : byteBuffers) {
-      byteBuffer.flip();
+  // visible for testing
+  int getInFlightRequests() {
+    return maxInFlightRequests - inFlightPermits.availablePermits();
+  }
+
+  // visible for benchmarks, so that encoded buffers can be returned to the pool
+  AppInsightsByteBufferPool getByteBufferPool() {
+    return byteBufferPool;
+  }
+
+  List<ByteBuffer> encode(List<TelemetryItem> telemetryItems) throws IOException {
+
+    Utf8JsonWriter writer = new Utf8JsonWriter(byteBufferPool);
+    try {
+      TelemetryItemSerializer.writeTelemetryItems(writer, telemetryItems);
+      return compress(writer.getByteBuffers());
+    } finally {
+      // the uncompressed json is no longer needed once it has been compressed
+      byteBufferPool.offer(writer.getByteBuffers());
     }
-    return byteBuffers;
   }
 
-  private static void writeTelemetryItems(JsonGenerator jg, List<TelemetryItem> telemetryItems)
-      throws IOException {
-    jg.setRootValueSeparator(new SerializedString("\n"));
-    for (TelemetryItem telemetryItem : telemetryItems) {
-      mapper.writeValue(jg, telemetryItem);
+  private List<ByteBuffer> compress(List<ByteBuffer> jsonByteBuffers) {
+    if (logger.isDebugEnabled()) {
+      logger.debug("sending telemetry to ingestion service:\n{}", toDebugString(jsonByteBuffers));
     }
+    return compressorPool.compress(jsonByteBuffers, byteBufferPool, compressionLevel);
+  }
+
+  private static String toDebugString(List<ByteBuffer> jsonByteBuffers) {
+    ByteArrayOutputStream debug = new ByteArrayOutputStream();
+    for (ByteBuffer jsonByteBuffer : jsonByteBuffers) {
+      debug.write(jsonByteBuffer.array(), jsonByteBuffer.arrayOffset(), jsonByteBuffer.position());
+    }
+    return new String(debug.toByteArray(), StandardCharsets.UTF_8);
   }
 
   /**
    * Object can be a list of {@link ByteBuffer} or a raw byte array. Regular telemetries will be
    * sent as {@code List<ByteBuffer>}. Persisted telemetries will be sent as byte[]
+   *
+   * <p>The caller must have acquired an in-flight permit, which is released once the request
+   * completes.
    */
   private CompletableResultCode internalSend(
       List<ByteBuffer> byteBuffers, String instrumentationKey, boolean persisted) {
+    try {
+      return internalSendWithPermit(byteBuffers, instrumentationKey, persisted);
+    } catch (Throwable t) {
+      inFlightPermits.release();
+      operationLogger.recordFailure("Error sending telemetry items: " + t.getMessage(), t);
+      if (!persisted) {
+        byteBufferPool.offer(byteBuffers);
+      }
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  private CompletableResultCode internalSendWithPermit(
+      List<ByteBuffer> byteBuffers, String instrumentationKey, boolean persisted) {
     HttpRequest request = new HttpRequest(HttpMethod.POST, endpointUrl);
 
     request.setBody(Flux.fromIterable(byteBuffers));
@@ -228,11 +392,17 @@ public class TelemetryChannel {
 
     pipeline
         .send(request, Context.of(contextKeyValues))
+        .doFinally(signalType -> inFlightPermits.release())
         .subscribe(
             response -> {
-              parseResponseCode(
-                  response.getStatusCode(), instrumentationKey, byteBuffers, persisted);
-              LazyHttpClient.consumeResponseBody(response);
+              int statusCode = response.getStatusCode();
+              if (statusCode == 206) {
+                // result is completed once the rejected items have been stored for retry
+                handlePartialSuccess(response, byteBuffers, instrumentationKey, persisted, result);
+              } else {
+                parseResponseCode(response, instrumentationKey, byteBuffers, persisted);
+                LazyHttpClient.consumeResponseBody(response);
+              }
               // networkStatsbeat is null when it's sending a Statsbeat request.
               if (networkStatsbeat != null) {
                 if (response.getStatusCode() == 200) {
@@ -246,9 +416,9 @@ public class TelemetryChannel {
                 // persisted byte buffers don't come from the pool so shouldn't go back to the pool
                 byteBufferPool.offer(byteBuffers);
               }
-              if (response.getStatusCode() == 200) {
+              if (statusCode == 200) {
                 result.succeed();
-              } else {
+              } else if (statusCode != 206) {
                 result.fail();
               }
             },
@@ -278,13 +448,67 @@ public class TelemetryChannel {
   }
 
   private void writeToDiskOnFailure(List<ByteBuffer> byteBuffers, String instrumentationKey) {
-    if (localFileWriter != null) {
-      localFileWriter.writeToDisk(byteBuffers, instrumentationKey);
+    if (localFileSpool != null) {
+      localFileSpool.writeToDisk(byteBuffers, instrumentationKey);
+    }
+  }
+
+  private void handlePartialSuccess(
+      HttpResponse response,
+      List<ByteBuffer> byteBuffers,
+      String instrumentationKey,
+      boolean persisted,
+      CompletableResultCode result) {
+    throttlingBackoff.onSuccess();
+    // copying the request body right away, since the buffers go back to the pool as soon as this
+    // returns, while the response body is read asynchronously
+    List<ByteBuffer> requestBody = new ArrayList<>(byteBuffers.size());
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      ByteBuffer copy = ByteBuffer.allocate(byteBuffer.remaining());
+      copy.put(byteBuffer.duplicate());
+      copy.flip();
+      requestBody.add(copy);
     }
+    response
+        .getBodyAsString()
+        .defaultIfEmpty("")
+        .subscribe(
+            body -> {
+              try {
+                byte[] retriableItems = PartialSuccess.getRetriableItems(requestBody, body);
+                if (retriableItems != null) {
+                  writeToDiskOnFailure(
+                      singletonList(ByteBuffer.wrap(retriableItems)), instrumentationKey);
+                }
+                operationLogger.recordSuccess();
+              } catch (IOException | RuntimeException e) {
+                operationLogger.recordFailure(
+                    "Error handling partial success response: " + e.getMessage(), e);
+              }
+              // rejected items (if any) are now either stored for retry or not retriable, so
+              // the request is complete (and a persisted batch can be marked as sent)
+              result.succeed();
+            },
+            error -> {
+              operationLogger.recordFailure(
+                  "Error reading partial success response: " + error.getMessage(), error);
+              // without the response it's unknown which items were rejected, so the whole batch
+              // is stored to be retried later
+              // no need to write to disk again when failing to send raw bytes from the persisted
+              // file
+              if (!persisted) {
+                writeToDiskOnFailure(requestBody, instrumentationKey);
+              }
+              result.fail();
+            });
   }
 
   private void parseResponseCode(
-      int statusCode, String instrumentationKey, List<ByteBuffer> byteBuffers, boolean persisted) {
+      HttpResponse response,
+      String instrumentationKey,
+      List<ByteBuffer> byteBuffers,
+      boolean persisted) {
+    int statusCode = response.getStatusCode();
     switch (statusCode) {
       case 401: // UNAUTHORIZED
       case 403: // FORBIDDEN
@@ -296,25 +520,35 @@ public class TelemetryChannel {
           writeToDiskOnFailure(byteBuffers, instrumentationKey);
         }
         break;
-      case 408: // REQUEST TIMEOUT
-      case 500: // INTERNAL SERVER ERROR
       case 503: // SERVICE UNAVAILABLE
       case 429: // TOO MANY REQUESTS
       case 439: // Breeze-specific: THROTTLED OVER EXTENDED TIME
-        // TODO handle throttling
+        long pauseMillis = throttlingBackoff.onThrottled(response.getHeaderValue("Retry-After"));
+        throttledOperationLogger.recordFailure(
+            "Ingestion service responded with status code "
+                + statusCode
+                + ", pausing sending for "
+                + pauseMillis
+                + " milliseconds");
+        // fall through
+      case 408: // REQUEST TIMEOUT
+      case 500: // INTERNAL SERVER ERROR
         // TODO (heya) track throttling count via Statsbeat
         // networkStatsbeat is null when it's sending a Statsbeat request.
         // instrumentationKey is null when sending persisted file's raw bytes.
         if (networkStatsbeat != null) {
           networkStatsbeat.incrementThrottlingCount(instrumentationKey);
         }
+        // these are all transient, so store to disk to be retried later
+        // no need to write to disk again when failing to send raw bytes from the persisted file
+        if (!persisted) {
+          writeToDiskOnFailure(byteBuffers, instrumentationKey);
+        }
         break;
       case 200: // SUCCESS
+        throttlingBackoff.onSuccess();
         operationLogger.recordSuccess();
         break;
-      case 206: // PARTIAL CONTENT, Breeze-specific: PARTIAL SUCCESS
-        // TODO handle partial success
-        break;
       case 0: // client-side exception
         // TODO exponential backoff and retry to a limit
         // TODO (heya) track failure count via Statsbeat
@@ -39,17 +39,18 @@ import com.microsoft.applicationinsights.agent.internal.exporter.models.RequestD
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryEventData;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionData;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileCache;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileLoader;
+import com.microsoft.applicationinsights.agent.internal.exporter.utils.SanitizationHelper;
 import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileSender;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileWriter;
+import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileSpool;
 import com.microsoft.applicationinsights.agent.internal.localstorage.LocalStorageUtils;
 import com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseDataCollector;
+import com.microsoft.applicationinsights.agent.internal.statsbeat.NonessentialStatsbeat;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
 import io.opentelemetry.instrumentation.api.cache.Cache;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -86,8 +87,11 @@ public class TelemetryClient {
   // * cloud role instance
   // * sdk version
   // * application version (if provided in customDimensions)
-  private final Map<String, String> globalTags;
-  // contains customDimensions from json configuration
+  //
+  // these are shared (as the base of an OverlayMap) by all telemetry items, so they are never
+  // modified, instead they are replaced by a modified copy
+  private volatile Map<String, String> globalTags;
+  // contains customDimensions from json configuration (already sanitized)
   private final Map<String, String> globalProperties;
 
   private final List<MetricFilter> metricFilters;
@@ -95,6 +99,12 @@ public class TelemetryClient {
   private final Cache<String, String> ikeyEndpointMap;
   private final StatsbeatModule statsbeatModule;
   private final boolean readOnlyFileSystem;
+  private final int exporterThreads;
+  private final int maxInFlightRequests;
+  // shared by the telemetry and statsbeat channels
+  private final AppInsightsByteBufferPool byteBufferPool;
+  private final int compressionLevel;
+  private final Configuration.LocalStorage localStorage;
 
   @Nullable private final Configuration.AadAuthentication aadAuthentication;
 
@@ -123,6 +133,14 @@ public class TelemetryClient {
     this.ikeyEndpointMap = builder.ikeyEndpointMap;
     this.statsbeatModule = builder.statsbeatModule;
     this.readOnlyFileSystem = builder.readOnlyFileSystem;
+    this.exporterThreads = builder.exporterThreads;
+    this.maxInFlightRequests = builder.maxInFlightRequests;
+    this.byteBufferPool =
+        new AppInsightsByteBufferPool(
+            builder.bufferPool.maxRetainedMb * 1024L * 1024L, builder.bufferPool.direct);
+    byteBufferPool.registerMBean();
+    this.compressionLevel = builder.compressionLevel;
+    this.localStorage = builder.localStorage;
     this.aadAuthentication = builder.aadAuthentication;
   }
 
@@ -168,7 +186,7 @@ public class TelemetryClient {
       metricsData.setMetrics(filteredPoints);
     }
 
-    if (telemetry.getTime() == null) {
+    if (!telemetry.hasTime()) {
       // this is easy to forget when adding new telemetry
       throw new AssertionError("telemetry item is missing time");
     }
@@ -202,33 +220,31 @@ public class TelemetryClient {
     if (channelBatcher == null) {
       synchronized (channelInitLock) {
         if (channelBatcher == null) {
-          File telemetryFolder;
-          LocalFileLoader localFileLoader = null;
-          LocalFileWriter localFileWriter = null;
+          LocalFileSpool localFileSpool = null;
           if (!readOnlyFileSystem) {
-            telemetryFolder = LocalStorageUtils.getOfflineTelemetryFolder();
-            LocalFileCache localFileCache = new LocalFileCache(telemetryFolder);
-            localFileLoader =
-                new LocalFileLoader(
-                    localFileCache, telemetryFolder, statsbeatModule.getNonessentialStatsbeat());
-            localFileWriter =
-                new LocalFileWriter(
-                    localFileCache, telemetryFolder, statsbeatModule.getNonessentialStatsbeat());
+            localFileSpool =
+                createLocalFileSpool(
+                    LocalStorageUtils.getOfflineTelemetryFolder(),
+                    statsbeatModule.getNonessentialStatsbeat());
           }
 
           TelemetryChannel channel =
               TelemetryChannel.create(
                   endpointProvider.getIngestionEndpointUrl(),
-                  localFileWriter,
+                  localFileSpool,
                   ikeyEndpointMap,
                   statsbeatModule.getNetworkStatsbeat(),
-                  aadAuthentication);
+                  aadAuthentication,
+                  maxInFlightRequests,
+                  byteBufferPool,
+                  compressionLevel);
 
           if (!readOnlyFileSystem) {
-            LocalFileSender.start(localFileLoader, channel);
+            LocalFileSender.start(localFileSpool, channel);
           }
 
-          channelBatcher = BatchSpanProcessor.builder(channel).build();
+          channelBatcher =
+              BatchSpanProcessor.builder(channel).setNumWorkers(exporterThreads).build();
         }
       }
     }
@@ -239,26 +255,25 @@ public class TelemetryClient {
     if (statsbeatChannelBatcher == null) {
       synchronized (channelInitLock) {
         if (statsbeatChannelBatcher == null) {
-          File statsbeatFolder;
-          LocalFileLoader localFileLoader = null;
-          LocalFileWriter localFileWriter = null;
+          LocalFileSpool localFileSpool = null;
           if (!readOnlyFileSystem) {
-            statsbeatFolder = LocalStorageUtils.getOfflineStatsbeatFolder();
-            LocalFileCache localFileCache = new LocalFileCache(statsbeatFolder);
-            localFileLoader = new LocalFileLoader(localFileCache, statsbeatFolder, null);
-            localFileWriter = new LocalFileWriter(localFileCache, statsbeatFolder, null);
+            localFileSpool =
+                createLocalFileSpool(LocalStorageUtils.getOfflineStatsbeatFolder(), null);
           }
 
           TelemetryChannel channel =
               TelemetryChannel.create(
                   endpointProvider.getStatsbeatEndpointUrl(),
-                  localFileWriter,
+                  localFileSpool,
                   ikeyEndpointMap,
                   null,
-                  null);
+                  null,
+                  TelemetryChannel.DEFAULT_MAX_IN_FLIGHT_REQUESTS,
+                  byteBufferPool,
+                  TelemetryChannel.DEFAULT_COMPRESSION_LEVEL);
 
           if (!readOnlyFileSystem) {
-            LocalFileSender.start(localFileLoader, channel);
+            LocalFileSender.start(localFileSpool, channel);
           }
 
           statsbeatChannelBatcher = BatchSpanProcessor.builder(channel).build();
@@ -268,6 +283,29 @@ public class TelemetryClient {
     return statsbeatChannelBatcher;
   }
 
+  private LocalFileSpool createLocalFileSpool(
+      File folder, @Nullable NonessentialStatsbeat nonessentialStatsbeat) {
+    return new LocalFileSpool(
+        folder,
+        localStorage.segmentSizeMb * 1024L * 1024L,
+        toSpoolFsyncPolicy(localStorage.fsync),
+        localStorage.fsyncIntervalMillis,
+        nonessentialStatsbeat);
+  }
+
+  private static LocalFileSpool.FsyncPolicy toSpoolFsyncPolicy(
+      Configuration.FsyncPolicy fsyncPolicy) {
+    switch (fsyncPolicy) {
+      case NEVER:
+        return LocalFileSpool.FsyncPolicy.NEVER;
+      case INTERVAL:
+        return LocalFileSpool.FsyncPolicy.INTERVAL;
+      case ALWAYS:
+        return LocalFileSpool.FsyncPolicy.ALWAYS;
+    }
+    throw new IllegalStateException("Unexpected fsync policy: " + fsyncPolicy);
+  }
+
   /** Gets or sets the default instrumentation key for the application. */
   public String getInstrumentationKey() {
     return instrumentationKey;
@@ -299,7 +337,7 @@ public class TelemetryClient {
 
   public void setRoleName(String roleName) {
     this.roleName = roleName;
-    globalTags.put(ContextTagKeys.AI_CLOUD_ROLE.toString(), roleName);
+    putGlobalTag(ContextTagKeys.AI_CLOUD_ROLE.toString(), roleName);
   }
 
   public String getRoleInstance() {
@@ -308,7 +346,13 @@ public class TelemetryClient {
 
   public void setRoleInstance(String roleInstance) {
     this.roleInstance = roleInstance;
-    globalTags.put(ContextTagKeys.AI_CLOUD_ROLE_INSTANCE.toString(), roleInstance);
+    putGlobalTag(ContextTagKeys.AI_CLOUD_ROLE_INSTANCE.toString(), roleInstance);
+  }
+
+  private synchronized void putGlobalTag(String key, String value) {
+    Map<String, String> tags = new HashMap<>(globalTags);
+    tags.put(key, value);
+    globalTags = Collections.unmodifiableMap(tags);
   }
 
   public void setConnectionString(String connectionString) {
@@ -348,7 +392,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, EVENT_TELEMETRY_NAME, "EventData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -365,7 +409,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, EXCEPTION_TELEMETRY_NAME, "ExceptionData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -382,7 +426,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, MESSAGE_TELEMETRY_NAME, "MessageData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -402,7 +446,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, METRIC_TELEMETRY_NAME, "MetricData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
     data.setMetrics(singletonList(point));
   }
@@ -420,7 +464,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, PAGE_VIEW_TELEMETRY_NAME, "PageViewData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -437,7 +481,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, REMOTE_DEPENDENCY_TELEMETRY_NAME, "RemoteDependencyData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -454,7 +498,7 @@ public class TelemetryClient {
     }
     initTelemetry(telemetry, data, REQUEST_TELEMETRY_NAME, "RequestData");
     if (!globalProperties.isEmpty()) {
-      data.setProperties(new HashMap<>(globalProperties));
+      data.setProperties(OverlayMap.withSanitizedBase(globalProperties));
     }
   }
 
@@ -463,7 +507,7 @@ public class TelemetryClient {
     telemetry.setVersion(1);
     telemetry.setName(telemetryName);
     telemetry.setInstrumentationKey(instrumentationKey);
-    telemetry.setTags(new HashMap<>(globalTags));
+    telemetry.setTags(new OverlayMap(globalTags));
 
     data.setVersion(2);
 
@@ -481,6 +525,11 @@ public class TelemetryClient {
     private Cache<String, String> ikeyEndpointMap;
     private StatsbeatModule statsbeatModule;
     private boolean readOnlyFileSystem;
+    private int exporterThreads = 1;
+    private int maxInFlightRequests = TelemetryChannel.DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private Configuration.BufferPool bufferPool = new Configuration.BufferPool();
+    private int compressionLevel = TelemetryChannel.DEFAULT_COMPRESSION_LEVEL;
+    private Configuration.LocalStorage localStorage = new Configuration.LocalStorage();
     @Nullable private Configuration.AadAuthentication aadAuthentication;
 
     public Builder setCustomDimensions(Map<String, String> customDimensions) {
@@ -501,8 +550,11 @@ public class TelemetryClient {
           ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString(),
           PropertyHelper.getQualifiedSdkVersionString());
 
-      this.globalProperties = globalProperties;
-      this.globalTags = globalTags;
+      // sanitizing once here, instead of every time they are set on a telemetry item
+      SanitizationHelper.sanitizeProperties(globalProperties);
+
+      this.globalProperties = Collections.unmodifiableMap(globalProperties);
+      this.globalTags = Collections.unmodifiableMap(globalTags);
 
       return this;
     }
@@ -527,6 +579,31 @@ public class TelemetryClient {
       return this;
     }
 
+    public Builder setExporterThreads(int exporterThreads) {
+      this.exporterThreads = exporterThreads;
+      return this;
+    }
+
+    public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    public Builder setBufferPool(Configuration.BufferPool bufferPool) {
+      this.bufferPool = bufferPool;
+      return this;
+    }
+
+    public Builder setCompressionLevel(int compressionLevel) {
+      this.compressionLevel = compressionLevel;
+      return this;
+    }
+
+    public Builder setLocalStorage(Configuration.LocalStorage localStorage) {
+      this.localStorage = localStorage;
+      return this;
+    }
+
     public Builder setAadAuthentication(Configuration.AadAuthentication aadAuthentication) {
       this.aadAuthentication = aadAuthentication;
       return this;
@@ -0,0 +1,546 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static com.microsoft.applicationinsights.agent.internal.telemetry.Utf8JsonWriter.encodeFieldName;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.AvailabilityData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MessageData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricDataPoint;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricsData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MonitorBase;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MonitorDomain;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.PageViewData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.PageViewPerfData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RemoteDependencyData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RequestData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.StackFrame;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryEventData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionDetails;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Hand-written serializer for {@link TelemetryItem} and the models it references.
+ *
+ * <p>The output is byte-for-byte identical to serializing with the Jackson {@code ObjectMapper}
+ * (non-null inclusion, ISO-8601 dates), including the property order, which is the field
+ * declaration order of each model class (with {@link MonitorDomain}'s {@code ver} first and its
+ * additional properties last).
+ */
+final class TelemetryItemSerializer {
+
+  // only used for unexpected value types found in MonitorDomain.additionalProperties
+  private static final ObjectMapper fallbackMapper = createFallbackMapper();
+
+  private static final byte[] VER = encodeFieldName("ver");
+  private static final byte[] NAME = encodeFieldName("name");
+  private static final byte[] TIME = encodeFieldName("time");
+  private static final byte[] SAMPLE_RATE = encodeFieldName("sampleRate");
+  private static final byte[] SEQ = encodeFieldName("seq");
+  private static final byte[] IKEY = encodeFieldName("iKey");
+  private static final byte[] TAGS = encodeFieldName("tags");
+  private static final byte[] DATA = encodeFieldName("data");
+  private static final byte[] BASE_TYPE = encodeFieldName("baseType");
+  private static final byte[] BASE_DATA = encodeFieldName("baseData");
+  private static final byte[] ID = encodeFieldName("id");
+  private static final byte[] DURATION = encodeFieldName("duration");
+  private static final byte[] SUCCESS = encodeFieldName("success");
+  private static final byte[] RESPONSE_CODE = encodeFieldName("responseCode");
+  private static final byte[] SOURCE = encodeFieldName("source");
+  private static final byte[] URL = encodeFieldName("url");
+  private static final byte[] PROPERTIES = encodeFieldName("properties");
+  private static final byte[] MEASUREMENTS = encodeFieldName("measurements");
+  private static final byte[] RESULT_CODE = encodeFieldName("resultCode");
+  private static final byte[] TYPE = encodeFieldName("type");
+  private static final byte[] TARGET = encodeFieldName("target");
+  private static final byte[] MESSAGE = encodeFieldName("message");
+  private static final byte[] SEVERITY_LEVEL = encodeFieldName("severityLevel");
+  private static final byte[] METRICS = encodeFieldName("metrics");
+  private static final byte[] NS = encodeFieldName("ns");
+  private static final byte[] KIND = encodeFieldName("kind");
+  private static final byte[] VALUE = encodeFieldName("value");
+  private static final byte[] COUNT = encodeFieldName("count");
+  private static final byte[] MIN = encodeFieldName("min");
+  private static final byte[] MAX = encodeFieldName("max");
+  private static final byte[] STD_DEV = encodeFieldName("stdDev");
+  private static final byte[] EXCEPTIONS = encodeFieldName("exceptions");
+  private static final byte[] PROBLEM_ID = encodeFieldName("problemId");
+  private static final byte[] OUTER_ID = encodeFieldName("outerId");
+  private static final byte[] TYPE_NAME = encodeFieldName("typeName");
+  private static final byte[] HAS_FULL_STACK = encodeFieldName("hasFullStack");
+  private static final byte[] STACK = encodeFieldName("stack");
+  private static final byte[] PARSED_STACK = encodeFieldName("parsedStack");
+  private static final byte[] LEVEL = encodeFieldName("level");
+  private static final byte[] METHOD = encodeFieldName("method");
+  private static final byte[] ASSEMBLY = encodeFieldName("assembly");
+  private static final byte[] FILE_NAME = encodeFieldName("fileName");
+  private static final byte[] LINE = encodeFieldName("line");
+  private static final byte[] RUN_LOCATION = encodeFieldName("runLocation");
+  private static final byte[] REFERRED_URI = encodeFieldName("referredUri");
+  private static final byte[] PERF_TOTAL = encodeFieldName("perfTotal");
+  private static final byte[] NETWORK_CONNECT = encodeFieldName("networkConnect");
+  private static final byte[] SENT_REQUEST = encodeFieldName("sentRequest");
+  private static final byte[] RECEIVED_RESPONSE = encodeFieldName("receivedResponse");
+  private static final byte[] DOM_PROCESSING = encodeFieldName("domProcessing");
+
+  /** Writes the telemetry items separated by newlines (without a trailing newline). */
+  static void writeTelemetryItems(Utf8JsonWriter writer, List<TelemetryItem> telemetryItems)
+      throws IOException {
+    boolean first = true;
+    for (TelemetryItem telemetryItem : telemetryItems) {
+      if (!first) {
+        writer.writeByte('\n');
+      }
+      writeTelemetryItem(writer, telemetryItem);
+      first = false;
+    }
+  }
+
+  static void writeTelemetryItem(Utf8JsonWriter writer, TelemetryItem telemetryItem)
+      throws IOException {
+    writer.writeObjectStart();
+    writeField(writer, VER, telemetryItem.getVersion());
+    writeField(writer, NAME, telemetryItem.getName());
+    if (telemetryItem.isTimeEpochNanosSet()) {
+      writer.writeFieldName(TIME);
+      writer.writeTime(telemetryItem.getTimeEpochNanos());
+    } else {
+      writeField(writer, TIME, telemetryItem.getTime());
+    }
+    Float sampleRate = telemetryItem.getSampleRate();
+    if (sampleRate != null) {
+      writer.writeFieldName(SAMPLE_RATE);
+      writer.writeNumber(sampleRate.floatValue());
+    }
+    writeField(writer, SEQ, telemetryItem.getSequence());
+    writeField(writer, IKEY, telemetryItem.getInstrumentationKey());
+    writeStringMapField(writer, TAGS, telemetryItem.getTags());
+    MonitorBase data = telemetryItem.getData();
+    if (data != null) {
+      writer.writeFieldName(DATA);
+      writeMonitorBase(writer, data);
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeMonitorBase(Utf8JsonWriter writer, MonitorBase data)
+      throws IOException {
+    writer.writeObjectStart();
+    writeField(writer, BASE_TYPE, data.getBaseType());
+    MonitorDomain baseData = data.getBaseData();
+    if (baseData != null) {
+      writer.writeFieldName(BASE_DATA);
+      writeMonitorDomain(writer, baseData);
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeMonitorDomain(Utf8JsonWriter writer, MonitorDomain domain)
+      throws IOException {
+    writer.writeObjectStart();
+    writer.writeFieldName(VER);
+    writer.writeNumber(domain.getVersion());
+    if (domain instanceof RequestData) {
+      writeRequestData(writer, (RequestData) domain);
+    } else if (domain instanceof RemoteDependencyData) {
+      writeRemoteDependencyData(writer, (RemoteDependencyData) domain);
+    } else if (domain instanceof MessageData) {
+      writeMessageData(writer, (MessageData) domain);
+    } else if (domain instanceof MetricsData) {
+      writeMetricsData(writer, (MetricsData) domain);
+    } else if (domain instanceof TelemetryExceptionData) {
+      writeExceptionData(writer, (TelemetryExceptionData) domain);
+    } else if (domain instanceof TelemetryEventData) {
+      writeEventData(writer, (TelemetryEventData) domain);
+    } else if (domain instanceof AvailabilityData) {
+      writeAvailabilityData(writer, (AvailabilityData) domain);
+    } else if (domain instanceof PageViewData) {
+      writePageViewData(writer, (PageViewData) domain);
+    } else if (domain instanceof PageViewPerfData) {
+      writePageViewPerfData(writer, (PageViewPerfData) domain);
+    }
+    Map<String, Object> additionalProperties = domain.getAdditionalProperties();
+    if (additionalProperties != null) {
+      for (Map.Entry<String, Object> entry : additionalProperties.entrySet()) {
+        Object value = entry.getValue();
+        if (value != null) {
+          writer.writeFieldName(requireKey(entry.getKey()));
+          writeObject(writer, value);
+        }
+      }
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeRequestData(Utf8JsonWriter writer, RequestData data) {
+    writeField(writer, ID, data.getId());
+    writeField(writer, NAME, data.getName());
+    writeField(writer, DURATION, data.getDuration());
+    writer.writeFieldName(SUCCESS);
+    writer.writeBoolean(data.isSuccess());
+    writeField(writer, RESPONSE_CODE, data.getResponseCode());
+    writeField(writer, SOURCE, data.getSource());
+    writeField(writer, URL, data.getUrl());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeRemoteDependencyData(
+      Utf8JsonWriter writer, RemoteDependencyData data) {
+    writeField(writer, ID, data.getId());
+    writeField(writer, NAME, data.getName());
+    writeField(writer, RESULT_CODE, data.getResultCode());
+    writeField(writer, DATA, data.getData());
+    writeField(writer, TYPE, data.getType());
+    writeField(writer, TARGET, data.getTarget());
+    writeField(writer, DURATION, data.getDuration());
+    Boolean success = data.isSuccess();
+    if (success != null) {
+      writer.writeFieldName(SUCCESS);
+      writer.writeBoolean(success);
+    }
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeMessageData(Utf8JsonWriter writer, MessageData data) {
+    writeField(writer, MESSAGE, data.getMessage());
+    if (data.getSeverityLevel() != null) {
+      writeField(writer, SEVERITY_LEVEL, data.getSeverityLevel().toString());
+    }
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeMetricsData(Utf8JsonWriter writer, MetricsData data) {
+    List<MetricDataPoint> metrics = data.getMetrics();
+    if (metrics != null) {
+      writer.writeFieldName(METRICS);
+      writer.writeArrayStart();
+      boolean first = true;
+      for (MetricDataPoint point : metrics) {
+        if (!first) {
+          writer.writeByte(',');
+        }
+        if (point == null) {
+          writer.writeNull();
+        } else {
+          writeMetricDataPoint(writer, point);
+        }
+        first = false;
+      }
+      writer.writeArrayEnd();
+    }
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+  }
+
+  private static void writeMetricDataPoint(Utf8JsonWriter writer, MetricDataPoint point) {
+    writer.writeObjectStart();
+    writeField(writer, NS, point.getNamespace());
+    writeField(writer, NAME, point.getName());
+    if (point.getDataPointType() != null) {
+      writeField(writer, KIND, point.getDataPointType().toString());
+    }
+    writer.writeFieldName(VALUE);
+    writer.writeNumber(point.getValue());
+    writeField(writer, COUNT, point.getCount());
+    writeField(writer, MIN, point.getMin());
+    writeField(writer, MAX, point.getMax());
+    writeField(writer, STD_DEV, point.getStdDev());
+    writer.writeObjectEnd();
+  }
+
+  private static void writeExceptionData(Utf8JsonWriter writer, TelemetryExceptionData data) {
+    List<TelemetryExceptionDetails> exceptions = data.getExceptions();
+    if (exceptions != null) {
+      writer.writeFieldName(EXCEPTIONS);
+      writer.writeArrayStart();
+      boolean first = true;
+      for (TelemetryExceptionDetails details : exceptions) {
+        if (!first) {
+          writer.writeByte(',');
+        }
+        if (details == null) {
+          writer.writeNull();
+        } else {
+          writeExceptionDetails(writer, details);
+        }
+        first = false;
+      }
+      writer.writeArrayEnd();
+    }
+    if (data.getSeverityLevel() != null) {
+      writeField(writer, SEVERITY_LEVEL, data.getSeverityLevel().toString());
+    }
+    writeField(writer, PROBLEM_ID, data.getProblemId());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeExceptionDetails(
+      Utf8JsonWriter writer, TelemetryExceptionDetails details) {
+    writer.writeObjectStart();
+    writeField(writer, ID, details.getId());
+    writeField(writer, OUTER_ID, details.getOuterId());
+    writeField(writer, TYPE_NAME, details.getTypeName());
+    writeField(writer, MESSAGE, details.getMessage());
+    Boolean hasFullStack = details.isHasFullStack();
+    if (hasFullStack != null) {
+      writer.writeFieldName(HAS_FULL_STACK);
+      writer.writeBoolean(hasFullStack);
+    }
+    writeField(writer, STACK, details.getStack());
+    List<StackFrame> parsedStack = details.getParsedStack();
+    if (parsedStack != null) {
+      writer.writeFieldName(PARSED_STACK);
+      writer.writeArrayStart();
+      boolean first = true;
+      for (StackFrame frame : parsedStack) {
+        if (!first) {
+          writer.writeByte(',');
+        }
+        if (frame == null) {
+          writer.writeNull();
+        } else {
+          writeStackFrame(writer, frame);
+        }
+        first = false;
+      }
+      writer.writeArrayEnd();
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeStackFrame(Utf8JsonWriter writer, StackFrame frame) {
+    writer.writeObjectStart();
+    writer.writeFieldName(LEVEL);
+    writer.writeNumber(frame.getLevel());
+    writeField(writer, METHOD, frame.getMethod());
+    writeField(writer, ASSEMBLY, frame.getAssembly());
+    writeField(writer, FILE_NAME, frame.getFileName());
+    writeField(writer, LINE, frame.getLine());
+    writer.writeObjectEnd();
+  }
+
+  private static void writeEventData(Utf8JsonWriter writer, TelemetryEventData data) {
+    writeField(writer, NAME, data.getName());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeAvailabilityData(Utf8JsonWriter writer, AvailabilityData data) {
+    writeField(writer, ID, data.getId());
+    writeField(writer, NAME, data.getName());
+    writeField(writer, DURATION, data.getDuration());
+    writer.writeFieldName(SUCCESS);
+    writer.writeBoolean(data.isSuccess());
+    writeField(writer, RUN_LOCATION, data.getRunLocation());
+    writeField(writer, MESSAGE, data.getMessage());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writePageViewData(Utf8JsonWriter writer, PageViewData data) {
+    writeField(writer, ID, data.getId());
+    writeField(writer, NAME, data.getName());
+    writeField(writer, URL, data.getUrl());
+    writeField(writer, DURATION, data.getDuration());
+    writeField(writer, REFERRED_URI, data.getReferredUri());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writePageViewPerfData(Utf8JsonWriter writer, PageViewPerfData data) {
+    writeField(writer, ID, data.getId());
+    writeField(writer, NAME, data.getName());
+    writeField(writer, URL, data.getUrl());
+    writeField(writer, DURATION, data.getDuration());
+    writeField(writer, PERF_TOTAL, data.getPerfTotal());
+    writeField(writer, NETWORK_CONNECT, data.getNetworkConnect());
+    writeField(writer, SENT_REQUEST, data.getSentRequest());
+    writeField(writer, RECEIVED_RESPONSE, data.getReceivedResponse());
+    writeField(writer, DOM_PROCESSING, data.getDomProcessing());
+    writeStringMapField(writer, PROPERTIES, data.getProperties());
+    writeDoubleMapField(writer, MEASUREMENTS, data.getMeasurements());
+  }
+
+  private static void writeField(Utf8JsonWriter writer, byte[] fieldName, @Nullable String value) {
+    if (value != null) {
+      writer.writeFieldName(fieldName);
+      writer.writeString(value);
+    }
+  }
+
+  private static void writeField(
+      Utf8JsonWriter writer, byte[] fieldName, @Nullable Integer value) {
+    if (value != null) {
+      writer.writeFieldName(fieldName);
+      writer.writeNumber(value.intValue());
+    }
+  }
+
+  private static void writeField(Utf8JsonWriter writer, byte[] fieldName, @Nullable Double value) {
+    if (value != null) {
+      writer.writeFieldName(fieldName);
+      writer.writeNumber(value.doubleValue());
+    }
+  }
+
+  private static void writeField(
+      Utf8JsonWriter writer, byte[] fieldName, @Nullable OffsetDateTime value) {
+    if (value != null) {
+      writer.writeFieldName(fieldName);
+      writer.writeTime(value);
+    }
+  }
+
+  private static void writeStringMapField(
+      Utf8JsonWriter writer, byte[] fieldName, @Nullable Map<String, String> map) {
+    if (map == null) {
+      return;
+    }
+    writer.writeFieldName(fieldName);
+    writer.writeObjectStart();
+    if (map instanceof OverlayMap) {
+      // walk both layers directly, instead of through the merged entry set view
+      OverlayMap overlayMap = (OverlayMap) map;
+      Map<String, String> delta = overlayMap.getDelta();
+      if (delta != null) {
+        writeStringEntries(writer, delta);
+      }
+      for (Map.Entry<String, String> entry : overlayMap.getBase().entrySet()) {
+        if (overlayMap.isBaseEntryVisible(entry.getKey())) {
+          writeStringEntry(writer, entry);
+        }
+      }
+    } else {
+      writeStringEntries(writer, map);
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeStringEntries(Utf8JsonWriter writer, Map<String, String> map) {
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeStringEntry(writer, entry);
+    }
+  }
+
+  private static void writeStringEntry(Utf8JsonWriter writer, Map.Entry<String, String> entry) {
+    String value = entry.getValue();
+    if (value != null) {
+      writer.writeFieldName(requireKey(entry.getKey()));
+      writer.writeString(value);
+    }
+  }
+
+  private static void writeDoubleMapField(
+      Utf8JsonWriter writer, byte[] fieldName, @Nullable Map<String, Double> map) {
+    if (map == null) {
+      return;
+    }
+    writer.writeFieldName(fieldName);
+    writer.writeObjectStart();
+    for (Map.Entry<String, Double> entry : map.entrySet()) {
+      Double value = entry.getValue();
+      if (value != null) {
+        writer.writeFieldName(requireKey(entry.getKey()));
+        writer.writeNumber(value.doubleValue());
+      }
+    }
+    writer.writeObjectEnd();
+  }
+
+  private static void writeObject(Utf8JsonWriter writer, @Nullable Object value)
+      throws IOException {
+    if (value == null) {
+      writer.writeNull();
+    } else if (value instanceof String) {
+      writer.writeString((String) value);
+    } else if (value instanceof Boolean) {
+      writer.writeBoolean((Boolean) value);
+    } else if (value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte) {
+      writer.writeNumber(((Number) value).longValue());
+    } else if (value instanceof Double) {
+      writer.writeNumber(((Double) value).doubleValue());
+    } else if (value instanceof Float) {
+      writer.writeNumber(((Float) value).floatValue());
+    } else if (value instanceof Map) {
+      writer.writeObjectStart();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        Object entryValue = entry.getValue();
+        if (entryValue != null) {
+          writer.writeFieldName(requireKey(entry.getKey()).toString());
+          writeObject(writer, entryValue);
+        }
+      }
+      writer.writeObjectEnd();
+    } else if (value instanceof Collection) {
+      writer.writeArrayStart();
+      boolean first = true;
+      for (Object element : (Collection<?>) value) {
+        if (!first) {
+          writer.writeByte(',');
+        }
+        writeObject(writer, element);
+        first = false;
+      }
+      writer.writeArrayEnd();
+    } else {
+      writer.writeRaw(fallbackMapper.writeValueAsBytes(value));
+    }
+  }
+
+  private static <T> T requireKey(@Nullable T key) {
+    if (key == null) {
+      // same failure as Jackson's default null key serializer
+      throw new IllegalStateException("Null key for a Map not allowed in JSON");
+    }
+    return key;
+  }
+
+  private static ObjectMapper createFallbackMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    // it's important to pass in the "agent class loader" since TelemetryChannel is initialized
+    // lazily and can be initialized via an application thread, in which case the thread context
+    // class loader is used to look up jsr305 module and its not found
+    mapper.registerModules(
+        ObjectMapper.findModules(TelemetryItemSerializer.class.getClassLoader()));
+    mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    return mapper;
+  }
+
+  private TelemetryItemSerializer() {}
+}
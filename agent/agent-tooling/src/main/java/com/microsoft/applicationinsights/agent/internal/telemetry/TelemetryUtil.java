@@ -40,7 +40,7 @@ import com.microsoft.applicationinsights.agent.internal.exporter.models.Telemetr
 import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.instrumentation.api.cache.Cache;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -174,6 +174,18 @@ public class TelemetryUtil {
         + (stackFrame.getFileName() == null ? 0 : stackFrame.getFileName().length());
   }
 
+  /**
+   * Same as {@link #getProperties(MonitorDomain)}, but sizes the properties for the given number
+   * of properties that are about to be added.
+   */
+  public static Map<String, String> getProperties(MonitorDomain data, int expectedSize) {
+    Map<String, String> properties = getProperties(data);
+    if (properties instanceof OverlayMap) {
+      ((OverlayMap) properties).reserve(expectedSize);
+    }
+    return properties;
+  }
+
   // TODO (trask) Azure SDK: can we move getProperties up to MonitorDomain, or if not, a common
   // interface?
   public static Map<String, String> getProperties(MonitorDomain data) {
@@ -181,7 +193,7 @@ public class TelemetryUtil {
       AvailabilityData availabilityData = (AvailabilityData) data;
       Map<String, String> properties = availabilityData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         availabilityData.setProperties(properties);
       }
       return properties;
@@ -189,7 +201,7 @@ public class TelemetryUtil {
       MessageData messageData = (MessageData) data;
       Map<String, String> properties = messageData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         messageData.setProperties(properties);
       }
       return properties;
@@ -197,7 +209,7 @@ public class TelemetryUtil {
       MetricsData metricsData = (MetricsData) data;
       Map<String, String> properties = metricsData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         metricsData.setProperties(properties);
       }
       return properties;
@@ -205,7 +217,7 @@ public class TelemetryUtil {
       PageViewData pageViewData = (PageViewData) data;
       Map<String, String> properties = pageViewData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         pageViewData.setProperties(properties);
       }
       return properties;
@@ -213,7 +225,7 @@ public class TelemetryUtil {
       PageViewPerfData pageViewPerfData = (PageViewPerfData) data;
       Map<String, String> properties = pageViewPerfData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         pageViewPerfData.setProperties(properties);
       }
       return properties;
@@ -221,7 +233,7 @@ public class TelemetryUtil {
       RemoteDependencyData remoteDependencyData = (RemoteDependencyData) data;
       Map<String, String> properties = remoteDependencyData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         remoteDependencyData.setProperties(properties);
       }
       return properties;
@@ -229,7 +241,7 @@ public class TelemetryUtil {
       RequestData requestData = (RequestData) data;
       Map<String, String> properties = requestData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         requestData.setProperties(properties);
       }
       return properties;
@@ -237,7 +249,7 @@ public class TelemetryUtil {
       TelemetryEventData eventData = (TelemetryEventData) data;
       Map<String, String> properties = eventData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         eventData.setProperties(properties);
       }
       return properties;
@@ -245,7 +257,7 @@ public class TelemetryUtil {
       TelemetryExceptionData exceptionData = (TelemetryExceptionData) data;
       Map<String, String> properties = exceptionData.getProperties();
       if (properties == null) {
-        properties = new HashMap<>();
+        properties = OverlayMap.withSanitizedBase(Collections.emptyMap());
         exceptionData.setProperties(properties);
       }
       return properties;
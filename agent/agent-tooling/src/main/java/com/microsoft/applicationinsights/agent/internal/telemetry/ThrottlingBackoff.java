@@ -0,0 +1,120 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * Tracks whether the ingestion service has asked the channel to back off.
+ *
+ * <p>When the service returns a Retry-After header it is honored, otherwise the pause grows
+ * exponentially with each consecutive throttled response (with jitter, so that many agents that
+ * were throttled at the same time don't all come back at the same time).
+ */
+final class ThrottlingBackoff {
+
+  private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final LongSupplier nanoTime;
+
+  private final AtomicInteger consecutiveThrottles = new AtomicInteger();
+  private volatile long pausedUntilNanos;
+  private volatile boolean paused;
+
+  ThrottlingBackoff() {
+    this(System::nanoTime);
+  }
+
+  // visible for testing
+  ThrottlingBackoff(LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  /** Returns the number of milliseconds that the channel will pause for. */
+  long onThrottled(@Nullable String retryAfter) {
+    int attempt = consecutiveThrottles.incrementAndGet();
+    long backoffMillis = parseRetryAfterMillis(retryAfter);
+    if (backoffMillis < 0) {
+      backoffMillis = getExponentialBackoffMillis(attempt);
+    }
+    long until = nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+    // concurrent responses may race here, the later deadline wins which is good enough
+    if (!paused || until - pausedUntilNanos > 0) {
+      pausedUntilNanos = until;
+    }
+    paused = true;
+    return backoffMillis;
+  }
+
+  void onSuccess() {
+    consecutiveThrottles.set(0);
+  }
+
+  boolean isPaused() {
+    if (!paused) {
+      return false;
+    }
+    if (nanoTime.getAsLong() - pausedUntilNanos >= 0) {
+      paused = false;
+      return false;
+    }
+    return true;
+  }
+
+  // "equal jitter": the pause is between half and all of the exponential backoff
+  private static long getExponentialBackoffMillis(int attempt) {
+    long backoffMillis = INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 20);
+    backoffMillis = Math.min(backoffMillis, MAX_BACKOFF_MILLIS);
+    long half = backoffMillis / 2;
+    return half + ThreadLocalRandom.current().nextLong(half + 1);
+  }
+
+  // Retry-After is either a number of seconds or an HTTP date, returns -1 if absent or invalid
+  static long parseRetryAfterMillis(@Nullable String retryAfter) {
+    if (retryAfter == null || retryAfter.isEmpty()) {
+      return -1;
+    }
+    String value = retryAfter.trim();
+    try {
+      long seconds = Long.parseLong(value);
+      return seconds < 0 ? -1 : Math.min(TimeUnit.SECONDS.toMillis(seconds), MAX_BACKOFF_MILLIS);
+    } catch (NumberFormatException e) {
+      // fall through and try to parse as a date
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+      long millis = Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis();
+      return Math.max(0, Math.min(millis, MAX_BACKOFF_MILLIS));
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+}
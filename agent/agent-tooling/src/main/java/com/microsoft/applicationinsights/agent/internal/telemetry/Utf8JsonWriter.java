@@ -0,0 +1,446 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal UTF-8 JSON writer that writes directly into byte buffers borrowed from {@link
+ * AppInsightsByteBufferPool}.
+ *
+ * <p>The output (escaping, number and date formats) matches what Jackson's {@code
+ * UTF8JsonGenerator} produces with the {@code ObjectMapper} configuration previously used by
+ * {@link TelemetryChannel}.
+ */
+final class Utf8JsonWriter {
+
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+  // same escapes as com.fasterxml.jackson.core.io.CharTypes.get7BitOutputEscapes():
+  // 0 means no escaping, -1 means generic "\\u00XX" escaping, anything else is the short escape
+  private static final int[] ESCAPES = new int[128];
+
+  static {
+    for (int i = 0; i < 32; i++) {
+      ESCAPES[i] = -1;
+    }
+    ESCAPES['"'] = '"';
+    ESCAPES['\\'] = '\\';
+    ESCAPES[0x08] = 'b';
+    ESCAPES[0x09] = 't';
+    ESCAPES[0x0C] = 'f';
+    ESCAPES[0x0A] = 'n';
+    ESCAPES[0x0D] = 'r';
+  }
+
+  // longest single write that is done without checking for remaining capacity in between
+  // (Long.MIN_VALUE is 20 characters)
+  private static final int MAX_UNCHECKED_WRITE = 20;
+
+  // the most recently formatted second, most telemetry items fall into the same second as the
+  // previous one, so only the fractional part needs to be formatted for them
+  private static volatile SecondPrefix cachedSecondPrefix = new SecondPrefix(0);
+
+  private final AppInsightsByteBufferPool byteBufferPool;
+  private final List<ByteBuffer> byteBuffers = new ArrayList<>();
+
+  private ByteBuffer current;
+  private byte[] bytes;
+  private int pos;
+  private int limit;
+
+  // whether the next field name in the current object needs to be preceded by a comma
+  private boolean needsComma;
+
+  // used for formatting numbers, so that no intermediate String is needed
+  private final byte[] digits = new byte[MAX_UNCHECKED_WRITE];
+
+  Utf8JsonWriter(AppInsightsByteBufferPool byteBufferPool) {
+    this.byteBufferPool = byteBufferPool;
+    nextBuffer();
+  }
+
+  /**
+   * Returns the buffers written so far, with each buffer's position set to the end of the data
+   * that was written to it.
+   */
+  List<ByteBuffer> getByteBuffers() {
+    syncPosition();
+    return byteBuffers;
+  }
+
+  /**
+   * Returns the current write position, which can be passed to {@link #reset(long)} to discard
+   * everything that is written after it. Only meant to be used between top-level values.
+   */
+  long mark() {
+    return ((long) (byteBuffers.size() - 1) << 32) | pos;
+  }
+
+  void reset(long mark) {
+    int index = (int) (mark >>> 32);
+    while (byteBuffers.size() > index + 1) {
+      byteBufferPool.offer(singletonList(byteBuffers.remove(byteBuffers.size() - 1)));
+    }
+    current = byteBuffers.get(index);
+    bytes = current.array();
+    pos = (int) mark;
+    limit = current.arrayOffset() + current.limit();
+  }
+
+  void writeObjectStart() {
+    writeByte('{');
+    needsComma = false;
+  }
+
+  void writeObjectEnd() {
+    writeByte('}');
+    needsComma = true;
+  }
+
+  void writeArrayStart() {
+    writeByte('[');
+  }
+
+  void writeArrayEnd() {
+    writeByte(']');
+  }
+
+  /**
+   * Writes a field name that was pre-encoded by {@link #encodeFieldName(String)}, preceded by a
+   * comma if needed.
+   */
+  void writeFieldName(byte[] encodedFieldName) {
+    if (needsComma) {
+      writeByte(',');
+    }
+    writeBytes(encodedFieldName);
+    needsComma = true;
+  }
+
+  void writeFieldName(String fieldName) {
+    if (needsComma) {
+      writeByte(',');
+    }
+    writeString(fieldName);
+    writeByte(':');
+    needsComma = true;
+  }
+
+  void writeNull() {
+    writeBytes(NULL);
+  }
+
+  void writeBoolean(boolean value) {
+    writeBytes(value ? TRUE : FALSE);
+  }
+
+  void writeString(String value) {
+    ensureCapacity(1);
+    bytes[pos++] = '"';
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        int escape = ESCAPES[c];
+        if (escape == 0) {
+          ensureCapacity(1);
+          bytes[pos++] = (byte) c;
+        } else if (escape > 0) {
+          ensureCapacity(2);
+          bytes[pos++] = '\\';
+          bytes[pos++] = (byte) escape;
+        } else {
+          writeUnicodeEscape(c);
+        }
+      } else if (c < 0x800) {
+        ensureCapacity(2);
+        bytes[pos++] = (byte) (0xC0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // Jackson escapes surrogate chars individually instead of combining them into a four byte
+        // UTF-8 sequence
+        writeUnicodeEscape(c);
+      } else {
+        ensureCapacity(3);
+        bytes[pos++] = (byte) (0xE0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    ensureCapacity(1);
+    bytes[pos++] = '"';
+  }
+
+  void writeNumber(int value) {
+    writeNumber((long) value);
+  }
+
+  void writeNumber(long value) {
+    ensureCapacity(MAX_UNCHECKED_WRITE);
+    if (value == Long.MIN_VALUE) {
+      writeAscii(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      bytes[pos++] = '-';
+      value = -value;
+    }
+    int i = digits.length;
+    do {
+      digits[--i] = (byte) ('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+    int numDigits = digits.length - i;
+    System.arraycopy(digits, i, bytes, pos, numDigits);
+    pos += numDigits;
+  }
+
+  void writeNumber(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      // Jackson's default for JsonWriteFeature.WRITE_NAN_AS_STRINGS
+      writeString(Double.toString(value));
+    } else if (isSmallIntegral(value)) {
+      // fast path which produces the same output as Double.toString() without allocating
+      writeNumber((long) value);
+      writeByte('.');
+      writeByte('0');
+    } else {
+      writeAscii(Double.toString(value));
+    }
+  }
+
+  void writeNumber(float value) {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      writeString(Float.toString(value));
+    } else if (isSmallIntegral(value)) {
+      writeNumber((long) value);
+      writeByte('.');
+      writeByte('0');
+    } else {
+      writeAscii(Float.toString(value));
+    }
+  }
+
+  /** Writes the time in the same format as {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}. */
+  void writeTime(OffsetDateTime time) {
+    int year = time.getYear();
+    if (!time.getOffset().equals(ZoneOffset.UTC) || year < 0 || year > 9999) {
+      writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(time));
+      return;
+    }
+    ensureCapacity(32);
+    bytes[pos++] = '"';
+    writeDigits(year, 4);
+    bytes[pos++] = '-';
+    writeDigits(time.getMonthValue(), 2);
+    bytes[pos++] = '-';
+    writeDigits(time.getDayOfMonth(), 2);
+    bytes[pos++] = 'T';
+    writeDigits(time.getHour(), 2);
+    bytes[pos++] = ':';
+    writeDigits(time.getMinute(), 2);
+    bytes[pos++] = ':';
+    writeDigits(time.getSecond(), 2);
+    int nano = time.getNano();
+    if (nano != 0) {
+      bytes[pos++] = '.';
+      int numDigits = 9;
+      while (nano % 10 == 0) {
+        nano /= 10;
+        numDigits--;
+      }
+      writeDigits(nano, numDigits);
+    }
+    bytes[pos++] = 'Z';
+    bytes[pos++] = '"';
+  }
+
+  /**
+   * Writes the time (truncated to milliseconds) in the same format as {@link #writeTime} writes
+   * {@link FormattedTime#offSetDateTimeFromEpochNanos(long)}, but without creating an {@link
+   * OffsetDateTime}.
+   */
+  void writeTime(long epochNanos) {
+    long epochMillis = NANOSECONDS.toMillis(epochNanos);
+    long epochSecond = Math.floorDiv(epochMillis, 1000);
+    SecondPrefix secondPrefix = cachedSecondPrefix;
+    if (secondPrefix.epochSecond != epochSecond) {
+      secondPrefix = new SecondPrefix(epochSecond);
+      cachedSecondPrefix = secondPrefix;
+    }
+    byte[] prefix = secondPrefix.prefix;
+    ensureCapacity(prefix.length + 6);
+    System.arraycopy(prefix, 0, bytes, pos, prefix.length);
+    pos += prefix.length;
+    int millis = (int) Math.floorMod(epochMillis, 1000);
+    if (millis != 0) {
+      bytes[pos++] = '.';
+      // trailing zeros are dropped, same as DateTimeFormatter.ISO_OFFSET_DATE_TIME
+      if (millis % 100 == 0) {
+        writeDigits(millis / 100, 1);
+      } else if (millis % 10 == 0) {
+        writeDigits(millis / 10, 2);
+      } else {
+        writeDigits(millis, 3);
+      }
+    }
+    bytes[pos++] = 'Z';
+    bytes[pos++] = '"';
+  }
+
+  /** Writes pre-encoded UTF-8 bytes as-is. */
+  void writeRaw(byte[] value) {
+    writeBytes(value);
+  }
+
+  void writeByte(char c) {
+    ensureCapacity(1);
+    bytes[pos++] = (byte) c;
+  }
+
+  static byte[] encodeFieldName(String fieldName) {
+    return ('"' + fieldName + "\":").getBytes(StandardCharsets.UTF_8);
+  }
+
+  // caller must ensure capacity
+  private void writeDigits(int value, int numDigits) {
+    for (int i = pos + numDigits - 1; i >= pos; i--) {
+      bytes[i] = (byte) ('0' + (value % 10));
+      value /= 10;
+    }
+    pos += numDigits;
+  }
+
+  private void writeUnicodeEscape(char c) {
+    ensureCapacity(6);
+    bytes[pos++] = '\\';
+    bytes[pos++] = 'u';
+    bytes[pos++] = HEX[(c >> 12) & 0xF];
+    bytes[pos++] = HEX[(c >> 8) & 0xF];
+    bytes[pos++] = HEX[(c >> 4) & 0xF];
+    bytes[pos++] = HEX[c & 0xF];
+  }
+
+  // only for strings that are known to not need escaping
+  private void writeAscii(String value) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      ensureCapacity(1);
+      bytes[pos++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void writeBytes(byte[] value) {
+    int offset = 0;
+    while (offset < value.length) {
+      ensureCapacity(1);
+      int len = Math.min(limit - pos, value.length - offset);
+      System.arraycopy(value, offset, bytes, pos, len);
+      pos += len;
+      offset += len;
+    }
+  }
+
+  private void ensureCapacity(int len) {
+    if (limit - pos < len) {
+      nextBuffer();
+    }
+  }
+
+  private void nextBuffer() {
+    syncPosition();
+    current = byteBufferPool.remove();
+    byteBuffers.add(current);
+    bytes = current.array();
+    pos = current.arrayOffset() + current.position();
+    limit = current.arrayOffset() + current.limit();
+  }
+
+  private void syncPosition() {
+    if (current != null) {
+      current.position(pos - current.arrayOffset());
+    }
+  }
+
+  // Double.toString() uses computerized scientific notation for values >= 10^7
+  private static boolean isSmallIntegral(double value) {
+    return value == (long) value
+        && Math.abs(value) < 1e7
+        && (value != 0 || Double.doubleToRawLongBits(value) == 0);
+  }
+
+  private static boolean isSmallIntegral(float value) {
+    return value == (long) value
+        && Math.abs(value) < 1e7f
+        && (value != 0 || Float.floatToRawIntBits(value) == 0);
+  }
+
+  private static final class SecondPrefix {
+
+    private final long epochSecond;
+    // the opening quote and "yyyy-MM-ddTHH:mm:ss" (epoch nanos only span the years 1677-2262, so
+    // the year always has four digits)
+    private final byte[] prefix;
+
+    private SecondPrefix(long epochSecond) {
+      this.epochSecond = epochSecond;
+      LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+      StringBuilder sb = new StringBuilder(20);
+      sb.append('"');
+      appendDigits(sb, dateTime.getYear(), 4);
+      sb.append('-');
+      appendDigits(sb, dateTime.getMonthValue(), 2);
+      sb.append('-');
+      appendDigits(sb, dateTime.getDayOfMonth(), 2);
+      sb.append('T');
+      appendDigits(sb, dateTime.getHour(), 2);
+      sb.append(':');
+      appendDigits(sb, dateTime.getMinute(), 2);
+      sb.append(':');
+      appendDigits(sb, dateTime.getSecond(), 2);
+      prefix = sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void appendDigits(StringBuilder sb, int value, int numDigits) {
+      String digits = Integer.toString(value);
+      for (int i = digits.length(); i < numDigits; i++) {
+        sb.append('0');
+      }
+      sb.append(digits);
+    }
+  }
+}
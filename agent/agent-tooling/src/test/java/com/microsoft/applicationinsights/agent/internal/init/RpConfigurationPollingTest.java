@@ -82,12 +82,12 @@ class RpConfigurationPollingTest {
     telemetryClient.setConnectionString("InstrumentationKey=00000000-0000-0000-0000-000000000000");
     AppIdSupplier appIdSupplier = new AppIdSupplier(telemetryClient);
 
-    BytecodeUtilImpl.samplingPercentage = 100;
+    BytecodeUtilImpl.samplingPercentage = () -> 100;
 
     // pre-check
     assertThat(telemetryClient.getInstrumentationKey())
         .isEqualTo("00000000-0000-0000-0000-000000000000");
-    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(100);
+    assertThat(BytecodeUtilImpl.samplingPercentage.getAsDouble()).isEqualTo(100);
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
 
     // when
@@ -97,7 +97,7 @@ class RpConfigurationPollingTest {
     // then
     assertThat(telemetryClient.getInstrumentationKey())
         .isEqualTo("00000000-0000-0000-0000-000000000000");
-    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(10);
+    assertThat(BytecodeUtilImpl.samplingPercentage.getAsDouble()).isEqualTo(10);
     assertThat(getCurrentSamplingPercentage()).isEqualTo(10);
   }
 
@@ -116,7 +116,7 @@ class RpConfigurationPollingTest {
     telemetryClient.setConnectionString("InstrumentationKey=00000000-0000-0000-0000-000000000000");
     AppIdSupplier appIdSupplier = new AppIdSupplier(telemetryClient);
 
-    BytecodeUtilImpl.samplingPercentage = 100;
+    BytecodeUtilImpl.samplingPercentage = () -> 100;
 
     envVars.set(
         "APPLICATIONINSIGHTS_CONNECTION_STRING",
@@ -126,7 +126,7 @@ class RpConfigurationPollingTest {
     // pre-check
     assertThat(telemetryClient.getInstrumentationKey())
         .isEqualTo("00000000-0000-0000-0000-000000000000");
-    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(100);
+    assertThat(BytecodeUtilImpl.samplingPercentage.getAsDouble()).isEqualTo(100);
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
 
     // when
@@ -136,7 +136,7 @@ class RpConfigurationPollingTest {
     // then
     assertThat(telemetryClient.getInstrumentationKey())
         .isEqualTo("00000000-0000-0000-0000-000000000000");
-    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(100);
+    assertThat(BytecodeUtilImpl.samplingPercentage.getAsDouble()).isEqualTo(100);
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
   }
 
@@ -0,0 +1,170 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.DataPointType;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricDataPoint;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MetricsData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class MetricAggregatorTest {
+
+  private final MetricAggregator aggregator =
+      new MetricAggregator(TelemetryClient.createForTest(), 2, 60000);
+
+  @Test
+  void aggregatesMeasurementsOfTheSameSeries() {
+    aggregator.record("metric", 1, emptyMap(), emptyMap(), null);
+    aggregator.record("metric", 2, emptyMap(), emptyMap(), null);
+    aggregator.record("metric", 6, emptyMap(), emptyMap(), null);
+
+    List<TelemetryItem> telemetryItems = aggregator.collect();
+
+    assertThat(telemetryItems).hasSize(1);
+    MetricDataPoint point = getPoint(telemetryItems.get(0));
+    assertThat(point.getName()).isEqualTo("metric");
+    assertThat(point.getDataPointType()).isEqualTo(DataPointType.AGGREGATION);
+    assertThat(point.getValue()).isEqualTo(9);
+    assertThat(point.getCount()).isEqualTo(3);
+    assertThat(point.getMin()).isEqualTo(1);
+    assertThat(point.getMax()).isEqualTo(6);
+    assertThat(point.getStdDev()).isCloseTo(Math.sqrt(14.0 / 3), within(0.000001));
+    assertThat(getProperties(telemetryItems.get(0)))
+        .containsEntry(MetricAggregator.AGGREGATION_INTERVAL_PROPERTY, "60000");
+  }
+
+  @Test
+  void separatesSeriesByProperties() {
+    aggregator.record("metric", 1, singletonMap("k", "a"), emptyMap(), null);
+    aggregator.record("metric", 2, singletonMap("k", "b"), emptyMap(), null);
+    aggregator.record("metric", 3, singletonMap("k", "a"), emptyMap(), null);
+
+    List<TelemetryItem> telemetryItems = aggregator.collect();
+
+    assertThat(telemetryItems).hasSize(2);
+    for (TelemetryItem telemetry : telemetryItems) {
+      MetricDataPoint point = getPoint(telemetry);
+      if ("a".equals(getProperties(telemetry).get("k"))) {
+        assertThat(point.getValue()).isEqualTo(4);
+        assertThat(point.getCount()).isEqualTo(2);
+      } else {
+        assertThat(getProperties(telemetry)).containsEntry("k", "b");
+        assertThat(point.getValue()).isEqualTo(2);
+        assertThat(point.getCount()).isEqualTo(1);
+      }
+    }
+  }
+
+  @Test
+  void seriesBeyondTheCapGoToOverflowSeries() {
+    aggregator.record("metric", 1, singletonMap("k", "a"), emptyMap(), null);
+    aggregator.record("metric", 1, singletonMap("k", "b"), emptyMap(), null);
+    aggregator.record("metric", 1, singletonMap("k", "c"), emptyMap(), null);
+    aggregator.record("metric", 1, singletonMap("k", "d"), emptyMap(), null);
+
+    List<TelemetryItem> telemetryItems = aggregator.collect();
+
+    assertThat(telemetryItems).hasSize(3);
+    TelemetryItem overflow = telemetryItems.get(2);
+    assertThat(getProperties(overflow))
+        .containsEntry(MetricAggregator.OVERFLOW_PROPERTY, "True")
+        .doesNotContainKey("k");
+    assertThat(getPoint(overflow).getName()).isEqualTo("metric");
+    assertThat(getPoint(overflow).getCount()).isEqualTo(2);
+  }
+
+  @Test
+  void idleSeriesAreRemoved() {
+    aggregator.record("metric", 1, singletonMap("k", "a"), emptyMap(), null);
+    aggregator.record("metric", 1, singletonMap("k", "b"), emptyMap(), null);
+    assertThat(aggregator.collect()).hasSize(2);
+
+    // nothing was recorded during this interval, so both series are removed
+    assertThat(aggregator.collect()).isEmpty();
+
+    // which frees up room below the cap
+    aggregator.record("metric", 1, singletonMap("k", "c"), emptyMap(), null);
+    List<TelemetryItem> telemetryItems = aggregator.collect();
+    assertThat(telemetryItems).hasSize(1);
+    assertThat(getProperties(telemetryItems.get(0))).containsEntry("k", "c");
+  }
+
+  @Test
+  void noMeasurementsAreLostUnderConcurrency() throws Exception {
+    int threads = 8;
+    int measurementsPerThread = 250_000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int j = 0; j < measurementsPerThread; j++) {
+                  aggregator.record("metric", 2, emptyMap(), emptyMap(), null);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, SECONDS);
+    }
+    executor.shutdown();
+
+    List<TelemetryItem> telemetryItems = aggregator.collect();
+    assertThat(telemetryItems).hasSize(1);
+    MetricDataPoint point = getPoint(telemetryItems.get(0));
+    assertThat(point.getCount()).isEqualTo(threads * measurementsPerThread);
+    assertThat(point.getValue()).isEqualTo(2.0 * threads * measurementsPerThread);
+    assertThat(point.getStdDev()).isEqualTo(0);
+  }
+
+  private static MetricDataPoint getPoint(TelemetryItem telemetry) {
+    return getData(telemetry).getMetrics().get(0);
+  }
+
+  private static Map<String, String> getProperties(TelemetryItem telemetry) {
+    return getData(telemetry).getProperties();
+  }
+
+  private static MetricsData getData(TelemetryItem telemetry) {
+    return (MetricsData) telemetry.getData().getBaseData();
+  }
+}
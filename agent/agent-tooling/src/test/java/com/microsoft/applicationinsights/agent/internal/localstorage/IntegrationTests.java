@@ -65,8 +65,7 @@ public class IntegrationTests {
   private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
   private static final String PERSISTED_FILENAME = "gzipped-raw-bytes.trn";
   private TelemetryChannel telemetryChannel;
-  private LocalFileCache localFileCache;
-  private LocalFileLoader localFileLoader;
+  private LocalFileSpool localFileSpool;
 
   @TempDir File tempFolder;
 
@@ -92,15 +91,11 @@ public class IntegrationTests {
                       new MockHttpResponse(invocation.getArgument(0, HttpRequest.class), 401)));
     }
     HttpPipelineBuilder pipelineBuilder = new HttpPipelineBuilder().httpClient(mockedClient);
-    localFileCache = new LocalFileCache(tempFolder);
-    localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
+    localFileSpool = new LocalFileSpool(tempFolder, null);
 
     telemetryChannel =
         new TelemetryChannel(
-            pipelineBuilder.build(),
-            new URL("http://foo.bar"),
-            new LocalFileWriter(localFileCache, tempFolder, null),
-            null);
+            pipelineBuilder.build(), new URL("http://foo.bar"), localFileSpool, null);
   }
 
   @Test
@@ -126,33 +121,31 @@ public class IntegrationTests {
 
     executorService.shutdown();
     executorService.awaitTermination(10, TimeUnit.MINUTES);
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(100);
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(100);
 
     for (int i = 100; i > 0; i--) {
-      LocalFileLoader.PersistedFile file = localFileLoader.loadTelemetriesFromDisk();
-      assertThat(ungzip(file.rawBytes.array()))
+      LocalFileSpool.PersistedBatch batch = localFileSpool.loadTelemetriesFromDisk();
+      assertThat(ungzip(batch.rawBytes.array()))
           .isEqualTo(new String(getByteBufferFromFile("ungzip-source.txt").array(), UTF_8));
-      assertThat(file.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
-      assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(i - 1);
+      assertThat(batch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+      assertThat(localFileSpool.getPendingCount()).isEqualTo(i - 1);
     }
 
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(0);
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(0);
   }
 
   @Test
   public void verifyGzipRawBytesTest() throws Exception {
     File sourceFile =
         new File(getClass().getClassLoader().getResource(PERSISTED_FILENAME).getPath());
-    File persistedFile = new File(tempFolder, PERSISTED_FILENAME);
+    File persistedFile = new File(tempFolder, System.currentTimeMillis() + "-1.trn");
     FileUtils.copyFile(sourceFile, persistedFile);
 
     assertThat(persistedFile.exists()).isTrue();
 
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
-    localFileCache.addPersistedFilenameToMap(PERSISTED_FILENAME);
-
-    LocalFileLoader localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
-    LocalFileLoader.PersistedFile loadedPersistedFile = localFileLoader.loadTelemetriesFromDisk();
+    // files written by the previous storage are imported into the spool
+    LocalFileSpool localFileSpool = new LocalFileSpool(tempFolder, null);
+    LocalFileSpool.PersistedBatch loadedPersistedBatch = localFileSpool.loadTelemetriesFromDisk();
 
     ByteBuffer expectedGzipByteBuffer = getByteBufferFromFile(PERSISTED_FILENAME);
     byte[] ikeyBytes = new byte[36];
@@ -162,7 +155,7 @@ public class IntegrationTests {
     byte[] telemetryBytes = new byte[length];
 
     expectedGzipByteBuffer.get(telemetryBytes, 0, length);
-    assertThat(loadedPersistedFile.rawBytes).isEqualTo(ByteBuffer.wrap(telemetryBytes));
+    assertThat(loadedPersistedBatch.rawBytes).isEqualTo(ByteBuffer.wrap(telemetryBytes));
   }
 
   private ByteBuffer getByteBufferFromFile(String filename) throws Exception {
@@ -0,0 +1,115 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.localstorage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryChannel;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LocalFileSenderTests {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  @TempDir File tempFolder;
+
+  private final AtomicBoolean ingestionAvailable = new AtomicBoolean(true);
+  private LocalFileSpool localFileSpool;
+  private LocalFileSender localFileSender;
+
+  @BeforeEach
+  public void setup() {
+    TelemetryChannel telemetryChannel = mock(TelemetryChannel.class);
+    when(telemetryChannel.getMaxInFlightRequests()).thenReturn(8);
+    when(telemetryChannel.sendRawBytes(any(ByteBuffer.class), anyString()))
+        .then(
+            invocation ->
+                ingestionAvailable.get()
+                    ? CompletableResultCode.ofSuccess()
+                    : CompletableResultCode.ofFailure());
+    localFileSpool = new LocalFileSpool(tempFolder, null);
+    localFileSender =
+        new LocalFileSender(
+            localFileSpool, telemetryChannel, mock(ScheduledExecutorService.class));
+
+    for (int i = 0; i < 20; i++) {
+      localFileSpool.writeToDisk(
+          singletonList(ByteBuffer.wrap("hello world".getBytes(UTF_8))), INSTRUMENTATION_KEY);
+    }
+  }
+
+  @Test
+  public void testWindowGrowsWhileIngestionSucceeds() {
+    assertThat(localFileSender.sendRound()).isTrue();
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(19);
+    assertThat(localFileSender.getWindow()).isEqualTo(2);
+
+    assertThat(localFileSender.sendRound()).isTrue();
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(17);
+    assertThat(localFileSender.getWindow()).isEqualTo(4);
+
+    // capped at half of the max in-flight requests
+    assertThat(localFileSender.sendRound()).isTrue();
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(13);
+    assertThat(localFileSender.getWindow()).isEqualTo(4);
+
+    while (localFileSpool.getPendingCount() > 0) {
+      assertThat(localFileSender.sendRound()).isTrue();
+    }
+
+    // nothing left to send
+    assertThat(localFileSender.sendRound()).isFalse();
+    assertThat(localFileSender.getWindow()).isEqualTo(1);
+  }
+
+  @Test
+  public void testWindowShrinksWhenIngestionFails() {
+    localFileSender.sendRound();
+    localFileSender.sendRound();
+    localFileSender.sendRound();
+    assertThat(localFileSender.getWindow()).isEqualTo(4);
+
+    ingestionAvailable.set(false);
+    assertThat(localFileSender.sendRound()).isFalse();
+    assertThat(localFileSender.getWindow()).isEqualTo(2);
+    // the failed batches are kept to be sent later
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(13);
+
+    assertThat(localFileSender.sendRound()).isFalse();
+    assertThat(localFileSender.sendRound()).isFalse();
+    assertThat(localFileSender.getWindow()).isEqualTo(1);
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(13);
+  }
+}
@@ -25,6 +25,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -37,27 +38,35 @@ import com.azure.core.util.Context;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.applicationinsights.agent.internal.MockHttpResponse;
+import com.microsoft.applicationinsights.agent.internal.statsbeat.NonessentialStatsbeat;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryChannel;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import reactor.core.publisher.Mono;
 
-public class LocalFileLoaderTests {
+public class LocalFileSpoolTests {
 
+  private static final String GZIPPED_RAW_BYTES = "gzipped-raw-bytes.trn";
   private static final String GZIPPED_RAW_BYTES_WITHOUT_IKEY = "gzipped-raw-bytes-without-ikey.trn";
   private static final String BYTE_BUFFERS_TEST_FILE = "read-transmission.txt";
   private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
@@ -65,56 +74,63 @@ public class LocalFileLoaderTests {
 
   @TempDir File tempFolder;
 
-  @AfterEach
-  public void cleanup() {}
-
   @Test
   public void testInstrumentationKeyRegex() {
-    assertThat(LocalFileLoader.isInstrumentationKeyValid(INSTRUMENTATION_KEY)).isTrue();
-    assertThat(LocalFileLoader.isInstrumentationKeyValid("fake-instrumentation-key")).isFalse();
-    assertThat(LocalFileLoader.isInstrumentationKeyValid("5ED1AE38-41AF-11EC-81D3")).isFalse();
-    assertThat(LocalFileLoader.isInstrumentationKeyValid("5ED1AE38-41AF-11EC-81D3-0242AC130003"))
+    assertThat(LocalFileSpool.isInstrumentationKeyValid(INSTRUMENTATION_KEY)).isTrue();
+    assertThat(LocalFileSpool.isInstrumentationKeyValid("fake-instrumentation-key")).isFalse();
+    assertThat(LocalFileSpool.isInstrumentationKeyValid("5ED1AE38-41AF-11EC-81D3")).isFalse();
+    assertThat(LocalFileSpool.isInstrumentationKeyValid("5ED1AE38-41AF-11EC-81D3-0242AC130003"))
         .isTrue();
-    assertThat(LocalFileLoader.isInstrumentationKeyValid("C6864988-6BF8-45EF-8590-1FD3D84E5A4D"))
+    assertThat(LocalFileSpool.isInstrumentationKeyValid("C6864988-6BF8-45EF-8590-1FD3D84E5A4D"))
         .isTrue();
   }
 
   @Test
-  public void testPersistedFileWithoutInstrumentationKey() throws IOException {
-    File sourceFile =
-        new File(getClass().getClassLoader().getResource(GZIPPED_RAW_BYTES_WITHOUT_IKEY).getPath());
-
-    File persistedFile = new File(tempFolder, GZIPPED_RAW_BYTES_WITHOUT_IKEY);
-    FileUtils.copyFile(sourceFile, persistedFile);
-    assertThat(persistedFile.exists()).isTrue();
+  public void testLegacyFileWithoutInstrumentationKey() throws IOException {
+    File persistedFile =
+        copyResource(GZIPPED_RAW_BYTES_WITHOUT_IKEY, System.currentTimeMillis() + "-1.trn");
+
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    assertThat(spool.loadTelemetriesFromDisk()).isNull();
+    // verify the old formatted trn is deleted successfully.
+    assertThat(persistedFile.exists()).isFalse();
+    assertThat(listFiles()).isEmpty();
+  }
 
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
-    localFileCache.addPersistedFilenameToMap(GZIPPED_RAW_BYTES_WITHOUT_IKEY);
+  @Test
+  public void testImportLegacyFile() throws IOException {
+    File persistedFile = copyResource(GZIPPED_RAW_BYTES, System.currentTimeMillis() + "-1.trn");
+    byte[] expectedBytes = FileUtils.readFileToByteArray(persistedFile);
+
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    assertThat(persistedFile.exists()).isFalse();
+    assertThat(listFiles()).hasSize(1);
+
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    assertThat(persistedBatch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+    assertThat(persistedBatch.rawBytes)
+        .isEqualTo(ByteBuffer.wrap(expectedBytes, 36, expectedBytes.length - 36));
+  }
 
-    LocalFileLoader localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
-    LocalFileLoader.PersistedFile loadedPersistedFile = localFileLoader.loadTelemetriesFromDisk();
-    assertThat(loadedPersistedFile).isNull();
-    assertThat(persistedFile.exists())
-        .isFalse(); // verify the old formatted trn is deleted successfully.
+  @Test
+  public void testExpiredLegacyFile() throws IOException {
+    // legacy files are named after the time they were written
+    copyResource(GZIPPED_RAW_BYTES, "1636427539060-1.trn");
+
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    assertThat(spool.getPendingCount()).isEqualTo(1);
+    assertThat(spool.loadTelemetriesFromDisk()).isNull();
+    assertThat(spool.getPendingCount()).isEqualTo(0);
   }
 
   @Test
   public void testLoadFile() throws IOException {
-    File sourceFile =
-        new File(getClass().getClassLoader().getResource(BYTE_BUFFERS_TEST_FILE).getPath());
-
-    File persistedFile = new File(tempFolder, BYTE_BUFFERS_TEST_FILE);
+    copyResource(BYTE_BUFFERS_TEST_FILE, System.currentTimeMillis() + "-1.trn");
 
-    FileUtils.copyFile(sourceFile, persistedFile);
-    assertThat(persistedFile.exists()).isTrue();
-
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
-    localFileCache.addPersistedFilenameToMap(BYTE_BUFFERS_TEST_FILE);
-
-    LocalFileLoader localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
-    LocalFileLoader.PersistedFile loadedPersistedFile = localFileLoader.loadTelemetriesFromDisk();
-    assertThat(loadedPersistedFile.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
-    String bytesString = new String(loadedPersistedFile.rawBytes.array(), UTF_8);
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    assertThat(persistedBatch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+    String bytesString = new String(persistedBatch.rawBytes.array(), UTF_8);
 
     String[] stringArray = bytesString.split("\n");
     assertThat(stringArray.length).isEqualTo(10);
@@ -185,14 +201,46 @@ public class LocalFileLoaderTests {
   @Test
   public void testWriteAndReadRandomText() {
     String text = "hello world";
-    LocalFileCache cache = new LocalFileCache(tempFolder);
-    LocalFileWriter writer = new LocalFileWriter(cache, tempFolder, null);
-    writer.writeToDisk(singletonList(ByteBuffer.wrap(text.getBytes(UTF_8))), INSTRUMENTATION_KEY);
-
-    LocalFileLoader loader = new LocalFileLoader(cache, tempFolder, null);
-    LocalFileLoader.PersistedFile persistedFile = loader.loadTelemetriesFromDisk();
-    assertThat(new String(persistedFile.rawBytes.array(), UTF_8)).isEqualTo(text);
-    assertThat(persistedFile.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    spool.writeToDisk(singletonList(ByteBuffer.wrap(text.getBytes(UTF_8))), INSTRUMENTATION_KEY);
+
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    assertThat(new String(persistedBatch.rawBytes.array(), UTF_8)).isEqualTo(text);
+    assertThat(persistedBatch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+  }
+
+  @Test
+  public void testLargeBatchIsReadIntoHeap() {
+    byte[] bytes = new byte[64 * 1024];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    spool.writeToDisk(singletonList(ByteBuffer.wrap(bytes)), INSTRUMENTATION_KEY);
+
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    // not memory-mapped, which would prevent the segment from being deleted on Windows
+    assertThat(persistedBatch.rawBytes.isDirect()).isFalse();
+    assertThat(persistedBatch.rawBytes).isEqualTo(ByteBuffer.wrap(bytes));
+  }
+
+  @Test
+  public void testWriteByteBuffersList() {
+    List<ByteBuffer> byteBuffers = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      byteBuffers.add(ByteBuffer.wrap(("line" + i + "\n").getBytes(UTF_8)));
+    }
+
+    NonessentialStatsbeat nonessentialStatsbeat = new NonessentialStatsbeat();
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, nonessentialStatsbeat);
+    spool.writeToDisk(byteBuffers, INSTRUMENTATION_KEY);
+    assertThat(nonessentialStatsbeat.getWriteFailureCount()).isEqualTo(0);
+    // the buffers are left untouched
+    assertThat(byteBuffers.get(0).remaining()).isEqualTo(6);
+
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    assertThat(new String(persistedBatch.rawBytes.array(), UTF_8))
+        .isEqualTo("line0\nline1\nline2\nline3\nline4\nline5\nline6\nline7\nline8\nline9\n");
   }
 
   @Test
@@ -215,17 +263,15 @@ public class LocalFileLoaderTests {
 
     // write gzipped bytes[] to disk
     byte[] result = byteArrayOutputStream.toByteArray();
-    LocalFileCache cache = new LocalFileCache(tempFolder);
-    LocalFileWriter writer = new LocalFileWriter(cache, tempFolder, null);
-    writer.writeToDisk(singletonList(ByteBuffer.wrap(result)), INSTRUMENTATION_KEY);
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    spool.writeToDisk(singletonList(ByteBuffer.wrap(result)), INSTRUMENTATION_KEY);
 
     // read gzipped byte[] from disk
-    LocalFileLoader loader = new LocalFileLoader(cache, tempFolder, null);
-    LocalFileLoader.PersistedFile persistedFile = loader.loadTelemetriesFromDisk();
-    byte[] bytes = persistedFile.rawBytes.array();
+    LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+    byte[] bytes = persistedBatch.rawBytes.array();
 
     // ungzip
-    ByteArrayInputStream inputStream = new ByteArrayInputStream(result);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
     byte[] ungzip = new byte[bytes.length * 3];
     int read;
     try (GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
@@ -235,55 +281,80 @@ public class LocalFileLoaderTests {
     }
 
     assertThat(new String(Arrays.copyOf(ungzip, read), UTF_8)).isEqualTo(text);
-    assertThat(persistedFile.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+    assertThat(persistedBatch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
   }
 
   @Test
-  public void testDeleteFilePermanentlyOnSuccess() throws Exception {
+  public void testWriteUnderMultipleThreadsEnvironment() throws InterruptedException {
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    ExecutorService executorService = Executors.newFixedThreadPool(100);
+    for (int i = 0; i < 100; i++) {
+      executorService.execute(
+          () -> {
+            for (int j = 0; j < 10; j++) {
+              spool.writeToDisk(
+                  singletonList(ByteBuffer.wrap("hello world".getBytes(UTF_8))),
+                  INSTRUMENTATION_KEY);
+            }
+          });
+    }
+
+    executorService.shutdown();
+    executorService.awaitTermination(10, TimeUnit.MINUTES);
+    assertThat(spool.getPendingCount()).isEqualTo(1000);
+    // all batches fit in a single segment
+    assertThat(listFiles()).hasSize(1);
+    assertThat(spool.getSizeInBytes()).isEqualTo(1000 * (LocalFileSpool.HEADER_SIZE + 11));
+  }
+
+  @Test
+  public void testDeleteSegmentsOnSuccess() throws Exception {
     HttpClient mockedClient = getMockHttpClientSuccess();
     HttpPipelineBuilder pipelineBuilder = new HttpPipelineBuilder().httpClient(mockedClient);
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
-    LocalFileWriter localFileWriter = new LocalFileWriter(localFileCache, tempFolder, null);
-    LocalFileLoader localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
+    // small segments so that the batches are spread across several of them
+    LocalFileSpool spool = createSpool(LocalFileSpool.MAX_SIZE_IN_BYTES, 4 * 1024, null);
 
     TelemetryChannel telemetryChannel =
-        new TelemetryChannel(
-            pipelineBuilder.build(), new URL("http://foo.bar"), localFileWriter, null);
+        new TelemetryChannel(pipelineBuilder.build(), new URL("http://foo.bar"), spool, null);
 
-    // persist 10 files to disk
+    // persist 10 batches to disk, 3 per segment
     for (int i = 0; i < 10; i++) {
-      localFileWriter.writeToDisk(
-          singletonList(ByteBuffer.wrap("hello world".getBytes(UTF_8))), INSTRUMENTATION_KEY);
+      spool.writeToDisk(singletonList(ByteBuffer.wrap(new byte[1000])), INSTRUMENTATION_KEY);
     }
 
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(10);
-
-    Collection<File> files = FileUtils.listFiles(tempFolder, new String[] {"trn"}, false);
-    assertThat(files.size()).isEqualTo(10);
+    assertThat(spool.getPendingCount()).isEqualTo(10);
+    assertThat(listFiles()).hasSize(4);
+    assertThat(spool.getSizeInBytes()).isEqualTo(10 * (LocalFileSpool.HEADER_SIZE + 1000));
 
-    int expectedCount = 10;
-
-    // send persisted files one by one and then delete it permanently.
+    // send persisted batches one by one and mark them as sent.
     for (int i = 0; i < 10; i++) {
-      LocalFileLoader.PersistedFile persistedFile = localFileLoader.loadTelemetriesFromDisk();
+      LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
       CompletableResultCode completableResultCode =
-          telemetryChannel.sendRawBytes(persistedFile.rawBytes, persistedFile.instrumentationKey);
+          telemetryChannel.sendRawBytes(persistedBatch.rawBytes, persistedBatch.instrumentationKey);
       completableResultCode.join(10, SECONDS);
       assertThat(completableResultCode.isSuccess()).isEqualTo(true);
-      localFileLoader.updateProcessedFileStatus(true, persistedFile.file);
-
-      // sleep 1 second to wait for delete to complete
-      Thread.sleep(1000);
-
-      files = FileUtils.listFiles(tempFolder, new String[] {"trn"}, false);
-      assertThat(files.size()).isEqualTo(--expectedCount);
+      spool.updateProcessedStatus(true, persistedBatch);
     }
 
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(0);
+    assertThat(spool.getPendingCount()).isEqualTo(0);
+    // only the active segment is left, the others are deleted in the background
+    await().untilAsserted(() -> assertThat(listFiles()).hasSize(1));
+    LocalFileSpool finalSpool = spool;
+    await()
+        .untilAsserted(
+            () ->
+                assertThat(finalSpool.getSizeInBytes())
+                    .isEqualTo(LocalFileSpool.HEADER_SIZE + 1000));
+
+    // nothing is sent again after a restart
+    spool.close();
+    spool = new LocalFileSpool(tempFolder, null);
+    assertThat(spool.getPendingCount()).isEqualTo(0);
+    assertThat(listFiles()).isEmpty();
   }
 
   @Test
-  public void testDeleteFilePermanentlyOnFailure() throws Exception {
+  public void testKeepBatchesOnFailure() throws Exception {
     HttpClient mockedClient = mock(HttpClient.class);
     when(mockedClient.send(any(HttpRequest.class), any(Context.class)))
         .then(
@@ -291,41 +362,128 @@ public class LocalFileLoaderTests {
                 Mono.error(
                     () -> new Exception("this is expected to be logged by the operation logger")));
     HttpPipelineBuilder pipelineBuilder = new HttpPipelineBuilder().httpClient(mockedClient);
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
-
-    LocalFileLoader localFileLoader = new LocalFileLoader(localFileCache, tempFolder, null);
-    LocalFileWriter localFileWriter = new LocalFileWriter(localFileCache, tempFolder, null);
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
 
     TelemetryChannel telemetryChannel =
-        new TelemetryChannel(
-            pipelineBuilder.build(), new URL("http://foo.bar"), localFileWriter, null);
+        new TelemetryChannel(pipelineBuilder.build(), new URL("http://foo.bar"), spool, null);
 
-    // persist 10 files to disk
+    // persist 10 batches to disk
     for (int i = 0; i < 10; i++) {
-      localFileWriter.writeToDisk(
+      spool.writeToDisk(
           singletonList(ByteBuffer.wrap("hello world".getBytes(UTF_8))), INSTRUMENTATION_KEY);
     }
 
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(10);
-
-    Collection<File> files = FileUtils.listFiles(tempFolder, new String[] {"trn"}, false);
-    assertThat(files.size()).isEqualTo(10);
+    assertThat(spool.getPendingCount()).isEqualTo(10);
 
-    // fail to send persisted files and expect them to be kept on disk
+    // fail to send persisted batches and expect them to be kept on disk
     for (int i = 0; i < 10; i++) {
-      LocalFileLoader.PersistedFile persistedFile = localFileLoader.loadTelemetriesFromDisk();
-      assertThat(persistedFile.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
+      LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+      assertThat(persistedBatch.instrumentationKey).isEqualTo(INSTRUMENTATION_KEY);
 
       CompletableResultCode completableResultCode =
-          telemetryChannel.sendRawBytes(persistedFile.rawBytes, persistedFile.instrumentationKey);
+          telemetryChannel.sendRawBytes(persistedBatch.rawBytes, persistedBatch.instrumentationKey);
       completableResultCode.join(10, SECONDS);
       assertThat(completableResultCode.isSuccess()).isEqualTo(false);
-      localFileLoader.updateProcessedFileStatus(false, persistedFile.file);
+      spool.updateProcessedStatus(false, persistedBatch);
+    }
+
+    assertThat(spool.getPendingCount()).isEqualTo(10);
+
+    // and to be sent again after a restart
+    spool.close();
+    spool = new LocalFileSpool(tempFolder, null);
+    assertThat(spool.getPendingCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void testRecoverTornWrite() throws IOException {
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    for (int i = 0; i < 3; i++) {
+      spool.writeToDisk(
+          singletonList(ByteBuffer.wrap(("batch" + i).getBytes(UTF_8))), INSTRUMENTATION_KEY);
+    }
+    // simulates a crash, the segment is left with its pre-allocated length
+    spool.close();
+
+    File segmentFile = listFiles().iterator().next();
+    assertThat(segmentFile.length()).isEqualTo(LocalFileSpool.DEFAULT_SEGMENT_SIZE_IN_BYTES);
+
+    // corrupt the payload of the last record, as if the process died in the middle of writing it
+    int recordSize = LocalFileSpool.HEADER_SIZE + 6;
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+      file.seek(3L * recordSize - 1);
+      file.write('x');
+    }
+
+    spool = new LocalFileSpool(tempFolder, null);
+    assertThat(spool.getPendingCount()).isEqualTo(2);
+    assertThat(segmentFile.length()).isEqualTo(2L * recordSize);
+    assertThat(spool.getSizeInBytes()).isEqualTo(2L * recordSize);
+    for (int i = 0; i < 2; i++) {
+      LocalFileSpool.PersistedBatch persistedBatch = spool.loadTelemetriesFromDisk();
+      assertThat(new String(persistedBatch.rawBytes.array(), UTF_8)).isEqualTo("batch" + i);
+    }
+  }
+
+  @Test
+  public void testCapacity() {
+    NonessentialStatsbeat nonessentialStatsbeat = new NonessentialStatsbeat();
+    int recordSize = LocalFileSpool.HEADER_SIZE + 1000;
+    LocalFileSpool spool = createSpool(5L * recordSize, 4 * 1024, nonessentialStatsbeat);
+
+    for (int i = 0; i < 6; i++) {
+      spool.writeToDisk(singletonList(ByteBuffer.wrap(new byte[1000])), INSTRUMENTATION_KEY);
+    }
+
+    assertThat(spool.getPendingCount()).isEqualTo(5);
+    assertThat(spool.getSizeInBytes()).isEqualTo(5L * recordSize);
+    assertThat(nonessentialStatsbeat.getWriteFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCapacityIsSharedWithOtherProcesses() {
+    int recordSize = LocalFileSpool.HEADER_SIZE + 1000;
+    LocalFileSpool otherSpool = createSpool(5L * recordSize, 4 * 1024, null);
+    for (int i = 0; i < 3; i++) {
+      otherSpool.writeToDisk(singletonList(ByteBuffer.wrap(new byte[1000])), INSTRUMENTATION_KEY);
+    }
+
+    // the other spool's (pre-allocated) segment is locked, so it is counted towards the capacity
+    NonessentialStatsbeat nonessentialStatsbeat = new NonessentialStatsbeat();
+    LocalFileSpool spool = createSpool(5L * recordSize, 4 * 1024, nonessentialStatsbeat);
+    assertThat(spool.getPendingCount()).isEqualTo(0);
+    for (int i = 0; i < 2; i++) {
+      spool.writeToDisk(singletonList(ByteBuffer.wrap(new byte[1000])), INSTRUMENTATION_KEY);
     }
 
-    files = FileUtils.listFiles(tempFolder, new String[] {"trn"}, false);
-    assertThat(files.size()).isEqualTo(10);
-    assertThat(localFileCache.getPersistedFilesCache().size()).isEqualTo(10);
+    assertThat(spool.getPendingCount()).isEqualTo(1);
+    assertThat(nonessentialStatsbeat.getWriteFailureCount()).isEqualTo(1);
+  }
+
+  private LocalFileSpool createSpool(
+      long maxSizeInBytes,
+      long segmentSizeInBytes,
+      @Nullable NonessentialStatsbeat nonessentialStatsbeat) {
+    return new LocalFileSpool(
+        tempFolder,
+        maxSizeInBytes,
+        segmentSizeInBytes,
+        LocalFileSpool.FsyncPolicy.NEVER,
+        LocalFileSpool.DEFAULT_FSYNC_INTERVAL_MILLIS,
+        TimeUnit.HOURS.toMillis(48),
+        nonessentialStatsbeat);
+  }
+
+  private File copyResource(String resourceName, String filename) throws IOException {
+    File sourceFile = new File(getClass().getClassLoader().getResource(resourceName).getPath());
+    File persistedFile = new File(tempFolder, filename);
+    FileUtils.copyFile(sourceFile, persistedFile);
+    assertThat(persistedFile.exists()).isTrue();
+    return persistedFile;
+  }
+
+  private Collection<File> listFiles() {
+    return FileUtils.listFiles(tempFolder, null, false);
   }
 
   private static void verifyTelemetryName(int index, String actualName) {
@@ -0,0 +1,184 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DeadLockDetectorPerformanceCounterTest {
+
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final List<Thread> threads = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  @Test
+  void detectsDeadlock() throws InterruptedException {
+    ReentrantLock lock1 = new ReentrantLock();
+    ReentrantLock lock2 = new ReentrantLock();
+    CountDownLatch bothLocked = new CountDownLatch(2);
+    Thread thread1 = startThread(() -> lockBoth(lock1, lock2, bothLocked));
+    Thread thread2 = startThread(() -> lockBoth(lock2, lock1, bothLocked));
+    await().until(() -> lock1.hasQueuedThreads() && lock2.hasQueuedThreads());
+
+    DeadLockDetectorPerformanceCounter counter = newCounter();
+    sampleAllThreads(counter);
+
+    DeadLockDetectorPerformanceCounter.Interval interval = counter.collectInterval();
+    assertThat(interval.deadlockedThreadIds).contains(thread1.getId(), thread2.getId());
+    assertThat(interval.detections).isEqualTo(1);
+    assertThat(interval.hotspots)
+        .extracting(Map.Entry::getKey)
+        .anyMatch(lockName -> lockName.contains("ReentrantLock"));
+
+    // the ongoing deadlock is still reported in the next interval, which needs a new detection
+    nanoTime.addAndGet(
+        MILLISECONDS.toNanos(DeadLockDetectorPerformanceCounter.MIN_DETECTION_INTERVAL_MILLIS));
+    sampleAllThreads(counter);
+    interval = counter.collectInterval();
+    assertThat(interval.deadlockedThreadIds).contains(thread1.getId(), thread2.getId());
+    assertThat(interval.detections).isEqualTo(1);
+  }
+
+  @Test
+  void reportsContendedMonitorWithoutDeadlock() throws InterruptedException {
+    Object monitor = new Object();
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    startThread(
+        () -> {
+          synchronized (monitor) {
+            locked.countDown();
+            release.await();
+          }
+        });
+    locked.await();
+    Thread blocked1 = startThread(() -> lockMonitor(monitor));
+    Thread blocked2 = startThread(() -> lockMonitor(monitor));
+    await().until(() -> isBlocked(blocked1) && isBlocked(blocked2));
+
+    DeadLockDetectorPerformanceCounter counter = newCounter();
+    sampleAllThreads(counter);
+    // the number of blocked threads doesn't go up, and a detection already ran in this interval
+    sampleAllThreads(counter);
+
+    DeadLockDetectorPerformanceCounter.Interval interval = counter.collectInterval();
+    release.countDown();
+
+    assertThat(interval.deadlockedThreadIds).isEmpty();
+    assertThat(interval.detections).isEqualTo(1);
+    assertThat(interval.blockedThreads).isGreaterThanOrEqualTo(2);
+    assertThat(interval.hotspots).isNotEmpty();
+    assertThat(interval.hotspots.get(0).getKey()).startsWith("java.lang.Object@");
+    assertThat(interval.hotspots.get(0).getValue())
+        .isGreaterThanOrEqualTo(2.0 * DeadLockDetectorPerformanceCounter.SAMPLE_INTERVAL_MILLIS);
+  }
+
+  @Test
+  void doesNotDetectWithoutContention() {
+    DeadLockDetectorPerformanceCounter counter = newCounter();
+    sampleAllThreads(counter);
+
+    DeadLockDetectorPerformanceCounter.Interval interval = counter.collectInterval();
+    assertThat(interval.deadlockedThreadIds).isEmpty();
+    assertThat(interval.detections).isEqualTo(0);
+    assertThat(interval.samples).isGreaterThan(0);
+  }
+
+  private DeadLockDetectorPerformanceCounter newCounter() {
+    return new DeadLockDetectorPerformanceCounter(threadBean, 60000, nanoTime::get);
+  }
+
+  // samples until every live thread has been sampled once
+  private static void sampleAllThreads(DeadLockDetectorPerformanceCounter counter) {
+    int threadCount = ManagementFactory.getThreadMXBean().getThreadCount();
+    int samples = threadCount / DeadLockDetectorPerformanceCounter.MAX_THREADS_PER_SAMPLE + 1;
+    for (int i = 0; i < samples; i++) {
+      counter.sample();
+    }
+  }
+
+  private static boolean isBlocked(Thread thread) {
+    return thread.getState() == Thread.State.BLOCKED;
+  }
+
+  private Thread startThread(InterruptibleRunnable runnable) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                runnable.run();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    thread.setDaemon(true);
+    thread.start();
+    threads.add(thread);
+    return thread;
+  }
+
+  private static void lockBoth(
+      ReentrantLock first, ReentrantLock second, CountDownLatch bothLocked)
+      throws InterruptedException {
+    first.lockInterruptibly();
+    try {
+      bothLocked.countDown();
+      bothLocked.await();
+      second.lockInterruptibly();
+      second.unlock();
+    } finally {
+      first.unlock();
+    }
+  }
+
+  private static void lockMonitor(Object monitor) {
+    synchronized (monitor) {
+      // just needs to acquire it
+    }
+  }
+
+  private interface InterruptibleRunnable {
+    void run() throws InterruptedException;
+  }
+}
@@ -121,6 +121,46 @@ class JmxDataFetcherTest {
     performTest(attributes, 1000.0, 2000.0, 3000.0);
   }
 
+  @Test
+  void testPatternFollowsRegistrations() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    List<JmxAttributeData> attributes = new ArrayList<>();
+    attributes.add(new JmxAttributeData("Int", "IntSample"));
+
+    ObjectName first = new ObjectName("JSDKTests:type=PatternStub,name=first");
+    server.registerMBean(new TestStub(1, 2.0, 3L), first);
+    assertThat(JmxDataFetcher.fetch("JSDKTests:type=PatternStub,*", attributes).get("Int"))
+        .containsExactly(1);
+
+    // the cached object names are refreshed when a matching MBean is registered
+    ObjectName second = new ObjectName("JSDKTests:type=PatternStub,name=second");
+    server.registerMBean(new TestStub(10, 2.0, 3L), second);
+    assertThat(JmxDataFetcher.fetch("JSDKTests:type=PatternStub,*", attributes).get("Int"))
+        .containsExactlyInAnyOrder(1, 10);
+
+    // and when one is unregistered
+    server.unregisterMBean(first);
+    assertThat(JmxDataFetcher.fetch("JSDKTests:type=PatternStub,*", attributes).get("Int"))
+        .containsExactly(10);
+
+    server.unregisterMBean(second);
+    assertThatThrownBy(() -> JmxDataFetcher.fetch("JSDKTests:type=PatternStub,*", attributes))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testCompositeAttribute() throws Exception {
+    List<JmxAttributeData> attributes = new ArrayList<>();
+    attributes.add(new JmxAttributeData("Used", "HeapMemoryUsage.used"));
+    attributes.add(new JmxAttributeData("Committed", "HeapMemoryUsage.committed"));
+
+    Map<String, Collection<Object>> result =
+        JmxDataFetcher.fetch("java.lang:type=Memory", attributes);
+
+    assertThat(result.get("Used")).hasSize(1).hasOnlyElementsOfType(Long.class);
+    assertThat(result.get("Committed")).hasSize(1).hasOnlyElementsOfType(Long.class);
+  }
+
   private static void performTest(
       List<JmxAttributeData> attributes,
       double expectedInt,
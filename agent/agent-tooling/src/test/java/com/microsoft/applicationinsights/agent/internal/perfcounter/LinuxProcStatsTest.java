@@ -0,0 +1,86 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+class LinuxProcStatsTest {
+
+  @Test
+  void parseProcessCpuTicks() {
+    byte[] stat =
+        ("4242 (my (weird) cmd) S 1 4242 4242 0 -1 4194560 1000 0 0 0 250 17 0 0 20 0 30 0 100"
+                + " 5000000 2000\n")
+            .getBytes(US_ASCII);
+
+    assertThat(LinuxProcStats.parseProcessCpuTicks(stat, stat.length)).isEqualTo(267);
+  }
+
+  @Test
+  void parseIoBytes() {
+    byte[] io =
+        ("rchar: 1000\nwchar: 2000\nsyscr: 10\nsyscw: 20\nread_bytes: 4096\nwrite_bytes: 8192\n"
+                + "cancelled_write_bytes: 0\n")
+            .getBytes(US_ASCII);
+
+    assertThat(LinuxProcStats.parseIoBytes(io, io.length)).isEqualTo(12288);
+  }
+
+  @Test
+  void parseSystemCpuTicksAndCpuCount() {
+    byte[] stat =
+        ("cpu  100 5 50 1000 1 0 0 0 0 0\ncpu0 60 5 30 500 1 0 0 0 0 0\n"
+                + "cpu1 40 0 20 500 0 0 0 0 0 0\nintr 12345 0 0\nctxt 678\n")
+            .getBytes(US_ASCII);
+
+    assertThat(LinuxProcStats.parseSystemCpuTicks(stat, stat.length)).isEqualTo(150);
+    assertThat(LinuxProcStats.parseCpuCount(stat, stat.length)).isEqualTo(2);
+  }
+
+  @Test
+  void parseInvalidContent() {
+    byte[] garbage = "garbage".getBytes(US_ASCII);
+
+    assertThat(LinuxProcStats.parseProcessCpuTicks(garbage, garbage.length)).isEqualTo(-1);
+    assertThat(LinuxProcStats.parseIoBytes(garbage, garbage.length)).isEqualTo(-1);
+    assertThat(LinuxProcStats.parseSystemCpuTicks(garbage, garbage.length)).isEqualTo(-1);
+    assertThat(LinuxProcStats.parseCpuCount(garbage, garbage.length)).isEqualTo(0);
+  }
+
+  @Test
+  @EnabledOnOs(OS.LINUX)
+  void readsProc() {
+    LinuxProcStats procStats = LinuxProcStats.getInstance();
+
+    assertThat(procStats).isNotNull();
+    long processCpuTimeNanos = procStats.getProcessCpuTimeNanos();
+    assertThat(processCpuTimeNanos).isGreaterThan(0);
+    assertThat(procStats.getProcessCpuTimeNanos()).isGreaterThanOrEqualTo(processCpuTimeNanos);
+    assertThat(procStats.getSystemCpuMillis()).isGreaterThan(0);
+    assertThat(procStats.getCpuCount()).isGreaterThan(0);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.microsoft.applicationinsights.agent.internal.perfcounter.PerformanceCounterScheduler.ScheduledCounter;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PerformanceCounterSchedulerTest {
+
+  private final ScheduledExecutorService scheduledExecutor =
+      Executors.newSingleThreadScheduledExecutor();
+  private final ExecutorService workers = Executors.newCachedThreadPool();
+  private final TelemetryClient telemetryClient = TelemetryClient.createForTest();
+  private final PerformanceCounterScheduler scheduler =
+      new PerformanceCounterScheduler(scheduledExecutor, workers, () -> telemetryClient);
+
+  @AfterEach
+  void tearDown() {
+    scheduledExecutor.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  @Test
+  void slowCounterDoesNotDelayOtherCounters() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    TestCounter slow = new TestCounter("slow", release);
+    TestCounter fast = new TestCounter("fast", null);
+
+    ScheduledCounter slowStats = scheduler.schedule(slow, 10, 5);
+    ScheduledCounter fastStats = scheduler.schedule(fast, 10, 1000);
+
+    // the fast counter keeps being reported while the slow one is stuck in its first collection
+    await().until(() -> fast.reportCount.get() >= 5);
+    assertThat(slow.reportCount.get()).isEqualTo(1);
+    await().until(() -> slowStats.getSkippedCount() > 0);
+    assertThat(fastStats.getOverrunCount()).isEqualTo(0);
+
+    release.countDown();
+
+    await().until(() -> slowStats.getCollectionCount() >= 1);
+    assertThat(slowStats.getOverrunCount()).isGreaterThanOrEqualTo(1);
+    assertThat(slowStats.getMaxCollectionMillis()).isGreaterThan(5);
+    await().until(() -> slow.reportCount.get() >= 2);
+  }
+
+  @Test
+  void exceptionsDoNotStopCollection() {
+    TestCounter failing =
+        new TestCounter("failing", null) {
+          @Override
+          public void report(TelemetryClient telemetryClient) {
+            super.report(telemetryClient);
+            throw new IllegalStateException("test");
+          }
+        };
+
+    ScheduledCounter stats = scheduler.schedule(failing, 10, 1000);
+
+    await().until(() -> stats.getCollectionCount() >= 3);
+    assertThat(stats.getSkippedCount()).isEqualTo(0);
+    assertThat(stats.getPeriodMillis()).isEqualTo(10);
+    assertThat(stats.getExpectedDurationMillis()).isEqualTo(1000);
+  }
+
+  private static class TestCounter implements PerformanceCounter {
+
+    private final String id;
+    @Nullable private final CountDownLatch release;
+    private final AtomicInteger reportCount = new AtomicInteger();
+
+    private TestCounter(String id, @Nullable CountDownLatch release) {
+      this.id = id;
+      this.release = release;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public void report(TelemetryClient telemetryClient) {
+      reportCount.incrementAndGet();
+      if (release != null) {
+        try {
+          release.await(30, SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAttribute;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.IncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.RegexpIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.StrictIncludeExclude;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class AgentProcessorTest {
+
+  private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
+
+  @Test
+  void shouldCombineSpanPatterns() {
+    List<Pattern> patterns = compile("^svc.*", "(?i)GET", "foo$");
+
+    Pattern combined = RegexpIncludeExclude.combine(patterns);
+
+    assertThat(combined).isNotNull();
+    for (String name : asList("svcA", "get", "barfoo", "foobar", "Svc", "GET x", "xsvc")) {
+      assertThat(combined.matcher(name).find()).isEqualTo(anyFound(patterns, name));
+    }
+  }
+
+  @Test
+  void shouldNotCombineSpanPatternsThatCannotBeWrapped() {
+    assertThat(RegexpIncludeExclude.combine(compile("(a)\\1", "b"))).isNull();
+    assertThat(RegexpIncludeExclude.combine(compile("\\Qa.b", "c"))).isNull();
+    assertThat(RegexpIncludeExclude.combine(compile("(?<x>a)", "(?<x>b)"))).isNull();
+  }
+
+  @Test
+  void shouldMatchAnyRegexpSpanName() {
+    // the first two patterns can be combined, the last one can't
+    IncludeExclude combined = regexp("^svc", "B$");
+    IncludeExclude notCombined = regexp("^svc", "B$", "(x)\\1");
+
+    for (IncludeExclude includeExclude : asList(combined, notCombined)) {
+      assertThat(includeExclude.isMatch(newSpan("svcA"), false)).isTrue();
+      assertThat(includeExclude.isMatch(newSpan("xB"), false)).isTrue();
+      assertThat(includeExclude.isMatch(newSpan("xsvc"), false)).isFalse();
+    }
+    assertThat(notCombined.isMatch(newSpan("xx"), false)).isTrue();
+  }
+
+  @Test
+  void shouldMatchStrictSpanNamesAndAttributes() {
+    ProcessorAttribute keyOnly = new ProcessorAttribute();
+    keyOnly.key = "one";
+    ProcessorAttribute keyAndValue = new ProcessorAttribute();
+    keyAndValue.key = "two";
+    keyAndValue.value = "2";
+    IncludeExclude includeExclude =
+        new StrictIncludeExclude(asList(keyOnly, keyAndValue), asList("svcA", "svcB"));
+
+    Span span =
+        tracer.spanBuilder("svcB").setAttribute("one", "x").setAttribute("two", "2").startSpan();
+    Span otherName =
+        tracer.spanBuilder("svcC").setAttribute("one", "x").setAttribute("two", "2").startSpan();
+    Span otherValue =
+        tracer.spanBuilder("svcA").setAttribute("one", "x").setAttribute("two", "3").startSpan();
+
+    assertThat(includeExclude.isMatch(toProcessedSpan(span), false)).isTrue();
+    assertThat(includeExclude.isMatch(toProcessedSpan(otherName), false)).isFalse();
+    assertThat(includeExclude.isMatch(toProcessedSpan(otherValue), false)).isFalse();
+  }
+
+  private ProcessedSpan newSpan(String name) {
+    return toProcessedSpan(tracer.spanBuilder(name).startSpan());
+  }
+
+  private static ProcessedSpan toProcessedSpan(Span span) {
+    return new ProcessedSpan(((ReadableSpan) span).toSpanData());
+  }
+
+  private static IncludeExclude regexp(String... spanNames) {
+    ProcessorIncludeExclude config = new ProcessorIncludeExclude();
+    config.matchType = MatchType.REGEXP;
+    config.spanNames = asList(spanNames);
+    return RegexpIncludeExclude.create(config);
+  }
+
+  private static List<Pattern> compile(String... regexes) {
+    List<Pattern> patterns = new ArrayList<>();
+    for (String regex : regexes) {
+      patterns.add(Pattern.compile(regex));
+    }
+    return patterns;
+  }
+
+  private static boolean anyFound(List<Pattern> patterns, String name) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(name).find()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.agent.internal.processors;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -45,7 +46,7 @@ import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 
-class ExporterWithAttributeProcessorTest {
+class AttributeProcessorTest {
 
   private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
 
@@ -56,7 +57,7 @@ class ExporterWithAttributeProcessorTest {
     config.type = ProcessorType.ATTRIBUTE;
     config.id = "noAction";
 
-    assertThatThrownBy(() -> new ExporterWithAttributeProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -75,7 +76,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new ExporterWithAttributeProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -94,7 +95,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new ExporterWithAttributeProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -109,7 +110,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -146,7 +147,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -186,7 +187,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(action);
     actions.add(updateAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -228,7 +229,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(action);
     actions.add(updateAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -265,7 +266,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -304,7 +305,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -344,7 +345,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -395,7 +396,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -434,7 +435,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(updateAction);
     actions.add(deleteAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -474,7 +475,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -543,7 +544,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -626,7 +627,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -696,7 +697,7 @@ class ExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new ExporterWithAttributeProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -719,7 +720,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -803,7 +804,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -883,7 +884,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -952,7 +953,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -1021,7 +1022,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -1101,7 +1102,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -1177,7 +1178,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -1253,7 +1254,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -1320,7 +1321,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -1367,7 +1368,7 @@ class ExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new ExporterWithAttributeProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -0,0 +1,131 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.NameConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorType;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import org.junit.jupiter.api.Test;
+
+class ExporterWithProcessorsTest {
+
+  private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
+
+  @Test
+  void laterProcessorsShouldSeeChangesFromEarlierProcessors() {
+    MockExporter mockExporter = new MockExporter();
+    ExporterWithProcessors exporter =
+        new ExporterWithProcessors(
+            asList(renameConfig(), insertConfig("locationget", "key", "value")), mockExporter);
+
+    Span span =
+        tracer
+            .spanBuilder("svcA")
+            .setAttribute("db.svc", "location")
+            .setAttribute("operation", "get")
+            .startSpan();
+    exporter.export(singletonList(((ReadableSpan) span).toSpanData()));
+
+    SpanData resultSpan = mockExporter.getSpans().get(0);
+    assertThat(resultSpan.getName()).isEqualTo("locationget");
+    assertThat(resultSpan.getAttributes().get(AttributeKey.stringKey("key"))).isEqualTo("value");
+    assertThat(resultSpan.getAttributes().get(AttributeKey.stringKey("db.svc")))
+        .isEqualTo("location");
+  }
+
+  @Test
+  void shouldNotCopySpanWhenNothingChanged() {
+    MockExporter mockExporter = new MockExporter();
+    ExporterWithProcessors exporter =
+        new ExporterWithProcessors(
+            asList(renameConfig(), insertConfig("other", "key", "value")), mockExporter);
+
+    Span span = tracer.spanBuilder("svcA").setAttribute("one", "1").startSpan();
+    SpanData spanData = ((ReadableSpan) span).toSpanData();
+    exporter.export(singletonList(spanData));
+
+    assertThat(mockExporter.getSpans().get(0)).isSameAs(spanData);
+  }
+
+  @Test
+  void shouldAddBackCompatHttpUrlBeforeProcessors() {
+    MockExporter mockExporter = new MockExporter();
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.ATTRIBUTE;
+    config.id = "hashUrl";
+    config.actions =
+        singletonList(
+            new ProcessorAction("http.url", ProcessorActionType.HASH, null, null, null));
+    ExporterWithProcessors exporter =
+        new ExporterWithProcessors(singletonList(config), mockExporter);
+
+    Span span =
+        tracer
+            .spanBuilder("svcA")
+            .setAttribute(SemanticAttributes.HTTP_SCHEME, "https")
+            .setAttribute(SemanticAttributes.HTTP_HOST, "example.com")
+            .setAttribute(SemanticAttributes.HTTP_TARGET, "/path")
+            .startSpan();
+    exporter.export(singletonList(((ReadableSpan) span).toSpanData()));
+
+    SpanData resultSpan = mockExporter.getSpans().get(0);
+    assertThat(resultSpan.getAttributes().get(SemanticAttributes.HTTP_URL))
+        .isNotNull()
+        .isNotEqualTo("https://example.com/path");
+  }
+
+  private static ProcessorConfig renameConfig() {
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.SPAN;
+    config.id = "rename";
+    config.name = new NameConfig();
+    config.name.fromAttributes = asList("db.svc", "operation");
+    return config;
+  }
+
+  private static ProcessorConfig insertConfig(String spanName, String key, String value) {
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.ATTRIBUTE;
+    config.id = "insert";
+    config.include = new ProcessorIncludeExclude();
+    config.include.matchType = MatchType.STRICT;
+    config.include.spanNames = singletonList(spanName);
+    config.actions =
+        singletonList(new ProcessorAction(key, ProcessorActionType.INSERT, value, null, null));
+    return config;
+  }
+}
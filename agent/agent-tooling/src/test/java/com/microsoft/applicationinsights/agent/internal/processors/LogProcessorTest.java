@@ -21,6 +21,7 @@
 
 package com.microsoft.applicationinsights.agent.internal.processors;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -42,7 +43,7 @@ import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.Test;
 
-class ExporterWithLogProcessorTest {
+class LogProcessorTest {
 
   private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
 
@@ -53,7 +54,7 @@ class ExporterWithLogProcessorTest {
     config.type = ProcessorType.LOG;
     config.id = "noBodyObjectTest";
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -65,7 +66,7 @@ class ExporterWithLogProcessorTest {
     config.id = "inValidConfigTestWithToAttributesNoRules";
     config.body = new NameConfig();
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -78,7 +79,7 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.toAttributes = new ToAttributeConfig();
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -90,7 +91,7 @@ class ExporterWithLogProcessorTest {
     config.id = "SimpleRenameLogMessage";
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -124,7 +125,7 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.body.separator = "::";
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -158,7 +159,7 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.body.separator = "::";
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -194,7 +195,7 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules.add("***");
     config.body.toAttributes = toAttributeConfig;
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -209,7 +210,7 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules = new ArrayList<>();
     toAttributeConfig.rules.add("^/api/v1/document/(?<documentId>.*)/update$");
     config.body.toAttributes = toAttributeConfig;
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -254,7 +255,7 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules.add("Password=(?<password1>[^ ]+)");
     toAttributeConfig.rules.add("Pass=(?<password2>[^ ]+)");
     config.body.toAttributes = toAttributeConfig;
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -327,7 +328,7 @@ class ExporterWithLogProcessorTest {
     config.id = "SimpleRenameSpan";
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    SpanExporter exampleExporter = new ExporterWithLogProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -21,6 +21,7 @@
 
 package com.microsoft.applicationinsights.agent.internal.processors;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -44,7 +45,7 @@ import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.Test;
 
-class ExporterWithSpanProcessorTest {
+class SpanProcessorTest {
 
   private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
 
@@ -55,7 +56,7 @@ class ExporterWithSpanProcessorTest {
     config.type = ProcessorType.SPAN;
     config.id = "noNameObjectTest";
 
-    assertThatThrownBy(() -> new ExporterWithSpanProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -67,7 +68,7 @@ class ExporterWithSpanProcessorTest {
     config.id = "inValidConfigTestWithToAttributesNoRules";
     config.name = new NameConfig();
 
-    assertThatThrownBy(() -> new ExporterWithSpanProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -80,7 +81,7 @@ class ExporterWithSpanProcessorTest {
     config.name = new NameConfig();
     config.name.toAttributes = new ToAttributeConfig();
 
-    assertThatThrownBy(() -> new ExporterWithSpanProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -92,7 +93,7 @@ class ExporterWithSpanProcessorTest {
     config.id = "SimpleRenameSpan";
     config.name = new NameConfig();
     config.name.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -125,7 +126,7 @@ class ExporterWithSpanProcessorTest {
     config.name = new NameConfig();
     config.name.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.name.separator = "::";
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -158,7 +159,7 @@ class ExporterWithSpanProcessorTest {
     config.name = new NameConfig();
     config.name.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.name.separator = "::";
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -192,7 +193,7 @@ class ExporterWithSpanProcessorTest {
     config.include = new ProcessorIncludeExclude();
     config.include.matchType = MatchType.STRICT;
     config.include.spanNames = Arrays.asList("svcA", "svcB");
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -265,7 +266,7 @@ class ExporterWithSpanProcessorTest {
     toAttributeConfig.rules.add("***");
     config.name.toAttributes = toAttributeConfig;
 
-    assertThatThrownBy(() -> new ExporterWithSpanProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new ExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -280,7 +281,7 @@ class ExporterWithSpanProcessorTest {
     toAttributeConfig.rules = new ArrayList<>();
     toAttributeConfig.rules.add("^/api/v1/document/(?<documentId>.*)/update$");
     config.name.toAttributes = toAttributeConfig;
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -324,7 +325,7 @@ class ExporterWithSpanProcessorTest {
     toAttributeConfig.rules.add("Password=(?<password1>[^ ]+)");
     toAttributeConfig.rules.add("Pass=(?<password2>[^ ]+)");
     config.name.toAttributes = toAttributeConfig;
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -402,7 +403,7 @@ class ExporterWithSpanProcessorTest {
     config.exclude.spanNames = Arrays.asList("donot/change");
     config.name.toAttributes = new ToAttributeConfig();
     config.name.toAttributes.rules = Arrays.asList("(?<operationwebsite>.*?)$");
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span spanA =
         tracer
@@ -483,7 +484,7 @@ class ExporterWithSpanProcessorTest {
     config.id = "SimpleRenameSpan";
     config.name = new NameConfig();
     config.name.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    SpanExporter exampleExporter = new ExporterWithSpanProcessor(config, mockExporter);
+    SpanExporter exampleExporter = new ExporterWithProcessors(singletonList(config), mockExporter);
 
     Span span =
         tracer
@@ -24,15 +24,30 @@ package com.microsoft.applicationinsights.agent.internal.quickpulse;
 import static com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseTestBase.createExceptionTelemetry;
 import static com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseTestBase.createRemoteDependencyTelemetry;
 import static com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseTestBase.createRequestTelemetry;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RemoteDependencyData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RequestData;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
-import com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseDataCollector.CountAndDuration;
-import com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseDataCollector.Counters;
 import com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseDataCollector.FinalCounters;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.QuickPulseDataCollector.LatencyHistogram;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.model.QuickPulseDependencyDocument;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.model.QuickPulseDocument;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.model.QuickPulseExceptionDocument;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.model.QuickPulseRequestDocument;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -183,13 +198,293 @@ class QuickPulseDataCollectorTests {
   }
 
   @Test
-  void encodeDecodeIsIdentity() {
-    final long count = 456L;
-    final long duration = 112233L;
-    long encoded = Counters.encodeCountAndDuration(count, duration);
-    CountAndDuration inputs = Counters.decodeCountAndDuration(encoded);
-    assertThat(inputs.count).isEqualTo(count);
-    assertThat(inputs.duration).isEqualTo(duration);
+  void countsAreNotCappedPerInterval() {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    // the previous packed encoding silently dropped everything past 524287 per interval
+    TelemetryItem telemetry = createRequestTelemetry("request-test", new Date(), 1, "200", true);
+    telemetry.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    for (int i = 0; i < 600_000; i++) {
+      QuickPulseDataCollector.INSTANCE.add(telemetry);
+    }
+    FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    assertThat(counters.requests).isEqualTo(600_000);
+    assertThat(counters.requestsDuration).isEqualTo(600_000);
+  }
+
+  @Test
+  void requestDurationPercentiles() {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    // 90 fast requests, 8 slower ones and 2 very slow ones
+    addRequests(90, 3);
+    addRequests(8, 150);
+    addRequests(2, 4000);
+
+    FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    assertThat(counters.requests).isEqualTo(100);
+    assertThat(counters.requestsDurationP50).isEqualTo(5);
+    assertThat(counters.requestsDurationP95).isEqualTo(200);
+    assertThat(counters.requestsDurationP99).isEqualTo(5000);
+
+    assertCountersReset(QuickPulseDataCollector.INSTANCE.peek());
+  }
+
+  @Test
+  void histogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.percentile(50)).isEqualTo(0);
+
+    histogram.record(0, 1);
+    assertThat(histogram.percentile(99)).isEqualTo(1);
+
+    // above the last bound
+    histogram.record(1_000_000, 1);
+    assertThat(histogram.percentile(50)).isEqualTo(1);
+    assertThat(histogram.percentile(99)).isEqualTo(100000);
+
+    // item counts from sampling are weighted
+    histogram.record(10, 98);
+    assertThat(histogram.percentile(50)).isEqualTo(10);
+    assertThat(histogram.percentile(99)).isEqualTo(10);
+  }
+
+  @Test
+  void noCountsAreLostUnderConcurrency() throws Exception {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    int threads = 8;
+    int opsPerThread = 250_000;
+    TelemetryItem request = createRequestTelemetry("request-test", new Date(), 7, "500", false);
+    request.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    TelemetryItem dependency = createRemoteDependencyTelemetry("dep-test", "dep-test-cmd", 3, true);
+    dependency.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    TelemetryItem exception = createExceptionTelemetry(new Exception());
+    exception.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int j = 0; j < opsPerThread; j++) {
+                  QuickPulseDataCollector.INSTANCE.add(request);
+                  QuickPulseDataCollector.INSTANCE.add(dependency);
+                  QuickPulseDataCollector.INSTANCE.add(exception);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, SECONDS);
+    }
+    executor.shutdown();
+
+    long total = (long) threads * opsPerThread;
+    FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    assertThat(counters.requests).isEqualTo(total);
+    assertThat(counters.unsuccessfulRequests).isEqualTo(total);
+    assertThat(counters.requestsDuration).isEqualTo(7.0 * total);
+    assertThat(counters.requestsDurationP99).isEqualTo(10);
+    assertThat(counters.rdds).isEqualTo(total);
+    assertThat(counters.unsuccessfulRdds).isEqualTo(0);
+    assertThat(counters.rddsDuration).isEqualTo(3.0 * total);
+    assertThat(counters.rddsDurationP50).isEqualTo(5);
+    assertThat(counters.exceptions).isEqualTo(total);
+    assertThat(counters.documentList).hasSize(1000);
+  }
+
+  @Test
+  void concurrentAddsFillTheDocumentsExactlyToTheLimit() throws Exception {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    // 8 x 125 is exactly the 1000 documents that are kept per interval
+    addDistinctRequestsConcurrently(8, 125);
+
+    FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    assertThat(counters.requests).isEqualTo(1000);
+    assertThat(counters.documentList).hasSize(1000);
+    assertThat(requestNames(counters.documentList))
+        .doesNotHaveDuplicates()
+        .containsExactlyInAnyOrderElementsOf(distinctRequestNames(8, 125));
+  }
+
+  @Test
+  void concurrentAddsPastTheLimitKeepOnlyTheLimit() throws Exception {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    addDistinctRequestsConcurrently(8, 5000);
+
+    FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    // every request is still counted, but only the first 1000 are kept as documents, and none of
+    // them twice
+    assertThat(counters.requests).isEqualTo(40000);
+    assertThat(counters.documentList).hasSize(1000).doesNotContainNull();
+    assertThat(requestNames(counters.documentList))
+        .doesNotHaveDuplicates()
+        .isSubsetOf(distinctRequestNames(8, 5000));
+
+    // and the next interval starts from an empty buffer again
+    addDistinctRequestsConcurrently(2, 10);
+    assertThat(QuickPulseDataCollector.INSTANCE.getAndRestart().documentList).hasSize(20);
+  }
+
+  private static void addDistinctRequestsConcurrently(int threads, int requestsPerThread)
+      throws Exception {
+    // the telemetry is created up front, so that the threads only contend on add()
+    List<List<TelemetryItem>> telemetryPerThread = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      List<TelemetryItem> telemetryItems = new ArrayList<>();
+      for (int j = 0; j < requestsPerThread; j++) {
+        TelemetryItem telemetry =
+            createRequestTelemetry("request-" + i + "-" + j, new Date(), 1, "200", true);
+        telemetry.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+        telemetryItems.add(telemetry);
+      }
+      telemetryPerThread.add(telemetryItems);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (List<TelemetryItem> telemetryItems : telemetryPerThread) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (TelemetryItem telemetry : telemetryItems) {
+                  QuickPulseDataCollector.INSTANCE.add(telemetry);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, SECONDS);
+    }
+    executor.shutdown();
+  }
+
+  private static List<String> distinctRequestNames(int threads, int requestsPerThread) {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      for (int j = 0; j < requestsPerThread; j++) {
+        names.add("request-" + i + "-" + j);
+      }
+    }
+    return names;
+  }
+
+  private static List<String> requestNames(List<QuickPulseDocument> documents) {
+    List<String> names = new ArrayList<>();
+    for (QuickPulseDocument document : documents) {
+      names.add(((QuickPulseRequestDocument) document).getOperationName());
+    }
+    return names;
+  }
+
+  @Test
+  void documentsAreBuiltFromTheTelemetry() {
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    telemetryClient.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    QuickPulseDataCollector.INSTANCE.setQuickPulseStatus(QuickPulseStatus.QP_IS_ON);
+    QuickPulseDataCollector.INSTANCE.enable(telemetryClient);
+
+    TelemetryItem request = createRequestTelemetry("request-test", new Date(), 1234, "500", false);
+    request.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    RequestData requestData = (RequestData) request.getData().getBaseData();
+    requestData.setId("request-id");
+    Map<String, Double> measurements = new HashMap<>();
+    measurements.put("measurement", 1.5);
+    // properties win over measurements with the same name
+    measurements.put("customProperty", 2.0);
+    requestData.setMeasurements(measurements);
+
+    TelemetryItem dependency = createRemoteDependencyTelemetry("dep-test", "dep-cmd", 56, true);
+    dependency.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    RemoteDependencyData dependencyData =
+        (RemoteDependencyData) dependency.getData().getBaseData();
+    dependencyData.setId("dep-id");
+    dependencyData.setTarget("dep-target");
+    dependencyData.setType("dep-type");
+    dependencyData.setResultCode("404");
+
+    TelemetryItem exception = createExceptionTelemetry(new IllegalStateException("test"));
+    exception.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+
+    QuickPulseDataCollector.INSTANCE.add(request);
+    QuickPulseDataCollector.INSTANCE.add(dependency);
+    QuickPulseDataCollector.INSTANCE.add(exception);
+
+    // these are the same values that were set when the documents were still built in add()
+    List<QuickPulseDocument> documents =
+        QuickPulseDataCollector.INSTANCE.getAndRestart().documentList;
+    assertThat(documents).hasSize(3);
+
+    QuickPulseRequestDocument requestDocument = (QuickPulseRequestDocument) documents.get(0);
+    assertThat(requestDocument.getDocumentType()).isEqualTo("Request");
+    assertThat(requestDocument.getType()).isEqualTo("RequestTelemetryDocument");
+    assertThat(requestDocument.getVersion()).isEqualTo("1.0");
+    assertThat(requestDocument.getOperationId()).isEqualTo("request-id");
+    assertThat(requestDocument.getOperationName()).isEqualTo("request-test");
+    assertThat(requestDocument.isSuccess()).isFalse();
+    assertThat(requestDocument.getDuration()).isEqualTo(requestData.getDuration());
+    assertThat(requestDocument.getResponseCode()).isEqualTo("500");
+    assertThat(requestDocument.getProperties())
+        .containsOnly(entry("customProperty", "customValue"), entry("measurement", "1.5"));
+
+    QuickPulseDependencyDocument dependencyDocument =
+        (QuickPulseDependencyDocument) documents.get(1);
+    assertThat(dependencyDocument.getDocumentType()).isEqualTo("RemoteDependency");
+    assertThat(dependencyDocument.getType()).isEqualTo("DependencyTelemetryDocument");
+    assertThat(dependencyDocument.getVersion()).isEqualTo("1.0");
+    assertThat(dependencyDocument.getOperationId()).isEqualTo("dep-id");
+    assertThat(dependencyDocument.getOperationName()).isEqualTo("dep-id");
+    assertThat(dependencyDocument.getName()).isEqualTo("dep-test");
+    assertThat(dependencyDocument.getCommandName()).isEqualTo("dep-cmd");
+    assertThat(dependencyDocument.getTarget()).isEqualTo("dep-target");
+    assertThat(dependencyDocument.isSuccess()).isTrue();
+    assertThat(dependencyDocument.getDuration()).isEqualTo(dependencyData.getDuration());
+    assertThat(dependencyDocument.getResultCode()).isEqualTo("404");
+    assertThat(dependencyDocument.getDependencyTypeName()).isEqualTo("dep-type");
+    assertThat(dependencyDocument.getProperties())
+        .containsOnly(entry("customProperty", "customValue"));
+
+    QuickPulseExceptionDocument exceptionDocument = (QuickPulseExceptionDocument) documents.get(2);
+    assertThat(exceptionDocument.getDocumentType()).isEqualTo("Exception");
+    assertThat(exceptionDocument.getType()).isEqualTo("ExceptionTelemetryDocument");
+    assertThat(exceptionDocument.getVersion()).isEqualTo("1.0");
+    assertThat(exceptionDocument.getExceptionMessage()).isEqualTo("test");
+    assertThat(exceptionDocument.getExceptionType())
+        .isEqualTo(IllegalStateException.class.getName());
+  }
+
+  private static void addRequests(int count, long duration) {
+    TelemetryItem telemetry =
+        createRequestTelemetry("request-test", new Date(), duration, "200", true);
+    telemetry.setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+    for (int i = 0; i < count; i++) {
+      QuickPulseDataCollector.INSTANCE.add(telemetry);
+    }
   }
 
   @Test
@@ -254,6 +549,11 @@ class QuickPulseDataCollectorTests {
     assertThat(counters.requestsDuration).isEqualTo(0);
     assertThat(counters.unsuccessfulRequests).isEqualTo(0);
 
+    assertThat(counters.requestsDurationP50).isEqualTo(0);
+    assertThat(counters.requestsDurationP99).isEqualTo(0);
+    assertThat(counters.rddsDurationP50).isEqualTo(0);
+    assertThat(counters.rddsDurationP99).isEqualTo(0);
+
     assertThat(counters.exceptions).isEqualTo(0);
   }
 
@@ -27,6 +27,7 @@ import com.azure.core.http.HttpHeaders;
 import com.azure.core.http.HttpPipeline;
 import com.azure.core.http.HttpPipelineBuilder;
 import com.microsoft.applicationinsights.agent.internal.MockHttpResponse;
+import com.microsoft.applicationinsights.agent.internal.quickpulse.model.QuickPulseMetrics;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -73,6 +74,33 @@ class QuickPulseDataFetcherTests {
         .isEqualTo("https://rt.services.visualstudio.com/QuickPulseService.svc/post?ikey=null");
   }
 
+  @Test
+  void durationPercentilesAreOnlySentWhenEnabled() {
+    QuickPulseDataCollector.FinalCounters counters =
+        new QuickPulseDataCollector.FinalCounters(
+            new QuickPulseDataCollector.Counters(), null, null);
+
+    QuickPulseDataFetcher defaultFetcher =
+        new QuickPulseDataFetcher(null, TelemetryClient.createForTest(), null, null, null);
+    assertThat(defaultFetcher.addMetricsToQuickPulseEnvelope(counters))
+        .extracting(QuickPulseMetrics::getName)
+        .noneMatch(name -> name.contains(" P50") || name.contains(" P95") || name.contains(" P99"))
+        .hasSize(11);
+
+    QuickPulseDataFetcher percentilesFetcher =
+        new QuickPulseDataFetcher(null, TelemetryClient.createForTest(), null, null, null, true);
+    assertThat(percentilesFetcher.addMetricsToQuickPulseEnvelope(counters))
+        .extracting(QuickPulseMetrics::getName)
+        .contains(
+            "\\ApplicationInsights\\Request Duration P50",
+            "\\ApplicationInsights\\Request Duration P95",
+            "\\ApplicationInsights\\Request Duration P99",
+            "\\ApplicationInsights\\Dependency Call Duration P50",
+            "\\ApplicationInsights\\Dependency Call Duration P95",
+            "\\ApplicationInsights\\Dependency Call Duration P99")
+        .hasSize(17);
+  }
+
   @Test
   void endpointChangesWithRedirectHeaderAndGetNewPingInterval() {
     Map<String, String> headers = new HashMap<>();
@@ -0,0 +1,103 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class RateLimitedSamplingPercentageTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  void shouldStartAt100() {
+    RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, nanoTime::get);
+
+    assertThat(percentage.get()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldStayAt100BelowTarget() {
+    RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, nanoTime::get);
+
+    // 5 per second
+    runWindows(percentage, 5, 3);
+
+    assertThat(percentage.getCurrent()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldAdaptToRateAboveTarget() {
+    RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, nanoTime::get);
+
+    // 100 per second
+    runWindows(percentage, 100, 1);
+
+    assertThat(percentage.getCurrent()).isEqualTo(10);
+    assertThat(percentage.getObservedRequestsPerSecond()).isCloseTo(100, within(1.0));
+  }
+
+  @Test
+  void shouldSmoothSpikes() {
+    RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, nanoTime::get);
+    runWindows(percentage, 10, 1);
+    assertThat(percentage.getCurrent()).isEqualTo(100);
+
+    // 10x spike
+    runWindows(percentage, 100, 1);
+    // half way between 10 and 100 per second
+    assertThat(percentage.getCurrent()).isEqualTo(100.0 / 6);
+
+    runWindows(percentage, 100, 10);
+    assertThat(percentage.getCurrent()).isEqualTo(10);
+
+    // back below the target
+    runWindows(percentage, 5, 10);
+    assertThat(percentage.getCurrent()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldRoundDownToNearest100OverN() {
+    assertThat(RateLimitedSamplingPercentage.toPercentage(10, 10)).isEqualTo(100);
+    assertThat(RateLimitedSamplingPercentage.toPercentage(10, 11)).isEqualTo(50);
+    assertThat(RateLimitedSamplingPercentage.toPercentage(10, 20)).isEqualTo(50);
+    assertThat(RateLimitedSamplingPercentage.toPercentage(10, 21)).isEqualTo(100.0 / 3);
+    assertThat(RateLimitedSamplingPercentage.toPercentage(0.5, 1000)).isEqualTo(0.05);
+  }
+
+  // calls get() at the given rate for the given number of windows
+  private void runWindows(RateLimitedSamplingPercentage percentage, int perSecond, int windows) {
+    long windowMillis = NANOSECONDS.toMillis(RateLimitedSamplingPercentage.WINDOW_NANOS);
+    long calls = perSecond * windowMillis / 1000;
+    long intervalNanos = RateLimitedSamplingPercentage.WINDOW_NANOS / calls;
+    for (int i = 0; i < windows; i++) {
+      for (long j = 0; j < calls; j++) {
+        nanoTime.addAndGet(intervalNanos);
+        percentage.get();
+      }
+    }
+  }
+}
@@ -279,6 +279,62 @@ class SamplingOverridesTest {
     assertThat(sampler.getOverride(SpanKind.SERVER, attributes)).isNull();
   }
 
+  @Test
+  void shouldUseFirstMatchingConfigEvenIfLaterOneIsCheaper() {
+    // given
+    List<SamplingOverride> overrides =
+        Arrays.asList(
+            newOverride(Configuration.SpanKind.SERVER, 10, newRegexpAttribute("two", "2.*")),
+            newOverride(Configuration.SpanKind.SERVER, 20, newStrictAttribute("one", "1")),
+            newOverride(null, 30, newKeyOnlyAttribute("one")));
+    SamplingOverrides sampler = new SamplingOverrides(overrides);
+    Attributes attributes =
+        Attributes.of(AttributeKey.stringKey("one"), "1", AttributeKey.stringKey("two"), "22");
+
+    // expect
+    assertThat(sampler.getOverride(SpanKind.SERVER, attributes).getPercentage()).isEqualTo(10);
+    assertThat(sampler.getOverride(SpanKind.CLIENT, attributes).getPercentage()).isEqualTo(30);
+  }
+
+  @Test
+  void shouldNotReuseDecisionForDifferentValues() {
+    // given
+    List<SamplingOverride> overrides =
+        singletonList(
+            newOverride(Configuration.SpanKind.SERVER, 0, newRegexpAttribute("one", "1.*")));
+    SamplingOverrides sampler = new SamplingOverrides(overrides);
+    Attributes matching = Attributes.of(AttributeKey.stringKey("one"), "11");
+    Attributes notMatching = Attributes.of(AttributeKey.stringKey("one"), "22");
+
+    // expect
+    for (int i = 0; i < 3; i++) {
+      assertThat(sampler.getOverride(SpanKind.SERVER, matching)).isNotNull();
+      assertThat(sampler.getOverride(SpanKind.SERVER, notMatching)).isNull();
+      assertThat(sampler.getOverride(SpanKind.SERVER, Attributes.empty())).isNull();
+    }
+  }
+
+  @Test
+  void shouldFilterHttpUrlFromServerSpanAttributes() {
+    // given
+    List<SamplingOverride> overrides =
+        singletonList(
+            newOverride(
+                Configuration.SpanKind.SERVER,
+                0,
+                newRegexpAttribute("http.url", "https://example.com/health.*")));
+    SamplingOverrides sampler = new SamplingOverrides(overrides);
+    Attributes attributes =
+        Attributes.builder()
+            .put("http.scheme", "https")
+            .put("http.host", "example.com")
+            .put("http.target", "/health/live")
+            .build();
+
+    // expect
+    assertThat(sampler.getOverride(SpanKind.SERVER, attributes)).isNotNull();
+  }
+
   private static SamplingOverride newOverride(
       Configuration.SpanKind spanKind, float percentage, SamplingOverrideAttribute... attribute) {
     SamplingOverride override = new SamplingOverride();
@@ -0,0 +1,266 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverrideAttribute;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.TailSampling;
+import com.microsoft.applicationinsights.agent.internal.processors.MockExporter;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryUtil;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TailSamplingExporterTest {
+
+  // trace id scores are ~15 and ~54
+  private static final String LOW_SCORE_TRACE_ID = "11111111111111111111111111111111";
+  private static final String HIGH_SCORE_TRACE_ID = "44444444444444444444444444444444";
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final MockExporter mockExporter = new MockExporter();
+
+  @Test
+  void shouldHoldSpansUntilLocalRootEnds() {
+    TailSamplingExporter exporter = newExporter(newConfig(100));
+
+    SpanData child = newSpan(LOW_SCORE_TRACE_ID, false, StatusData.unset());
+    exporter.export(singletonList(child));
+    assertThat(mockExporter.getSpans()).isEmpty();
+
+    SpanData root = newSpan(LOW_SCORE_TRACE_ID, true, StatusData.unset());
+    exporter.export(singletonList(root));
+    assertThat(mockExporter.getSpans()).containsExactly(child, root);
+    assertThat(exporter.getBufferSizeBytes()).isZero();
+  }
+
+  @Test
+  void shouldKeepErrors() {
+    TailSamplingExporter exporter = newExporter(newConfig(0));
+
+    SpanData child = newSpan(HIGH_SCORE_TRACE_ID, false, StatusData.error());
+    SpanData root = newSpan(HIGH_SCORE_TRACE_ID, true, StatusData.unset());
+    exporter.export(asList(child, root));
+
+    assertThat(mockExporter.getSpans()).containsExactly(child, root);
+  }
+
+  @Test
+  void shouldKeepSlowTraces() {
+    TailSampling config = newConfig(0);
+    config.durationThresholdMillis = 100L;
+    TailSamplingExporter exporter = newExporter(config);
+
+    SpanData fast = newSpan(LOW_SCORE_TRACE_ID, true, StatusData.unset(), 50);
+    SpanData slow = newSpan(HIGH_SCORE_TRACE_ID, true, StatusData.unset(), 150);
+    exporter.export(asList(fast, slow));
+
+    assertThat(mockExporter.getSpans()).containsExactly(slow);
+  }
+
+  @Test
+  void shouldKeepTracesWithMatchingAttributes() {
+    TailSampling config = newConfig(0);
+    SamplingOverrideAttribute attribute = new SamplingOverrideAttribute();
+    attribute.key = "tenant";
+    attribute.value = "important";
+    attribute.matchType = MatchType.STRICT;
+    config.attributes = singletonList(attribute);
+    TailSamplingExporter exporter = newExporter(config);
+
+    SpanData child =
+        newSpan(LOW_SCORE_TRACE_ID, false, Attributes.builder().put("tenant", "important").build());
+    SpanData root = newSpan(LOW_SCORE_TRACE_ID, true, StatusData.unset());
+    SpanData other = newSpan(HIGH_SCORE_TRACE_ID, true, StatusData.unset());
+    exporter.export(asList(child, root, other));
+
+    assertThat(mockExporter.getSpans()).containsExactly(child, root);
+  }
+
+  @Test
+  void shouldApplyPercentageToOtherTraces() {
+    TailSamplingExporter exporter = newExporter(newConfig(50));
+
+    exporter.export(singletonList(newSpan(HIGH_SCORE_TRACE_ID, true, StatusData.unset())));
+    exporter.export(singletonList(newSpan(LOW_SCORE_TRACE_ID, true, StatusData.unset())));
+
+    assertThat(mockExporter.getSpans()).hasSize(1);
+    SpanData span = mockExporter.getSpans().get(0);
+    assertThat(span.getTraceId()).isEqualTo(LOW_SCORE_TRACE_ID);
+    assertThat(getSamplingPercentage(span)).isEqualTo(50);
+  }
+
+  @Test
+  void shouldMultiplyHeadSamplingPercentage() {
+    TailSamplingExporter exporter = newExporter(newConfig(50));
+
+    TraceState traceState =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "50").build();
+    exporter.export(singletonList(newSpan(LOW_SCORE_TRACE_ID, true, traceState)));
+
+    assertThat(mockExporter.getSpans()).hasSize(1);
+    assertThat(getSamplingPercentage(mockExporter.getSpans().get(0))).isEqualTo(25);
+  }
+
+  @Test
+  void shouldDecideAfterDecisionWait() {
+    TailSamplingExporter exporter = newExporter(newConfig(100));
+
+    SpanData child = newSpan(LOW_SCORE_TRACE_ID, false, StatusData.unset());
+    exporter.export(singletonList(child));
+
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    exporter.expirePendingTraces();
+    assertThat(mockExporter.getSpans()).isEmpty();
+
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    exporter.expirePendingTraces();
+    assertThat(mockExporter.getSpans()).containsExactly(child);
+    assertThat(exporter.getBufferSizeBytes()).isZero();
+  }
+
+  @Test
+  void shouldApplyDecisionToLateSpans() {
+    TailSamplingExporter exporter = newExporter(newConfig(0));
+
+    exporter.export(singletonList(newSpan(HIGH_SCORE_TRACE_ID, true, StatusData.unset())));
+    exporter.export(singletonList(newSpan(HIGH_SCORE_TRACE_ID, false, StatusData.unset())));
+    assertThat(mockExporter.getSpans()).isEmpty();
+    assertThat(exporter.getBufferSizeBytes()).isZero();
+
+    // but errors are still kept
+    SpanData error = newSpan(HIGH_SCORE_TRACE_ID, false, StatusData.error());
+    exporter.export(singletonList(error));
+    assertThat(mockExporter.getSpans()).containsExactly(error);
+  }
+
+  @Test
+  void shouldNotBufferWhenFull() {
+    TailSampling config = newConfig(50);
+    config.maxBufferSizeMb = 1;
+    TailSamplingExporter exporter = newExporter(config);
+
+    Attributes largeAttributes =
+        Attributes.builder().put("large", new String(new char[1024 * 1024])).build();
+    SpanData large = newSpan(LOW_SCORE_TRACE_ID, false, largeAttributes);
+    SpanData small = newSpan(HIGH_SCORE_TRACE_ID, false, StatusData.unset());
+    exporter.export(asList(large, small));
+
+    // the large span is decided on arrival, and the small one is still buffered
+    assertThat(mockExporter.getSpans()).hasSize(1);
+    assertThat(mockExporter.getSpans().get(0).getTraceId()).isEqualTo(LOW_SCORE_TRACE_ID);
+    assertThat(exporter.getBufferSizeBytes()).isEqualTo(TailSamplingExporter.estimateSize(small));
+  }
+
+  @Test
+  void shouldDecideAllPendingTracesOnFlush() {
+    TailSamplingExporter exporter = newExporter(newConfig(100));
+
+    SpanData child = newSpan(LOW_SCORE_TRACE_ID, false, StatusData.unset());
+    exporter.export(singletonList(child));
+    exporter.flush();
+
+    assertThat(mockExporter.getSpans()).containsExactly(child);
+  }
+
+  private TailSamplingExporter newExporter(TailSampling config) {
+    return new TailSamplingExporter(config, mockExporter, nanoTime::get);
+  }
+
+  private static TailSampling newConfig(float percentage) {
+    TailSampling config = new TailSampling();
+    config.enabled = true;
+    config.percentage = percentage;
+    config.decisionWaitMillis = 1000;
+    return config;
+  }
+
+  private static float getSamplingPercentage(SpanData span) {
+    return TelemetryUtil.getSamplingPercentage(span.getSpanContext().getTraceState(), 100, false);
+  }
+
+  private static SpanData newSpan(String traceId, boolean localRoot, StatusData status) {
+    return newSpan(traceId, localRoot, status, TraceState.getDefault(), Attributes.empty(), 10);
+  }
+
+  private static SpanData newSpan(
+      String traceId, boolean localRoot, StatusData status, long durationMillis) {
+    return newSpan(
+        traceId, localRoot, status, TraceState.getDefault(), Attributes.empty(), durationMillis);
+  }
+
+  private static SpanData newSpan(String traceId, boolean localRoot, TraceState traceState) {
+    return newSpan(traceId, localRoot, StatusData.unset(), traceState, Attributes.empty(), 10);
+  }
+
+  private static SpanData newSpan(String traceId, boolean localRoot, Attributes attributes) {
+    return newSpan(
+        traceId, localRoot, StatusData.unset(), TraceState.getDefault(), attributes, 10);
+  }
+
+  private static SpanData newSpan(
+      String traceId,
+      boolean localRoot,
+      StatusData status,
+      TraceState traceState,
+      Attributes attributes,
+      long durationMillis) {
+    String spanId = localRoot ? "0000000000000001" : "0000000000000002";
+    SpanContext parentSpanContext =
+        localRoot
+            ? SpanContext.getInvalid()
+            : SpanContext.create(
+                traceId, "0000000000000001", TraceFlags.getSampled(), TraceState.getDefault());
+    return TestSpanData.builder()
+        .setSpanContext(SpanContext.create(traceId, spanId, TraceFlags.getSampled(), traceState))
+        .setParentSpanContext(parentSpanContext)
+        .setResource(Resource.empty())
+        .setInstrumentationLibraryInfo(InstrumentationLibraryInfo.empty())
+        .setName("test")
+        .setKind(SpanKind.INTERNAL)
+        .setStartEpochNanos(0)
+        .setEndEpochNanos(TimeUnit.MILLISECONDS.toNanos(durationMillis))
+        .setAttributes(attributes)
+        .setEvents(Collections.emptyList())
+        .setLinks(Collections.emptyList())
+        .setStatus(status)
+        .setHasEnded(true)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+}
@@ -81,6 +81,14 @@ public class NetworkStatsbeatTest {
     assertThat(networkStatsbeat.getExceptionCount(IKEY)).isEqualTo(2);
   }
 
+  @Test
+  public void testRecordInFlightRequests() {
+    assertThat(networkStatsbeat.getMaxInFlightRequests(IKEY)).isEqualTo(0);
+    networkStatsbeat.recordInFlightRequests(3, IKEY);
+    networkStatsbeat.recordInFlightRequests(1, IKEY);
+    assertThat(networkStatsbeat.getMaxInFlightRequests(IKEY)).isEqualTo(3);
+  }
+
   @Test
   public void testRaceCondition() throws InterruptedException {
     ExecutorService executorService = Executors.newFixedThreadPool(100);
@@ -0,0 +1,99 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class AppInsightsByteBufferPoolTest {
+
+  @Test
+  void shouldReuseOfferedBuffers() {
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool();
+
+    ByteBuffer byteBuffer = pool.remove();
+    assertThat(byteBuffer.capacity()).isEqualTo(AppInsightsByteBufferPool.LARGEST_SIZE_CLASS);
+    assertThat(byteBuffer.hasArray()).isTrue();
+    byteBuffer.put((byte) 1);
+    pool.offer(singletonList(byteBuffer));
+
+    ByteBuffer reused = pool.remove();
+    assertThat(reused).isSameAs(byteBuffer);
+    assertThat(reused.position()).isEqualTo(0);
+    assertThat(pool.getHitCount()).isEqualTo(1);
+    assertThat(pool.getMissCount()).isEqualTo(1);
+    assertThat(pool.getAllocatedBytes()).isEqualTo(AppInsightsByteBufferPool.LARGEST_SIZE_CLASS);
+    assertThat(pool.getRetainedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldUseSizeClasses() {
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool();
+
+    assertThat(pool.removeForOutput(0).capacity()).isEqualTo(4096);
+    assertThat(pool.removeForOutput(4097).capacity()).isEqualTo(16384);
+    assertThat(pool.removeForOutput(16384).capacity()).isEqualTo(16384);
+    assertThat(pool.removeForOutput(1_000_000).capacity()).isEqualTo(65536);
+
+    ByteBuffer small = pool.removeForOutput(0);
+    pool.offer(singletonList(small));
+    // a small buffer is not handed out for a larger request
+    assertThat(pool.removeForOutput(65536)).isNotSameAs(small);
+    assertThat(pool.removeForOutput(0)).isSameAs(small);
+  }
+
+  @Test
+  void shouldNotRetainMoreThanBudget() {
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool(100_000, false);
+
+    pool.offer(asList(pool.remove(), pool.remove(), pool.remove()));
+
+    assertThat(pool.getRetainedBytes()).isEqualTo(65536);
+  }
+
+  @Test
+  void shouldIgnoreForeignBuffers() {
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool();
+
+    pool.offer(asList(ByteBuffer.allocate(1000), ByteBuffer.allocateDirect(4096)));
+
+    assertThat(pool.getRetainedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldUseDirectBuffersForOutput() {
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool(1_000_000, true);
+
+    ByteBuffer output = pool.removeForOutput(0);
+    ByteBuffer json = pool.remove();
+    assertThat(output.isDirect()).isTrue();
+    assertThat(json.isDirect()).isFalse();
+
+    pool.offer(asList(output, json));
+    assertThat(pool.removeForOutput(0)).isSameAs(output);
+    assertThat(pool.remove()).isSameAs(json);
+  }
+}
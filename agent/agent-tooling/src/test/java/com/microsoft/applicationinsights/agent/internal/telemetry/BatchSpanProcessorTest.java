@@ -0,0 +1,123 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BatchSpanProcessorTest {
+
+  @Test
+  void shouldExportEverythingOnForceFlushAcrossWorkers() throws InterruptedException {
+    // given
+    AtomicInteger exported = new AtomicInteger();
+    TelemetryChannel channel = mock(TelemetryChannel.class);
+    when(channel.getByteBufferPool()).thenReturn(new AppInsightsByteBufferPool());
+    when(channel.sendEncoded(anyList(), any()))
+        .thenAnswer(
+            invocation -> {
+              exported.addAndGet(countItems(invocation.getArgument(0)));
+              return CompletableResultCode.ofSuccess();
+            });
+    BatchSpanProcessor processor =
+        BatchSpanProcessor.builder(channel)
+            .setScheduleDelay(1, TimeUnit.HOURS)
+            .setNumWorkers(4)
+            .build();
+
+    // when
+    int numThreads = 8;
+    int itemsPerThread = 100;
+    CountDownLatch latch = new CountDownLatch(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 0; j < itemsPerThread; j++) {
+                  processor.trackAsync(new TelemetryItem());
+                }
+                latch.countDown();
+              })
+          .start();
+    }
+    assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    CompletableResultCode result = processor.forceFlush().join(10, TimeUnit.SECONDS);
+
+    // then
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(processor.getNumWorkers()).isEqualTo(4);
+    assertThat(exported.get()).isEqualTo(numThreads * itemsPerThread);
+  }
+
+  @Test
+  void shouldShutdownAllWorkers() {
+    // given
+    TelemetryChannel channel = mock(TelemetryChannel.class);
+    when(channel.getByteBufferPool()).thenReturn(new AppInsightsByteBufferPool());
+    when(channel.sendEncoded(anyList(), any())).thenReturn(CompletableResultCode.ofSuccess());
+    BatchSpanProcessor processor = BatchSpanProcessor.builder(channel).setNumWorkers(3).build();
+    processor.trackAsync(new TelemetryItem());
+
+    // when
+    CompletableResultCode result = processor.shutdown().join(10, TimeUnit.SECONDS);
+
+    // then
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(processor.shutdown().isSuccess()).isTrue();
+  }
+
+  @Test
+  void shouldSplitMaxQueueSizeAcrossWorkers() {
+    assertThat(BatchSpanProcessor.getWorkerQueueSize(2048, 512, 1)).isEqualTo(2048);
+    assertThat(BatchSpanProcessor.getWorkerQueueSize(2048, 512, 4)).isEqualTo(512);
+    // rounded up
+    assertThat(BatchSpanProcessor.getWorkerQueueSize(2048, 100, 3)).isEqualTo(683);
+    // but never smaller than a full export batch
+    assertThat(BatchSpanProcessor.getWorkerQueueSize(2048, 512, 16)).isEqualTo(512);
+    // which in turn is never larger than the max queue size
+    assertThat(BatchSpanProcessor.getWorkerQueueSize(100, 512, 4)).isEqualTo(100);
+  }
+
+  // the items of an encoded batch are separated by newlines
+  private static int countItems(List<ByteBuffer> jsonByteBuffers) {
+    int count = 1;
+    for (ByteBuffer byteBuffer : jsonByteBuffers) {
+      for (int i = 0; i < byteBuffer.position(); i++) {
+        if (byteBuffer.get(i) == '\n') {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class GzipCompressorTest {
+
+  @Test
+  void shouldRoundTripSmallInput() throws IOException {
+    byte[] input = "{\"name\":\"test\"}".getBytes("UTF-8");
+    verifyRoundTrip(input, new AppInsightsByteBufferPool(), 6);
+  }
+
+  @Test
+  void shouldRoundTripEmptyInput() throws IOException {
+    verifyRoundTrip(new byte[0], new AppInsightsByteBufferPool(), 6);
+  }
+
+  @Test
+  void shouldRoundTripLargeInputAcrossBuffers() throws IOException {
+    // random bytes don't compress, so the output spans several output buffers
+    byte[] input = new byte[300_000];
+    new Random(42).nextBytes(input);
+    verifyRoundTrip(input, new AppInsightsByteBufferPool(), 6);
+    verifyRoundTrip(input, new AppInsightsByteBufferPool(), 1);
+  }
+
+  @Test
+  void shouldRoundTripIntoDirectBuffers() throws IOException {
+    byte[] input = new byte[300_000];
+    new Random(42).nextBytes(input);
+    verifyRoundTrip(input, new AppInsightsByteBufferPool(1_000_000, true), 9);
+  }
+
+  @Test
+  void shouldReuseCompressors() throws IOException {
+    GzipCompressorPool compressorPool = new GzipCompressorPool(2);
+    AppInsightsByteBufferPool pool = new AppInsightsByteBufferPool();
+    byte[] input = "{\"name\":\"test\"}".getBytes("UTF-8");
+
+    verifyRoundTrip(input, pool, 6, compressorPool);
+    verifyRoundTrip(input, pool, 1, compressorPool);
+
+    // the same compressor was used for both, and is back in the pool
+    assertThat(compressorPool.getPooledCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotPoolMoreCompressorsThanTheMax() throws Exception {
+    GzipCompressorPool compressorPool = new GzipCompressorPool(2);
+    byte[] input = new byte[300_000];
+    new Random(42).nextBytes(input);
+
+    int numThreads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int j = 0; j < 10; j++) {
+                  verifyRoundTrip(input, new AppInsightsByteBufferPool(), 6, compressorPool);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // the compressors that didn't fit back into the pool have been ended
+    assertThat(compressorPool.getPooledCount()).isBetween(1, 2);
+  }
+
+  private static void verifyRoundTrip(byte[] input, AppInsightsByteBufferPool pool, int level)
+      throws IOException {
+    verifyRoundTrip(input, pool, level, new GzipCompressorPool(1));
+  }
+
+  private static void verifyRoundTrip(
+      byte[] input, AppInsightsByteBufferPool pool, int level, GzipCompressorPool compressorPool)
+      throws IOException {
+    // split the input across json-style buffers (data from 0 to position)
+    List<ByteBuffer> jsonByteBuffers = new ArrayList<>();
+    int offset = 0;
+    do {
+      ByteBuffer jsonByteBuffer = pool.remove();
+      int len = Math.min(jsonByteBuffer.remaining(), input.length - offset);
+      jsonByteBuffer.put(input, offset, len);
+      jsonByteBuffers.add(jsonByteBuffer);
+      offset += len;
+    } while (offset < input.length);
+
+    List<ByteBuffer> compressed = compressorPool.compress(jsonByteBuffers, pool, level);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer byteBuffer : compressed) {
+      byte[] bytes = new byte[byteBuffer.remaining()];
+      byteBuffer.get(bytes);
+      out.write(bytes);
+    }
+    assertThat(gunzip(out.toByteArray())).isEqualTo(input);
+  }
+
+  private static byte[] gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        out.write(buffer, 0, len);
+      }
+    }
+    return out.toByteArray();
+  }
+}
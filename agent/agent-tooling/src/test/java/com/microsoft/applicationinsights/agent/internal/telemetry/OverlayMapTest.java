@@ -0,0 +1,159 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.utils.SanitizationHelper;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OverlayMapTest {
+
+  private Map<String, String> base;
+
+  @BeforeEach
+  void setup() {
+    base = new HashMap<>();
+    base.put("one", "1");
+    base.put("two", "2");
+  }
+
+  @Test
+  void shouldReadThroughToBase() {
+    OverlayMap map = new OverlayMap(base);
+
+    assertThat(map).containsOnly(entry("one", "1"), entry("two", "2"));
+    assertThat(map.get("one")).isEqualTo("1");
+    assertThat(map.getDelta()).isNull();
+  }
+
+  @Test
+  void shouldShadowBaseEntries() {
+    OverlayMap map = new OverlayMap(base);
+
+    assertThat(map.put("one", "uno")).isEqualTo("1");
+    map.put("three", "3");
+
+    assertThat(map).containsOnly(entry("one", "uno"), entry("two", "2"), entry("three", "3"));
+    assertThat(map).hasSize(3);
+    assertThat(base).containsOnly(entry("one", "1"), entry("two", "2"));
+  }
+
+  @Test
+  void shouldHideRemovedBaseEntries() {
+    OverlayMap map = new OverlayMap(base);
+    map.put("one", "uno");
+
+    assertThat(map.remove("one")).isEqualTo("uno");
+    assertThat(map.remove("two")).isEqualTo("2");
+
+    assertThat(map).isEmpty();
+    assertThat(map.containsKey("one")).isFalse();
+    assertThat(base).containsOnly(entry("one", "1"), entry("two", "2"));
+
+    map.put("two", "dos");
+    assertThat(map).containsOnly(entry("two", "dos"));
+  }
+
+  @Test
+  void shouldSupportRemovingAndUpdatingWhileIterating() {
+    OverlayMap map = new OverlayMap(base);
+    map.put("three", "3");
+    map.put("four", "4");
+
+    // same access pattern as SanitizationHelper.sanitizeProperties()
+    for (Iterator<Map.Entry<String, String>> i = map.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<String, String> entry = i.next();
+      if (entry.getKey().equals("one") || entry.getKey().equals("three")) {
+        i.remove();
+      } else {
+        entry.setValue(entry.getValue() + "!");
+      }
+    }
+
+    assertThat(map).containsOnly(entry("two", "2!"), entry("four", "4!"));
+    assertThat(base).containsOnly(entry("one", "1"), entry("two", "2"));
+  }
+
+  @Test
+  void shouldClear() {
+    OverlayMap map = new OverlayMap(base);
+    map.put("three", "3");
+
+    map.clear();
+
+    assertThat(map).isEmpty();
+    assertThat(base).hasSize(2);
+  }
+
+  @Test
+  void shouldBeEqualToHashMapWithSameEntries() {
+    OverlayMap map = new OverlayMap(base);
+    map.put("three", "3");
+
+    Map<String, String> expected = new HashMap<>(base);
+    expected.put("three", "3");
+
+    assertThat(map).isEqualTo(expected);
+    assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+  }
+
+  @Test
+  void shouldOnlySanitizeDeltaWhenBaseIsSanitized() {
+    // the base is trusted to be sanitized already, so even an empty key is left alone
+    base.put("", "not sanitized");
+    OverlayMap map = OverlayMap.withSanitizedBase(base);
+    map.put("one", null);
+    map.put("three", repeat('x', SanitizationHelper.MAX_VALUE_LENGTH + 1));
+    map.put(repeat('k', SanitizationHelper.MAX_KEY_LENGTH + 1), "4");
+
+    SanitizationHelper.sanitizeProperties(map);
+
+    // the null value doesn't let the base value show through again
+    assertThat(map).containsOnlyKeys("", "two", "three");
+    assertThat(map.get("three")).hasSize(SanitizationHelper.MAX_VALUE_LENGTH);
+    assertThat(base).hasSize(3);
+  }
+
+  @Test
+  void shouldSanitizeBaseWhenNotMarkedAsSanitized() {
+    base.put("", "not sanitized");
+    OverlayMap map = new OverlayMap(base);
+
+    SanitizationHelper.sanitizeProperties(map);
+
+    assertThat(map).containsOnly(entry("one", "1"), entry("two", "2"));
+    assertThat(base).hasSize(3);
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+class PartialSuccessTest {
+
+  @Test
+  void shouldOnlyReturnRetriableItems() throws IOException {
+    ByteBuffer requestBody = ByteBuffer.wrap(gzip("{\"a\":0}\n{\"a\":1}\n{\"a\":2}\n{\"a\":3}"));
+    String responseBody =
+        "{\"itemsReceived\":4,\"itemsAccepted\":1,\"errors\":["
+            + "{\"index\":1,\"statusCode\":400,\"message\":\"invalid\"},"
+            + "{\"index\":2,\"statusCode\":429,\"message\":\"throttled\"},"
+            + "{\"index\":3,\"statusCode\":500,\"message\":\"error\"}]}";
+
+    byte[] retriableItems =
+        PartialSuccess.getRetriableItems(singletonList(requestBody), responseBody);
+
+    assertThat(gunzip(retriableItems)).isEqualTo("{\"a\":2}\n{\"a\":3}");
+    // request body buffer is left untouched
+    assertThat(requestBody.position()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldReturnNullWhenNothingIsRetriable() throws IOException {
+    ByteBuffer requestBody = ByteBuffer.wrap(gzip("{\"a\":0}\n{\"a\":1}"));
+    String responseBody =
+        "{\"itemsReceived\":2,\"itemsAccepted\":1,\"errors\":["
+            + "{\"index\":1,\"statusCode\":400,\"message\":\"invalid\"},"
+            + "{\"index\":7,\"statusCode\":500,\"message\":\"out of range\"}]}";
+
+    assertThat(PartialSuccess.getRetriableItems(singletonList(requestBody), responseBody))
+        .isNull();
+  }
+
+  private static byte[] gzip(String str) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(str.getBytes(UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[1024];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        out.write(buffer, 0, len);
+      }
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+}
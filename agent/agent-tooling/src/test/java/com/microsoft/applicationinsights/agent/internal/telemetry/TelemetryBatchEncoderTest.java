@@ -0,0 +1,176 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MessageData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MonitorBase;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TelemetryBatchEncoderTest {
+
+  private static final String IKEY_1 = "00000000-0000-0000-0000-000000000001";
+  private static final String IKEY_2 = "00000000-0000-0000-0000-000000000002";
+
+  private final List<String> exportedKeys = new ArrayList<>();
+  private final List<String> exportedJson = new ArrayList<>();
+  private TelemetryChannel channel;
+
+  @BeforeEach
+  void setup() {
+    channel = mock(TelemetryChannel.class);
+    when(channel.sendEncoded(anyList(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              exportedJson.add(toString(invocation.getArgument(0)));
+              exportedKeys.add(invocation.getArgument(1));
+              return CompletableResultCode.ofSuccess();
+            });
+  }
+
+  @Test
+  void shouldExportSingleInstrumentationKeyAsOneRequest() {
+    TelemetryBatchEncoder encoder = new TelemetryBatchEncoder(new AppInsightsByteBufferPool());
+    encoder.add(createTelemetryItem(IKEY_1, "one"));
+    encoder.add(createTelemetryItem(IKEY_1, "two"));
+    encoder.add(createTelemetryItem(IKEY_1, "three"));
+
+    assertThat(encoder.size()).isEqualTo(3);
+    assertThat(encoder.export(channel).isSuccess()).isTrue();
+
+    assertThat(encoder.isEmpty()).isTrue();
+    assertThat(exportedKeys).containsExactly(IKEY_1);
+    assertThat(exportedJson.get(0).split("\n")).hasSize(3);
+    assertThat(exportedJson.get(0))
+        .contains("\"one\"")
+        .contains("\"two\"")
+        .contains("\"three\"");
+  }
+
+  @Test
+  void shouldExportOneRequestPerInstrumentationKey() {
+    TelemetryBatchEncoder encoder = new TelemetryBatchEncoder(new AppInsightsByteBufferPool());
+    encoder.add(createTelemetryItem(IKEY_1, "one"));
+    encoder.add(createTelemetryItem(IKEY_2, "two"));
+    encoder.add(createTelemetryItem(IKEY_1, "three"));
+
+    encoder.export(channel);
+
+    assertThat(exportedKeys).containsExactly(IKEY_1, IKEY_2);
+    assertThat(exportedJson.get(0).split("\n")).hasSize(2);
+    assertThat(exportedJson.get(0)).contains("\"one\"").contains("\"three\"");
+    assertThat(exportedJson.get(1).split("\n")).hasSize(1);
+    assertThat(exportedJson.get(1)).contains("\"two\"");
+  }
+
+  @Test
+  void shouldOnlyExportInstrumentationKeysOfCurrentBatch() {
+    TelemetryBatchEncoder encoder = new TelemetryBatchEncoder(new AppInsightsByteBufferPool());
+    encoder.add(createTelemetryItem(IKEY_1, "one"));
+    encoder.add(createTelemetryItem(IKEY_2, "two"));
+    encoder.export(channel);
+    exportedKeys.clear();
+    exportedJson.clear();
+
+    encoder.add(createTelemetryItem(IKEY_2, "three"));
+    encoder.export(channel);
+    encoder.add(createTelemetryItem(IKEY_1, "four"));
+    encoder.export(channel);
+
+    assertThat(exportedKeys).containsExactly(IKEY_2, IKEY_1);
+    assertThat(exportedJson.get(0)).contains("\"three\"").doesNotContain("\"two\"");
+    assertThat(exportedJson.get(1)).contains("\"four\"").doesNotContain("\"one\"");
+  }
+
+  @Test
+  void shouldDropItemThatFailsToEncode() {
+    TelemetryBatchEncoder encoder = new TelemetryBatchEncoder(new AppInsightsByteBufferPool());
+    encoder.add(createTelemetryItem(IKEY_1, "one"));
+    TelemetryItem invalid = createTelemetryItem(IKEY_1, "invalid");
+    Map<String, Object> additionalProperties = new HashMap<>();
+    additionalProperties.put(null, "value");
+    invalid.getData().getBaseData().setAdditionalProperties(additionalProperties);
+    encoder.add(invalid);
+    encoder.add(createTelemetryItem(IKEY_1, "two"));
+
+    assertThat(encoder.size()).isEqualTo(2);
+    encoder.export(channel);
+
+    assertThat(exportedJson).hasSize(1);
+    String[] lines = exportedJson.get(0).split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0]).startsWith("{").endsWith("}").contains("\"one\"");
+    assertThat(lines[1]).startsWith("{").endsWith("}").contains("\"two\"");
+  }
+
+  @Test
+  void shouldNotExportWhenEveryItemFailsToEncode() {
+    TelemetryBatchEncoder encoder = new TelemetryBatchEncoder(new AppInsightsByteBufferPool());
+    TelemetryItem invalid = createTelemetryItem(IKEY_1, "invalid");
+    Map<String, Object> additionalProperties = new HashMap<>();
+    additionalProperties.put(null, "value");
+    invalid.getData().getBaseData().setAdditionalProperties(additionalProperties);
+    encoder.add(invalid);
+
+    assertThat(encoder.isEmpty()).isTrue();
+    assertThat(encoder.export(channel).isSuccess()).isTrue();
+    assertThat(exportedKeys).isEmpty();
+  }
+
+  private static TelemetryItem createTelemetryItem(String instrumentationKey, String message) {
+    MessageData data = new MessageData();
+    data.setVersion(2);
+    data.setMessage(message);
+    MonitorBase monitorBase = new MonitorBase();
+    monitorBase.setBaseType("MessageData");
+    monitorBase.setBaseData(data);
+
+    TelemetryItem telemetryItem = new TelemetryItem();
+    telemetryItem.setName("Microsoft.ApplicationInsights.Message");
+    telemetryItem.setInstrumentationKey(instrumentationKey);
+    telemetryItem.setData(monitorBase);
+    return telemetryItem;
+  }
+
+  private static String toString(List<ByteBuffer> byteBuffers) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      out.write(byteBuffer.array(), byteBuffer.arrayOffset(), byteBuffer.position());
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.agent.internal.telemetry;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 
 import com.azure.core.http.HttpClient;
 import com.azure.core.http.HttpHeaders;
@@ -34,8 +35,7 @@ import com.microsoft.applicationinsights.agent.internal.MockHttpResponse;
 import com.microsoft.applicationinsights.agent.internal.common.TestUtils;
 import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
 import com.microsoft.applicationinsights.agent.internal.httpclient.RedirectPolicy;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileCache;
-import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileWriter;
+import com.microsoft.applicationinsights.agent.internal.localstorage.LocalFileSpool;
 import io.opentelemetry.instrumentation.api.cache.Cache;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.ByteArrayInputStream;
@@ -46,10 +46,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
@@ -68,6 +71,7 @@ public class TelemetryChannelTest {
   private static final String REDIRECT_URL = "http://foo.bar.redirect";
 
   @TempDir File tempFolder;
+  private LocalFileSpool localFileSpool;
 
   private TelemetryChannel getTelemetryChannel() throws MalformedURLException {
     List<HttpPipelinePolicy> policies = new ArrayList<>();
@@ -77,12 +81,9 @@ public class TelemetryChannelTest {
         new HttpPipelineBuilder()
             .policies(policies.toArray(new HttpPipelinePolicy[0]))
             .httpClient(recordingHttpClient);
-    LocalFileCache localFileCache = new LocalFileCache(tempFolder);
+    localFileSpool = new LocalFileSpool(tempFolder, null);
     return new TelemetryChannel(
-        pipelineBuilder.build(),
-        new URL(END_POINT_URL),
-        new LocalFileWriter(localFileCache, tempFolder, null),
-        null);
+        pipelineBuilder.build(), new URL(END_POINT_URL), localFileSpool, null);
   }
 
   @Nullable
@@ -253,6 +254,169 @@ public class TelemetryChannelTest {
     assertThat(recordingHttpClient.getCount()).isEqualTo(5);
   }
 
+  @Test
+  public void inFlightRequestsTest() throws Exception {
+    // given
+    CompletableFuture<HttpResponse> firstResponse = new CompletableFuture<>();
+    recordingHttpClient =
+        new RecordingHttpClient(
+            request -> {
+              if (firstResponse.isDone()) {
+                return Mono.just(new MockHttpResponse(request, 200));
+              }
+              return Mono.fromFuture(firstResponse);
+            });
+    TelemetryChannel telemetryChannel =
+        new TelemetryChannel(
+            new HttpPipelineBuilder().httpClient(recordingHttpClient).build(),
+            new URL(END_POINT_URL),
+            new LocalFileSpool(tempFolder, null),
+            null,
+            1,
+            new AppInsightsByteBufferPool(),
+            TelemetryChannel.DEFAULT_COMPRESSION_LEVEL,
+            TelemetryChannel.DEFAULT_IN_FLIGHT_PERMIT_TIMEOUT_MILLIS);
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 1, 1, INSTRUMENTATION_KEY));
+
+    // when
+    CompletableResultCode first = telemetryChannel.send(telemetryItems);
+    CompletableFuture<CompletableResultCode> second =
+        CompletableFuture.supplyAsync(() -> telemetryChannel.send(telemetryItems));
+
+    // then
+    assertThat(telemetryChannel.getInFlightRequests()).isEqualTo(1);
+    Thread.sleep(100);
+    // the second send is waiting for the first request to complete
+    assertThat(second).isNotDone();
+    assertThat(recordingHttpClient.getCount()).isEqualTo(1);
+
+    firstResponse.complete(new MockHttpResponse(null, 200));
+    assertThat(first.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(second.get(10, TimeUnit.SECONDS).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(recordingHttpClient.getCount()).isEqualTo(2);
+    await().untilAsserted(() -> assertThat(telemetryChannel.getInFlightRequests()).isEqualTo(0));
+  }
+
+  @Test
+  public void inFlightPermitTimeoutTest() throws Exception {
+    // given
+    CompletableFuture<HttpResponse> hungResponse = new CompletableFuture<>();
+    recordingHttpClient = new RecordingHttpClient(request -> Mono.fromFuture(hungResponse));
+    LocalFileSpool spool = new LocalFileSpool(tempFolder, null);
+    TelemetryChannel telemetryChannel =
+        new TelemetryChannel(
+            new HttpPipelineBuilder().httpClient(recordingHttpClient).build(),
+            new URL(END_POINT_URL),
+            spool,
+            null,
+            1,
+            new AppInsightsByteBufferPool(),
+            TelemetryChannel.DEFAULT_COMPRESSION_LEVEL,
+            100);
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 1, 1, INSTRUMENTATION_KEY));
+
+    // when
+    CompletableResultCode first = telemetryChannel.send(telemetryItems);
+    CompletableResultCode second = telemetryChannel.send(telemetryItems);
+
+    // then
+    // the second send doesn't wait for the hung request, it is stored to disk instead
+    assertThat(first.isDone()).isFalse();
+    assertThat(second.isDone()).isTrue();
+    assertThat(second.isSuccess()).isFalse();
+    assertThat(recordingHttpClient.getCount()).isEqualTo(1);
+    assertThat(spool.getPendingCount()).isEqualTo(1);
+    assertThat(telemetryChannel.getInFlightRequests()).isEqualTo(1);
+
+    hungResponse.complete(new MockHttpResponse(null, 200));
+    assertThat(first.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+  }
+
+  @Test
+  public void throttlingTest() throws MalformedURLException {
+    // given
+    recordingHttpClient =
+        new RecordingHttpClient(
+            request -> {
+              Map<String, String> headers = new HashMap<>();
+              headers.put("Retry-After", "60");
+              return Mono.just(new MockHttpResponse(request, 429, new HttpHeaders(headers)));
+            });
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 1, 1, INSTRUMENTATION_KEY));
+    TelemetryChannel telemetryChannel = getTelemetryChannel();
+
+    // when
+    CompletableResultCode first = telemetryChannel.send(telemetryItems);
+    CompletableResultCode second = telemetryChannel.send(telemetryItems);
+
+    // then
+    assertThat(first.isSuccess()).isFalse();
+    assertThat(second.isSuccess()).isFalse();
+    // the channel is paused after the first throttled response
+    assertThat(recordingHttpClient.getCount()).isEqualTo(1);
+    // and both batches were stored to disk to be retried later
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void partialSuccessTest() throws MalformedURLException {
+    // given
+    String responseBody =
+        "{\"itemsReceived\":2,\"itemsAccepted\":1,"
+            + "\"errors\":[{\"index\":1,\"statusCode\":503,\"message\":\"unavailable\"}]}";
+    recordingHttpClient =
+        new RecordingHttpClient(
+            request ->
+                Mono.just(
+                    new MockHttpResponse(
+                        request,
+                        206,
+                        new HttpHeaders(),
+                        responseBody.getBytes(StandardCharsets.UTF_8))));
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 1, 1, INSTRUMENTATION_KEY));
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 2, 2, INSTRUMENTATION_KEY));
+    TelemetryChannel telemetryChannel = getTelemetryChannel();
+
+    // when
+    CompletableResultCode completableResultCode = telemetryChannel.send(telemetryItems);
+
+    // then
+    assertThat(completableResultCode.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    // only the rejected item is stored to disk to be retried later
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void partialSuccessUnreadableResponseTest() throws MalformedURLException {
+    // given
+    recordingHttpClient =
+        new RecordingHttpClient(
+            request ->
+                Mono.just(
+                    new MockHttpResponse(request, 206) {
+                      @Override
+                      public Mono<String> getBodyAsString() {
+                        return Mono.error(new IOException("connection reset"));
+                      }
+                    }));
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 1, 1, INSTRUMENTATION_KEY));
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric" + 2, 2, INSTRUMENTATION_KEY));
+    TelemetryChannel telemetryChannel = getTelemetryChannel();
+
+    // when
+    CompletableResultCode completableResultCode = telemetryChannel.send(telemetryItems);
+
+    // then
+    assertThat(completableResultCode.join(10, TimeUnit.SECONDS).isSuccess()).isFalse();
+    // the whole batch is stored to disk to be retried later
+    assertThat(localFileSpool.getPendingCount()).isEqualTo(1);
+  }
+
   static class RecordingHttpClient implements HttpClient {
 
     private final AtomicInteger count = new AtomicInteger();
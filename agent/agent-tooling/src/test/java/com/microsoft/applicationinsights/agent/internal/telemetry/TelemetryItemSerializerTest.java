@@ -0,0 +1,262 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.microsoft.applicationinsights.agent.internal.common.TestUtils;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MessageData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MonitorBase;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.MonitorDomain;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RemoteDependencyData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.RequestData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.SeverityLevel;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.StackFrame;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionData;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryExceptionDetails;
+import com.microsoft.applicationinsights.agent.internal.exporter.models.TelemetryItem;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TelemetryItemSerializerTest {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  @Test
+  void shouldMatchJacksonForMetrics() throws IOException {
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric1", 1, INSTRUMENTATION_KEY));
+    telemetryItems.add(TestUtils.createMetricTelemetry("metric2", 2, INSTRUMENTATION_KEY));
+
+    assertThat(serialize(telemetryItems)).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  @Test
+  void shouldMatchJacksonForRequestsAndDependencies() throws IOException {
+    RequestData request = new RequestData();
+    request.setId("0123456789abcdef");
+    request.setName("GET /hello/{name}");
+    request.setDuration(FormattedDuration.fromNanos(123456789));
+    request.setSuccess(true);
+    request.setResponseCode("200");
+    request.setUrl("http://localhost:8080/hello/w\u00f6rld?q=\"quoted\"");
+    Map<String, String> properties = new LinkedHashMap<>();
+    properties.put("control\tchars", "line1\nline2\u0001");
+    properties.put("non-bmp", "\uD83D\uDE00 \u4E2D\u6587");
+    properties.put("null", null);
+    request.setProperties(properties);
+    Map<String, Double> measurements = new LinkedHashMap<>();
+    measurements.put("zero", 0.0);
+    measurements.put("negativeZero", -0.0);
+    measurements.put("integral", 42.0);
+    measurements.put("large", 1e7);
+    measurements.put("small", 0.000123);
+    measurements.put("fraction", 3.14159);
+    measurements.put("nan", Double.NaN);
+    request.setMeasurements(measurements);
+
+    RemoteDependencyData dependency = new RemoteDependencyData();
+    dependency.setId("fedcba9876543210");
+    dependency.setName("SELECT mydb.mytable");
+    dependency.setData("select * from mytable where name = 'a\\b'");
+    dependency.setType("SQL");
+    dependency.setTarget("localhost | mydb");
+    dependency.setDuration(FormattedDuration.fromNanos(1));
+    dependency.setSuccess(false);
+
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(createTelemetryItem("Request", request, 100f));
+    telemetryItems.add(createTelemetryItem("RemoteDependency", dependency, 100f / 3));
+
+    assertThat(serialize(telemetryItems)).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  @Test
+  void shouldMatchJacksonForMessagesAndExceptions() throws IOException {
+    MessageData message = new MessageData();
+    message.setMessage("hello \"world\"");
+    message.setSeverityLevel(SeverityLevel.WARNING);
+
+    StackFrame stackFrame = new StackFrame();
+    stackFrame.setLevel(0);
+    stackFrame.setMethod("com.example.Main.main");
+    stackFrame.setFileName("Main.java");
+    stackFrame.setLine(12);
+    TelemetryExceptionDetails exceptionDetails = new TelemetryExceptionDetails();
+    exceptionDetails.setTypeName("java.lang.IllegalStateException");
+    exceptionDetails.setMessage("boom");
+    exceptionDetails.setHasFullStack(true);
+    exceptionDetails.setStack(
+        "java.lang.IllegalStateException: boom\n\tat com.example.Main.main(Main.java:12)");
+    exceptionDetails.setParsedStack(Collections.singletonList(stackFrame));
+    TelemetryExceptionData exception = new TelemetryExceptionData();
+    exception.setExceptions(Collections.singletonList(exceptionDetails));
+    exception.setSeverityLevel(SeverityLevel.ERROR);
+    Map<String, Object> additionalProperties = new LinkedHashMap<>();
+    additionalProperties.put("string", "value");
+    additionalProperties.put("number", 5);
+    additionalProperties.put("null", null);
+    exception.setAdditionalProperties(additionalProperties);
+
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(createTelemetryItem("Message", message, null));
+    telemetryItems.add(createTelemetryItem("Exception", exception, null));
+
+    assertThat(serialize(telemetryItems)).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  @Test
+  void shouldMatchJacksonForTimes() throws IOException {
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    for (String time :
+        new String[] {
+          "2021-11-09T03:12:19Z",
+          "2021-11-09T03:12:19.06Z",
+          "2021-11-09T03:12:19.123456789Z",
+          "0999-01-01T00:00:00.100Z",
+          "2021-11-09T03:12:19.5+02:00"
+        }) {
+      TelemetryItem telemetryItem = TestUtils.createMetricTelemetry("m", 1, INSTRUMENTATION_KEY);
+      telemetryItem.setTime(OffsetDateTime.parse(time));
+      telemetryItems.add(telemetryItem);
+    }
+
+    assertThat(serialize(telemetryItems)).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  @Test
+  void shouldMatchJacksonForEpochNanosTimes() throws IOException {
+    long base = OffsetDateTime.parse("2021-11-09T03:12:19Z").toInstant().toEpochMilli() * 1000000;
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    for (long epochNanos :
+        new long[] {
+          base,
+          base + 60000000,
+          base + 123456789,
+          base + 100000000,
+          base + 999999999,
+          base + 1000000000,
+          base + 1,
+          -1500000000,
+          Long.MAX_VALUE
+        }) {
+      TelemetryItem telemetryItem = TestUtils.createMetricTelemetry("m", 1, INSTRUMENTATION_KEY);
+      telemetryItem.setTimeEpochNanos(epochNanos);
+      telemetryItems.add(telemetryItem);
+    }
+
+    String json = serialize(telemetryItems);
+    assertThat(json).contains("\"time\":\"2021-11-09T03:12:19.06Z\"");
+    assertThat(json).contains("\"time\":\"2021-11-09T03:12:19.123Z\"");
+    assertThat(json).contains("\"time\":\"2021-11-09T03:12:20Z\"");
+    // jackson serializes the OffsetDateTime that getTime() creates from the epoch nanos
+    assertThat(json).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  @Test
+  void shouldSpanMultipleBuffers() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      sb.append("\u00E9\u4E2D\uD83D\uDE00\n");
+    }
+    MessageData message = new MessageData();
+    message.setMessage(sb.toString());
+
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    telemetryItems.add(createTelemetryItem("Message", message, null));
+    telemetryItems.add(createTelemetryItem("Message", message, null));
+
+    Utf8JsonWriter writer = new Utf8JsonWriter(new AppInsightsByteBufferPool());
+    TelemetryItemSerializer.writeTelemetryItems(writer, telemetryItems);
+
+    assertThat(writer.getByteBuffers()).hasSizeGreaterThan(1);
+    assertThat(toString(writer.getByteBuffers())).isEqualTo(serializeWithJackson(telemetryItems));
+  }
+
+  private static TelemetryItem createTelemetryItem(
+      String type, MonitorDomain data, Float sampleRate) {
+    data.setVersion(2);
+    MonitorBase monitorBase = new MonitorBase();
+    monitorBase.setBaseType(type + "Data");
+    monitorBase.setBaseData(data);
+
+    TelemetryItem telemetryItem = new TelemetryItem();
+    telemetryItem.setName("Microsoft.ApplicationInsights." + type);
+    telemetryItem.setInstrumentationKey(INSTRUMENTATION_KEY);
+    telemetryItem.setTime(OffsetDateTime.parse("2021-11-09T03:12:19.06Z"));
+    telemetryItem.setSampleRate(sampleRate);
+    Map<String, String> tags = new HashMap<>();
+    tags.put("ai.operation.id", "0123456789abcdef0123456789abcdef");
+    tags.put("ai.cloud.role", "my role");
+    telemetryItem.setTags(tags);
+    telemetryItem.setData(monitorBase);
+    return telemetryItem;
+  }
+
+  private static String serialize(List<TelemetryItem> telemetryItems) throws IOException {
+    Utf8JsonWriter writer = new Utf8JsonWriter(new AppInsightsByteBufferPool());
+    TelemetryItemSerializer.writeTelemetryItems(writer, telemetryItems);
+    return toString(writer.getByteBuffers());
+  }
+
+  private static String toString(List<ByteBuffer> byteBuffers) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      out.write(byteBuffer.array(), byteBuffer.arrayOffset(), byteBuffer.position());
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  // this is how TelemetryChannel serialized telemetry before TelemetryItemSerializer
+  private static String serializeWithJackson(List<TelemetryItem> telemetryItems)
+      throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    mapper.registerModules(
+        ObjectMapper.findModules(TelemetryItemSerializerTest.class.getClassLoader()));
+    mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (JsonGenerator jg = mapper.createGenerator(out)) {
+      jg.setRootValueSeparator(new SerializedString("\n"));
+      for (TelemetryItem telemetryItem : telemetryItems) {
+        mapper.writeValue(jg, telemetryItem);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
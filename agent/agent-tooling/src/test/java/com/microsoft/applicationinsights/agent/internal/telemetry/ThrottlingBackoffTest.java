@@ -0,0 +1,82 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ThrottlingBackoffTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final ThrottlingBackoff backoff = new ThrottlingBackoff(nanoTime::get);
+
+  @Test
+  void shouldHonorRetryAfter() {
+    assertThat(backoff.isPaused()).isFalse();
+
+    assertThat(backoff.onThrottled("10")).isEqualTo(10_000);
+    assertThat(backoff.isPaused()).isTrue();
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(9));
+    assertThat(backoff.isPaused()).isTrue();
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThat(backoff.isPaused()).isFalse();
+  }
+
+  @Test
+  void shouldBackOffExponentiallyWithoutRetryAfter() {
+    long first = backoff.onThrottled(null);
+    long second = backoff.onThrottled(null);
+    long third = backoff.onThrottled(null);
+
+    assertThat(first).isBetween(500L, 1000L);
+    assertThat(second).isBetween(1000L, 2000L);
+    assertThat(third).isBetween(2000L, 4000L);
+
+    backoff.onSuccess();
+    assertThat(backoff.onThrottled(null)).isBetween(500L, 1000L);
+  }
+
+  @Test
+  void shouldParseRetryAfter() {
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis(null)).isEqualTo(-1);
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis("")).isEqualTo(-1);
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis("abc")).isEqualTo(-1);
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis("-1")).isEqualTo(-1);
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis(" 3 ")).isEqualTo(3000);
+    // capped at 5 minutes
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis("3600")).isEqualTo(300_000);
+
+    String date =
+        ZonedDateTime.now(ZoneOffset.UTC)
+            .plusSeconds(120)
+            .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+    assertThat(ThrottlingBackoff.parseRetryAfterMillis(date)).isBetween(110_000L, 120_000L);
+  }
+}
@@ -26,6 +26,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.io.CharStreams;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.microsoft.applicationinsights.smoketest.JsonHelper;
 import com.microsoft.applicationinsights.smoketest.schemav2.Envelope;
@@ -43,6 +45,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.zip.GZIPInputStream;
 import javax.servlet.ServletConfig;
@@ -68,6 +71,12 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
 
   private final ExecutorService itemExecutor = Executors.newSingleThreadExecutor();
 
+  // used to simulate ingestion service throttling and partial success responses
+  private final AtomicInteger throttledRequestsRemaining = new AtomicInteger();
+  private volatile int throttledStatusCode;
+  private volatile int retryAfterSeconds;
+  private volatile Predicate<Envelope> partialSuccessRejectFilter = envelope -> false;
+
   public static final String LOG_PAYLOADS_PARAMETER_KEY = "logPayloads";
   public static final String RETAIN_PAYLOADS_PARAMETER_KEY = "retainPayloads";
 
@@ -117,6 +126,28 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
     this.filters.add(filter);
   }
 
+  /**
+   * Responds to the next {@code numRequests} telemetry requests with the given status code (e.g.
+   * 429 or 503) and Retry-After header, without retaining any of the telemetry.
+   */
+  public void throttleNextRequests(int numRequests, int statusCode, int retryAfterSeconds) {
+    this.throttledStatusCode = statusCode;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.throttledRequestsRemaining.set(numRequests);
+  }
+
+  /**
+   * Rejects telemetry items matching the given filter with a retriable status code, responding
+   * with a 206 partial success listing the rejected item indexes.
+   */
+  public void setPartialSuccessRejectFilter(Predicate<Envelope> rejectFilter) {
+    this.partialSuccessRejectFilter = Objects.requireNonNull(rejectFilter, "rejectFilter");
+  }
+
+  private boolean shouldThrottle() {
+    return throttledRequestsRemaining.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+  }
+
   public void resetData() {
     logit("Clearing telemetry accumulator...");
     synchronized (multimapLock) {
@@ -194,6 +225,10 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
           if (PING.equals(body)) {
             logit("Ping received for /v2.1/track");
             resp.getWriter().append(PONG);
+          } else if (shouldThrottle()) {
+            logit("Throttling request with status code " + throttledStatusCode);
+            resp.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+            resp.sendError(throttledStatusCode, "Throttled");
           } else {
             resp.setContentType("application/json");
             logit("Deserializing payload...");
@@ -201,7 +236,9 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
               logit("raw payload:\n\n" + body + "\n");
             }
             String[] lines = body.split("\n");
-            for (String line : lines) {
+            JsonArray errors = new JsonArray();
+            for (int i = 0; i < lines.length; i++) {
+              String line = lines[i];
               Envelope envelope;
               try {
                 envelope = JsonHelper.GSON.fromJson(line.trim(), Envelope.class);
@@ -209,6 +246,15 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
                 logerr("Could not deserialize to Envelope", jse);
                 throw jse;
               }
+              if (partialSuccessRejectFilter.test(envelope)) {
+                logit("Rejecting telemetry item (partial success): " + i);
+                JsonObject error = new JsonObject();
+                error.addProperty("index", i);
+                error.addProperty("statusCode", 500);
+                error.addProperty("message", "Rejected by fake ingestion");
+                errors.add(error);
+                continue;
+              }
               if (config.isRetainPayloadsEnabled()) {
                 String baseType = envelope.getData().getBaseType();
                 if (filtersAllowItem(envelope)) {
@@ -221,6 +267,14 @@ public class MockedAppInsightsIngestionServlet extends HttpServlet {
                 }
               }
             }
+            if (errors.size() > 0) {
+              JsonObject response = new JsonObject();
+              response.addProperty("itemsReceived", lines.length);
+              response.addProperty("itemsAccepted", lines.length - errors.size());
+              response.add("errors", errors);
+              resp.setStatus(206);
+              resp.getWriter().append(response.toString());
+            }
           }
           return;
         } catch (Exception e) {
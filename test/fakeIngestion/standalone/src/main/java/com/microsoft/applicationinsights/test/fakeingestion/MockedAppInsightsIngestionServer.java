@@ -73,6 +73,14 @@ public class MockedAppInsightsIngestionServer {
     this.servlet.addIngestionFilter(filter);
   }
 
+  public void throttleNextRequests(int numRequests, int statusCode, int retryAfterSeconds) {
+    this.servlet.throttleNextRequests(numRequests, statusCode, retryAfterSeconds);
+  }
+
+  public void setPartialSuccessRejectFilter(Predicate<Envelope> rejectFilter) {
+    this.servlet.setPartialSuccessRejectFilter(rejectFilter);
+  }
+
   public void resetData() {
     this.servlet.resetData();
   }